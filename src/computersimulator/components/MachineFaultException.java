@@ -0,0 +1,31 @@
+package computersimulator.components;
+
+/**
+ * Special exception for handling a machine fault. The fault ID is what the
+ * ControlUnit places in the MFR.
+ */
+public class MachineFaultException extends Exception {
+    
+    private static final long serialVersionUID = 1L;
+    
+    // MFR fault IDs
+    public final static int FAULT_ILLEGAL_RESERVED_ADDRESS = 0;
+    public final static int FAULT_ILLEGAL_TRAP_CODE = 1;
+    public final static int FAULT_ILLEGAL_OPCODE = 2;
+    public final static int FAULT_ILLEGAL_MEMORY_ADDRESS = 3;
+    
+    private final int faultId;
+
+    public MachineFaultException(int faultId, String message) {
+        super(message);
+        this.faultId = faultId;
+    }
+
+    /**
+     * @return MFR fault ID (see static variables)
+     */
+    public int getFaultId() {
+        return faultId;
+    }
+    
+}
@@ -7,8 +7,10 @@ package computersimulator.components;
  */
 public class Unit {
     
-    private String data;   
+    // Raw bits, only the low [size] bits are used (bit 0 of the MSB-0 numbering is bit size-1 here)
+    private int data;   
     private final int size;
+    private final int mask;
 
 
     private final int MIN_SIGNED_VALUE;
@@ -30,6 +32,7 @@ public class Unit {
            
         }
         this.size = Size;
+        this.mask = (int)((1L << Size) - 1);
         
         // MAX SIGNED VALUE = ((2xy(n-1))-1)      
         this.MAX_SIGNED_VALUE = (int)(Math.pow(2, (this.size-1))-1);        
@@ -51,6 +54,7 @@ public class Unit {
     public Unit(Unit c){
         this.data = c.data;
         this.size = c.size;
+        this.mask = c.mask;
         
         this.MAX_SIGNED_VALUE = c.MAX_SIGNED_VALUE;
         this.MAX_UNSIGNED_VALUE = c.MAX_UNSIGNED_VALUE;
@@ -91,16 +95,7 @@ public class Unit {
      */
     public final void setValue(int value) throws java.lang.ArithmeticException {        
         if(value <= this.MAX_UNSIGNED_VALUE && value >= this.MIN_SIGNED_VALUE){           
-            String raw = Integer.toBinaryString(value);            
-            
-            char signExtend = (value < 0) ? raw.charAt(0) : '0';
-            
-            while(raw.length() < this.size){
-                raw = signExtend + raw;
-            }
-            
-            this.data=raw;
-            
+            this.data = value & this.mask; // two's complement bits, cut to size
         } else {
             throw new java.lang.ArithmeticException("{"+value+"} Out Of Range: ["+this.MIN_UNSIGNED_VALUE+" through "+this.MAX_SIGNED_VALUE+"]"); 
             //@TODO: this is a great location to throw a special overflow exception which can be caught later
@@ -113,14 +108,15 @@ public class Unit {
      * @return Value as Signed Integer
      */
     public Integer getSignedValue(){        
-        return this.getLongValue().intValue();
+        int shift = 32 - this.size;
+        return (this.data << shift) >> shift; // sign extend
     }
     
     /**
      * @return Value as Unsigned Integer
      */
     public Integer getUnsignedValue(){
-        return Integer.parseInt(this.data, 2);
+        return this.data;
     }
     
     
@@ -128,11 +124,23 @@ public class Unit {
      * @return Value as Unsigned Long
      */
     public Long getLongValue(){
-        String res = this.data;
-        while(res.length() < 32){ // sign extend
-            res = res.charAt(0) + res;
-        }
-        return Long.parseLong(res, 2);
+        return this.getSignedValue() & 0xFFFFFFFFL; // sign extended to 32 bits
+    }
+    
+    /**
+     * Primitive access to the raw bits, without boxing.
+     * @return low [size] bits of the Unit
+     */
+    public int getRawValue(){
+        return this.data;
+    }
+    
+    /**
+     * Primitive store of raw bits; anything above [size] bits is dropped.
+     * @param bits
+     */
+    public void setRawValue(int bits){
+        this.data = bits & this.mask;
     }
     
     /**
@@ -142,18 +150,10 @@ public class Unit {
      * @return Unit(Start to Stop)
      */
     public Unit decomposeByOffset(int start, int stop){
-        Integer[] digits = this.getBinaryArray();
-        StringBuilder tempBinaryString = new StringBuilder();
-        
-        for(int i=start; i<=stop;i++){
-            tempBinaryString.append(digits[i]);            
-        }
-        
-        String binary = tempBinaryString.toString();
-        
-        int intValue = Integer.parseInt(binary, 2);
+        int length = stop - start + 1;
+        int intValue = (int)((this.data >>> (this.size - 1 - stop)) & ((1L << length) - 1));
         
-        return new Unit(binary.length(), intValue);        
+        return new Unit(length, intValue);        
     }
 
     /**
@@ -162,9 +162,7 @@ public class Unit {
      * @return Unit(index)
      */
     public Unit decomposeByIndex(int index){
-        Integer[] digits = this.getBinaryArray();
-        
-        int intValue = Integer.parseInt(String.valueOf(digits[index]), 2);
+        int intValue = (this.data >>> (this.size - 1 - index)) & 1;
         
         return new Unit(1, intValue);        
     }
@@ -184,11 +182,9 @@ public class Unit {
      * @return Array of Bits (Only possible values are 1/0 despite integer storage)
      */
     public Integer[] getBinaryArray(){
-        char[] temp=this.data.toCharArray();
-        
-        Integer[] digits = new Integer[temp.length];
-        for (int i = 0; i < temp.length; ++i) {
-            digits[i]= Character.digit(temp[i],10);
+        Integer[] digits = new Integer[this.size];
+        for (int i = 0; i < this.size; ++i) {
+            digits[i] = (this.data >>> (this.size - 1 - i)) & 1;
         }
 
         return digits;  
@@ -203,69 +199,47 @@ public class Unit {
     }
     
     /**
-     * Perform Shift Operation 
+     * Perform Shift Operation in one step on the raw bits. Left is toward 
+     * index 0 (the MSB).
      * @param leftRight shifted left (L/R =1) or right (L/R = 0)
      * @param count number of times to shift
      * @param algorithmicLogical logically (A/L = 1) or arithmetically (A/L = 0)
      */
     public void shiftByCount(int leftRight, int count, int algorithmicLogical){
+        if(count<=0){
+            return;
+        }
+        long bits = this.data & 0xFFFFFFFFL;
         if(leftRight==1){ // left
             // logical / algorithmic are identical
-            while(count>0){
-                Integer[] shiftTemp= this.getBinaryArray();
-                for(int i=0; i<this.size-1; i++){
-                    shiftTemp[i] = shiftTemp[i+1];
-                }
-                shiftTemp[this.size-1] = 0; // shiftOff in Rotate
-                this.setValueBinaryArray(shiftTemp);
-                count--;
-            }
-        } else { // right            
-            while(count>0){
-                Integer[] shiftTemp= this.getBinaryArray();
-                int shiftOn=(algorithmicLogical==0) ? shiftTemp[0] : 0; 
-
-                for(int i=this.size-1; i>0; i--){
-                    shiftTemp[i] = shiftTemp[i-1];
-                }
-                shiftTemp[0] = shiftOn;
-                this.setValueBinaryArray(shiftTemp);
-                count--;
-            }
-            
+            bits = (count >= this.size) ? 0 : (bits << count);
+        } else if(algorithmicLogical==0){ // right, arithmetic: MSB shifted on
+            bits = this.getSignedValue() >> Math.min(count, 31);
+        } else { // right, logical: 0 shifted on
+            bits = (count >= this.size) ? 0 : (bits >>> count);
         }
+        this.data = (int)bits & this.mask;
     }
     
     /**
-     * Perform Rotate Operation 
+     * Perform Rotate Operation in one step on the raw bits. Left is toward 
+     * index 0 (the MSB).
      * @param leftRight rotated left (L/R =1) or right (L/R = 0)
      * @param count number of times to rotate
      */
     public void rotateByCount(int leftRight, int count){
-        if(leftRight==1){ // left
-            // logical / algorithmic are identical
-            while(count>0){
-                Integer[] shiftTemp= this.getBinaryArray();
-                int shiftOff = shiftTemp[0]; // shifted on to the right side below
-                for(int i=0; i<this.size-1; i++){
-                    shiftTemp[i] = shiftTemp[i+1];
-                }
-                shiftTemp[this.size-1] = shiftOff; 
-                this.setValueBinaryArray(shiftTemp);
-                count--;
-            }
-        } else { // right            
-            while(count>0){
-                Integer[] shiftTemp= this.getBinaryArray();
-                int shiftOff = shiftTemp[this.size-1]; // used in rotate
-                for(int i=this.size-1; i>0; i--){
-                    shiftTemp[i] = shiftTemp[i-1];
-                }
-                shiftTemp[0] = shiftOff;
-                this.setValueBinaryArray(shiftTemp);
-                count--;
-            }            
+        if(count<=0){
+            return;
+        }
+        int distance = count % this.size;
+        if(distance==0){
+            return;
         }
+        if(leftRight!=1){ // right by n is left by size-n
+            distance = this.size - distance;
+        }
+        long bits = this.data & 0xFFFFFFFFL;
+        this.data = (int)((bits << distance) | (bits >>> (this.size - distance))) & this.mask;
     }    
     
     /**
@@ -273,8 +247,11 @@ public class Unit {
      * @return Binary representation as a String
      */
     public String getBinaryString(){        
-        Integer[] arr = getBinaryArray();
-        return Unit.IntArrayToBinaryString(arr);                
+        char[] digits = new char[this.size];
+        for (int i = 0; i < this.size; ++i) {
+            digits[i] = (((this.data >>> (this.size - 1 - i)) & 1) == 1) ? '1' : '0';
+        }
+        return new String(digits);                
     }
     
     public static String IntArrayToBinaryString(Integer [] arr){
@@ -291,17 +268,25 @@ public class Unit {
      */
     public void setValueBinary(String binary){
         if(binary.length()==this.size){
-            this.data = binary;
+            this.data = Unit.parseBinary(binary);
         } else if(binary.length() < this.size){
-            do { // extend sign until bitsize matches
-                binary = binary.substring(0,1) + binary;
-            } while(binary.length() < this.size);
+            // extend sign until bitsize matches
+            int shift = 32 - binary.length();
+            this.data = ((Unit.parseBinary(binary) << shift) >> shift) & this.mask;
         } else {
-            this.data = binary.substring(binary.length()-this.size); // cut from end (overflow left)
+            this.data = Unit.parseBinary(binary.substring(binary.length()-this.size)); // cut from end (overflow left)
             System.out.println("!!!!!overflow in set value -- this should never happen!!!!!");
         }
             
     }
+    
+    /**
+     * @param binary up to 32 binary digits
+     * @return raw bits
+     */
+    private static int parseBinary(String binary){
+        return (int)Long.parseLong(binary, 2);
+    }
     /**
      *  Accepts an array and performs logical NOT on the bits
      */
@@ -4,18 +4,26 @@ import computersimulator.components.Unit;
 
 /**
  * This is the ALU class. It receives 3 inputs, processes them, and sets an 
- * output and condition flags.  It operates on the clock cycle and requires one 
- * clock cycle to process any inputs and set outputs.  All inputs are reset upon
- * computation.
+ * output and condition flags.  It operates on the clock cycle; every operation
+ * class (add/subtract, logical, shift, multiply, divide) has its own latency 
+ * and initiation interval, so a pipelined class accepts a new operation every
+ * [initiation interval] cycles while earlier ones are still in flight. All 
+ * inputs are reset once an operation is issued.
+ * 
+ * The ControlUnit uses the single-operation interface (OP1/OP2/CTRL, 
+ * signalReadyToStartComputation, getResult). Callers that keep several 
+ * operations in flight use issue / isComplete / getResult(tag). Operations
+ * may complete out of order, but their flags reach the ControlUnit in issue
+ * order, so CC ends up as the last operation issued left it.
  */
-public class ArithmeticLogicUnit implements IClockCycle {
+public class ArithmeticLogicUnit implements IScheduledClockCycle {
     
 
     
     // OP1 - Unit - Up to 20 Bits
     private Unit operand1;
     
-    // OP2 - Unit - Up to 20 Bits
+    // OP2 - Unit - Up to 20 Bits (shift/rotate count for shifts)
     private Unit operand2;
     
     //CTRL - Unit - ? Bits      // @TODO Verify states are correct. I used placeholders 0,1,2.
@@ -26,11 +34,38 @@ public class ArithmeticLogicUnit implements IClockCycle {
     public final static int CONTROL_AND=3;
     public final static int CONTROL_MULTIPLY=4;
     public final static int CONTROL_DIVIDE=5;
+    public final static int CONTROL_OR=6;
+    public final static int CONTROL_NOT=7;
+    public final static int CONTROL_SHIFT_LEFT=8;
+    public final static int CONTROL_SHIFT_RIGHT_ARITHMETIC=9;
+    public final static int CONTROL_SHIFT_RIGHT_LOGICAL=10;
+    public final static int CONTROL_ROTATE_LEFT=11;
+    public final static int CONTROL_ROTATE_RIGHT=12;
+    
+    // Operation classes, each with its own latency / initiation interval
+    public final static int CLASS_ADD_SUBTRACT=0;
+    public final static int CLASS_LOGICAL=1;
+    public final static int CLASS_SHIFT=2;
+    public final static int CLASS_MULTIPLY=3;
+    public final static int CLASS_DIVIDE=4;
+    public final static int CLASS_COUNT=5;
+    
+    // Cycles from issue until the result can be read (1 = ready the next cycle)
+    private final int[] latency = {1, 1, 1, 4, 10};
+    // Cycles between two issues into the same class (1 = fully pipelined)
+    private final int[] initiationInterval = {1, 1, 1, 1, 1};
+    // First cycle each class can accept another operation
+    private final long[] nextIssueCycle = new long[CLASS_COUNT];
+    // Completed operations per class
+    private final long[] operationCount = new long[CLASS_COUNT];
     
     
     // RES - Unit - Up to 20 Bits
     private Unit result;
     
+    // RES2 - high word of a multiply / remainder of a divide
+    private Unit resultHigh;
+    
     private int state;
 
     private final static int STATE_NONE = 0;
@@ -39,6 +74,33 @@ public class ArithmeticLogicUnit implements IClockCycle {
     
     private ControlUnit controlUnit;
     
+    // In-flight operations, indexed by tag (sequence number) modulo the capacity
+    private final static int IN_FLIGHT_CAPACITY = 64;
+    private final int[] flightControl = new int[IN_FLIGHT_CAPACITY];
+    private final Unit[] flightOperand1 = new Unit[IN_FLIGHT_CAPACITY];
+    private final Unit[] flightOperand2 = new Unit[IN_FLIGHT_CAPACITY];
+    private final long[] flightCompleteCycle = new long[IN_FLIGHT_CAPACITY];
+    private final boolean[] flightDone = new boolean[IN_FLIGHT_CAPACITY];
+    private final Unit[] flightResult = new Unit[IN_FLIGHT_CAPACITY];
+    private final Unit[] flightResultHigh = new Unit[IN_FLIGHT_CAPACITY];
+    // CC inputs, captured at issue and recorded when the operation retires (CONTROL_NONE: sets no flags)
+    private final int[] flightConditionControl = new int[IN_FLIGHT_CAPACITY];
+    private final int[] flightConditionSize = new int[IN_FLIGHT_CAPACITY];
+    private final long[] flightConditionOperand1 = new long[IN_FLIGHT_CAPACITY];
+    private final long[] flightConditionOperand2 = new long[IN_FLIGHT_CAPACITY];
+    private int nextTag = 0;        // tag given to the next issue
+    private int oldestTag = 0;      // oldest tag that may still be in flight
+    private int inFlight = 0;
+    
+    // tag of the operation started through signalReadyToStartComputation
+    private int controlUnitTag = -1;
+    
+    // ALU-local cycle, advanced at the end of clockCycle
+    private long cycle = 0;
+    
+    // set by multiply/divide while computing, moved into RES2
+    private Unit computedHigh;
+    
     
 
     public ArithmeticLogicUnit() {
@@ -53,60 +115,311 @@ public class ArithmeticLogicUnit implements IClockCycle {
     /**
      * Clock cycle. This is the main function which causes the ALU to do work.
      *  This serves as a publicly accessible method, but delegates to other methods.
+     *  Every operation whose latency has elapsed is computed this cycle.
      */
     @Override
     public void clockCycle(){
-        switch(this.state){
-            case ArithmeticLogicUnit.STATE_START_COMPUTATION:
-                this.compute();
-                break;
-            case ArithmeticLogicUnit.STATE_COMPUTATION_FINISHED:                
-            case ArithmeticLogicUnit.STATE_NONE:
-            default:
-                break;
-                
-                
+        if(this.inFlight > 0){
+            for(int tag = this.oldestTag; tag != this.nextTag; tag++){
+                int slot = tag & (IN_FLIGHT_CAPACITY - 1);
+                if(!this.flightDone[slot] && this.flightCompleteCycle[slot] <= this.cycle){
+                    this.compute(tag);
+                }
+            }
+            // retire the done prefix, in tag order: flags are recorded as the operations were issued
+            while(this.oldestTag != this.nextTag && this.flightDone[this.oldestTag & (IN_FLIGHT_CAPACITY - 1)]){
+                int slot = this.oldestTag & (IN_FLIGHT_CAPACITY - 1);
+                if(this.flightConditionControl[slot] != ArithmeticLogicUnit.CONTROL_NONE){
+                    this.recordConditions(this.flightConditionControl[slot], this.flightConditionSize[slot],
+                            this.flightConditionOperand1[slot], this.flightConditionOperand2[slot]);
+                }
+                this.oldestTag++;
+            }
         }
-        
+        this.cycle++;
+    }
+    
+    /**
+     * @return cycles until the earliest in-flight operation completes, NEVER with none in flight
+     */
+    @Override
+    public long getIdleCycles(){
+        if(this.inFlight == 0){
+            return IScheduledClockCycle.NEVER;
+        }
+        long earliest = IScheduledClockCycle.NEVER;
+        for(int tag = this.oldestTag; tag != this.nextTag; tag++){
+            int slot = tag & (IN_FLIGHT_CAPACITY - 1);
+            if(!this.flightDone[slot]){
+                earliest = Math.min(earliest, this.flightCompleteCycle[slot]);
+            }
+        }
+        return Math.max(0, earliest - this.cycle);
+    }
+    
+    /**
+     * @param cycles cycles skipped; no operation completes in them
+     */
+    @Override
+    public void skipCycles(long cycles){
+        this.cycle += cycles;
     }
 
     /**
      * This is used by the ControlUnit to tell ALU all parameters are set.
+     * The operation is issued immediately; getResult returns null until its
+     * latency has elapsed.
      */
     public void signalReadyToStartComputation(){
+        this.controlUnitTag = this.issue(this.control, this.operand1, this.operand2);
         this.setState(ArithmeticLogicUnit.STATE_START_COMPUTATION);
+        
+        // Reset inputs
+        this.setControl(ArithmeticLogicUnit.CONTROL_NONE);
+        this.setOperand1(null);
+        this.setOperand2(null);
+    }
+    
+    /**
+     * @param control CONTROL_* operation
+     * @return true if the operation's class can accept an operation this cycle
+     *         and the ring has a free slot
+     */
+    public boolean canIssue(int control){
+        // a done operation still holds its slot until everything older retires
+        return this.nextTag - this.oldestTag < IN_FLIGHT_CAPACITY
+                && this.cycle >= this.nextIssueCycle[ArithmeticLogicUnit.operationClassOf(control)];
+    }
+    
+    /**
+     * Starts an operation. Operands are copied, so the caller may change them.
+     * @param control CONTROL_* operation
+     * @param op1 OP1
+     * @param op2 OP2
+     * @return tag used with isComplete / getResult(tag), or -1 if the class is 
+     *         still inside its initiation interval or the ring is full
+     */
+    public int issue(int control, Unit op1, Unit op2){
+        if(!this.canIssue(control)){
+            return -1;
+        }
+        int operationClass = ArithmeticLogicUnit.operationClassOf(control);
+        int tag = this.nextTag++;
+        int slot = tag & (IN_FLIGHT_CAPACITY - 1);
+        
+        this.flightControl[slot] = control;
+        this.flightOperand1[slot] = (op1 == null) ? null : new Unit(op1);
+        this.flightOperand2[slot] = (op2 == null) ? null : new Unit(op2);
+        // latency 1 completes on this cycle's clock, visible next cycle
+        this.flightCompleteCycle[slot] = this.cycle + this.latency[operationClass] - 1;
+        this.flightDone[slot] = false;
+        this.flightResult[slot] = null;
+        this.flightResultHigh[slot] = null;
+        this.captureConditions(slot, control, op1, op2);
+        this.inFlight++;
+        
+        this.nextIssueCycle[operationClass] = this.cycle + this.initiationInterval[operationClass];
+        return tag;
+    }
+    
+    /**
+     * @param tag from issue
+     * @return true once the operation's result can be read
+     */
+    public boolean isComplete(int tag){
+        return this.flightDone[tag & (IN_FLIGHT_CAPACITY - 1)];
+    }
+    
+    /**
+     * @param tag from issue
+     * @return RES of a completed operation, null while it is in flight
+     */
+    public Unit getResult(int tag){
+        int slot = tag & (IN_FLIGHT_CAPACITY - 1);
+        return this.flightDone[slot] ? this.flightResult[slot] : null;
+    }
+    
+    /**
+     * @param tag from issue
+     * @return RES2 (multiply high word / divide remainder), null otherwise
+     */
+    public Unit getResultHigh(int tag){
+        int slot = tag & (IN_FLIGHT_CAPACITY - 1);
+        return this.flightDone[slot] ? this.flightResultHigh[slot] : null;
+    }
+    
+    /**
+     * @return true while any operation is in flight
+     */
+    public boolean isBusy(){
+        return this.inFlight > 0;
+    }
+    
+    /**
+     * @return number of operations in flight
+     */
+    public int getInFlightCount(){
+        return this.inFlight;
+    }
+    
+    /**
+     * Keeps the inputs of the flags an operation sets: add/subtract on the
+     * raw operands at the wider size, multiply/divide on the signed operands
+     * at OP1's size. The other operations leave CC alone.
+     */
+    private void captureConditions(int slot, int control, Unit op1, Unit op2){
+        switch(control){
+            case ArithmeticLogicUnit.CONTROL_ADD:
+            case ArithmeticLogicUnit.CONTROL_SUBTRACT:
+                this.flightConditionSize[slot] = Math.max(op1.getSize(), op2.getSize());
+                this.flightConditionOperand1[slot] = ArithmeticLogicUnit.rawValue(op1);
+                this.flightConditionOperand2[slot] = ArithmeticLogicUnit.rawValue(op2);
+                break;
+            case ArithmeticLogicUnit.CONTROL_MULTIPLY:
+            case ArithmeticLogicUnit.CONTROL_DIVIDE:
+                this.flightConditionSize[slot] = op1.getSize();
+                this.flightConditionOperand1[slot] = op1.getSignedValue();
+                this.flightConditionOperand2[slot] = op2.getSignedValue();
+                break;
+            default:
+                control = ArithmeticLogicUnit.CONTROL_NONE;
+                break;
+        }
+        this.flightConditionControl[slot] = control;
     }
     
     /** 
-     * Used internally on the clock cycle when start computation is set.
+     * Used internally on the clock cycle once an operation's latency has elapsed.
      */
-    private void compute(){
-        switch(this.control){
+    private void compute(int tag){
+        int slot = tag & (IN_FLIGHT_CAPACITY - 1);
+        Unit op1 = this.flightOperand1[slot];
+        Unit op2 = this.flightOperand2[slot];
+        int ctrl = this.flightControl[slot];
+        Unit res = null;
+        this.computedHigh = null;
+        
+        switch(ctrl){
             case ArithmeticLogicUnit.CONTROL_ADD:
-                this.setResult(this.add(operand1, operand2));
+                res = this.add(op1, op2);
                 break;
             case ArithmeticLogicUnit.CONTROL_SUBTRACT:
-                this.setResult(this.subtract(operand1, operand2));                 
+                res = this.subtract(op1, op2);                 
                 break;
             case ArithmeticLogicUnit.CONTROL_AND:
-                this.setResult(this.and(operand1, operand2));
+                res = this.and(op1, op2);
+                break;
+            case ArithmeticLogicUnit.CONTROL_OR:
+                res = this.or(op1, op2);
+                break;
+            case ArithmeticLogicUnit.CONTROL_NOT:
+                res = this.not(op1);
+                break;
+            case ArithmeticLogicUnit.CONTROL_SHIFT_LEFT:
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_ARITHMETIC:
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_LOGICAL:
+            case ArithmeticLogicUnit.CONTROL_ROTATE_LEFT:
+            case ArithmeticLogicUnit.CONTROL_ROTATE_RIGHT:
+                res = this.shift(ctrl, op1, op2);
                 break;
             case ArithmeticLogicUnit.CONTROL_MULTIPLY:
-                this.setResult(this.multiply(operand1, operand2));                 
+                res = this.multiply(op1, op2);                 
                 break;
             case ArithmeticLogicUnit.CONTROL_DIVIDE:
-                this.setResult(this.divide(operand1, operand2));                 
+                res = this.divide(op1, op2);                 
                 break;
             case ArithmeticLogicUnit.CONTROL_NONE:
             default:
                 //@TODO Handle error.
                 break;
         }                
-        // Reset inputs & set state to finished
-        this.setControl(ArithmeticLogicUnit.CONTROL_NONE);
-        this.setOperand1(null);
-        this.setOperand2(null);
-        this.setState(ArithmeticLogicUnit.STATE_COMPUTATION_FINISHED);
+        
+        this.flightResult[slot] = res;
+        this.flightResultHigh[slot] = this.computedHigh;
+        this.flightDone[slot] = true;
+        this.flightOperand1[slot] = null;
+        this.flightOperand2[slot] = null;
+        this.inFlight--;
+        this.operationCount[ArithmeticLogicUnit.operationClassOf(ctrl)]++;
+        
+        if(tag == this.controlUnitTag){
+            this.setResult(res);
+            this.resultHigh = this.computedHigh;
+            this.setState(ArithmeticLogicUnit.STATE_COMPUTATION_FINISHED);
+        }
+    }
+    
+    /**
+     * @param control CONTROL_* operation
+     * @return CLASS_* the operation is timed as
+     */
+    public static int operationClassOf(int control){
+        switch(control){
+            case ArithmeticLogicUnit.CONTROL_AND:
+            case ArithmeticLogicUnit.CONTROL_OR:
+            case ArithmeticLogicUnit.CONTROL_NOT:
+                return ArithmeticLogicUnit.CLASS_LOGICAL;
+            case ArithmeticLogicUnit.CONTROL_SHIFT_LEFT:
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_ARITHMETIC:
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_LOGICAL:
+            case ArithmeticLogicUnit.CONTROL_ROTATE_LEFT:
+            case ArithmeticLogicUnit.CONTROL_ROTATE_RIGHT:
+                return ArithmeticLogicUnit.CLASS_SHIFT;
+            case ArithmeticLogicUnit.CONTROL_MULTIPLY:
+                return ArithmeticLogicUnit.CLASS_MULTIPLY;
+            case ArithmeticLogicUnit.CONTROL_DIVIDE:
+                return ArithmeticLogicUnit.CLASS_DIVIDE;
+            case ArithmeticLogicUnit.CONTROL_ADD:
+            case ArithmeticLogicUnit.CONTROL_SUBTRACT:
+            default:
+                return ArithmeticLogicUnit.CLASS_ADD_SUBTRACT;
+        }
+    }
+    
+    /**
+     * @param operationClass CLASS_*
+     * @return cycles from issue until the result can be read
+     */
+    public int getLatency(int operationClass){
+        return this.latency[operationClass];
+    }
+    
+    /**
+     * @param operationClass CLASS_*
+     * @param cycles cycles from issue until the result can be read (>= 1)
+     */
+    public void setLatency(int operationClass, int cycles){
+        if(cycles < 1){
+            throw new IllegalArgumentException("Latency must be at least 1 cycle ("+cycles+")");
+        }
+        this.latency[operationClass] = cycles;
+    }
+    
+    /**
+     * @param operationClass CLASS_*
+     * @return cycles between two issues into that class
+     */
+    public int getInitiationInterval(int operationClass){
+        return this.initiationInterval[operationClass];
+    }
+    
+    /**
+     * @param operationClass CLASS_*
+     * @param cycles cycles between two issues (1 = fully pipelined, latency = unpipelined)
+     */
+    public void setInitiationInterval(int operationClass, int cycles){
+        if(cycles < 1){
+            throw new IllegalArgumentException("Initiation interval must be at least 1 cycle ("+cycles+")");
+        }
+        this.initiationInterval[operationClass] = cycles;
+    }
+    
+    /**
+     * @param operationClass CLASS_*
+     * @return operations of that class completed so far
+     */
+    public long getOperationCount(int operationClass){
+        return this.operationCount[operationClass];
     }
         
 
@@ -151,176 +464,354 @@ public class ArithmeticLogicUnit implements IClockCycle {
             return null;
         }
     }
+    
+    /**
+     * @return RES2 of the last ControlUnit operation (multiply high word / 
+     *         divide remainder), null while it is in flight
+     */
+    public Unit getResultHigh() {
+        if(this.getState() == ArithmeticLogicUnit.STATE_COMPUTATION_FINISHED){
+            return resultHigh;
+        } else {
+            return null;
+        }
+    }
 
     private void setResult(Unit result) {
         this.result = result;
     }
     
+    /**
+     * Hands a retiring operation's flags to the ControlUnit, which derives them lazily.
+     * A free-standing ALU (no ControlUnit) just skips this.
+     */
+    private void recordConditions(int ctrl, int size, long a, long b){
+        if(this.controlUnit != null){
+            this.controlUnit.recordConditionOperation(ctrl, size, a, b);
+        }
+    }
+    
  
     /**
-     * Perform subtract operation implements twos complement math. 
+     * Perform subtract operation implements twos complement math. Both operands
+     * are zero-padded to the wider size, operand2 is negated (invert + 1) and 
+     * added to operand1. Flags are left to deriveConditions.
      * @param operand1
      * @param operand2
      * @return rets
      */
     private Unit subtract(Unit operand1, Unit operand2) {        
-        String op1Str = operand1.getBinaryString();
-        String op2Str = operand2.getBinaryString();
-       
-        // prepare both operands
-        int diff = Math.abs(op1Str.length() - op2Str.length());
-        String zeros = "";
-        for (int i = 0; i < diff; i++) {
-            zeros += "0";
-        }
-        if (op1Str.length() > op2Str.length()) {
-            op2Str = zeros + op2Str;
-        } else {
-            op1Str = zeros + op1Str;
-        }
-         
-        // prepare to invert bits
-        Integer[] op2Binary = new Integer[op2Str.length()];
-        for (int i = 0; i < op2Binary.length; i ++) {
-            op2Binary[i] = Integer.parseInt(op2Str.charAt(i) + "");
-        }
-        for (int i = 0; i < op2Binary.length; i++) {                            
-            op2Binary[i] = 1 - op2Binary[i];
-        }
-        op2Str = Unit.IntArrayToBinaryString(op2Binary);    // get inverted operand2
-        
-        // add 1 bit to operand 2 to make it negative
-        String oneBitStr = createOneBitString(op1Str.length() -1);              // create 1 bit string 
-        String negativeOperand2 = addBinaryOperands(op2Str, oneBitStr);		// add one bit to operand2 
-        
-        // Perform addition 
-        String finalResultStr = addBinaryOperands(negativeOperand2, op1Str);    // add operands
-        
         int size = (operand1.getSize() > operand2.getSize() ? operand1.getSize() : operand2.getSize());
+        long mask = ArithmeticLogicUnit.maskForSize(size);
         
-        Unit resultTemporary = Unit.UnitFromBinaryString(finalResultStr);
-        Unit resultResized = new Unit(size);        
-        resultResized.setValueBinary(resultTemporary.getBinaryString());
+        long minuend = ArithmeticLogicUnit.rawValue(operand1);
+        long subtrahend = ArithmeticLogicUnit.rawValue(operand2);
+        long negated = (~subtrahend + 1) & mask;                // invert operand2 and add 1
         
-        return resultResized;        
+        long result = (minuend + negated) & mask;
+        
+        return new Unit(size, (int)result);        
     }
     
     /**
-     * Perform addition operation implements twos complement math. 
+     * Perform addition operation implements twos complement math. Both operands
+     * are zero-padded to the wider size. Flags are left to deriveConditions.
      * @param operand1
      * @param operand2 
      * @return  rets
      * 
      */    
     private Unit add(Unit operand1, Unit operand2){
-        String op1Str = operand1.getBinaryString();
-        String op2Str = operand2.getBinaryString();
-        
-        String finalResultStr = addBinaryOperands(op1Str, op2Str);       // add operands
-              
         int size = (operand1.getSize() > operand2.getSize() ? operand1.getSize() : operand2.getSize());
+        long mask = ArithmeticLogicUnit.maskForSize(size);
         
-        Unit resultTemporary = Unit.UnitFromBinaryString(finalResultStr);
-        Unit resultResized = new Unit(size);        
-        resultResized.setValueBinary(resultTemporary.getBinaryString());
-          
-        return resultResized;
+        long augend = ArithmeticLogicUnit.rawValue(operand1);
+        long addend = ArithmeticLogicUnit.rawValue(operand2);
+        
+        long result = (augend + addend) & mask;
+        
+        return new Unit(size, (int)result);
     }      
     
     /**
-     * Create 1 bit
-     *
-     * @param size
-     * @return 1 bit binary string
+     * Derives the condition flags of a recorded operation from bit tests. The 
+     * ControlUnit keeps the last operation and only calls this when CC is read.
+     *  OVERFLOW  - add/subtract: carry out of the most significant bit
+     *              multiply: signed product does not fit in [size] bits
+     *  UNDERFLOW - add/subtract: signed result wrapped below the minimum
+     *              (negative operand produced a positive result)
+     *  DIVZERO   - divide: operand2 is zero
+     * @param control CONTROL_* operation
+     * @param size width of the computation
+     * @param a first operand (raw bits for add/subtract, signed for multiply/divide)
+     * @param b second operand (raw bits for add/subtract, signed for multiply/divide)
+     * @return CC bitmask (see ControlUnit.conditionBit)
      */
-    private String createOneBitString(int size) {
-        String str = "";
-        for (int i = 0; i < size; i++) {
-            str += "0";
-
-            if (i == size - 1) {
-                str += "1";
-            }
+    public static int deriveConditions(int control, int size, long a, long b){
+        int flags = 0;
+        switch(control){
+            case ArithmeticLogicUnit.CONTROL_ADD:
+            case ArithmeticLogicUnit.CONTROL_SUBTRACT:
+                long mask = ArithmeticLogicUnit.maskForSize(size);
+                int signBit = size - 1;
+                boolean subtract = (control == ArithmeticLogicUnit.CONTROL_SUBTRACT);
+                
+                long sum = a + (subtract ? ((~b + 1) & mask) : b);
+                long result = sum & mask;
+                
+                // signed wrap: operands agree in sign (add) / differ in sign (subtract), result differs from a
+                long signsAgree = subtract ? (a ^ b) : ~(a ^ b);
+                long wrapped = (signsAgree & (a ^ result)) >>> signBit & 1;
+                long negative = (a >>> signBit) & 1;
+                
+                if (((sum >>> size) & 1) == 1) {
+                    flags |= ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_OVERFLOW);
+                }
+                if ((wrapped & negative) == 1) {
+                    flags |= ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_UNDERFLOW);
+                }
+                break;
+            case ArithmeticLogicUnit.CONTROL_MULTIPLY:
+                long product = a * b;
+                // product fits if sign-extending the low [size] bits gives it back
+                int shift = 64 - size;
+                if ((((product & ArithmeticLogicUnit.maskForSize(size)) << shift) >> shift) != product) {
+                    flags |= ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_OVERFLOW);
+                }
+                break;
+            case ArithmeticLogicUnit.CONTROL_DIVIDE:
+                if (b == 0) {
+                    flags |= ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_DIVZERO);
+                }
+                break;
+            default:
+                break;
         }
-        return str;
+        return flags;
     }
     
     /**
-     * Add two binary numbers 
-     * 
-     * @param operand1
-     * @param operand2
-     * @return binary
+     * @param control CONTROL_* operation
+     * @return CC bitmask of the flags an operation sets or clears
      */
-    private String addBinaryOperands(String operand1, String operand2) {
-        int carry = 0;
-        String res = "";        // result
-
-        // prepare operands: add leading zeros if needed
-        int diff = Math.abs(operand1.length() - operand2.length());
-        String zeros = "";
-        for (int i = 0; i < diff; i++) {
-            zeros += "0";
-        }
-        if (operand1.length() > operand2.length()) {
-            operand2 = zeros + operand2;
-        } else {
-            operand1 = zeros + operand1;
+    public static int conditionsAffectedBy(int control){
+        switch(control){
+            case ArithmeticLogicUnit.CONTROL_ADD:
+            case ArithmeticLogicUnit.CONTROL_SUBTRACT:
+                return ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_OVERFLOW)
+                        | ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_UNDERFLOW);
+            case ArithmeticLogicUnit.CONTROL_MULTIPLY:
+                return ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_OVERFLOW);
+            case ArithmeticLogicUnit.CONTROL_DIVIDE:
+                return ControlUnit.conditionBit(ControlUnit.CONDITION_REGISTER_DIVZERO);
+            default:
+                return 0;
         }
-
-        // perform addition on operands
-        for (int i = operand2.length() - 1; i >= 0; i--) {
-            int sum = Integer.parseInt((operand1.charAt(i) + "")) + Integer.parseInt((operand2.charAt(i) + "")) + carry;
-            carry = 0;              // reset carry
-            res = sum % 2 + res;
-
-            if (sum >= 2) {
-                carry = 1;
-            }
+    }
+    
+    /**
+     * Computes an operation on raw bits without any Units, timing or flags. 
+     * Used where an instruction's value is needed at issue (superscalar / 
+     * pipelined execution); flags are recorded separately via 
+     * ControlUnit.recordConditionOperation. Matches the Unit-based operations.
+     * @param control CONTROL_* operation
+     * @param size width of the computation (1-31)
+     * @param a OP1 raw bits
+     * @param b OP2 raw bits (count for shifts / rotates)
+     * @return RES raw bits
+     */
+    public static int evaluate(int control, int size, int a, int b){
+        int mask = (int)ArithmeticLogicUnit.maskForSize(size);
+        a &= mask;
+        switch(control){
+            case ArithmeticLogicUnit.CONTROL_ADD:
+                return (a + (b & mask)) & mask;
+            case ArithmeticLogicUnit.CONTROL_SUBTRACT:
+                return (a - (b & mask)) & mask;
+            case ArithmeticLogicUnit.CONTROL_AND:
+                return a & b;
+            case ArithmeticLogicUnit.CONTROL_OR:
+                return (a | b) & mask;
+            case ArithmeticLogicUnit.CONTROL_NOT:
+                return ~a & mask;
+            case ArithmeticLogicUnit.CONTROL_SHIFT_LEFT:
+                return (b <= 0) ? a : ((b >= size) ? 0 : (a << b) & mask);
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_ARITHMETIC:
+                return (b <= 0) ? a : ((ArithmeticLogicUnit.signExtend(a, size) >> Math.min(b, 31)) & mask);
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_LOGICAL:
+                return (b <= 0) ? a : ((b >= size) ? 0 : a >>> b);
+            case ArithmeticLogicUnit.CONTROL_ROTATE_LEFT:
+            case ArithmeticLogicUnit.CONTROL_ROTATE_RIGHT:
+                int distance = (b <= 0) ? 0 : b % size;
+                if(distance == 0){
+                    return a;
+                }
+                if(control == ArithmeticLogicUnit.CONTROL_ROTATE_RIGHT){
+                    distance = size - distance;
+                }
+                return ((a << distance) | (a >>> (size - distance))) & mask;
+            case ArithmeticLogicUnit.CONTROL_MULTIPLY:
+                long product = (long)ArithmeticLogicUnit.signExtend(a, size) * ArithmeticLogicUnit.signExtend(b & mask, size);
+                return (int)(product & mask);
+            case ArithmeticLogicUnit.CONTROL_DIVIDE:
+                int divisor = ArithmeticLogicUnit.signExtend(b & mask, size);
+                return (divisor == 0) ? 0 : (ArithmeticLogicUnit.signExtend(a, size) / divisor) & mask;
+            default:
+                return 0;
         }
-
-        // check if overflow occurred
-        if (carry == 1) {
-            System.out.println("****overflow occured**** ");
-            this.controlUnit.setCondition(ControlUnit.CONDITION_REGISTER_OVERFLOW);
-        } else {
-            this.controlUnit.unsetCondition(ControlUnit.CONDITION_REGISTER_OVERFLOW);
+    }
+    
+    /**
+     * RES2 counterpart of evaluate.
+     * @param control CONTROL_MULTIPLY / CONTROL_DIVIDE
+     * @param size width of the computation (1-31)
+     * @param a OP1 raw bits
+     * @param b OP2 raw bits
+     * @return multiply high word / divide remainder raw bits, 0 otherwise
+     */
+    public static int evaluateHigh(int control, int size, int a, int b){
+        int mask = (int)ArithmeticLogicUnit.maskForSize(size);
+        int dividend = ArithmeticLogicUnit.signExtend(a & mask, size);
+        int divisor = ArithmeticLogicUnit.signExtend(b & mask, size);
+        switch(control){
+            case ArithmeticLogicUnit.CONTROL_MULTIPLY:
+                return (int)((((long)dividend * divisor) >> size) & mask);
+            case ArithmeticLogicUnit.CONTROL_DIVIDE:
+                return (divisor == 0) ? 0 : (dividend % divisor) & mask;
+            default:
+                return 0;
         }
-        return res;
     }
+    
+    /**
+     * @param bits raw bits
+     * @param size width (1-32)
+     * @return bits sign-extended from [size] to an int
+     */
+    private static int signExtend(int bits, int size){
+        int shift = 32 - size;
+        return (bits << shift) >> shift;
+    }
+    
+    /**
+     * @param size number of bits (1-32)
+     * @return mask with the low [size] bits set
+     */
+    private static long maskForSize(int size){
+        return (1L << size) - 1;
+    }
+    
+    /**
+     * @param operand
+     * @return bits of the Unit as an unsigned (zero-padded) value
+     */
+    private static long rawValue(Unit operand){
+        return operand.getRawValue() & 0xFFFFFFFFL;
+    }
+    
+    /**
+     * Logical AND of both operands, sized to operand1
+     * @param operand1
+     * @param operand2
+     * @return operand1 AND operand2
+     */
     private Unit and(Unit operand1, Unit operand2)
     {
-        Integer[] operand1Array=this.getOperand1().getBinaryArray();
-        Integer[] operand2Array=this.getOperand2().getBinaryArray();
-        Integer[] res=new Integer[operand1Array.length];
-        for(int iter=0;operand1Array.length>=iter;++iter)
-        {
-            res[iter]=operand1Array[iter]&operand2Array[iter];
+        long result = ArithmeticLogicUnit.rawValue(operand1) & ArithmeticLogicUnit.rawValue(operand2) 
+                & ArithmeticLogicUnit.maskForSize(operand1.getSize());
+        return new Unit(operand1.getSize(), (int)result);
+    }
+    
+    /**
+     * Logical OR of both operands, sized to operand1
+     * @param operand1
+     * @param operand2
+     * @return operand1 OR operand2
+     */
+    private Unit or(Unit operand1, Unit operand2)
+    {
+        long result = (ArithmeticLogicUnit.rawValue(operand1) | ArithmeticLogicUnit.rawValue(operand2)) 
+                & ArithmeticLogicUnit.maskForSize(operand1.getSize());
+        return new Unit(operand1.getSize(), (int)result);
+    }
+    
+    /**
+     * Logical NOT of operand1
+     * @param operand1
+     * @return NOT operand1
+     */
+    private Unit not(Unit operand1)
+    {
+        long result = ~ArithmeticLogicUnit.rawValue(operand1) & ArithmeticLogicUnit.maskForSize(operand1.getSize());
+        return new Unit(operand1.getSize(), (int)result);
+    }
+    
+    /**
+     * Shift / rotate operand1 by the count in operand2 (see Unit.shiftByCount / rotateByCount)
+     * @param ctrl CONTROL_SHIFT_* / CONTROL_ROTATE_*
+     * @param operand1 value
+     * @param operand2 count
+     * @return shifted value, same size as operand1
+     */
+    private Unit shift(int ctrl, Unit operand1, Unit operand2)
+    {
+        Unit res = new Unit(operand1);
+        int count = operand2.getUnsignedValue();
+        switch(ctrl){
+            case ArithmeticLogicUnit.CONTROL_SHIFT_LEFT:
+                res.shiftByCount(1, count, 1);
+                break;
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_ARITHMETIC:
+                res.shiftByCount(0, count, 0);
+                break;
+            case ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_LOGICAL:
+                res.shiftByCount(0, count, 1);
+                break;
+            case ArithmeticLogicUnit.CONTROL_ROTATE_LEFT:
+                res.rotateByCount(1, count);
+                break;
+            case ArithmeticLogicUnit.CONTROL_ROTATE_RIGHT:
+                res.rotateByCount(0, count);
+                break;
         }
-        operand1.setValueBinaryArray(res);
-        return operand1;
+        return res;
     }
     
      /**
-     * Multiply operation
+     * Multiply operation. RES holds the low [size] bits of the product, RES2 the high bits.
+     * OVERFLOW (derived lazily) when the signed product does not fit in operand1's size.
      * @param operand1
      * @param operand2
      * @return result of multiplication
      */
     private Unit multiply(Unit operand1, Unit operand2){
-        Integer res = operand1.getSignedValue() * operand2.getSignedValue();
-        return new Unit(operand1.getSize(), res);
+        int size = operand1.getSize();
+        long multiplicand = operand1.getSignedValue();
+        long multiplier = operand2.getSignedValue();
+        
+        long product = multiplicand * multiplier;
+        
+        this.computedHigh = new Unit(size, (int)((product >> size) & ArithmeticLogicUnit.maskForSize(size)));
+        return new Unit(size, (int)(product & ArithmeticLogicUnit.maskForSize(size)));
     }
     
     /**
-     * Divide operation
+     * Divide operation. RES holds the quotient, RES2 the remainder.
+     * DIVZERO (derived lazily) and 0 returned when operand2 is zero.
      * @param operand1
      * @param operand2
      * @return result of division
      */
     private Unit divide(Unit operand1, Unit operand2){
-        Integer res = operand1.getSignedValue() / operand2.getSignedValue();
-        return new Unit(operand1.getSize(), res);
+        int dividend = operand1.getSignedValue();
+        int divisor = operand2.getSignedValue();
+        
+        if (divisor == 0) {
+            this.computedHigh = new Unit(operand1.getSize(), 0);
+            return new Unit(operand1.getSize(), 0);
+        }
+        this.computedHigh = new Unit(operand1.getSize(), dividend % divisor);
+        return new Unit(operand1.getSize(), dividend / divisor);
     }
     
     /**
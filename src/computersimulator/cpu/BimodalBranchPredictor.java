@@ -0,0 +1,72 @@
+package computersimulator.cpu;
+
+/**
+ * Table of 2-bit saturating counters indexed by the low bits of the branch PC.
+ * Counters 0-1 predict not taken, 2-3 taken, so a loop branch mispredicts once
+ * on exit instead of twice per loop.
+ */
+public class BimodalBranchPredictor extends BranchPredictor {
+
+    public final static int COUNTER_MAX = 3;
+    public final static int COUNTER_WEAKLY_NOT_TAKEN = 1;
+
+    private final byte[] counters;
+    private final int mask;
+
+    /**
+     * @param entries number of counters, a power of two
+     */
+    public BimodalBranchPredictor(int entries) {
+        this.counters = new byte[entries];
+        this.mask = BimodalBranchPredictor.indexMask(entries);
+        this.reset();
+    }
+
+    /**
+     * @param entries table size
+     * @return entries - 1
+     * @throws IllegalArgumentException entries is not a power of two
+     */
+    static int indexMask(int entries){
+        if(entries < 1 || Integer.bitCount(entries) != 1){
+            throw new IllegalArgumentException("Table size must be a power of two: "+entries);
+        }
+        return entries - 1;
+    }
+
+    /**
+     * @param counter 2-bit counter
+     * @param taken outcome
+     * @return counter moved one step towards the outcome
+     */
+    static byte step(byte counter, boolean taken){
+        if(taken){
+            return (counter < COUNTER_MAX) ? (byte)(counter + 1) : counter;
+        }
+        return (counter > 0) ? (byte)(counter - 1) : counter;
+    }
+
+    @Override
+    public boolean predict(int pc, int target) {
+        return this.counters[pc & this.mask] > COUNTER_WEAKLY_NOT_TAKEN;
+    }
+
+    @Override
+    protected void train(int pc, boolean taken) {
+        int index = pc & this.mask;
+        this.counters[index] = BimodalBranchPredictor.step(this.counters[index], taken);
+    }
+
+    @Override
+    public String getName() {
+        return "bimodal "+this.counters.length;
+    }
+
+    @Override
+    public void reset() {
+        for(int i = 0; i < this.counters.length; i++){
+            this.counters[i] = COUNTER_WEAKLY_NOT_TAKEN;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package computersimulator.cpu;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Guesses the direction of conditional jumps (JZ, JNE, JCC, JGE, SOB) when
+ * they are fetched, so the front end can keep fetching without waiting for
+ * the jump to resolve. Subclasses supply the guess and the training; this
+ * class keeps the per-branch-PC accuracy statistics.
+ */
+public abstract class BranchPredictor {
+
+    /**
+     * Per-branch statistics: [0] predictions, [1] correct, [2] taken
+     */
+    private final Map<Integer, long[]> branchStatistics = new TreeMap<>();
+    private long predictions = 0;
+    private long correct = 0;
+
+    /**
+     * @param pc address of the conditional jump
+     * @param target target known at fetch (from the BTB), -1 if unknown
+     * @return true if the jump is predicted taken
+     */
+    public abstract boolean predict(int pc, int target);
+
+    /**
+     * Trains the predictor with a resolved outcome.
+     * @param pc address of the conditional jump
+     * @param taken actual direction
+     */
+    protected abstract void train(int pc, boolean taken);
+
+    /**
+     * @return short name for reports
+     */
+    public abstract String getName();
+
+    /**
+     * Clears the prediction state (counters, history), not the statistics.
+     */
+    public abstract void reset();
+
+    /**
+     * Records a resolved conditional jump and trains the predictor.
+     * @param pc address of the conditional jump
+     * @param predicted direction predicted at fetch
+     * @param taken actual direction
+     */
+    public void update(int pc, boolean predicted, boolean taken){
+        long[] stats = this.branchStatistics.get(pc);
+        if(stats == null){
+            stats = new long[3];
+            this.branchStatistics.put(pc, stats);
+        }
+        stats[0]++;
+        this.predictions++;
+        if(predicted == taken){
+            stats[1]++;
+            this.correct++;
+        }
+        if(taken){
+            stats[2]++;
+        }
+        this.train(pc, taken);
+    }
+
+    /**
+     * Clears the statistics.
+     */
+    public void resetStatistics(){
+        this.branchStatistics.clear();
+        this.predictions = 0;
+        this.correct = 0;
+    }
+
+    public long getPredictions() {
+        return predictions;
+    }
+
+    public long getCorrectPredictions() {
+        return correct;
+    }
+
+    /**
+     * @return fraction of predictions that were correct (1 with none made)
+     */
+    public double getAccuracy() {
+        return (this.predictions == 0) ? 1 : (double)this.correct / this.predictions;
+    }
+
+    /**
+     * @param pc address of a conditional jump
+     * @return fraction of the jump's predictions that were correct (1 with none made)
+     */
+    public double getAccuracy(int pc) {
+        long[] stats = this.branchStatistics.get(pc);
+        return (stats == null || stats[0] == 0) ? 1 : (double)stats[1] / stats[0];
+    }
+
+    /**
+     * @return addresses of the conditional jumps seen, in ascending order
+     */
+    public Integer[] getBranchAddresses() {
+        return this.branchStatistics.keySet().toArray(new Integer[0]);
+    }
+
+    /**
+     * @return overall accuracy followed by one line per branch PC
+     */
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%s: %d/%d correct (%.1f%%)", this.getName(), this.correct, this.predictions, 100 * this.getAccuracy()));
+        for(Map.Entry<Integer, long[]> e : this.branchStatistics.entrySet()){
+            long[] stats = e.getValue();
+            sb.append(String.format("%n  pc %4d: %d/%d correct (%.1f%%), taken %d",
+                    e.getKey(), stats[1], stats[0], 100.0 * stats[1] / stats[0], stats[2]));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return this.getName();
+    }
+
+}
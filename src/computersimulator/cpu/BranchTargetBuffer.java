@@ -0,0 +1,88 @@
+package computersimulator.cpu;
+
+/**
+ * Direct-mapped cache of jump targets, indexed by the low bits of the jump's
+ * PC and tagged with the whole PC. The fetch stage looks the fetch PC up to
+ * learn, before the jump is decoded, where a taken jump goes.
+ */
+public class BranchTargetBuffer {
+
+    private final static int INVALID = -1;
+
+    private final int[] tags;
+    private final int[] targets;
+    private final int mask;
+
+    // Engineer: statistics
+    private long lookups = 0;
+    private long hits = 0;
+
+    /**
+     * @param entries number of entries, a power of two
+     */
+    public BranchTargetBuffer(int entries) {
+        this.tags = new int[entries];
+        this.targets = new int[entries];
+        this.mask = BimodalBranchPredictor.indexMask(entries);
+        this.reset();
+    }
+
+    /**
+     * @param pc fetch address
+     * @return target of the jump last seen at pc, -1 on a miss
+     */
+    public int lookup(int pc){
+        this.lookups++;
+        int index = pc & this.mask;
+        if(this.tags[index] != pc){
+            return INVALID;
+        }
+        this.hits++;
+        return this.targets[index];
+    }
+
+    /**
+     * Records where a taken jump went (replacing whatever shared the entry).
+     * @param pc address of the jump
+     * @param target address it jumped to
+     */
+    public void update(int pc, int target){
+        int index = pc & this.mask;
+        this.tags[index] = pc;
+        this.targets[index] = target;
+    }
+
+    /**
+     * Invalidates every entry.
+     */
+    public void reset(){
+        for(int i = 0; i < this.tags.length; i++){
+            this.tags[i] = INVALID;
+        }
+    }
+
+    public void resetStatistics(){
+        this.lookups = 0;
+        this.hits = 0;
+    }
+
+    public int getEntries() {
+        return tags.length;
+    }
+
+    public long getLookups() {
+        return lookups;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return fraction of lookups that hit (0 with none made)
+     */
+    public double getHitRate() {
+        return (this.lookups == 0) ? 0 : (double)this.hits / this.lookups;
+    }
+
+}
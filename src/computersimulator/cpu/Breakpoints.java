@@ -0,0 +1,415 @@
+package computersimulator.cpu;
+
+import java.io.PrintStream;
+
+/**
+ * The breakpoints, tracepoints and memory watchpoints of a Computer, kept as
+ * bitsets: one bit per PC armed with a breakpoint or tracepoint, one per word
+ * address for read and for write watchpoints. A set is replaced, never
+ * modified, when it changes and is null while empty, so the check on every
+ * retirement (ControlUnit) and every readWord / writeWord (MemoryControlUnit)
+ * costs a single predictable branch when nothing is set and a bit test
+ * otherwise. They can stay set in the event-driven run loop.
+ *
+ * A breakpoint hits when an instruction retires whose next PC has one, i.e.
+ * before the instruction there runs, and its condition (a DebugExpression,
+ * if it has one) holds. A tracepoint at that PC prints its expressions and
+ * the run goes on. Conditions and tracepoints are compiled when set and only
+ * evaluated at their own PC, which the PC bitset picks out as for any
+ * breakpoint, so the rest of a run doesn't pay for them.
+ *
+ * A watchpoint hits when a word with one is read (instruction fetches and
+ * indirect addresses included) or written. A hit doesn't interrupt the
+ * instruction: the Computer's run stops at the end of the cycle, with every
+ * component between cycles, and running on resumes from there. The
+ * superscalar dispatcher also ends its group at the instruction that hit.
+ *
+ * Sets may be changed from any thread, also during a run. The hit is written
+ * by the thread(s) running the Computer and read once they are between
+ * cycles; with cores on several host threads, of two hits in one cycle
+ * either may be the one kept.
+ */
+public class Breakpoints {
+
+    // Kind of hit
+    public final static int HIT_NONE = 0;
+    public final static int HIT_BREAKPOINT = 1;
+    public final static int HIT_READ = 2;
+    public final static int HIT_WRITE = 3;
+
+    private final static String[] HIT_NAMES = {"none", "breakpoint", "read watchpoint", "write watchpoint"};
+
+    // PC is 13 bits; memory addresses are below it
+    public final static int ADDRESS_SPACE = 1 << 13;
+
+    /**
+     * What is armed at a PC; replaced, never modified.
+     */
+    private static class Site {
+        final boolean breakpoint;
+        final DebugExpression condition;    // null to stop every time
+        final DebugExpression[] trace;      // null without a tracepoint
+
+        Site(boolean breakpoint, DebugExpression condition, DebugExpression[] trace) {
+            this.breakpoint = breakpoint;
+            this.condition = condition;
+            this.trace = trace;
+        }
+    }
+
+    // the sets, null when empty; a PC is in pcs if it has a site
+    volatile long[] pcs = null;
+    private volatile Site[] sites = null;
+    volatile long[] reads = null;
+    volatile long[] writes = null;
+
+    // first hit since clearHit()
+    private int hitKind = HIT_NONE;
+    private int hitAddress = -1;
+
+    // tracepoint lines go here
+    private volatile PrintStream traceOutput = System.out;
+
+    // Engineer: statistics
+    private long hits = 0;
+    private long conditionsEvaluated = 0;
+    private long tracepointsReached = 0;
+
+    /**
+     * @param bits a set
+     * @param address address to test
+     * @return true if the set has address
+     */
+    static boolean contains(long[] bits, int address){
+        return (bits[(address >>> 6) & (ADDRESS_SPACE / 64 - 1)] & (1L << address)) != 0;
+    }
+
+    /**
+     * @param bits a set, or null for the empty set
+     * @param address address to add or remove
+     * @param on true to add
+     * @return the new set, null if empty
+     */
+    private static long[] with(long[] bits, int address, boolean on){
+        long[] set = (bits == null) ? new long[ADDRESS_SPACE / 64] : bits.clone();
+        int word = (address >>> 6) & (ADDRESS_SPACE / 64 - 1);
+        if(on){
+            set[word] |= 1L << address;
+        } else {
+            set[word] &= ~(1L << address);
+        }
+        for(long w : set){
+            if(w != 0){
+                return set;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * An instruction is about to run at a PC in pcs: prints its tracepoint,
+     * then hits if its breakpoint's condition holds.
+     * @param cpu core reaching the PC
+     * @param pc the PC
+     */
+    void reached(ControlUnit cpu, int pc){
+        Site[] armed = this.sites;
+        Site site = (armed == null) ? null : armed[pc & (ADDRESS_SPACE - 1)];
+        if(site == null){
+            return;     // changed under the run
+        }
+        if(site.trace != null){
+            synchronized(this){     // cores on several host threads reach sites at once
+                this.tracepointsReached++;
+            }
+            StringBuilder line = new StringBuilder("trace ").append(pc).append(':');
+            for(int i = 0; i < site.trace.length; i++){
+                line.append((i == 0) ? " " : ", ").append(site.trace[i]).append(" = ")
+                        .append(site.trace[i].evaluate(cpu, pc));
+            }
+            this.traceOutput.println(line);
+        }
+        if(site.breakpoint){
+            if(site.condition != null){
+                synchronized(this){
+                    this.conditionsEvaluated++;
+                }
+                if(site.condition.evaluate(cpu, pc) == 0){
+                    return;
+                }
+            }
+            this.hit(HIT_BREAKPOINT, pc);
+        }
+    }
+
+    /**
+     * Arms or disarms a PC: the site first, so a run that finds the PC in
+     * pcs finds the site too.
+     * @param address PC
+     * @param site what to arm, null for nothing
+     */
+    private void arm(int address, Site site){
+        Site[] armed = (this.sites == null) ? new Site[ADDRESS_SPACE] : this.sites.clone();
+        armed[address & (ADDRESS_SPACE - 1)] = site;
+        if(site != null){
+            this.sites = armed;
+            this.pcs = Breakpoints.with(this.pcs, address, true);
+        } else {
+            this.pcs = Breakpoints.with(this.pcs, address, false);
+            this.sites = (this.pcs == null) ? null : armed;
+        }
+    }
+
+    /**
+     * @param address PC
+     * @return what is armed there, null if nothing
+     */
+    private Site siteAt(int address){
+        Site[] armed = this.sites;
+        return (armed == null) ? null : armed[address & (ADDRESS_SPACE - 1)];
+    }
+
+    /**
+     * Notes a hit; the first since clearHit() is the one kept.
+     * @param kind HIT_*
+     * @param address PC or word address
+     */
+    synchronized void hit(int kind, int address){
+        if(this.hitKind == HIT_NONE){
+            this.hitKind = kind;
+            this.hitAddress = address;
+        }
+        this.hits++;
+    }
+
+    /**
+     * Forgets the last hit; a run starts with this.
+     */
+    public void clearHit(){
+        this.hitKind = HIT_NONE;
+        this.hitAddress = -1;
+    }
+
+    /**
+     * @return true if something hit since clearHit()
+     */
+    public boolean isHit(){
+        return this.hitKind != HIT_NONE;
+    }
+
+    /**
+     * @return HIT_* kind of the first hit since clearHit()
+     */
+    public int getHitKind() {
+        return hitKind;
+    }
+
+    /**
+     * @return PC (breakpoint) or word address (watchpoint) of the first hit
+     *  since clearHit(), -1 if none
+     */
+    public int getHitAddress() {
+        return hitAddress;
+    }
+
+    /**
+     * @return hits since power on, every one counted
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * @return breakpoint conditions evaluated since power on
+     */
+    public synchronized long getConditionsEvaluated() {
+        return conditionsEvaluated;
+    }
+
+    /**
+     * @return tracepoint lines printed since power on
+     */
+    public synchronized long getTracepointsReached() {
+        return tracepointsReached;
+    }
+
+    public PrintStream getTraceOutput() {
+        return traceOutput;
+    }
+
+    /**
+     * @param traceOutput where tracepoints print their lines (System.out to start with)
+     */
+    public void setTraceOutput(PrintStream traceOutput) {
+        this.traceOutput = traceOutput;
+    }
+
+    /**
+     * @param kind HIT_*
+     * @return name of the kind
+     */
+    public static String getHitName(int kind) {
+        return Breakpoints.HIT_NAMES[kind];
+    }
+
+    /*************** Breakpoints ***************/
+
+    /**
+     * Sets an unconditional breakpoint, replacing any condition.
+     * @param address PC to stop at
+     */
+    public synchronized void addBreakpoint(int address){
+        Site site = this.siteAt(address);
+        this.arm(address, new Site(true, null, (site == null) ? null : site.trace));
+    }
+
+    /**
+     * Sets a conditional breakpoint, replacing any breakpoint at the PC.
+     * @param address PC to stop at
+     * @param condition DebugExpression; the run stops if it isn't 0
+     * @throws IllegalArgumentException the condition doesn't parse
+     */
+    public synchronized void addBreakpoint(int address, String condition){
+        DebugExpression compiled = DebugExpression.compile(condition);
+        Site site = this.siteAt(address);
+        this.arm(address, new Site(true, compiled, (site == null) ? null : site.trace));
+    }
+
+    /**
+     * @param address PC no longer to stop at (a tracepoint there stays)
+     */
+    public synchronized void removeBreakpoint(int address){
+        Site site = this.siteAt(address);
+        if(site != null){
+            this.arm(address, (site.trace == null) ? null : new Site(false, null, site.trace));
+        }
+    }
+
+    /**
+     * Removes every breakpoint; tracepoints stay.
+     */
+    public synchronized void clearBreakpoints(){
+        for(int address = 0; address < ADDRESS_SPACE; address++){
+            Site site = this.siteAt(address);
+            if(site != null && site.breakpoint){
+                this.removeBreakpoint(address);
+            }
+        }
+    }
+
+    /**
+     * @param address a PC
+     * @return true if there is a breakpoint at it
+     */
+    public boolean hasBreakpoint(int address){
+        Site site = this.siteAt(address);
+        return site != null && site.breakpoint;
+    }
+
+    /**
+     * @param address a PC
+     * @return condition of the breakpoint there, null if unconditional or none
+     */
+    public DebugExpression getCondition(int address){
+        Site site = this.siteAt(address);
+        return (site == null) ? null : site.condition;
+    }
+
+    /*************** Tracepoints ***************/
+
+    /**
+     * Sets a tracepoint, replacing any at the PC: each time the PC is about
+     * to run, one line with the value of every expression is printed to the
+     * trace output, and the run goes on.
+     * @param address PC
+     * @param expressions DebugExpressions to print
+     * @throws IllegalArgumentException an expression doesn't parse, or none given
+     */
+    public synchronized void addTracepoint(int address, String... expressions){
+        if(expressions.length == 0){
+            throw new IllegalArgumentException("A tracepoint needs at least one expression");
+        }
+        DebugExpression[] compiled = new DebugExpression[expressions.length];
+        for(int i = 0; i < expressions.length; i++){
+            compiled[i] = DebugExpression.compile(expressions[i]);
+        }
+        Site site = this.siteAt(address);
+        this.arm(address, (site == null) ? new Site(false, null, compiled)
+                : new Site(site.breakpoint, site.condition, compiled));
+    }
+
+    /**
+     * @param address PC no longer to trace (a breakpoint there stays)
+     */
+    public synchronized void removeTracepoint(int address){
+        Site site = this.siteAt(address);
+        if(site != null){
+            this.arm(address, site.breakpoint ? new Site(true, site.condition, null) : null);
+        }
+    }
+
+    /**
+     * Removes every tracepoint; breakpoints stay.
+     */
+    public synchronized void clearTracepoints(){
+        for(int address = 0; address < ADDRESS_SPACE; address++){
+            Site site = this.siteAt(address);
+            if(site != null && site.trace != null){
+                this.removeTracepoint(address);
+            }
+        }
+    }
+
+    /**
+     * @param address a PC
+     * @return true if there is a tracepoint at it
+     */
+    public boolean hasTracepoint(int address){
+        Site site = this.siteAt(address);
+        return site != null && site.trace != null;
+    }
+
+    /*************** Watchpoints ***************/
+
+    /**
+     * Sets or replaces the watchpoint on a word.
+     * @param address word address
+     * @param read stop when the word is read
+     * @param write stop when the word is written
+     */
+    public synchronized void addWatchpoint(int address, boolean read, boolean write){
+        this.reads = Breakpoints.with(this.reads, address, read);
+        this.writes = Breakpoints.with(this.writes, address, write);
+    }
+
+    /**
+     * @param address word address no longer to watch
+     */
+    public synchronized void removeWatchpoint(int address){
+        this.addWatchpoint(address, false, false);
+    }
+
+    public synchronized void clearWatchpoints(){
+        this.reads = null;
+        this.writes = null;
+    }
+
+    /**
+     * @param address word address
+     * @return true if reading the word stops the run
+     */
+    public boolean isReadWatched(int address){
+        long[] bits = this.reads;
+        return bits != null && Breakpoints.contains(bits, address);
+    }
+
+    /**
+     * @param address word address
+     * @return true if writing the word stops the run
+     */
+    public boolean isWriteWatched(int address){
+        long[] bits = this.writes;
+        return bits != null && Breakpoints.contains(bits, address);
+    }
+
+}
@@ -0,0 +1,22 @@
+package computersimulator.cpu;
+
+/**
+ * Thrown by a CoherentCache when an access has to wait for the SnoopingBus:
+ * the transaction is queued, and the core tries the access again on a later
+ * cycle. Each execution model catches it where the instruction can be held
+ * back without anything having changed for it yet.
+ *
+ * Unchecked, so the memory port's readWord / writeWord keep their signatures;
+ * it carries no stack trace, as it is thrown on every miss.
+ */
+class BusStallException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    static final BusStallException STALL = new BusStallException();
+
+    private BusStallException() {
+        super("waiting for the bus", null, false, false);
+    }
+
+}
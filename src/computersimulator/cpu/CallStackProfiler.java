@@ -0,0 +1,213 @@
+package computersimulator.cpu;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Profiles guest subroutines: keeps a shadow call stack, pushed by every
+ * retired JSR (a frame named after the subroutine's entry address) and popped
+ * by every RFS, and charges each cycle to the stack current at the time.
+ *
+ * Stacks are interned as a tree, so a cycle costs one add to the current
+ * node. getCollapsed() writes them in the collapsed-stack format flame graph
+ * tools read: one line per stack, frames root first separated by ';', then
+ * the cycles, e.g. "main;sub_40;sub_60 1234".
+ *
+ * An RFS with no JSR to return from (the guest unwound R3 by hand) is counted
+ * and ignored. Stacks deeper than MAX_DEPTH are folded into their deepest
+ * frame. Attach with ControlUnit.setCallStackProfiler().
+ */
+public class CallStackProfiler {
+
+    public final static int MAX_DEPTH = 256;
+    public final static String ROOT_NAME = "main";
+
+    /**
+     * One unique call stack: the frame it ends with and its caller's stack.
+     */
+    private static class Frame {
+        final int entry;
+        final Frame caller;
+        final int depth;
+        final HashMap<Integer, Frame> callees = new HashMap<>();
+        long cycles;
+
+        Frame(int entry, Frame caller) {
+            this.entry = entry;
+            this.caller = caller;
+            this.depth = (caller == null) ? 0 : caller.depth + 1;
+        }
+    }
+
+    private final Frame root = new Frame(-1, null);
+    private Frame current = this.root;
+    private int foldedFrames = 0;      // calls beyond MAX_DEPTH not yet returned from
+
+    private final Map<Integer, String> names = new HashMap<>();
+
+    // Engineer: statistics
+    private long calls = 0;
+    private long returns = 0;
+    private long unmatchedReturns = 0;
+    private long stacks = 1;
+    private int maxDepth = 0;
+
+    /**
+     * Counts one retirement; only JSR and RFS move the stack.
+     * @param instruction the instruction
+     * @param next address of the instruction after it
+     */
+    void retire(Instruction instruction, int next){
+        int opcode = instruction.getOpcode();
+        if(opcode == Instruction.OPCODE_JSR){
+            this.calls++;
+            if(this.current.depth == MAX_DEPTH){
+                this.foldedFrames++;
+                return;
+            }
+            Frame callee = this.current.callees.get(next);
+            if(callee == null){
+                callee = new Frame(next, this.current);
+                this.current.callees.put(next, callee);
+                this.stacks++;
+                this.maxDepth = Math.max(this.maxDepth, callee.depth);
+            }
+            this.current = callee;
+        } else if(opcode == Instruction.OPCODE_RFS){
+            if(this.foldedFrames > 0){
+                this.returns++;
+                this.foldedFrames--;
+            } else if(this.current == this.root){
+                this.unmatchedReturns++;
+            } else {
+                this.returns++;
+                this.current = this.current.caller;
+            }
+        }
+    }
+
+    /**
+     * @param cycles cycles run (or skipped) in the current stack
+     */
+    void cycles(long cycles){
+        this.current.cycles += cycles;
+    }
+
+    /**
+     * @param entry subroutine entry address
+     * @param name frame name to use for it instead of sub_[entry]
+     */
+    public void setName(int entry, String name) {
+        this.names.put(entry, name);
+    }
+
+    private String nameOf(Frame frame){
+        if(frame == this.root){
+            return ROOT_NAME;
+        }
+        String name = this.names.get(frame.entry);
+        return (name == null) ? "sub_" + frame.entry : name;
+    }
+
+    /**
+     * @return every stack that has been charged cycles, collapsed, one per
+     *  line, sorted
+     */
+    public String getCollapsed() {
+        List<String> lines = new ArrayList<>();
+        this.collapse(this.root, ROOT_NAME, lines);
+        Collections.sort(lines);
+        StringBuilder collapsed = new StringBuilder();
+        for(String line : lines){
+            collapsed.append(line).append('\n');
+        }
+        return collapsed.toString();
+    }
+
+    /**
+     * Writes getCollapsed() for a flame graph tool.
+     * @param out where to write
+     * @throws IOException the writer failed
+     */
+    public void writeCollapsed(Writer out) throws IOException {
+        out.write(this.getCollapsed());
+        out.flush();
+    }
+
+    private void collapse(Frame frame, String path, List<String> lines){
+        if(frame.cycles > 0){
+            lines.add(path + " " + frame.cycles);
+        }
+        for(Frame callee : frame.callees.values()){
+            this.collapse(callee, path + ";" + this.nameOf(callee), lines);
+        }
+    }
+
+    /**
+     * @param entry subroutine entry address
+     * @return cycles charged to stacks the subroutine is on (inclusive; a
+     *  recursive subroutine's cycles are counted once)
+     */
+    public long getInclusiveCycles(int entry) {
+        return this.inclusive(this.root, entry, false);
+    }
+
+    private long inclusive(Frame frame, int entry, boolean inside){
+        boolean on = inside || frame.entry == entry;
+        long cycles = on ? frame.cycles : 0;
+        for(Frame callee : frame.callees.values()){
+            cycles += this.inclusive(callee, entry, on);
+        }
+        return cycles;
+    }
+
+    /**
+     * @return current stack depth (0 in the main program)
+     */
+    public int getDepth() {
+        return this.current.depth + this.foldedFrames;
+    }
+
+    /*************** Statistics ***************/
+
+    public long getCalls() {
+        return calls;
+    }
+
+    public long getReturns() {
+        return returns;
+    }
+
+    /**
+     * @return RFS retired with no JSR to return from
+     */
+    public long getUnmatchedReturns() {
+        return unmatchedReturns;
+    }
+
+    /**
+     * @return unique stacks seen, the main program's included
+     */
+    public long getStacks() {
+        return stacks;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    /**
+     * @return one-line summary of the counters
+     */
+    public String getReport() {
+        return "call stacks: "+this.stacks+" unique, max depth "+this.maxDepth
+                +", calls "+this.calls+", returns "+this.returns
+                +", unmatched returns "+this.unmatchedReturns;
+    }
+
+}
@@ -1,14 +1,32 @@
 package computersimulator.cpu;
 
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.MachineFaultException;
+
 /**
  * The CPU class primarily represents a placeholder for ALU and the ControlUnit.
  * It also passes the reference to memory to symbolize that communication buffer.
+ * 
+ * It also owns the pool of functional units (integer ALUs, multiply/divide, 
+ * branch, load/store) the ControlUnit dispatches onto when its issue width is 
+ * set above 0, and the 5-stage Pipeline used in pipelined mode. With the 
+ * default width of 0 and pipelining off the microcoded instruction cycle 
+ * runs on the single ALU as before.
  */
-public class CentralProcessingUnit implements IClockCycle {
+public class CentralProcessingUnit implements IScheduledClockCycle {
     
     private ControlUnit controlUnit;
     private ArithmeticLogicUnit alu;
     private MemoryControlUnit memory;
+    private FunctionalUnit[] functionalUnits;
+    private Pipeline pipeline;
+    private boolean pipelined = false;
+    
+    // Default functional unit pool
+    public final static int DEFAULT_INTEGER_UNITS = 2;
+    public final static int DEFAULT_MULTIPLY_DIVIDE_UNITS = 1;
+    public final static int DEFAULT_BRANCH_UNITS = 1;
+    public final static int DEFAULT_LOAD_STORE_UNITS = 1;
     
 
     public CentralProcessingUnit(MemoryControlUnit mem) {        
@@ -17,8 +35,10 @@ public class CentralProcessingUnit implements IClockCycle {
         
         controlUnit = new ControlUnit(this.memory, this.alu);   
         alu.setControlUnit(controlUnit); // exchange reference
+        pipeline = new Pipeline(controlUnit, this.memory, this.alu);
         
-        
+        this.configureFunctionalUnits(DEFAULT_INTEGER_UNITS, DEFAULT_MULTIPLY_DIVIDE_UNITS, 
+                DEFAULT_BRANCH_UNITS, DEFAULT_LOAD_STORE_UNITS);
     }
     
     /**
@@ -29,9 +49,131 @@ public class CentralProcessingUnit implements IClockCycle {
      */
     @Override
     public void clockCycle() throws Exception{
-        this.controlUnit.clockCycle();
+        try {
+            if(this.pipelined){
+                this.pipeline.clockCycle();
+            } else {
+                this.controlUnit.clockCycle();
+            }
+        } catch(HaltSystemException e){
+            this.controlUnit.recordHalt();
+            throw e;
+        } catch(MachineFaultException e){
+            this.controlUnit.recordTrap(e);
+            throw e;
+        }
+        for(FunctionalUnit unit : this.functionalUnits){
+            unit.clockCycle();
+        }
         this.alu.clockCycle();
+        this.controlUnit.profileCycles(1);
     }           
+    
+    /**
+     * @return cycles until the ControlUnit, a functional unit or the ALU has
+     *  work; 0 in pipelined mode
+     */
+    @Override
+    public long getIdleCycles(){
+        if(this.pipelined){
+            return 0;
+        }
+        long idle = this.controlUnit.getIdleCycles();
+        if(idle == 0){
+            return 0;   // the usual case: no need to ask the units
+        }
+        idle = Math.min(idle, this.alu.getIdleCycles());
+        for(FunctionalUnit unit : this.functionalUnits){
+            idle = Math.min(idle, unit.getIdleCycles());
+        }
+        return idle;
+    }
+    
+    /**
+     * @param cycles cycles skipped while every part of the CPU was idle
+     */
+    @Override
+    public void skipCycles(long cycles){
+        this.controlUnit.skipCycles(cycles);
+        for(FunctionalUnit unit : this.functionalUnits){
+            unit.skipCycles(cycles);
+        }
+        this.alu.skipCycles(cycles);
+    }
+    
+    /**
+     * Replaces the functional unit pool.
+     * @param integerUnits integer ALUs (add/subtract, logical, shift, compare)
+     * @param multiplyDivideUnits multiply/divide units
+     * @param branchUnits branch units (jumps, SOB, JSR/RFS)
+     * @param loadStoreUnits load/store units (anything that reads or writes memory)
+     */
+    public final void configureFunctionalUnits(int integerUnits, int multiplyDivideUnits, int branchUnits, int loadStoreUnits){
+        if(integerUnits < 1 || multiplyDivideUnits < 1 || branchUnits < 1 || loadStoreUnits < 1){
+            throw new IllegalArgumentException("Every functional unit type needs at least one unit");
+        }
+        int[] counts = {integerUnits, multiplyDivideUnits, branchUnits, loadStoreUnits};
+        this.functionalUnits = new FunctionalUnit[integerUnits + multiplyDivideUnits + branchUnits + loadStoreUnits];
+        int u = 0;
+        for(int type = 0; type < FunctionalUnit.TYPE_COUNT; type++){
+            for(int n = 0; n < counts[type]; n++){
+                this.functionalUnits[u++] = new FunctionalUnit(type);
+            }
+        }
+        this.controlUnit.setFunctionalUnits(this.functionalUnits);
+    }
+    
+    /**
+     * @param width instructions dispatched per cycle, 0 for the microcoded instruction cycle
+     */
+    public void setIssueWidth(int width){
+        this.controlUnit.setIssueWidth(width);
+    }
+    
+    public int getIssueWidth(){
+        return this.controlUnit.getIssueWidth();
+    }
+    
+    /**
+     * @param predictor guesses conditional jumps so dispatch continues down the
+     *  predicted path, null to end each dispatch group at a jump
+     */
+    public void setSpeculativeDispatch(BranchPredictor predictor){
+        this.controlUnit.setSpeculativeDispatch(predictor);
+    }
+    
+    /**
+     * @param enabled true to run instructions through the 5-stage Pipeline
+     *  instead of the ControlUnit's instruction cycle / dispatch. The pipeline
+     *  starts empty and fetches from the current PC.
+     */
+    public void setPipelined(boolean enabled){
+        this.pipelined = enabled;
+        this.pipeline.reset();
+        this.pipeline.resetStatistics();
+    }
+    
+    public boolean isPipelined(){
+        return this.pipelined;
+    }
+    
+    /**
+     * @return guest instructions executed in the current mode: retired by the
+     *  pipeline, dispatched (less squashed) or fetched by the instruction cycle
+     */
+    public long getInstructionsExecuted(){
+        if(this.pipelined){
+            return this.pipeline.getRetiredInstructions();
+        }
+        if(this.controlUnit.getIssueWidth() > 0){
+            return this.controlUnit.getInstructionsIssued() - this.controlUnit.getSquashedInstructions();
+        }
+        return this.controlUnit.getInstructionsFetched();
+    }
+    
+    public Pipeline getPipeline(){
+        return this.pipeline;
+    }
 
     public ControlUnit getControlUnit() {
         return controlUnit;
@@ -41,9 +183,8 @@ public class CentralProcessingUnit implements IClockCycle {
         return alu;
     }
     
-   
-    
+    public FunctionalUnit[] getFunctionalUnits() {
+        return functionalUnits;
+    }
     
 }
-
-
@@ -0,0 +1,163 @@
+package computersimulator.cpu;
+
+/**
+ * Event-driven clock. Each component posts its next wake-up cycle; the
+ * scheduler keeps the earliest one, and when it is in the future skips the
+ * idle cycles in one step (every component's skipCycles()), otherwise it runs
+ * the cycle, clocking in order only the components that have work when their
+ * turn comes. Cycle counts are exactly those of calling clockCycle() on every
+ * component every cycle.
+ *
+ * A component only gives work to the ones clocked after it (the CPU setting
+ * the MAR wakes the memory in the same cycle), so in a cycle that runs the
+ * ones behind a clocked component are asked again when their turn comes, and
+ * the clocked ones once the cycle is over. Any other wake-up stays posted.
+ * Everything is asked at the start of a run, since the machine may have been
+ * changed in between.
+ *
+ * A run ends early after the cycle in which a breakpoint or watchpoint hit
+ * (see Breakpoints); idle cycles can't hit, so skips aren't checked.
+ */
+public class ClockScheduler {
+
+    private final IScheduledClockCycle[] components;
+    private final long[] wakeCycles;
+    private final boolean[] clocked;
+    private long nextWakeCycle;
+
+    private long cycle = 0;
+    
+    // hits end a run
+    private Breakpoints breakpoints = new Breakpoints();
+
+    // Engineer: statistics
+    private long executedCycles = 0;
+    private long skippedCycles = 0;
+    private long componentTicks = 0;
+
+    /**
+     * @param components clocked in this order every cycle that runs
+     */
+    public ClockScheduler(IScheduledClockCycle... components) {
+        this.components = components;
+        this.wakeCycles = new long[components.length];
+        this.clocked = new boolean[components.length];
+    }
+
+    /**
+     * Runs the clock forward.
+     * @param start cycle count the run starts at
+     * @param cycles cycles to run
+     * @return cycle count at the end, less than start + cycles if a breakpoint
+     *  or watchpoint hit; on an exception (HLT, machine fault) getCycle()
+     *  holds the cycle the exception was thrown in
+     * @throws Exception from a component's clock cycle
+     */
+    public long run(long start, long cycles) throws Exception {
+        this.cycle = start;
+        long end = start + cycles;
+        this.nextWakeCycle = IScheduledClockCycle.NEVER;
+        for(int i = 0; i < this.components.length; i++){
+            this.post(i);
+            this.nextWakeCycle = Math.min(this.nextWakeCycle, this.wakeCycles[i]);
+        }
+        while(this.cycle < end){
+            if(this.nextWakeCycle > this.cycle){
+                long skip = Math.min(this.nextWakeCycle, end) - this.cycle;
+                for(IScheduledClockCycle component : this.components){
+                    component.skipCycles(skip);
+                }
+                this.cycle += skip;
+                this.skippedCycles += skip;
+                continue;
+            }
+            this.runCycle();
+            if(this.breakpoints.isHit()){
+                break;
+            }
+        }
+        return this.cycle;
+    }
+
+    /**
+     * Runs one cycle and reposts the wake-ups it may have moved.
+     */
+    private void runCycle() throws Exception {
+        this.nextWakeCycle = IScheduledClockCycle.NEVER;
+        boolean poked = false;
+        for(int i = 0; i < this.components.length; i++){
+            if(poked){
+                this.post(i);
+            }
+            this.clocked[i] = (this.wakeCycles[i] <= this.cycle);
+            if(this.clocked[i]){
+                this.components[i].clockCycle();
+                this.componentTicks++;
+                poked = true;
+            } else {
+                this.components[i].skipCycles(1);
+                this.nextWakeCycle = Math.min(this.nextWakeCycle, this.wakeCycles[i]);
+            }
+        }
+        this.cycle++;
+        this.executedCycles++;
+        for(int i = 0; i < this.components.length; i++){
+            if(this.clocked[i]){
+                this.post(i);
+                this.nextWakeCycle = Math.min(this.nextWakeCycle, this.wakeCycles[i]);
+            }
+        }
+    }
+
+    /**
+     * @param breakpoints breakpoints whose hits end a run
+     */
+    void setBreakpoints(Breakpoints breakpoints) {
+        this.breakpoints = breakpoints;
+    }
+    
+    /**
+     * Asks a component for its next wake-up, from the current cycle.
+     */
+    private void post(int i){
+        long idle = this.components[i].getIdleCycles();
+        this.wakeCycles[i] = (idle == IScheduledClockCycle.NEVER) ? IScheduledClockCycle.NEVER : this.cycle + idle;
+    }
+
+    /**
+     * @return cycle count reached by the last run
+     */
+    public long getCycle() {
+        return cycle;
+    }
+
+    public void resetStatistics(){
+        this.executedCycles = 0;
+        this.skippedCycles = 0;
+        this.componentTicks = 0;
+    }
+
+    public long getExecutedCycles() {
+        return executedCycles;
+    }
+
+    public long getSkippedCycles() {
+        return skippedCycles;
+    }
+
+    /**
+     * @return clockCycle() calls made on components
+     */
+    public long getComponentTicks() {
+        return componentTicks;
+    }
+
+    /**
+     * @return one-line summary of the counters
+     */
+    public String getReport() {
+        return "cycles run "+this.executedCycles+", skipped "+this.skippedCycles
+                +", component ticks "+this.componentTicks;
+    }
+
+}
@@ -0,0 +1,434 @@
+package computersimulator.cpu;
+
+import computersimulator.components.MachineFaultException;
+
+/**
+ * A core's private cache in a multi-core Computer. It stands in for the
+ * MemoryControlUnit the core was built with: the MAR/MBR state machine is
+ * inherited, and every word read or written (instruction fetch, MAR/MBR
+ * access, the executors' readWord / writeWord) goes through the cache.
+ *
+ * Direct-mapped, write-back, write-allocate, kept coherent with the other
+ * cores' caches by the MESI protocol on a SnoopingBus:
+ *   M  modified   only copy, dirty
+ *   E  exclusive  only copy, clean (a write goes to M without the bus)
+ *   S  shared     clean, other caches may hold it (a write needs BusUpgr)
+ *   I  invalid
+ * A hit in a state that allows the access stays inside this cache; misses
+ * and upgrades queue a transaction on the bus, which snoops the other caches
+ * at the end of the cycle. The access throws BusStallException until the
+ * line is in place, and its core tries again each cycle; the access counts
+ * once, as the miss, when it completes.
+ *
+ * Cores may run on different host threads: during a cycle a cache is only
+ * used by its own core, and the bus resolves the transactions between cycles.
+ */
+public class CoherentCache extends MemoryControlUnit {
+
+    // MESI line states
+    public final static int STATE_INVALID = 0;
+    public final static int STATE_SHARED = 1;
+    public final static int STATE_EXCLUSIVE = 2;
+    public final static int STATE_MODIFIED = 3;
+
+    private final static String[] STATE_NAMES = {"I", "S", "E", "M"};
+
+    public final static int DEFAULT_LINES = 64;
+    public final static int DEFAULT_LINE_WORDS = 4;
+
+    private final SnoopingBus bus;
+    private final int coreId;
+
+    private final int lineWords;
+    private final int[] tags;       // line address (address / lineWords) held
+    private final int[] states;
+    private final int[][] data;
+
+    // a transaction queued for the line, usable from readyCycles (QUEUED until resolved)
+    private final boolean[] requested;
+    private final long[] readyCycles;
+    private final static long QUEUED = Long.MAX_VALUE;
+
+    // Engineer: statistics
+    private long reads = 0;
+    private long writes = 0;
+    private long hits = 0;
+    private long misses = 0;
+    private long upgrades = 0;
+    private long evictions = 0;
+    private long invalidationsReceived = 0;
+    private long busWaits = 0;
+
+    /**
+     * @param bus bus shared with the other cores' caches
+     * @param coreId core this cache belongs to
+     * @param lines number of lines, a power of two
+     * @param lineWords words per line, a power of two
+     */
+    public CoherentCache(SnoopingBus bus, int coreId, int lines, int lineWords) {
+        BimodalBranchPredictor.indexMask(lines);     // both must be powers of two
+        BimodalBranchPredictor.indexMask(lineWords);
+        this.bus = bus;
+        this.coreId = coreId;
+        this.lineWords = lineWords;
+        this.tags = new int[lines];
+        this.states = new int[lines];
+        this.data = new int[lines][lineWords];
+        this.requested = new boolean[lines];
+        this.readyCycles = new long[lines];
+        bus.attach(this);
+    }
+
+    /**
+     * @param address word address
+     * @return word, from this cache
+     * @throws MachineFaultException address beyond the installed memory
+     * @throws BusStallException the line isn't here yet (the bus has been asked for it)
+     */
+    @Override
+    public int readWord(int address) throws MachineFaultException {
+        this.checkAddress(address);
+        int value = 0;
+        boolean waiting;
+        boolean missed = false;
+        synchronized(this){
+            int line = this.lineOf(address);
+            waiting = !this.ready(line, address, false);
+            if(waiting){
+                missed = this.request(line, address, false);
+            } else {
+                this.reads++;
+                value = this.data[line][address & (this.lineWords - 1)];
+            }
+        }
+        if(missed && SimulatorEvents.active){
+            SimulatorEvents.cacheMiss(this.coreId, address, false, false);
+        }
+        if(waiting){
+            throw BusStallException.STALL;
+        }
+        long[] watched = this.getBreakpoints().reads;
+        if(watched != null && Breakpoints.contains(watched, address)){
+            this.getBreakpoints().hit(Breakpoints.HIT_READ, address);
+        }
+        return value;
+    }
+
+    /**
+     * @param address word address
+     * @param value raw value (low 20 bits kept)
+     * @throws MachineFaultException address beyond the installed memory
+     * @throws BusStallException the line isn't here to write yet (the bus has been asked for it)
+     */
+    @Override
+    public void writeWord(int address, int value) throws MachineFaultException {
+        this.checkAddress(address);
+        boolean waiting;
+        boolean missed = false;
+        boolean upgrade;
+        synchronized(this){
+            int line = this.lineOf(address);
+            waiting = !this.ready(line, address, true);
+            upgrade = waiting && this.holds(line, address);
+            if(waiting){
+                missed = this.request(line, address, true);
+            } else {
+                this.writes++;
+                this.states[line] = STATE_MODIFIED;
+                this.data[line][address & (this.lineWords - 1)] = value & 0xFFFFF;
+            }
+        }
+        if(missed && SimulatorEvents.active){
+            SimulatorEvents.cacheMiss(this.coreId, address, true, upgrade);
+        }
+        if(waiting){
+            throw BusStallException.STALL;
+        }
+        long[] watched = this.getBreakpoints().writes;
+        if(watched != null && Breakpoints.contains(watched, address)){
+            this.getBreakpoints().hit(Breakpoints.HIT_WRITE, address);
+        }
+    }
+
+    /**
+     * @return true if the access can complete in this cache now (a hit is
+     *  counted, unless it completes this cache's own miss)
+     */
+    private boolean ready(int line, int address, boolean write){
+        if(this.requested[line] && this.bus.getCycle() < this.readyCycles[line]){
+            return false;       // queued, or still on the bus
+        }
+        if(!this.holds(line, address) || (write && this.states[line] == STATE_SHARED)){
+            return false;
+        }
+        if(this.requested[line]){
+            this.requested[line] = false;   // the miss completes
+        } else {
+            this.hits++;
+        }
+        return true;
+    }
+
+    /**
+     * Asks the bus for the line, unless a transaction for it is already
+     * queued or under way.
+     * @return true if this is a new miss / upgrade
+     */
+    private boolean request(int line, int address, boolean write){
+        this.busWaits++;
+        if(this.requested[line] && this.bus.getCycle() < this.readyCycles[line]){
+            return false;
+        }
+        if(this.holds(line, address)){
+            this.upgrades++;    // shared: the other copies have to go first
+        } else {
+            this.misses++;
+        }
+        this.requested[line] = true;
+        this.readyCycles[line] = QUEUED;
+        this.bus.request(this, address, write);
+        return true;
+    }
+
+    /**
+     * @param address word address
+     * @return the word as this core sees it, without changing any cache's
+     *  state or statistics
+     */
+    @Override
+    public int peekWord(int address) {
+        if(address < 0 || address >= this.getCapacity()){
+            return 0;
+        }
+        synchronized(this){
+            int line = this.lineOf(address);
+            if(this.holds(line, address)){
+                return this.data[line][address & (this.lineWords - 1)];
+            }
+        }
+        return this.bus.peek(address);
+    }
+
+    /*************** Used by the SnoopingBus, between cycles ***************/
+
+    int lineOf(int address){
+        return (address / this.lineWords) & (this.tags.length - 1);
+    }
+
+    /**
+     * @return true if the line holds the address in any valid state
+     */
+    private boolean holds(int line, int address){
+        return this.states[line] != STATE_INVALID && this.tags[line] == address / this.lineWords;
+    }
+
+    /**
+     * @return MESI state of the line holding the address (STATE_INVALID if not held)
+     */
+    synchronized int stateOf(int address){
+        int line = this.lineOf(address);
+        return this.holds(line, address) ? this.states[line] : STATE_INVALID;
+    }
+
+    /**
+     * Snoop: another cache reads the address. A modified copy is written back
+     * first; any copy drops to shared.
+     * @return true if this cache held the line
+     */
+    synchronized boolean snoopRead(int address, MemoryControlUnit memory) throws MachineFaultException {
+        int line = this.lineOf(address);
+        if(!this.holds(line, address)){
+            return false;
+        }
+        if(this.states[line] == STATE_MODIFIED){
+            this.writeBack(line, memory);
+            this.bus.recordFlush();
+        }
+        this.states[line] = STATE_SHARED;
+        return true;
+    }
+
+    /**
+     * Snoop: another cache is about to write the address. A modified copy is
+     * written back first, then the line is invalidated.
+     * @return true if this cache held the line
+     */
+    synchronized boolean snoopInvalidate(int address, MemoryControlUnit memory) throws MachineFaultException {
+        int line = this.lineOf(address);
+        if(!this.holds(line, address)){
+            return false;
+        }
+        if(this.states[line] == STATE_MODIFIED){
+            this.writeBack(line, memory);
+            this.bus.recordFlush();
+        }
+        this.states[line] = STATE_INVALID;
+        this.invalidationsReceived++;
+        return true;
+    }
+
+    /**
+     * Brings the line holding the address in from memory, writing back a
+     * modified victim first.
+     * @param state state to install the line in
+     * @return true if a victim had to be written back
+     */
+    synchronized boolean fill(int address, int state, MemoryControlUnit memory) throws MachineFaultException {
+        int line = this.lineOf(address);
+        boolean wroteBack = false;
+        if(this.states[line] != STATE_INVALID && this.tags[line] != address / this.lineWords){
+            this.evictions++;
+            if(this.states[line] == STATE_MODIFIED){
+                this.writeBack(line, memory);
+                wroteBack = true;
+            }
+        }
+        int base = address & ~(this.lineWords - 1);
+        for(int i = 0; i < this.lineWords; i++){
+            this.data[line][i] = (base + i < memory.getCapacity()) ? memory.readWord(base + i) : 0;
+        }
+        this.tags[line] = address / this.lineWords;
+        this.states[line] = state;
+        return wroteBack;
+    }
+
+    /**
+     * @return the held word (for a debugger peek)
+     */
+    synchronized int readHeld(int address){
+        return this.data[this.lineOf(address)][address & (this.lineWords - 1)];
+    }
+
+    /**
+     * The bus has resolved this cache's request for the address.
+     * @param readyCycle first cycle the core can use the line
+     */
+    synchronized void granted(int address, long readyCycle){
+        this.readyCycles[this.lineOf(address)] = readyCycle;
+    }
+
+    /**
+     * @return true if this cache was granted the line holding the address
+     *  and its core hasn't had a cycle to use it yet (another cache's request
+     *  for the line then waits, so the two can't take it from each other forever)
+     */
+    synchronized boolean pins(int address, long cycle){
+        int line = this.lineOf(address);
+        return this.requested[line] && this.holds(line, address)
+                && this.readyCycles[line] != QUEUED && this.readyCycles[line] > cycle;
+    }
+
+    synchronized void setState(int address, int state){
+        this.states[this.lineOf(address)] = state;
+    }
+
+    private void writeBack(int line, MemoryControlUnit memory) throws MachineFaultException {
+        int base = this.tags[line] * this.lineWords;
+        for(int i = 0; i < this.lineWords; i++){
+            if(base + i < memory.getCapacity()){
+                memory.writeWord(base + i, this.data[line][i]);
+            }
+        }
+    }
+
+    /**
+     * Writes every modified line back to memory; they stay held as exclusive.
+     * @param memory shared memory
+     * @return lines written back
+     * @throws MachineFaultException not expected: held lines are in range
+     */
+    synchronized int flush(MemoryControlUnit memory) throws MachineFaultException {
+        int written = 0;
+        for(int line = 0; line < this.tags.length; line++){
+            if(this.states[line] == STATE_MODIFIED){
+                this.writeBack(line, memory);
+                this.states[line] = STATE_EXCLUSIVE;
+                written++;
+            }
+        }
+        return written;
+    }
+
+    /*************** Statistics ***************/
+
+    public int getCoreId() {
+        return coreId;
+    }
+
+    public int getLines() {
+        return tags.length;
+    }
+
+    public int getLineWords() {
+        return lineWords;
+    }
+
+    /**
+     * @param state STATE_*
+     * @return M, E, S or I
+     */
+    public static String getStateName(int state) {
+        return CoherentCache.STATE_NAMES[state];
+    }
+
+    public synchronized long getReads() {
+        return reads;
+    }
+
+    public synchronized long getWrites() {
+        return writes;
+    }
+
+    public synchronized long getHits() {
+        return hits;
+    }
+
+    public synchronized long getMisses() {
+        return misses;
+    }
+
+    /**
+     * @return writes to shared lines, which need a BusUpgr
+     */
+    public synchronized long getUpgrades() {
+        return upgrades;
+    }
+
+    public synchronized long getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * @return lines other cores' writes have invalidated here
+     */
+    public synchronized long getInvalidationsReceived() {
+        return invalidationsReceived;
+    }
+
+    /**
+     * @return accesses that had to wait for the bus, one per cycle waited
+     */
+    public synchronized long getBusWaits() {
+        return busWaits;
+    }
+
+    /**
+     * @return fraction of reads and writes that hit (0 with none made)
+     */
+    public synchronized double getHitRate() {
+        long accesses = this.reads + this.writes;
+        return (accesses == 0) ? 0 : (double)this.hits / accesses;
+    }
+
+    /**
+     * @return one-line summary of the counters
+     */
+    public synchronized String getReport() {
+        return "core "+this.coreId+" cache: reads "+this.reads+", writes "+this.writes
+                +String.format(", hit rate %.3f", this.getHitRate())
+                +", upgrades "+this.upgrades+", evictions "+this.evictions
+                +", invalidated "+this.invalidationsReceived
+                +", bus waits "+this.busWaits;
+    }
+
+}
@@ -2,6 +2,7 @@
 package computersimulator.cpu;
 
 import computersimulator.components.*;
+import javax.management.JMException;
 
 /**
  * Computer is the primary class used by the simulator. The core business logic
@@ -11,19 +12,86 @@ import computersimulator.components.*;
  * type is an object, computer has one setter and getter for each register. This
  * prevents us from accidentally operating on stale references that are no longer
  * valid.
+ * 
+ * A multi-core computer has N CPUs (cores), each behind its own CoherentCache,
+ * sharing the one memory over a MESI SnoopingBus. getCpu() is core 0. The
+ * cores halt one by one; the computer halts once all have. With more than one
+ * host thread the cores are clocked in parallel, in lockstep one cycle at a
+ * time (see ParallelCoreRunner).
  */
 public class Computer implements IClockCycle {
     
     private CentralProcessingUnit cpu;
     private MemoryControlUnit memory;
+    private CentralProcessingUnit[] cores;
+    private CoherentCache[] caches;        // null with one core
+    private boolean[] coreHalted;
+    private SnoopingBus bus;
+    private int hostThreads = 1;
     private InputOutputController io;   
+    private ClockScheduler scheduler;
+    private RunController runController;
+    private final Breakpoints breakpoints = new Breakpoints();
+    
+    // Engineer: clock cycles elapsed since power on
+    private long cycleCount = 0;
+    
+    // CPU implementations
+    public final static int CPU_IN_ORDER = 0;
+    public final static int CPU_OUT_OF_ORDER = 1;
 
     public Computer() {        
+        this(Computer.CPU_IN_ORDER);
+    }   
+    
+    /**
+     * @param cpuType CPU_IN_ORDER (microcoded / dispatch / pipeline) or CPU_OUT_OF_ORDER
+     */
+    public Computer(int cpuType) {        
+        this(cpuType, 1);
+    }   
+    
+    /**
+     * @param cpuType CPU_IN_ORDER (microcoded / dispatch / pipeline) or CPU_OUT_OF_ORDER
+     * @param coreCount number of cores; more than one puts each behind a
+     *  CoherentCache with the default geometry on a shared SnoopingBus
+     */
+    public Computer(int cpuType, int coreCount) {        
+        if(coreCount < 1){
+            throw new IllegalArgumentException("A computer needs at least 1 core");
+        }
         memory = new MemoryControlUnit();  
-        cpu = new CentralProcessingUnit(memory); // contains ALU,  ControlUnit      
+        cores = new CentralProcessingUnit[coreCount];
+        coreHalted = new boolean[coreCount];
+        if(coreCount == 1){
+            cores[0] = Computer.createCpu(cpuType, memory);
+        } else {
+            bus = new SnoopingBus(memory);
+            caches = new CoherentCache[coreCount];
+            for(int c = 0; c < coreCount; c++){
+                caches[c] = new CoherentCache(bus, c, CoherentCache.DEFAULT_LINES, CoherentCache.DEFAULT_LINE_WORDS);
+                cores[c] = Computer.createCpu(cpuType, caches[c]);
+            }
+        }
+        cpu = cores[0];
         io = new InputOutputController();
+        scheduler = new ClockScheduler(cpu, memory, io);   // same order as clockCycle
+        
+        // the cores' memory ports watch, not the shared memory (line fills and write-backs)
+        for(int c = 0; c < coreCount; c++){
+            cores[c].getControlUnit().setBreakpoints(breakpoints);
+            ((caches == null) ? memory : caches[c]).setBreakpoints(breakpoints);
+        }
+        scheduler.setBreakpoints(breakpoints);
     }   
     
+    private static CentralProcessingUnit createCpu(int cpuType, MemoryControlUnit memory){
+        if(cpuType == Computer.CPU_OUT_OF_ORDER){
+            return new OutOfOrderProcessingUnit(memory);
+        }
+        return new CentralProcessingUnit(memory); // contains ALU,  ControlUnit      
+    }
+    
     /**
      * Clock Cycle for Computer
      * @throws Exception 
@@ -35,11 +103,239 @@ public class Computer implements IClockCycle {
         * clock cycles than necessary in part 1 because we not actually running 
         * a program yet. **/
 
+        if(this.caches != null){
+            for(int c = 0; c < this.cores.length; c++){
+                this.clockCore(c);
+            }
+            this.endMultiCoreCycle();
+            return;
+        }
         this.cpu.clockCycle();
         this.memory.clockCycle();
         this.io.clockCycle();                
+        this.cycleCount++;
+        this.cpu.getControlUnit().getPerformanceCounters().addCycles(1);
+    }
+    
+    /**
+     * Clocks one core of a multi-core computer (its CPU, then its cache's
+     * MAR/MBR); a halted core is skipped. May run on any host thread.
+     * @param core core index
+     * @throws Exception a machine fault
+     */
+    void clockCore(int core) throws Exception {
+        if(this.coreHalted[core]){
+            return;
+        }
+        try {
+            this.cores[core].clockCycle();
+            this.caches[core].clockCycle();
+        } catch(HaltSystemException e){
+            this.coreHalted[core] = true;
+        }
+    }
+    
+    /**
+     * Ends a multi-core cycle once every core has been clocked: the bus
+     * resolves the cycle's requests in core order. The cycle in which the
+     * last core halts isn't counted, as with a single core.
+     * @throws HaltSystemException every core has halted (the caches are
+     *  written back so the memory holds the results)
+     */
+    void endMultiCoreCycle() throws Exception {
+        this.bus.resolve();
+        if(this.isHalted()){
+            this.bus.flushCaches();
+            throw new HaltSystemException();
+        }
+        this.io.clockCycle();
+        this.cycleCount++;
+        this.bus.setCycle(this.cycleCount);
+        for(int c = 0; c < this.cores.length; c++){
+            if(!this.coreHalted[c]){
+                this.cores[c].getControlUnit().getPerformanceCounters().addCycles(1);
+            }
+        }
+    }
+    
+    /**
+     * @return true once every core has halted (multi-core)
+     */
+    public boolean isHalted() {
+        for(boolean halted : this.coreHalted){
+            if(!halted){
+                return false;
+            }
+        }
+        return this.caches != null;
+    }
+    
+    /**
+     * @param trace false to silence the instruction cycle and memory trace
+     */
+    public void setTrace(boolean trace) {
+        for(int c = 0; c < this.cores.length; c++){
+            this.cores[c].getControlUnit().setTrace(trace);
+            if(this.caches != null){
+                this.caches[c].setTrace(trace);
+            }
+        }
+        this.memory.setTrace(trace);
+    }
+    
+    /**
+     * Runs the clock forward event-driven: cycles in which every component is
+     * idle (e.g. the CPU waiting out an ALU latency with the memory and IO
+     * idle) are skipped in one step rather than ticked. A multi-core computer
+     * runs every cycle, on its host threads. The cycle count and
+     * every component's state end up as after as many clockCycle() calls.
+     * A breakpoint or watchpoint hit ends the run after the cycle it hit in.
+     * @param cycles cycles to run
+     * @return clock cycles elapsed since power on
+     * @throws Exception HaltSystemException on HLT (the count then includes
+     *  the cycles before the halting one, as with clockCycle())
+     */
+    public long runCycles(long cycles) throws Exception {
+        this.breakpoints.clearHit();
+        if(this.caches != null){
+            if(this.hostThreads > 1){
+                new ParallelCoreRunner(this, this.hostThreads).run(cycles);
+            } else {
+                for(long n = 0; n < cycles && !this.breakpoints.isHit(); n++){
+                    this.clockCycle();
+                }
+            }
+            return this.cycleCount;
+        }
+        long start = this.cycleCount;
+        try {
+            this.scheduler.run(this.cycleCount, cycles);
+        } finally {
+            this.cycleCount = this.scheduler.getCycle();
+            this.cpu.getControlUnit().getPerformanceCounters().addCycles(this.cycleCount - start);
+        }
+        return this.cycleCount;
+    }
+    
+    /**
+     * @return controller that runs this computer on its own thread (created on first use)
+     */
+    public synchronized RunController getRunController() {
+        if(this.runController == null){
+            this.runController = new RunController(this);
+        }
+        return runController;
+    }
+    
+    /**
+     * @param core core index
+     * @return the core's performance counters
+     */
+    public PerformanceCounters getPerformanceCounters(int core) {
+        return this.cores[core].getControlUnit().getPerformanceCounters();
+    }
+    
+    /**
+     * Publishes every core's performance counters over JMX, as
+     * computersimulator:type=PerformanceCounters,name="[name] core [n]".
+     * @param name name of this simulator, unique in the JVM
+     * @throws JMException the name is already taken
+     */
+    public void registerPerformanceCounters(String name) throws JMException {
+        for(int c = 0; c < this.cores.length; c++){
+            this.getPerformanceCounters(c).register(name + " core " + c);
+        }
+    }
+    
+    /**
+     * Takes every core's performance counters off the MBean server.
+     * @throws JMException the server refused
+     */
+    public void unregisterPerformanceCounters() throws JMException {
+        for(int c = 0; c < this.cores.length; c++){
+            this.getPerformanceCounters(c).unregister();
+        }
+    }
+    
+    /**
+     * @return breakpoints and watchpoints, shared by every core
+     */
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+    
+    public ClockScheduler getScheduler() {
+        return scheduler;
+    }
+    
+    /**
+     * @return clock cycles elapsed since power on
+     */
+    public long getCycleCount() {
+        return cycleCount;
     }
 
+    /**
+     * @return guest instructions executed by all cores
+     */
+    public long getInstructionsExecuted() {
+        long instructions = 0;
+        for(CentralProcessingUnit core : this.cores){
+            instructions += core.getInstructionsExecuted();
+        }
+        return instructions;
+    }
+    
+    public int getCoreCount() {
+        return cores.length;
+    }
+    
+    /**
+     * @param core core index
+     * @return the core's CPU
+     */
+    public CentralProcessingUnit getCpu(int core) {
+        return cores[core];
+    }
+    
+    /**
+     * @param core core index
+     * @return the core's cache, null on a single-core computer
+     */
+    public CoherentCache getCache(int core) {
+        return (this.caches == null) ? null : this.caches[core];
+    }
+    
+    /**
+     * @return the bus between the caches, null on a single-core computer
+     */
+    public SnoopingBus getBus() {
+        return bus;
+    }
+    
+    /**
+     * @param core core index
+     * @return true once the core has run HLT
+     */
+    public boolean isCoreHalted(int core) {
+        return coreHalted[core];
+    }
+    
+    public int getHostThreads() {
+        return hostThreads;
+    }
+    
+    /**
+     * @param threads host threads a multi-core computer clocks its cores on
+     *  (at most one per core); 1 clocks them in order on the calling thread
+     */
+    public void setHostThreads(int threads) {
+        if(threads < 1){
+            throw new IllegalArgumentException("At least 1 host thread is needed");
+        }
+        this.hostThreads = Math.min(threads, this.cores.length);
+    }
+    
     /**
      *
      * @return CPU
@@ -11,7 +11,7 @@ import java.util.HashMap;
  * 
  * @TODO We need some way to ensure that registers don't get converted to different size units. I accidentally cast PC to 4 and no error happened immediately.
  */
-public class ControlUnit implements IClockCycle {
+public class ControlUnit implements IScheduledClockCycle {
 
     // PC	13 bits	Program Counter: address of next instruction to be executed
     private Unit programCounter;
@@ -36,7 +36,17 @@ public class ControlUnit implements IClockCycle {
     //CC	4 bits	Condition Code: set when arithmetic/logical operations are executed; 
     //          it has four 1-bit elements: overflow, underflow, division by zero, equal-or-not. 
     //          OVERFLOW[0], UNDERFLOW[1], DIVZERO[2], EQUALORNOT[3]
-    private Unit conditionCode;    
+    //          Held as a bitmask with OVERFLOW as the MSB so it matches the 4-bit register.
+    //          Flags hold across instructions until an operation affecting them runs, so
+    //          JCC tests the last ones set (every execution model does the same).
+    private int conditionCode;    
+    
+    // Last ALU operation whose flags haven't been folded into conditionCode yet.
+    // Flags are only derived from it when CC is actually read.
+    private int pendingConditionControl = ArithmeticLogicUnit.CONTROL_NONE;
+    private int pendingConditionSize;
+    private long pendingConditionOperand1;
+    private long pendingConditionOperand2;
     
     
     /**************************************
@@ -49,6 +59,37 @@ public class ControlUnit implements IClockCycle {
     // Engineer: Internal flag to signal that a blocking operation occurred (memory read) forcing a clock cycle
     private boolean blocked = false;
     
+    // Engineer: cycles the instruction cycle spent waiting on an ALU result
+    private long aluStallCycles = 0;
+    
+    // Engineer: cycles a memory access waited for the bus (multi-core)
+    private long busStallCycles = 0;
+    
+    // Engineer: print the micro steps of the instruction cycle
+    private boolean trace = true;
+    
+    // Engineer: instructions the instruction cycle has fetched into the IR
+    private long instructionsFetched = 0;
+    
+    // Engineer: counters published over JMX (retirements are counted here, 
+    // in the Pipeline and in the OutOfOrderCore)
+    private final PerformanceCounters counters = new PerformanceCounters();
+    
+    // Engineer: retirements left until the next sampled flight recorder event
+    private int retireEventCountdown = 0;
+    
+    // Engineer: per-address profile of the guest program, null when not profiling
+    private GuestProfiler profiler;
+    
+    // Engineer: guest call stacks (JSR / RFS), null when not profiling
+    private CallStackProfiler callStackProfiler;
+    
+    // Engineer: binary execution trace, null when not tracing
+    private TraceRecorder traceRecorder;
+    
+    // breakpoints checked at each retirement (the Computer's, once installed)
+    private Breakpoints breakpoints = new Breakpoints();
+    
     // used to control state of EA
     private int eaState;
     private static final int EA_DIRECT=0;
@@ -89,6 +130,8 @@ public class ControlUnit implements IClockCycle {
     private static final int OPCODE_JCC=12;
     private static final int OPCODE_RFS=15;
     private static final int OPCODE_JSR=14;
+    private static final int OPCODE_MLT=20;
+    private static final int OPCODE_DVD=21;
     private static final int OPCODE_SRC=31;
     private static final int OPCODE_RRC=32;
 
@@ -113,12 +156,57 @@ public class ControlUnit implements IClockCycle {
     // ALU Reference
     private ArithmeticLogicUnit alu;
     
-    // Unit reference
-    private Unit uRef;
-    
     // nextPC	13 bits	Next Program Counter: Interal Register Used to signal program counter was adjusted by instruction
     private Unit nextProgramCounter;
     
+    /**************************************
+     * Superscalar dispatch. With an issue width of 0 the microcoded instruction
+     * cycle above runs; otherwise up to [issueWidth] instructions are decoded 
+     * and dispatched onto the CPU's functional units each cycle.
+     *************************************/
+    private int issueWidth = 0;
+    private FunctionalUnit[] functionalUnits = new FunctionalUnit[0];
+    private final InstructionExecutor executor;
+    
+    // Scoreboard: first dispatch cycle each register's pending result can be read
+    private final long[] registerReadyCycle = new long[Instruction.REGISTER_COUNT];
+    private long dispatchCycle = 0;
+    
+    // Engineer: dispatch statistics
+    private long instructionsIssued = 0;
+    private long[] issueHistogram = new long[1];
+    private long dataHazardStalls = 0;
+    private long structuralHazardStalls = 0;
+    private long controlTransferGroups = 0;
+    
+    /**************************************
+     * Speculative dispatch. With a branch predictor the dispatcher doesn't end
+     * the group at a jump but carries on down the predicted path. Registers 
+     * and CC are checkpointed after the jump, stores are held in the store 
+     * queue and faults (and HLT) wait, until the jump's branch unit latency 
+     * has elapsed. Then the path is either committed or rolled back to the 
+     * checkpoint, which takes one cycle. One jump is unresolved at a time.
+     *************************************/
+    private BranchPredictor speculationPredictor;
+    private StoreQueue storeQueue = new StoreQueue(8);
+    private boolean speculating = false;
+    private boolean speculationBlocked = false;     // waiting for the jump to resolve
+    private boolean speculationMispredicted = false;
+    private long speculationResolveCycle;
+    private int speculationCorrectPC;
+    private int speculationJumpPC;
+    private long speculationInstructions;           // dispatched on the current path
+    private final int[] checkpointRegisters = new int[Instruction.REGISTER_COUNT];
+    private final long[] checkpointReadyCycle = new long[Instruction.REGISTER_COUNT];
+    
+    // Engineer: speculation statistics
+    private long speculations = 0;
+    private long rollbacks = 0;
+    private long speculativeInstructions = 0;
+    private long squashedInstructions = 0;
+    private long deferredFaults = 0;
+    private long storeQueueFullStalls = 0;
+    
     public ControlUnit(MemoryControlUnit mem, ArithmeticLogicUnit aluRef) {
         this.instructionRegister = new Word();
         this.programCounter = new Unit(13);
@@ -127,7 +215,7 @@ public class ControlUnit implements IClockCycle {
         this.state = ControlUnit.STATE_NONE;
         this.memory = mem;        
         this.alu=aluRef;
-        this.conditionCode = new Unit(4);  
+        this.executor = new InstructionExecutor(this, mem);
         this.clearConditions();        
         
         for(int x=0;x<3;x++){
@@ -140,9 +228,17 @@ public class ControlUnit implements IClockCycle {
     }
     
    
+    /**
+     * @param ConditionRegister (see static variables)
+     * @return bit of the CC bitmask for a condition flag
+     */
+    public static int conditionBit(int ConditionRegister){
+        return 1 << (3 - ConditionRegister);
+    }
+   
     public int getConditionCode(int ConditionRegister) {
-        Integer[] raw = this.conditionCode.getBinaryArray();        
-        return raw[ConditionRegister];
+        this.resolveConditions();
+        return ((this.conditionCode & ControlUnit.conditionBit(ConditionRegister)) != 0) ? 1 : 0;
     }
 
     /**
@@ -150,48 +246,84 @@ public class ControlUnit implements IClockCycle {
      * @return ConditionCodeRegister Unit(4) - 
      */
     public Unit getConditionCodeRegister() {
-        return conditionCode;
+        return new Unit(4, this.getConditionCodeBits());
     }    
     
+    /**
+     * @return CC as a bitmask, OVERFLOW in the MSB (pending flags resolved)
+     */
+    public int getConditionCodeBits() {
+        this.resolveConditions();
+        return this.conditionCode;
+    }
+    
+    /**
+     * Restores CC from a bitmask (e.g. a checkpoint) and drops any pending flags.
+     * @param bits CC bitmask, OVERFLOW in the MSB
+     */
+    public void setConditionCodeBits(int bits) {
+        this.pendingConditionControl = ArithmeticLogicUnit.CONTROL_NONE;
+        this.conditionCode = bits & 0xF;
+    }
+    
+    /**
+     * Called by the ALU instead of setting flags directly. The operation replaces
+     * any earlier pending one (after folding it in) and its flags are derived 
+     * only when something reads CC.
+     * @param control ArithmeticLogicUnit.CONTROL_* operation
+     * @param size width of the computation
+     * @param operand1 first operand as passed to ArithmeticLogicUnit.deriveConditions
+     * @param operand2 second operand as passed to ArithmeticLogicUnit.deriveConditions
+     */
+    public void recordConditionOperation(int control, int size, long operand1, long operand2){
+        if(this.pendingConditionControl != ArithmeticLogicUnit.CONTROL_NONE){
+            this.resolveConditions();
+        }
+        this.pendingConditionControl = control;
+        this.pendingConditionSize = size;
+        this.pendingConditionOperand1 = operand1;
+        this.pendingConditionOperand2 = operand2;
+    }
+    
+    /**
+     * Folds the pending ALU operation's flags into conditionCode.
+     */
+    private void resolveConditions(){
+        if(this.pendingConditionControl != ArithmeticLogicUnit.CONTROL_NONE){
+            int affected = ArithmeticLogicUnit.conditionsAffectedBy(this.pendingConditionControl);
+            int flags = ArithmeticLogicUnit.deriveConditions(this.pendingConditionControl, this.pendingConditionSize, 
+                    this.pendingConditionOperand1, this.pendingConditionOperand2);
+            this.conditionCode = (this.conditionCode & ~affected) | flags;
+            this.pendingConditionControl = ArithmeticLogicUnit.CONTROL_NONE;
+        }
+    }
+    
     /**
      * Set a Condition Flag
      * Usage:  this.setCondition(ArithmeticLogicUnit.CONDITION_REGISTER_OVERFLOW);
      * @param ConditionRegister (see static variables)
      */
     public void setCondition(int ConditionRegister){
-        Integer[] raw = this.conditionCode.getBinaryArray();
-        raw[ConditionRegister] = 1;
-        
-        StringBuilder ret = new StringBuilder();
-        for (Integer el : raw) {
-            ret.append(el);
-        }
-        this.conditionCode.setValueBinary(ret.toString());        
+        this.resolveConditions();
+        this.conditionCode |= ControlUnit.conditionBit(ConditionRegister);
     }
     
-
-    
     /**
      * Unset a Condition Flag
      * Usage:  this.unsetCondition(ArithmeticLogicUnit.CONDITION_REGISTER_OVERFLOW);
      * @param ConditionRegister (see static variables)
      */
     public void unsetCondition(int ConditionRegister){
-        Integer[] raw = this.conditionCode.getBinaryArray();
-        raw[ConditionRegister] = 0;
-        
-        StringBuilder ret = new StringBuilder();
-        for (Integer el : raw) {
-            ret.append(el);
-        }
-        this.conditionCode.setValueBinary(ret.toString());         
+        this.resolveConditions();
+        this.conditionCode &= ~ControlUnit.conditionBit(ConditionRegister);
     }
     
     /**
      * Clear any previously set condition codes
      */
     public final void clearConditions(){
-        this.conditionCode.setValueBinary("0000");
+        this.pendingConditionControl = ArithmeticLogicUnit.CONTROL_NONE;
+        this.conditionCode = 0;
     }    
     
     public Unit getProgramCounter() {
@@ -261,6 +393,36 @@ public class ControlUnit implements IClockCycle {
     public Word getGeneralPurposeRegister(int RFI){
         return this.gpRegisters[RFI];
     }
+    
+    /**
+     * Register read by Instruction numbering (R0-R3 = 0-3, X1-X3 = 4-6, CC = 7)
+     * @param register register number
+     * @return raw bits
+     */
+    public int getRegisterValue(int register){
+        if(register < 4){
+            return this.gpRegisters[register].getRawValue();
+        } else if(register < Instruction.REGISTER_CC){
+            return this.indexRegisters[register - Instruction.REGISTER_X1].getRawValue();
+        } else {
+            return this.getConditionCodeBits();
+        }
+    }
+    
+    /**
+     * Register write by Instruction numbering (R0-R3 = 0-3, X1-X3 = 4-6, CC = 7)
+     * @param register register number
+     * @param value raw bits
+     */
+    public void setRegisterValue(int register, int value){
+        if(register < 4){
+            this.gpRegisters[register] = new Word(value);
+        } else if(register < Instruction.REGISTER_CC){
+            this.indexRegisters[register - Instruction.REGISTER_X1] = new Unit(13, value);
+        } else {
+            this.setConditionCodeBits(value);
+        }
+    }
 
     public void setProgramCounter(Unit programCounter) {
         this.programCounter = programCounter;
@@ -274,6 +436,336 @@ public class ControlUnit implements IClockCycle {
         this.instructionRegister = instructionRegister;
     }    
     
+    /**
+     * @return cycles spent waiting for the ALU's latency to elapse
+     */
+    public long getALUStallCycles() {
+        return aluStallCycles;
+    }
+    
+    /**
+     * @return cycles spent waiting for the SnoopingBus to bring a line into
+     *  this core's cache (always 0 on a single core)
+     */
+    public long getBusStallCycles() {
+        return busStallCycles;
+    }
+    
+    /**
+     * @return instructions dispatched per cycle, 0 for the microcoded instruction cycle
+     */
+    public int getIssueWidth() {
+        return issueWidth;
+    }
+
+    /**
+     * @param width instructions dispatched per cycle, 0 for the microcoded instruction cycle
+     */
+    public void setIssueWidth(int width) {
+        if(width < 0){
+            throw new IllegalArgumentException("Issue width can't be negative");
+        }
+        this.issueWidth = width;
+        this.resetDispatchStatistics();
+    }
+    
+    /**
+     * Used by the CPU to hand over its functional unit pool
+     * @param units functional units to dispatch onto
+     */
+    public void setFunctionalUnits(FunctionalUnit[] units) {
+        this.functionalUnits = units;
+    }
+    
+    public InstructionExecutor getExecutor() {
+        return executor;
+    }
+    
+    /**
+     * @return instructions the microcoded instruction cycle has fetched
+     */
+    public long getInstructionsFetched() {
+        return instructionsFetched;
+    }
+    
+    /**
+     * @return the core's performance counters
+     */
+    public PerformanceCounters getPerformanceCounters() {
+        return counters;
+    }
+    
+    public GuestProfiler getProfiler() {
+        return profiler;
+    }
+    
+    /**
+     * @param profiler profiler to feed, null to stop profiling
+     */
+    public void setProfiler(GuestProfiler profiler) {
+        this.profiler = profiler;
+    }
+    
+    public CallStackProfiler getCallStackProfiler() {
+        return callStackProfiler;
+    }
+    
+    /**
+     * @param callStackProfiler profiler to feed, null to stop profiling
+     */
+    public void setCallStackProfiler(CallStackProfiler callStackProfiler) {
+        this.callStackProfiler = callStackProfiler;
+    }
+    
+    public TraceRecorder getTraceRecorder() {
+        return traceRecorder;
+    }
+    
+    /**
+     * @param traceRecorder recorder to write retired instructions to, null to stop
+     */
+    public void setTraceRecorder(TraceRecorder traceRecorder) {
+        this.traceRecorder = traceRecorder;
+    }
+    
+    /**
+     * @return memory (or cache) this control unit reads and writes
+     */
+    MemoryControlUnit getMemory() {
+        return memory;
+    }
+    
+    /**
+     * @return breakpoints checked at each retirement
+     */
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+    
+    /**
+     * @param breakpoints breakpoints to check at each retirement
+     */
+    void setBreakpoints(Breakpoints breakpoints) {
+        this.breakpoints = breakpoints;
+    }
+    
+    /**
+     * Counts a retired instruction; every execution model calls this once per
+     * instruction, in program order.
+     * @param instruction the instruction
+     * @param pc its address
+     * @param next address of the instruction after it
+     * @param taken for a jump, whether it went to its target
+     * @param ea data address it loaded or stored, -1 if none
+     * @param value the data word loaded or stored
+     */
+    void recordRetirement(Instruction instruction, int pc, int next, boolean taken, int ea, int value){
+        this.counters.retire(instruction, taken);
+        if(this.profiler != null){
+            this.profiler.retire(instruction, pc, next, taken);
+        }
+        if(this.callStackProfiler != null){
+            this.callStackProfiler.retire(instruction, next);
+        }
+        if(this.traceRecorder != null){
+            this.traceRecorder.record(this.counters.getCycles(), pc, instruction, taken, ea, value);
+        }
+        long[] stops = this.breakpoints.pcs;
+        if(stops != null && Breakpoints.contains(stops, next)){
+            this.breakpoints.reached(this, next);
+        }
+        if(SimulatorEvents.active && --this.retireEventCountdown <= 0){
+            this.retireEventCountdown = SimulatorEvents.getRetireSampleInterval();
+            SimulatorEvents.retire(instruction, pc, this.counters.getRetiredInstructions(), this.counters.getCycles());
+        }
+    }
+    
+    /**
+     * Reports a jump that went somewhere other than predicted.
+     * @param pc address of the jump
+     * @param next where it actually went
+     */
+    void recordBranchMispredict(int pc, int next){
+        if(SimulatorEvents.active){
+            SimulatorEvents.branchMispredict(pc, next, this.counters.getCycles());
+        }
+    }
+    
+    /**
+     * Reports a machine fault leaving the CPU.
+     * @param fault the fault
+     */
+    void recordTrap(MachineFaultException fault){
+        if(SimulatorEvents.active){
+            SimulatorEvents.trap(this.getProgramCounter().getUnsignedValue(), fault.getFaultId(), 
+                    fault.getMessage(), this.counters.getCycles());
+        }
+    }
+    
+    /**
+     * Reports the core running HLT.
+     */
+    void recordHalt(){
+        if(SimulatorEvents.active){
+            SimulatorEvents.halt(this.getProgramCounter().getUnsignedValue(), 
+                    this.counters.getRetiredInstructions(), this.counters.getCycles());
+        }
+    }
+    
+    /**
+     * Lets the profilers sample the PC and charge the call stack over cycles 
+     * the CPU has run.
+     * @param cycles cycles run or skipped
+     */
+    void profileCycles(long cycles){
+        if(this.profiler != null){
+            this.profiler.cycles(this.getProgramCounter().getUnsignedValue(), cycles);
+        }
+        if(this.callStackProfiler != null){
+            this.callStackProfiler.cycles(cycles);
+        }
+    }
+    
+    /**
+     * Clears the dispatch statistics and scoreboard.
+     */
+    public final void resetDispatchStatistics() {
+        this.instructionsIssued = 0;
+        this.issueHistogram = new long[this.issueWidth + 1];
+        this.dataHazardStalls = 0;
+        this.structuralHazardStalls = 0;
+        this.controlTransferGroups = 0;
+        this.dispatchCycle = 0;
+        this.speculations = 0;
+        this.rollbacks = 0;
+        this.speculativeInstructions = 0;
+        this.squashedInstructions = 0;
+        this.deferredFaults = 0;
+        this.storeQueueFullStalls = 0;
+        this.storeQueue.resetStatistics();
+        for(int r = 0; r < Instruction.REGISTER_COUNT; r++){
+            this.registerReadyCycle[r] = 0;
+        }
+    }
+    
+    public long getInstructionsIssued() {
+        return instructionsIssued;
+    }
+    
+    /**
+     * @return cycles the dispatcher has run
+     */
+    public long getDispatchCycles() {
+        return dispatchCycle;
+    }
+    
+    /**
+     * @return [n] = cycles in which n instructions were dispatched
+     */
+    public long[] getIssueHistogram() {
+        return issueHistogram.clone();
+    }
+    
+    /**
+     * @return cycles a dispatch group ended waiting on a register result
+     */
+    public long getDataHazardStalls() {
+        return dataHazardStalls;
+    }
+    
+    /**
+     * @return cycles a dispatch group ended because no unit of the needed type was free
+     */
+    public long getStructuralHazardStalls() {
+        return structuralHazardStalls;
+    }
+    
+    /**
+     * @return dispatch groups ended by a jump (fetch redirects next cycle)
+     */
+    public long getControlTransferGroups() {
+        return controlTransferGroups;
+    }
+    
+    /**
+     * @param predictor guesses conditional jumps so dispatch can continue past
+     *  them, null to end each dispatch group at a jump
+     */
+    public void setSpeculativeDispatch(BranchPredictor predictor) {
+        this.speculationPredictor = predictor;
+    }
+    
+    public BranchPredictor getSpeculationPredictor() {
+        return speculationPredictor;
+    }
+    
+    /**
+     * @param capacity stores a predicted path can make before it has to wait
+     */
+    public void setStoreQueueCapacity(int capacity) {
+        if(this.speculating){
+            throw new IllegalStateException("Can't replace the store queue while speculating");
+        }
+        this.storeQueue = new StoreQueue(capacity);
+    }
+    
+    public StoreQueue getStoreQueue() {
+        return storeQueue;
+    }
+    
+    public boolean isSpeculating() {
+        return speculating;
+    }
+    
+    /**
+     * @return jumps dispatch continued past
+     */
+    public long getSpeculations() {
+        return speculations;
+    }
+    
+    /**
+     * @return mispredicted paths rolled back (one cycle each)
+     */
+    public long getRollbacks() {
+        return rollbacks;
+    }
+    
+    /**
+     * @return instructions dispatched before the jump ahead of them resolved
+     */
+    public long getSpeculativeInstructions() {
+        return speculativeInstructions;
+    }
+    
+    /**
+     * @return speculative instructions thrown away by a rollback (wasted work)
+     */
+    public long getSquashedInstructions() {
+        return squashedInstructions;
+    }
+    
+    /**
+     * @return faults on a predicted path held until the jump resolved
+     */
+    public long getDeferredFaults() {
+        return deferredFaults;
+    }
+    
+    /**
+     * @return cycles a predicted path waited for room in the store queue
+     */
+    public long getStoreQueueFullStalls() {
+        return storeQueueFullStalls;
+    }
+    
+    /**
+     * @return instructions per cycle achieved by the dispatcher (squashed ones not counted)
+     */
+    public double getInstructionsPerCycle() {
+        return (this.dispatchCycle == 0) ? 0 : (double)(this.instructionsIssued - this.squashedInstructions) / this.dispatchCycle;
+    }
+    
     /**
      * Clock cycle. This is the main function which causes the ControlUnit to do work.
      *  This serves as a publicly accessible method, but calls the instruction cycle.
@@ -286,7 +778,11 @@ public class ControlUnit implements IClockCycle {
         //do {  // @TODO: Turned off until we're running a program (part 2)
         //  System.out.println("Micro!");
           
-          this.instructionCycle();
+          if(this.issueWidth > 0){
+              this.dispatchInstructions();
+          } else {
+              this.instructionCycle();
+          }
 
           if(this.blocked == true){
               // A microcycle signaled it is blocking.
@@ -297,11 +793,301 @@ public class ControlUnit implements IClockCycle {
         
     }  
     
+    /**
+     * @return cycles the instruction cycle will spend waiting on the ALU's
+     *  latency, 0 if it has work this cycle (always, when dispatching)
+     */
+    @Override
+    public long getIdleCycles(){
+        if(this.issueWidth == 0 && this.alu.isBusy()){
+            return this.alu.getIdleCycles();
+        }
+        return 0;
+    }
+    
+    /**
+     * @param cycles cycles skipped while stalled on the ALU
+     */
+    @Override
+    public void skipCycles(long cycles){
+        this.aluStallCycles += cycles;
+        this.profileCycles(cycles);
+    }
+    
+    /**
+     * Superscalar dispatch: decodes instructions from PC in program order and 
+     * dispatches up to [issueWidth] of them this cycle. Dispatch stops at the 
+     * first instruction whose source registers are still being computed 
+     * (scoreboard), that has no free unit of its type, or after a jump (fetch 
+     * is redirected next cycle). A dispatched instruction's effect is applied 
+     * immediately; its destinations become readable once its latency elapses.
+     * With speculative dispatch a jump doesn't end the group (see above).
+     * A breakpoint or watchpoint hit ends the group at the instruction that
+     * hit, so the run stops right there. On a multi-core computer an access
+     * that has to wait for the bus ends the group too.
+     */
+    private void dispatchInstructions() throws Exception {
+        int issued = 0;
+        long hits = this.breakpoints.getHits();
+        
+        try {
+            if(this.speculating && this.dispatchCycle >= this.speculationResolveCycle 
+                    && this.resolveSpeculation()){
+                this.issueHistogram[0]++;     // the rollback takes the cycle
+                this.dispatchCycle++;
+                return;
+            }
+        
+            for(int slot = 0; slot < this.issueWidth; slot++){
+                int pc = this.getProgramCounter().getUnsignedValue();
+                Instruction instruction;
+                if(this.speculating){
+                    if(this.speculationBlocked){
+                        break;
+                    }
+                    try {
+                        instruction = this.executor.fetch(pc);
+                    } catch(MachineFaultException e){
+                        this.deferFault();
+                        break;
+                    }
+                    if(instruction.isHalt() || instruction.isControlTransfer()){
+                        this.speculationBlocked = true;     // HLT and a second jump wait for the first
+                        break;
+                    }
+                    if(instruction.writesMemory() && this.storeQueue.isFull()){
+                        this.storeQueueFullStalls++;
+                        break;
+                    }
+                } else {
+                    instruction = this.executor.fetch(pc);
+                }
+            
+                if(instruction.isHalt() && this.anyFunctionalUnitBusy()){
+                    break;  // let everything in flight complete first
+                }
+                if(!this.operandsReady(instruction)){
+                    this.dataHazardStalls++;
+                    break;
+                }
+                FunctionalUnit unit = this.findFreeFunctionalUnit(instruction.getUnitType());
+                if(unit == null){
+                    this.structuralHazardStalls++;
+                    break;
+                }
+            
+                int latency = unit.getLatency();
+                int interval = 1;
+                int control = instruction.getALUControl();
+                if(control != ArithmeticLogicUnit.CONTROL_NONE && instruction.getUnitType() != FunctionalUnit.TYPE_LOAD_STORE){
+                    int operationClass = ArithmeticLogicUnit.operationClassOf(control);
+                    latency = this.alu.getLatency(operationClass);
+                    interval = this.alu.getInitiationInterval(operationClass);
+                }
+            
+                int next;
+                try {
+                    next = this.executor.execute(instruction, pc);   // throws on HLT
+                } catch(MachineFaultException e){
+                    if(!this.speculating){
+                        throw e;
+                    }
+                    this.deferFault();
+                    break;
+                }
+                unit.dispatch(instruction, latency, interval);
+                this.recordRetirement(instruction, pc, next, instruction.isConditionalBranch() 
+                        ? this.executor.wasLastBranchTaken() : true, 
+                        this.executor.getLastMemoryAddress(), this.executor.getLastMemoryValue());
+                for(int r = 0; r < Instruction.REGISTER_COUNT; r++){
+                    if((instruction.getDestinationMask() & Instruction.registerBit(r)) != 0){
+                        this.registerReadyCycle[r] = this.dispatchCycle + latency;
+                    }
+                }
+                if(this.speculating){
+                    this.speculativeInstructions++;
+                    this.speculationInstructions++;
+                }
+                this.instructionsIssued++;
+                issued++;
+            
+                if(instruction.isControlTransfer()){
+                    this.controlTransferGroups++;
+                    if(this.speculationPredictor == null){
+                        this.getProgramCounter().setValue(next);
+                        break;
+                    }
+                    next = this.speculate(instruction, pc, next, latency);
+                }
+                this.getProgramCounter().setValue(next);
+                if(this.breakpoints.getHits() != hits){
+                    break;
+                }
+            }
+        } catch(BusStallException e){
+            // a fetch, load or store has to wait for the bus: nothing has changed
+            // for the instruction at PC, which is dispatched again next cycle
+            this.busStallCycles++;
+        }
+        
+        this.issueHistogram[issued]++;
+        this.dispatchCycle++;
+    }
+    
+    /**
+     * Checkpoints the state after a jump and starts down the predicted path.
+     * @param instruction the jump, already executed
+     * @param pc address of the jump
+     * @param next where the jump actually goes
+     * @param latency cycles until the branch unit resolves it
+     * @return predicted next PC
+     */
+    private int speculate(Instruction instruction, int pc, int next, int latency){
+        int predicted = next;   // unconditional: the target is known at decode
+        if(instruction.isConditionalBranch()){
+            int target = this.executor.getLastEffectiveAddress();
+            boolean taken = this.executor.wasLastBranchTaken();
+            boolean guess = this.speculationPredictor.predict(pc, target);
+            this.speculationPredictor.update(pc, guess, taken);
+            predicted = guess ? target : ((pc + 1) & 0x1FFF);
+        }
+        
+        for(int r = 0; r < Instruction.REGISTER_CC; r++){
+            this.checkpointRegisters[r] = this.getRegisterValue(r);
+        }
+        this.checkpointRegisters[Instruction.REGISTER_CC] = this.getConditionCodeBits();
+        System.arraycopy(this.registerReadyCycle, 0, this.checkpointReadyCycle, 0, Instruction.REGISTER_COUNT);
+        
+        this.speculating = true;
+        this.speculationBlocked = false;
+        this.speculationMispredicted = (predicted != next);
+        this.speculationCorrectPC = next;
+        this.speculationJumpPC = pc;
+        this.speculationResolveCycle = this.dispatchCycle + latency;
+        this.speculationInstructions = 0;
+        this.executor.beginSpeculation(this.storeQueue);
+        this.counters.checkpoint();
+        if(this.profiler != null){
+            this.profiler.beginSpeculation();
+        }
+        if(this.traceRecorder != null){
+            this.traceRecorder.beginSpeculation();
+        }
+        this.speculations++;
+        return predicted;
+    }
+    
+    /**
+     * The jump has resolved: commits the predicted path's stores, or restores 
+     * the checkpoint and redirects to the right path.
+     * The stores go first, as the bus may hold them up for a cycle or more
+     * (the jump is then resolved again next cycle).
+     * @return true if the path was rolled back
+     */
+    private boolean resolveSpeculation() throws MachineFaultException {
+        if(!this.speculationMispredicted){
+            this.storeQueue.commit(this.memory);
+        }
+        this.executor.endSpeculation();
+        this.speculating = false;
+        this.speculationBlocked = false;
+        if(this.profiler != null){
+            this.profiler.endSpeculation(this.speculationMispredicted);
+        }
+        if(this.traceRecorder != null){
+            this.traceRecorder.endSpeculation(this.speculationMispredicted);
+        }
+        if(!this.speculationMispredicted){
+            return false;   // a deferred fault / HLT is now at PC and raised normally
+        }
+        
+        for(int r = 0; r < Instruction.REGISTER_CC; r++){
+            this.setRegisterValue(r, this.checkpointRegisters[r]);
+        }
+        this.setConditionCodeBits(this.checkpointRegisters[Instruction.REGISTER_CC]);
+        System.arraycopy(this.checkpointReadyCycle, 0, this.registerReadyCycle, 0, Instruction.REGISTER_COUNT);
+        this.storeQueue.discard();
+        this.counters.rollback();
+        this.recordBranchMispredict(this.speculationJumpPC, this.speculationCorrectPC);
+        this.getProgramCounter().setValue(this.speculationCorrectPC);
+        this.squashedInstructions += this.speculationInstructions;
+        this.rollbacks++;
+        return true;
+    }
+    
+    /**
+     * A predicted-path instruction faulted: PC stays on it and dispatch waits.
+     * If the path turns out right it faults again, non-speculatively.
+     */
+    private void deferFault(){
+        this.deferredFaults++;
+        this.speculationBlocked = true;
+    }
+    
+    /**
+     * @return true once every register the instruction reads or writes is available.
+     * CC is only waited on by readers; writers update it in program order anyway.
+     */
+    private boolean operandsReady(Instruction instruction){
+        int registers = instruction.getSourceMask() 
+                | (instruction.getDestinationMask() & ~Instruction.registerBit(Instruction.REGISTER_CC));
+        for(int r = 0; r < Instruction.REGISTER_COUNT; r++){
+            if((registers & Instruction.registerBit(r)) != 0 && this.registerReadyCycle[r] > this.dispatchCycle){
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private FunctionalUnit findFreeFunctionalUnit(int type){
+        for(FunctionalUnit unit : this.functionalUnits){
+            if(unit.getType() == type && unit.canAccept()){
+                return unit;
+            }
+        }
+        return null;
+    }
+    
+    private boolean anyFunctionalUnitBusy(){
+        for(FunctionalUnit unit : this.functionalUnits){
+            if(unit.isBusy()){
+                return true;
+            }
+        }
+        return false;
+    }
+    
+    /**
+     * Prints a micro step of the instruction cycle (if tracing)
+     * @param message line to print
+     */
+    private void trace(String message){
+        if(this.trace){
+            System.out.println(message);
+        }
+    }
+    
+    /**
+     * @param trace false to keep the instruction cycle quiet, e.g. when many 
+     *  computers run at once and would contend on System.out
+     */
+    public void setTrace(boolean trace) {
+        this.trace = trace;
+    }
+    
+    public boolean isTrace() {
+        return trace;
+    }
+    
     /**
      * Used internally to signal that a micro-cycle needs a full clock cycle
      */
     private void signalBlockingMicroFunction(){
         this.blocked=true;
+        this.counters.recordBlockedCycle();
+        if(this.profiler != null){
+            this.profiler.recordBlockedCycle(this.getProgramCounter().getUnsignedValue());
+        }
     }    
     
     /**       
@@ -313,6 +1099,17 @@ public class ControlUnit implements IClockCycle {
             microState=0;
         }
         
+        if(this.alu.isBusy()){
+            // The ALU's latency hasn't elapsed yet; hold the micro step until RES is ready.
+            this.aluStallCycles++;
+            return;
+        }
+        if(this.memory.isWaiting()){
+            // The fetch/store set up last cycle is waiting for the bus; the MBR isn't valid yet.
+            this.busStallCycles++;
+            return;
+        }
+        
         switch(this.state){
             case ControlUnit.STATE_FETCH_INSTRUCTION: // takes 2 cycles
                 this.fetchNextInstructionFromMemory();
@@ -336,11 +1133,10 @@ public class ControlUnit implements IClockCycle {
         
         switch(this.microState){            
             case 0:
-                this.clearConditions();   // Clear CC on new instruction
-                System.out.println("Micro-0: PC -> MAR");
+                this.trace("Micro-0: PC -> MAR");
                 // Micro-0: PC -> MAR
                 Unit pc = this.getProgramCounter();
-                System.out.println("-- PC: "+pc);
+                this.trace("-- PC: "+pc);
                 this.memory.setMAR(pc);
                 this.microState=1;  
                 this.signalBlockingMicroFunction();
@@ -349,10 +1145,11 @@ public class ControlUnit implements IClockCycle {
                 // unwritten step: clock cycle causes memory to pull PC
             
             case 1:
-                System.out.println("Micro-1: MDR -> IR");
+                this.trace("Micro-1: MDR -> IR");
                 // Micro-1: MDR -> IR                
                 this.setIR(this.memory.getMBR());              
-                System.out.println("-- IR: "+this.memory.getMBR());
+                this.trace("-- IR: "+this.memory.getMBR());
+                this.instructionsFetched++;
                 this.microState=2;              
 
                 // Set up for next major state
@@ -387,17 +1184,22 @@ public class ControlUnit implements IClockCycle {
     private void decodeInstructionRegister(){        
         if(this.microState == 0){// Micro-4: Decode IR
             this.effectiveAddress=null;
-            System.out.println("Micro-4: Decode IR");
+            this.trace("Micro-4: Decode IR");
             this.instructionRegisterDecoded = this.decodeInstructionRegister(this.getIR());     
-            System.out.println("-- IR Decoded: "+this.instructionRegisterDecoded);
+            this.trace("-- IR Decoded: "+this.instructionRegisterDecoded);
                         
             int opcode = this.instructionRegisterDecoded.get("opcode").getUnsignedValue();            
-            if(opcode == ControlUnit.OPCODE_AIR || opcode ==ControlUnit.OPCODE_SIR){
-                // These instructions don't require EA calculation. Skip ahead.
+            if(opcode == ControlUnit.OPCODE_AIR || opcode ==ControlUnit.OPCODE_SIR
+                    || opcode == ControlUnit.OPCODE_MLT || opcode == ControlUnit.OPCODE_DVD
+                    || opcode == ControlUnit.OPCODE_TRR || opcode == ControlUnit.OPCODE_AND
+                    || opcode == ControlUnit.OPCODE_ORR || opcode == ControlUnit.OPCODE_NOT
+                    || opcode == ControlUnit.OPCODE_SRC || opcode == ControlUnit.OPCODE_RRC){
+                // These instructions don't require EA calculation (register/register
+                // and shift formats reuse the XFI/I bits). Skip ahead.
                 this.microState=null;
                 this.state=ControlUnit.STATE_EXECUTE_INSTRUCTION;            
             } else { // Every other instruction does. We'll progress through eaState and microState now.
-                if(this.instructionRegisterDecoded.get("xfi").getUnsignedValue()==0 && this.instructionRegisterDecoded.get("rfi").getUnsignedValue()==0){                        
+                if(this.instructionRegisterDecoded.get("xfi").getUnsignedValue()==0 && this.instructionRegisterDecoded.get("index").getUnsignedValue()==0){                        
                     this.eaState = ControlUnit.EA_DIRECT;
                 } else if(this.instructionRegisterDecoded.get("index").getUnsignedValue()==0 && this.instructionRegisterDecoded.get("xfi").getUnsignedValue()>=1 && this.instructionRegisterDecoded.get("xfi").getUnsignedValue()<=3){
                     this.eaState = ControlUnit.EA_REGISTER_INDIRECT;                    
@@ -409,10 +1211,10 @@ public class ControlUnit implements IClockCycle {
                 this.microState++;
             }         
         } else { //microState >= 1 & we're computing EA
-            System.out.println("Micro-5."+this.microState+": Compute Effective Address (Type: "+this.eaState+")");            
+            this.trace("Micro-5."+this.microState+": Compute Effective Address (Type: "+this.eaState+")");            
             switch(this.eaState){
                 case ControlUnit.EA_DIRECT: //EA <- ADDR                    
-                    System.out.println("Absolute/Direct:" + this.instructionRegisterDecoded.get("address"));
+                    this.trace("Absolute/Direct:" + this.instructionRegisterDecoded.get("address"));
                     this.effectiveAddress = this.instructionRegisterDecoded.get("address");                    
                     break;
                 case ControlUnit.EA_REGISTER_INDIRECT: //EA <- c(Xi) + ADDR
@@ -421,7 +1223,7 @@ public class ControlUnit implements IClockCycle {
                             Unit addr = this.instructionRegisterDecoded.get("address");  
                             int contentsOfX = this.getIndexRegister(this.instructionRegisterDecoded.get("xfi").getUnsignedValue()).getUnsignedValue(); //read Xi here  
                             this.effectiveAddress = new Unit(13, (contentsOfX + addr.getUnsignedValue()));
-                            System.out.println("Register Indirect + Offset ("+contentsOfX+" + "+addr.getUnsignedValue()+"): "+this.effectiveAddress);
+                            this.trace("Register Indirect + Offset ("+contentsOfX+" + "+addr.getUnsignedValue()+"): "+this.effectiveAddress);
                             break;                            
                     }                           
                     break;
@@ -435,7 +1237,7 @@ public class ControlUnit implements IClockCycle {
                         case 2: // c(ADDR) from MBR, set to MAR
                             Word contentsOfAddr = this.memory.getMBR();
                             this.effectiveAddress =  new Unit(13, (contentsOfAddr.getUnsignedValue()));
-                            System.out.println("Indexed - c(ADDR) =  c("+this.instructionRegisterDecoded.get("address").getUnsignedValue()+") = "+this.effectiveAddress);                            
+                            this.trace("Indexed - c(ADDR) =  c("+this.instructionRegisterDecoded.get("address").getUnsignedValue()+") = "+this.effectiveAddress);                            
                             break;
                     }                           
                     break;                    
@@ -451,7 +1253,7 @@ public class ControlUnit implements IClockCycle {
                         case 2:
                             Word contentsOfLocation = this.memory.getMBR();
                             this.effectiveAddress = new Unit(13, contentsOfLocation.getUnsignedValue());
-                            System.out.println("Indexed + Offset --> "+this.effectiveAddress);                                
+                            this.trace("Indexed + Offset --> "+this.effectiveAddress);                                
                             break;
                     }                      
                     break;
@@ -459,7 +1261,7 @@ public class ControlUnit implements IClockCycle {
                     // Unhandled address mode
             }            
             if(this.effectiveAddress != null){ // EA Calculated. Completed!
-                System.out.println("-- Effective Address Calculated: "+this.effectiveAddress);                     
+                this.trace("-- Effective Address Calculated: "+this.effectiveAddress);                     
                 this.microState=null;
                 this.state=ControlUnit.STATE_EXECUTE_INSTRUCTION;                    
             }
@@ -483,7 +1285,7 @@ public class ControlUnit implements IClockCycle {
             microstate (999) to signal completion. */
         if(this.microState < ControlUnit.MICROSTATE_EXECUTE_COMPLETE){
             int opcode = this.instructionRegisterDecoded.get("opcode").getUnsignedValue();
-            System.out.println("--EXECUTING OPCODE: "+ opcode);
+            this.trace("--EXECUTING OPCODE: "+ opcode);
             switch(opcode){
                 case ControlUnit.OPCODE_HLT:
                     this.executeOpcodeHLT();                    
@@ -552,8 +1354,14 @@ public class ControlUnit implements IClockCycle {
                     break;
                 case ControlUnit.OPCODE_NOT:
                     this.executeOpcodeNOT();
-
-                 case ControlUnit.OPCODE_TRR:
+                    break;
+                case ControlUnit.OPCODE_MLT:
+                    this.executeOpcodeMLT();
+                    break;
+                case ControlUnit.OPCODE_DVD:
+                    this.executeOpcodeDVD();
+                    break;
+                case ControlUnit.OPCODE_TRR:
                     this.executeOpcodeTRR();
                     break;
                 case ControlUnit.OPCODE_AND:
@@ -564,15 +1372,23 @@ public class ControlUnit implements IClockCycle {
             }            
             this.microState++; 
         } else { // MICROSTATE_EXECUTE_COMPLETE            
+            int pc = this.getProgramCounter().getUnsignedValue();
+            boolean taken = (this.nextProgramCounter != null);
             if(this.nextProgramCounter==null){
                 // Micro-N: c(PC) + 1 -> PC  --- Increment PC
-                System.out.println("Micro-Final: c(PC) + 1 -> PC (Increment PC)");
+                this.trace("Micro-Final: c(PC) + 1 -> PC (Increment PC)");
                 this.getProgramCounter().setValue(this.getProgramCounter().getUnsignedValue() + 1); 
             } else { 
                 // Micro-N PC <- tempPC (internal to our simulator)
                 this.getProgramCounter().setValue(this.nextProgramCounter.getUnsignedValue());
+                this.nextProgramCounter = null;
             }
-            System.out.println("-- PC: "+this.getProgramCounter());
+            Instruction retired = Instruction.decode(this.getIR().getRawValue());
+            boolean data = retired.accessesData() && this.effectiveAddress != null;
+            this.recordRetirement(retired, pc, this.getProgramCounter().getUnsignedValue(), taken,
+                    data ? this.effectiveAddress.getUnsignedValue() : -1,
+                    data ? this.memory.getMBR().getRawValue() : 0);
+            this.trace("-- PC: "+this.getProgramCounter());
             this.state = ControlUnit.STATE_NONE;     
             this.microState = null;
             this.signalBlockingMicroFunction();            
@@ -593,26 +1409,26 @@ public class ControlUnit implements IClockCycle {
 
             case 0:
                 // Micro-6: MAR <- EA
-                System.out.println("Micro-6: MAR <- EA");
+                this.trace("Micro-6: MAR <- EA");
                 memory.setMAR(this.effectiveAddress);  
                 this.signalBlockingMicroFunction();
                 break;
                 
             case 1:
                 // Micro-7: MBR <- M(MAR)
-                System.out.println("Micro-7: MBR <- M(MAR)");
+                this.trace("Micro-7: MBR <- M(MAR)");
                 // do nothing, done by memory
                 break;
 
             case 2:
                 // Micro-8: RF(RFI) <- MBR   
-                System.out.println("Micro-8: RF(RFI) <- MBR");
+                this.trace("Micro-8: RF(RFI) <- MBR");
                 int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
                 this.setGeneralPurposeRegister(RFI, this.memory.getMBR());
 
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                System.out.println("COMPLETED INSTRUCTION: LDR - rfi["+RFI+"] is now: "+ this.memory.getMBR());
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION: LDR - rfi["+RFI+"] is now: "+ this.memory.getMBR());
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
                 
                 this.signalMicroStateExecutionComplete();
                 break;            
@@ -630,23 +1446,25 @@ public class ControlUnit implements IClockCycle {
             
             case 0:
               // Micro-6: MAR <- EA
-              System.out.println("Micro-6: MAR <- EA");
+              this.trace("Micro-6: MAR <- EA");
               memory.setMAR(this.effectiveAddress);         
               
               // Micro-7: MBR <- RF(RFI)
-              System.out.println("Micro-7: MBR <- RF(RFI)");
+              this.trace("Micro-7: MBR <- RF(RFI)");
               int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
               memory.setMBR(this.getGeneralPurposeRegister(RFI));
               this.signalBlockingMicroFunction();
             break;
                 
             case 1:   
-              System.out.println("Micro-8: M(MAR) <- MBR");
+              this.trace("Micro-8: M(MAR) <- MBR");
               // do nothing, done by memory in this clock cycle    
               
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-              System.out.println("COMPLETED INSTRUCTION: STR - M(MAR): "+ this.memory.engineerFetchByMemoryLocation(this.effectiveAddress));
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              if(this.trace){
+                  this.trace("COMPLETED INSTRUCTION: STR - M(MAR): "+ this.memory.engineerFetchByMemoryLocation(this.effectiveAddress));
+              }
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
               
               this.signalMicroStateExecutionComplete();
             break;
@@ -657,35 +1475,16 @@ public class ControlUnit implements IClockCycle {
      * Execute Load Register with Address
      */
     private void executeOpcodeLDA() {
-        switch(this.microState){
-                
-            case 0:
-                // Micro-6: MAR <- EA
-                System.out.println("Micro-6: MAR <- EA");
-                memory.setMAR(this.effectiveAddress);    
-                this.signalBlockingMicroFunction();
-                break;
-                
-            case 1:
-                // Micro-7: MBR <- M(MAR)
-                System.out.println("Micro-7: MBR <- M(MAR)");
-                // do nothing, done by memory
-            break;
-                
-            case 2:
-                // Micro-8: RF(RFI) <- MBR   
-                System.out.println("Micro-8: RF(RFI) <- MBR");
-                int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
-                this.setGeneralPurposeRegister(RFI, this.memory.getMBR());
+        // Micro-6: RF(RFI) <- EA   (the address itself, no memory access)
+        this.trace("Micro-6: RF(RFI) <- EA");
+        int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
+        this.setGeneralPurposeRegister(RFI, new Word(this.effectiveAddress.getUnsignedValue()));
 
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                System.out.println("COMPLETED INSTRUCTION: LDA - rfi["+RFI+"] is now: "+ this.memory.getMBR());
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                
-                this.signalMicroStateExecutionComplete();
+        this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+        this.trace("COMPLETED INSTRUCTION: LDA - rfi["+RFI+"] is now: "+ this.getGeneralPurposeRegister(RFI));
+        this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
 
-            break;            
-        }
+        this.signalMicroStateExecutionComplete();
     }
     
     /**
@@ -695,14 +1494,14 @@ public class ControlUnit implements IClockCycle {
         switch(this.microState){            
             case 0:
               // Micro-6: MAR <- EA
-              System.out.println("Micro-6: MAR<-EA");
+              this.trace("Micro-6: MAR<-EA");
               memory.setMAR(this.effectiveAddress);
               this.signalBlockingMicroFunction();
             break;
                 
             case 1:
               // Micro-7: MBR <- M(MAR)
-              System.out.println("Micro-7: MBR <- M(MAR)");
+              this.trace("Micro-7: MBR <- M(MAR)");
               // do nothing, done by memory
             break;
 
@@ -711,9 +1510,11 @@ public class ControlUnit implements IClockCycle {
               int XFI = this.instructionRegisterDecoded.get("xfi").getUnsignedValue();
               this.setIndexRegister(XFI, this.memory.getMBR());
               
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-              System.out.println("COMPLETED INSTRUCTION: LDX - M(MAR): "+ this.memory.engineerFetchByMemoryLocation(this.effectiveAddress));
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              if(this.trace){
+                  this.trace("COMPLETED INSTRUCTION: LDX - M(MAR): "+ this.memory.engineerFetchByMemoryLocation(this.effectiveAddress));
+              }
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
                 
               this.signalMicroStateExecutionComplete();
             break;
@@ -727,26 +1528,28 @@ public class ControlUnit implements IClockCycle {
         switch(this.microState){
             case 0:
               // Micro-6: MAR <- EA
-              System.out.println("Micro-6: MAR <- EA");
+              this.trace("Micro-6: MAR <- EA");
               memory.setMAR(this.effectiveAddress);
               this.signalBlockingMicroFunction();
             break;
                 
             case 1:
               // Micro 7: MBR <- c(XFI)
-              System.out.println("Micro 7: MBR <- c(XFI)");
+              this.trace("Micro 7: MBR <- c(XFI)");
               int XFI = this.instructionRegisterDecoded.get("xfi").getUnsignedValue();
               memory.setMBR(this.getIndexRegister(XFI));
             break;
                 
             case 2:
               // Micro 8: M(MAR) <- MBR
-              System.out.println("Micro 8: M(MAR) <- MBR");
+              this.trace("Micro 8: M(MAR) <- MBR");
               // do nothing, done by memory
                 
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-              System.out.println("COMPLETED INSTRUCTION: STX - M(MAR): "+ this.memory.engineerFetchByMemoryLocation(this.effectiveAddress));
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              if(this.trace){
+                  this.trace("COMPLETED INSTRUCTION: STX - M(MAR): "+ this.memory.engineerFetchByMemoryLocation(this.effectiveAddress));
+              }
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
                 
               this.signalMicroStateExecutionComplete();
             break;
@@ -761,51 +1564,51 @@ public class ControlUnit implements IClockCycle {
             
             case 0:
               // Micro-6: MAR <- EA
-              System.out.println("Micro-6: MAR <- EA");
+              this.trace("Micro-6: MAR <- EA");
               memory.setMAR(this.effectiveAddress);
               this.signalBlockingMicroFunction();
             break;
                 
             case 1:
               // Micro-7: MBR <- M(MAR)
-              System.out.println("Micro-7: MBR <- M(MAR)");
+              this.trace("Micro-7: MBR <- M(MAR)");
               // do nothing, done by memory
             break;
                 
             case 2:
               // Micro-8: OP1 <- MBR
-              System.out.println("Micro-8: OP1 <- MBR");
+              this.trace("Micro-8: OP1 <- MBR");
               alu.setOperand1(this.memory.getMBR());  // This might be possible to run in cycle 1
             break;
                 
             case 3:
               // Micro-9: OP2 <- RF(RFI)
-              System.out.println("Micro-9: OP2 <- RF(RFI)");
+              this.trace("Micro-9: OP2 <- RF(RFI)");
               int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
               alu.setOperand2(this.getGeneralPurposeRegister(RFI));
             break;
                 
             case 4:
               // Micro-10: CTRL <- OPCODE
-              System.out.println("Micro-10: CTRL <- OPCODE");  
+              this.trace("Micro-10: CTRL <- OPCODE");  
               alu.setControl(ArithmeticLogicUnit.CONTROL_ADD); // @TODO: Should this come from IR somehow?
               alu.signalReadyToStartComputation();
             break;
                 
             case 5:
               // Micro-11: RES <- c(OP1) + c(OP2)
-              System.out.println("Micro-11: RES <- c(OP1) + c(OP2)");
+              this.trace("Micro-11: RES <- c(OP1) + c(OP2)");
               // Do nothing. (occurs automatically one clock cycle after signaled ready to compute)
             break;
                 
             case 6:
               // Micro-12: RF(RFI) <- RES
-              System.out.println("Micro-12: RF(RFI) <- RES");
+              this.trace("Micro-12: RF(RFI) <- RES");
               RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue(); 
               this.setGeneralPurposeRegister(RFI, new Word(alu.getResult()));
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-              System.out.println("COMPLETED INSTRUCTION: AMR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              this.trace("COMPLETED INSTRUCTION: AMR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
                 
               this.signalMicroStateExecutionComplete();
             break;          
@@ -820,33 +1623,33 @@ public class ControlUnit implements IClockCycle {
             
             case 0:
               // Micro-6: MAR <- EA
-              System.out.println("Micro-6: MAR <- EA");
+              this.trace("Micro-6: MAR <- EA");
               memory.setMAR(this.effectiveAddress);
               this.signalBlockingMicroFunction();
             break;
                 
             case 1:
               // Micro-7: MBR <- M(MAR)
-              System.out.println("Micro-7: MBR <- M(MAR)");
+              this.trace("Micro-7: MBR <- M(MAR)");
               // do nothing, done by memory
             break;
                 
             case 3:
-              // Micro-8: OP1 <- MBR
-              System.out.println("Micro-8: OP1 <- MBR");
-              alu.setOperand1(this.memory.getMBR());
+              // Micro-8: OP2 <- MBR
+              this.trace("Micro-8: OP2 <- MBR");
+              alu.setOperand2(this.memory.getMBR());
             break;
                 
             case 4:
-              // Micro-9: OP2 <- RF(RFI)
-              System.out.println("Micro-9: OP2 <- RF(RFI)");
+              // Micro-9: OP1 <- RF(RFI)   (c(r) - c(EA))
+              this.trace("Micro-9: OP1 <- RF(RFI)");
               int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
-              alu.setOperand2(this.getGeneralPurposeRegister(RFI));
+              alu.setOperand1(this.getGeneralPurposeRegister(RFI));
             break;
                 
             case 5:
               // Micro-10: CTRL <- OPCODE
-              System.out.println("Micro-10: CTRL <- OPCODE");  
+              this.trace("Micro-10: CTRL <- OPCODE");  
               alu.setControl(ArithmeticLogicUnit.CONTROL_SUBTRACT); // @TODO: Should this come from IR somehow?
               alu.signalReadyToStartComputation();
             break;
@@ -858,13 +1661,13 @@ public class ControlUnit implements IClockCycle {
                 
             case 7:
               // Micro-12: RF(RFI) <- RES
-              System.out.println("Micro-12: RF(RFI) <- RES");
+              this.trace("Micro-12: RF(RFI) <- RES");
               RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
               
               this.setGeneralPurposeRegister(RFI, new Word(alu.getResult()));
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-              System.out.println("COMPLETED INSTRUCTION: SMR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
-              System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+              this.trace("COMPLETED INSTRUCTION: SMR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
+              this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
                 
               this.signalMicroStateExecutionComplete();
             break;          
@@ -880,37 +1683,37 @@ public class ControlUnit implements IClockCycle {
                 // Micro-6: OP1 <- RF(RFI)                
                 int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();                
                 alu.setOperand1(this.getGeneralPurposeRegister(RFI));
-                System.out.println("Micro-6: OP1 <- RF(RFI) - "+alu.getOperand1());
+                this.trace("Micro-6: OP1 <- RF(RFI) - "+alu.getOperand1());
             break;
                         
             case 1:
                 // Micro-7: OP2 <- Immed   (Immed is stored in ADDR)                
                 alu.setOperand2(this.instructionRegisterDecoded.get("address"));
-                System.out.println("Micro-7: OP2 <- Immed - " + alu.getOperand2());
+                this.trace("Micro-7: OP2 <- Immed - " + alu.getOperand2());
             break;
                 
             case 2:
                 // Micro-8: CTRL <- OPCODE
-                System.out.println("Micro-8: CTRL <- OPCODE");  
+                this.trace("Micro-8: CTRL <- OPCODE");  
                 alu.setControl(ArithmeticLogicUnit.CONTROL_ADD);
                 alu.signalReadyToStartComputation();
             break;
                 
             case 3:
                 // Micro-9: RES <- c(OP1) + c(OP2)
-                System.out.println("Micro-9: RES <- c(OP1) + c(OP2)");
+                this.trace("Micro-9: RES <- c(OP1) + c(OP2)");
                 // Do nothing. (occurs automatically one clock cycle after signaled ready to compute)
             break;
                 
             case 4:
                 // Micro-10: RF(RFI) <- RES
-                System.out.println("Micro-10: RF(RFI) <- RES - "+alu.getResult());
+                this.trace("Micro-10: RF(RFI) <- RES - "+alu.getResult());
                 RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
                
                 this.setGeneralPurposeRegister(RFI, new Word(alu.getResult()));
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                System.out.println("COMPLETED INSTRUCTION: AIR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION: AIR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
                 
                 this.signalMicroStateExecutionComplete();
             break;          
@@ -926,37 +1729,37 @@ public class ControlUnit implements IClockCycle {
                 // Micro-6: OP1 <- RF(RFI)                
                 int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
                 alu.setOperand1(this.getGeneralPurposeRegister(RFI));
-                System.out.println("Micro-6: OP1 <- RF(RFI) - "+alu.getOperand1());
+                this.trace("Micro-6: OP1 <- RF(RFI) - "+alu.getOperand1());
             break;
                         
             case 1:
                 // Micro-7: OP2 <- Immed  (Immed is stored in ADDR)                
                 alu.setOperand2(this.instructionRegisterDecoded.get("address"));
-                System.out.println("Micro-7: OP2 <- Immed - "+ alu.getOperand2());
+                this.trace("Micro-7: OP2 <- Immed - "+ alu.getOperand2());
             break;
                 
             case 2:
                 // Micro-8: CTRL <- OPCODE
-                System.out.println("Micro-8: CTRL <- OPCODE");  
+                this.trace("Micro-8: CTRL <- OPCODE");  
                 alu.setControl(ArithmeticLogicUnit.CONTROL_SUBTRACT);
                 alu.signalReadyToStartComputation();
             break;
                 
             case 3:
                 // Micro-9: RES <- c(OP1) - c(OP2)
-                System.out.println("Micro-9: RES <- c(OP1) - c(OP2)");
+                this.trace("Micro-9: RES <- c(OP1) - c(OP2)");
                 // Do nothing. (occurs automatically one clock cycle after signaled ready to compute)
             break;
                 
             case 4:
                 // Micro-10: RF(RFI) <- RES
-                System.out.println("Micro-10: RF(RFI) <- RES - "+alu.getResult());
+                this.trace("Micro-10: RF(RFI) <- RES - "+alu.getResult());
                 RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
                
                 this.setGeneralPurposeRegister(RFI, new Word(alu.getResult()));
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                System.out.println("COMPLETED INSTRUCTION: SIR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION: SIR - RF("+RFI+"): "+  this.getGeneralPurposeRegister(RFI));
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
                 
                 this.signalMicroStateExecutionComplete();
             break;          
@@ -974,11 +1777,11 @@ public class ControlUnit implements IClockCycle {
     private void executeOpcodeJMP(){
         
         this.nextProgramCounter=new Unit(13,this.effectiveAddress.getUnsignedValue());
-         System.out.println("Micro-6: PC <- EA - "+this.nextProgramCounter);
+         this.trace("Micro-6: PC <- EA - "+this.nextProgramCounter);
             this.signalMicroStateExecutionComplete();
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-            System.out.println("COMPLETED INSTRUCTION: JMP - IND="+this.instructionRegisterDecoded.get("index").getUnsignedValue()+": " + this.nextProgramCounter);
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            this.trace("COMPLETED INSTRUCTION: JMP - IND="+this.instructionRegisterDecoded.get("index").getUnsignedValue()+": " + this.nextProgramCounter);
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
      
     }
     
@@ -993,20 +1796,20 @@ public class ControlUnit implements IClockCycle {
         if(this.getGeneralPurposeRegister(RFI).getUnsignedValue()==0)
         { // c(r)==0, jump
          this.nextProgramCounter=new Unit(13,this.effectiveAddress.getUnsignedValue());
-         System.out.println("Micro-6: PC <- EA - "+this.nextProgramCounter);              
+         this.trace("Micro-6: PC <- EA - "+this.nextProgramCounter);              
          this.signalMicroStateExecutionComplete();
-         System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-         System.out.println("COMPLETED INSTRUCTION: JZ - R("+RFI+") was Zero -- JUMPING: "+this.nextProgramCounter);
-         System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
+         this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+         this.trace("COMPLETED INSTRUCTION: JZ - R("+RFI+") was Zero -- JUMPING: "+this.nextProgramCounter);
+         this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
            
         }
         else
         {
              // not zero->PC++
             this.signalMicroStateExecutionComplete();
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-            System.out.println("COMPLETED INSTRUCTION: JZ - R("+RFI+") was NOT Zero -- Continuing.");
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            this.trace("COMPLETED INSTRUCTION: JZ - R("+RFI+") was NOT Zero -- Continuing.");
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
             
         }
     }
@@ -1025,20 +1828,20 @@ public class ControlUnit implements IClockCycle {
         if(this.getGeneralPurposeRegister(RFI).getUnsignedValue()!=0)
         { // c(r)!=0, jump
          this.nextProgramCounter=new Unit(13,this.effectiveAddress.getUnsignedValue());
-         System.out.println("Micro-6: PC <- EA - "+this.nextProgramCounter);              
+         this.trace("Micro-6: PC <- EA - "+this.nextProgramCounter);              
          this.signalMicroStateExecutionComplete();
-         System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-         System.out.println("COMPLETED INSTRUCTION: JNE - R("+RFI+") was NOT Zero -- JUMPING: "+this.nextProgramCounter);
-         System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
+         this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+         this.trace("COMPLETED INSTRUCTION: JNE - R("+RFI+") was NOT Zero -- JUMPING: "+this.nextProgramCounter);
+         this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
            
         }
         else
         {
              // not zero->PC++
             this.signalMicroStateExecutionComplete();
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-            System.out.println("COMPLETED INSTRUCTION: JNE - R("+RFI+") was  Zero -- Continuing.");
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            this.trace("COMPLETED INSTRUCTION: JNE - R("+RFI+") was  Zero -- Continuing.");
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
             
         }
     }
@@ -1057,27 +1860,27 @@ public class ControlUnit implements IClockCycle {
         
         switch(this.microState){
             case 0: // case 0, we decrement c(r)
-                System.out.println("Micro-6:RF("+RFI+")=c("+RFI+")-1");  
+                this.trace("Micro-6:RF("+RFI+")=c("+RFI+")-1");  
                 this.setGeneralPurposeRegister(RFI, new Word(this.getGeneralPurposeRegister(RFI).getUnsignedValue()-1));
                 break;
             default: // case >= 1
-                if(this.getGeneralPurposeRegister(RFI).getUnsignedValue()>0)
+                if(this.getGeneralPurposeRegister(RFI).getSignedValue()>0)
                 { // c(r)>0, jump
                     this.nextProgramCounter=new Unit(13,this.effectiveAddress.getUnsignedValue());
-                    System.out.println("Micro-7: PC <- EA - "+this.nextProgramCounter);              
+                    this.trace("Micro-7: PC <- EA - "+this.nextProgramCounter);              
                     this.signalMicroStateExecutionComplete();
-                    System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                    System.out.println("COMPLETED INSTRUCTION: SOB - R("+RFI+") was GREATER than Zero after minus 1 -- JUMPING: "+this.nextProgramCounter);
-                    System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
+                    this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                    this.trace("COMPLETED INSTRUCTION: SOB - R("+RFI+") was GREATER than Zero after minus 1 -- JUMPING: "+this.nextProgramCounter);
+                    this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
            
                 }
                 else
                 {
                     // not zero->PC++
                     this.signalMicroStateExecutionComplete();
-                    System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                    System.out.println("COMPLETED INSTRUCTION: SOB - R("+RFI+") was NOT GREATER than Zero after minus 1  -- Continuing.");
-                    System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
+                    this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                    this.trace("COMPLETED INSTRUCTION: SOB - R("+RFI+") was NOT GREATER than Zero after minus 1  -- Continuing.");
+                    this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
             
                 }
                 
@@ -1094,23 +1897,23 @@ public class ControlUnit implements IClockCycle {
    private void executeOpcodeJGE()
    {
         int RFI = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();
-        if(this.getGeneralPurposeRegister(RFI).getUnsignedValue()>=0)
+        if(this.getGeneralPurposeRegister(RFI).getSignedValue()>=0)
         { // c(r)>=0, jump
          this.nextProgramCounter=new Unit(13,this.effectiveAddress.getUnsignedValue());
-         System.out.println("Micro-6: PC <- EA - "+this.nextProgramCounter);              
+         this.trace("Micro-6: PC <- EA - "+this.nextProgramCounter);              
          this.signalMicroStateExecutionComplete();
-         System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-         System.out.println("COMPLETED INSTRUCTION: JGE - R("+RFI+") was NOT LESS than Zero -- JUMPING: "+this.nextProgramCounter);
-         System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
+         this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+         this.trace("COMPLETED INSTRUCTION: JGE - R("+RFI+") was NOT LESS than Zero -- JUMPING: "+this.nextProgramCounter);
+         this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!"); 
            
         }
         else
         {
              // not zero->PC++
             this.signalMicroStateExecutionComplete();
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-            System.out.println("COMPLETED INSTRUCTION: JGE - R("+RFI+") was LESS Zero -- Continuing.");
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            this.trace("COMPLETED INSTRUCTION: JGE - R("+RFI+") was LESS Zero -- Continuing.");
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
             
         }
     } 
@@ -1126,16 +1929,16 @@ public class ControlUnit implements IClockCycle {
         int CC = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();         //CC replaces RFI for the JCC instruction.
         if(this.getConditionCode(CC)==1){
             this.nextProgramCounter=new Unit(13,this.effectiveAddress.getUnsignedValue());
-            System.out.println("Micro-6: PC <- EA - "+this.nextProgramCounter);              
+            this.trace("Micro-6: PC <- EA - "+this.nextProgramCounter);              
             this.signalMicroStateExecutionComplete();
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-            System.out.println("COMPLETED INSTRUCTION: JCC("+CC+") - Jumping: "+this.nextProgramCounter);
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");              
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            this.trace("COMPLETED INSTRUCTION: JCC("+CC+") - Jumping: "+this.nextProgramCounter);
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");              
         } else { // not zero->PC++             CC != 1
             this.signalMicroStateExecutionComplete();
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-            System.out.println("COMPLETED INSTRUCTION: JCC("+CC+") - Not Jumping.");
-            System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+            this.trace("COMPLETED INSTRUCTION: JCC("+CC+") - Not Jumping.");
+            this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
         }
             
     }
@@ -1153,17 +1956,17 @@ public class ControlUnit implements IClockCycle {
             case 0:
                 // R0 <- Immed (Immed is stored in ADDR)        
                 this.setGeneralPurposeRegister(0, new Word(this.instructionRegisterDecoded.get("address")));
-                System.out.println("Micro-6: R0 <- Immediate");
+                this.trace("Micro-6: R0 <- Immediate");
             break;
                 
             case 1:
                 // PC <- c(R3)
                 this.nextProgramCounter = new Unit(13, this.getGeneralPurposeRegister(3).getUnsignedValue());
-                System.out.println("Micro-7: PC <- c(R3)");
+                this.trace("Micro-7: PC <- c(R3)");
             
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                System.out.println("COMPLETED INSTRUCTION: RFS - Ret: "+this.getGeneralPurposeRegister(0)+" - Jump: "+  this.nextProgramCounter);
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION: RFS - Ret: "+this.getGeneralPurposeRegister(0)+" - Jump: "+  this.nextProgramCounter);
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
                 
                 this.signalMicroStateExecutionComplete();
             break;          
@@ -1181,7 +1984,7 @@ public class ControlUnit implements IClockCycle {
         switch(this.microState){
             case 0:
                 // RFI1 <- 3
-                System.out.println("Micro-6: RFI1 <- 3");
+                this.trace("Micro-6: RFI1 <- 3");
                  
             break;
                 
@@ -1189,17 +1992,17 @@ public class ControlUnit implements IClockCycle {
                 //RF(RFI1) <- PC + 1
                 int RFI=3;
                 this.setGeneralPurposeRegister(RFI, new Word(this.getProgramCounter().getUnsignedValue()+1));
-                System.out.println("Micro-7: RF(RFI1) <- PC + 1");
+                this.trace("Micro-7: RF(RFI1) <- PC + 1");
             break;
                 
             case 2:
                 //PC<-EA
                  this.nextProgramCounter=new Unit(13,this.effectiveAddress.getUnsignedValue());
-                 System.out.println("Micro-8: PC <- EA - "+this.nextProgramCounter);
+                 this.trace("Micro-8: PC <- EA - "+this.nextProgramCounter);
                  
                 break;
             case 3:
-                System.out.println("Now Store the pointer of the Arguments into R0 here");
+                this.trace("Now Store the pointer of the Arguments into R0 here");
                 this.signalMicroStateExecutionComplete();
                 break;
                 
@@ -1213,21 +2016,42 @@ public class ControlUnit implements IClockCycle {
      * XX, XXX are ignored
      * Count = 0…20
      * If Count = 0, no shift occurs
+     * Decode skips the EA step, so the ALU's result step leaves the cycle
+     * count as it was when the shift ran in place.
      */
     private void executeOpcodeSRC(){
         int RFI = this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
         
-        int algorithmicLogical = this.getIR().decomposeByIndex(10).getUnsignedValue();
-        int leftRight = this.getIR().decomposeByIndex(11).getUnsignedValue();
-        int count = this.getIR().decomposeByOffset(15, 19).getUnsignedValue();
-        
-        // Shift functionality is implemented in Unit
-        this.getGeneralPurposeRegister(RFI).shiftByCount(leftRight, count, algorithmicLogical);
+        switch(this.microState){
+            case 0:
+                // Micro-6: OP1 <- RF(RFI), OP2 <- Count, CTRL <- OPCODE
+                int algorithmicLogical = this.getIR().decomposeByIndex(10).getUnsignedValue();
+                int leftRight = this.getIR().decomposeByIndex(11).getUnsignedValue();
+                
+                alu.setOperand1(this.getGeneralPurposeRegister(RFI));
+                alu.setOperand2(this.getIR().decomposeByOffset(15, 19));
+                if(leftRight==1){
+                    alu.setControl(ArithmeticLogicUnit.CONTROL_SHIFT_LEFT);  // logical / algorithmic are identical
+                } else if(algorithmicLogical==1){
+                    alu.setControl(ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_LOGICAL);
+                } else {
+                    alu.setControl(ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_ARITHMETIC);
+                }
+                this.trace("Micro-6: OP1 <- RF("+RFI+"), OP2 <- Count, CTRL <- OPCODE");
+                alu.signalReadyToStartComputation();
+                break;
+                
+            case 1:
+                // Micro-7: RF(RFI) <- RES
+                this.setGeneralPurposeRegister(RFI, new Word(alu.getResult()));
         
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION: SRC - Shift Register "+RFI+" "+((leftRight==1) ? "Left" : "Right") +" "+((algorithmicLogical==1) ? "Logical" : "Algorithmic")+" by "+count+": "+this.getGeneralPurposeRegister(RFI));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                                 
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION: SRC - Shift Register "+RFI+": "+this.getGeneralPurposeRegister(RFI));
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                                 
         
+                this.signalMicroStateExecutionComplete();
+                break;
+        }
     }
     
     /**
@@ -1240,15 +2064,29 @@ public class ControlUnit implements IClockCycle {
     private void executeOpcodeRRC(){
         int RFI = this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
         
-        int leftRight = this.getIR().decomposeByIndex(11).getUnsignedValue();
-        int count = this.getIR().decomposeByOffset(15, 19).getUnsignedValue();
+        switch(this.microState){
+            case 0:
+                // Micro-6: OP1 <- RF(RFI), OP2 <- Count, CTRL <- OPCODE
+                int leftRight = this.getIR().decomposeByIndex(11).getUnsignedValue();
+                
+                alu.setOperand1(this.getGeneralPurposeRegister(RFI));
+                alu.setOperand2(this.getIR().decomposeByOffset(15, 19));
+                alu.setControl((leftRight==1) ? ArithmeticLogicUnit.CONTROL_ROTATE_LEFT : ArithmeticLogicUnit.CONTROL_ROTATE_RIGHT);
+                this.trace("Micro-6: OP1 <- RF("+RFI+"), OP2 <- Count, CTRL <- OPCODE");
+                alu.signalReadyToStartComputation();
+                break;
+                
+            case 1:
+                // Micro-7: RF(RFI) <- RES
+                this.setGeneralPurposeRegister(RFI, new Word(alu.getResult()));
         
-        // Rotate functionality is implemented in Unit
-        this.getGeneralPurposeRegister(RFI).rotateByCount(leftRight, count);
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION: RRC - Rotate Register "+RFI+": "+this.getGeneralPurposeRegister(RFI));
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");            
         
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION: RRC - Rotate Register "+RFI+" "+((leftRight==1) ? "Left" : "Right") +" by "+count+": "+this.getGeneralPurposeRegister(RFI));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");            
+                this.signalMicroStateExecutionComplete();
+                break;
+        }
     }
     /*
     Test the Equality of Register and Register
@@ -1269,10 +2107,42 @@ If c(rx) = c(ry), set cc(4) <- 1; else, cc(4) <- 0
         {
             this.unsetCondition(3);
         }
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION:TRR RF("+RFI1+")and RF("+RFI2+")is "+((this.getConditionCode(3)==1)?"equal":"unequal")+"  CC is"+this.getConditionCode(3));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");      
+        this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+        this.trace("COMPLETED INSTRUCTION:TRR RF("+RFI1+")and RF("+RFI2+")is "+((this.getConditionCode(3)==1)?"equal":"unequal")+"  CC is"+this.getConditionCode(3));
+        this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");      
+        this.signalMicroStateExecutionComplete();
+    }
+    
+    /**
+     * Shared register-register ALU sequence (AND, ORR, NOT).
+     *  Micro-6: OP1 <- RF(RX), OP2 <- RF(RY), CTRL <- OPCODE
+     *  Micro-7: RF(RX) <- RES  (once the ALU's latency has elapsed)
+     * @param name mnemonic for the console
+     * @param control ArithmeticLogicUnit.CONTROL_*
+     */
+    private void executeRegisterRegisterALU(String name, int control){
+        int RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
+        int RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
+        
+        switch(this.microState){
+            case 0:
+                alu.setOperand1(this.getGeneralPurposeRegister(RFI1));
+                alu.setOperand2(this.getGeneralPurposeRegister(RFI2));
+                alu.setControl(control);
+                this.trace("Micro-6: OP1 <- RF("+RFI1+"), OP2 <- RF("+RFI2+"), CTRL <- OPCODE");
+                alu.signalReadyToStartComputation();
+                break;
+                
+            case 1:
+                this.setGeneralPurposeRegister(RFI1, new Word(alu.getResult()));
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION:"+name+" RF("+RFI1+"), RF("+RFI2+") is "+this.getGeneralPurposeRegister(RFI1).getBinaryString());
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");      
+                this.signalMicroStateExecutionComplete();
+                break;
+        }
     }
+    
     /*
     Logical And of Register and Register
 
@@ -1282,19 +2152,7 @@ c(rx) <- c(rx) AND c(ry)
     */
     private void executeOpcodeAND()
     {
-        int RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
-        int RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
-        Unit ContentOfRFI1=new Unit(13,this.getGeneralPurposeRegister(RFI1).getUnsignedValue());
-        Unit ContentOfRFI2=new Unit(13,this.getGeneralPurposeRegister(RFI2).getUnsignedValue());
-        alu.setOperand1(ContentOfRFI1);
-        alu.setOperand2(ContentOfRFI2);
-        alu.setControl(ArithmeticLogicUnit.CONTROL_AND);
-        alu.signalReadyToStartComputation();
-        this.setGeneralPurposeRegister(RFI1, new Word(alu.getResult()));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION:AND RF("+RFI1+"), RF("+RFI2+")is "+this.getGeneralPurposeRegister(RFI1).getBinaryString());
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");      
- 
+        this.executeRegisterRegisterALU("AND", ArithmeticLogicUnit.CONTROL_AND);
     }
     
     /**
@@ -1302,19 +2160,7 @@ c(rx) <- c(rx) AND c(ry)
      * c(rx) <- c(rx) OR c(ry)
      */
     private void executeOpcodeORR(){
-        Integer[] RFI1 = this.getIR().decomposeByOffset(6, 7).getBinaryArray();         //Get the contents of RFI as an integer array.
-        Integer[] RFI2 = this.getIR().decomposeByOffset(8, 9).getBinaryArray();         //Get the contents of RFI as an integer array. (XFI bits act as RFI)
-        int register = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();   //Get the register number as an integer.
-        
-        Integer[] RFI = uRef.logicalOR(RFI1, RFI2);                                     //Perform logical OR.
-        String res = uRef.IntArrayToBinaryString(RFI);                                  //Obtain Logical OR value as a string.
-        Unit result = uRef.UnitFromBinaryString(res);                                   //Conver the string to unit.
-        
-        this.setGeneralPurposeRegister(register, new Word(result));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION: ORR rx, ry");
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
-        this.signalMicroStateExecutionComplete();
+        this.executeRegisterRegisterALU("ORR", ArithmeticLogicUnit.CONTROL_OR);
     }
     
     /**
@@ -1323,148 +2169,64 @@ c(rx) <- c(rx) AND c(ry)
      * C(rx) <- NOT c(rx)
      */
     private void executeOpcodeNOT(){
-        Integer[] RFI = this.getIR().decomposeByOffset(6, 7).getBinaryArray();          //Get the contents of RFI as an integer array.
-        int register = this.instructionRegisterDecoded.get("rfi").getUnsignedValue();   //Get the register number as an integer.
-        
-        RFI = uRef.logicalNOT(RFI);                                                         //Perform Logical NOT.
-        String res = uRef.IntArrayToBinaryString(RFI);                                  //Obtain negated value as a string.
-        Unit result = uRef.UnitFromBinaryString(res);                                   //Conver the string to unit.
-        
-        this.setGeneralPurposeRegister(register, new Word(result));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION: NOT rx");
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");                                         
-        this.signalMicroStateExecutionComplete();
-        
+        this.executeRegisterRegisterALU("NOT", ArithmeticLogicUnit.CONTROL_NOT);
     }
     
     /**
-     * Multiply Register by Register
-     * rx, rx+1 <- c(rx) * c(ry)
+     * Shared multiply/divide sequence. rx must be 0 or 2.
+     *  Micro-6: OP1 <- RF(RX), OP2 <- RF(RY), CTRL <- OPCODE
+     *  Micro-7: MLT: RF(RX) <- RES2 (high), RF(RX+1) <- RES (low)
+     *           DVD: RF(RX) <- RES (quotient), RF(RX+1) <- RES2 (remainder)
+     *  (once the ALU's latency has elapsed)
+     * @param name mnemonic for the console
+     * @param control CONTROL_MULTIPLY / CONTROL_DIVIDE
      */
-    private void executeOpcodeMLT() {
-     /*    Integer RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
-        Integer RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
-        Unit contentOfRFI1=new Unit(13,this.getGeneralPurposeRegister(RFI1).getUnsignedValue());
-        Unit contentOfRFI2=new Unit(13,this.getGeneralPurposeRegister(RFI2).getUnsignedValue());
-        alu.setOperand1(contentOfRFI1);
-        alu.setOperand2(contentOfRFI2);
-        alu.setControl(ArithmeticLogicUnit.CONTROL_MULTIPLY);
-        alu.signalReadyToStartComputation();
-        this.setGeneralPurposeRegister(RFI1, new Word(alu.getResult()));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION:MLT RF("+RFI1+"), RF("+RFI2+")is "+this.getGeneralPurposeRegister(RFI1).getBinaryString());
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
-    */
+    private void executeMultiplyDivide(String name, int control){
+        int RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
+        int RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
+        
         switch(this.microState){
             case 0:
-                // Micro-6: OP1 <- RF(RFI1)                
-                Integer RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
-                Unit contentOfRFI1=new Unit(13,this.getGeneralPurposeRegister(RFI1).getUnsignedValue());
-                alu.setOperand1(contentOfRFI1);
-                System.out.println("Micro-6: OP1 <- RF(RFI1) - "+alu.getOperand1());
-            break;
-                        
-            case 1:
-                // Micro-7: OP2 <- RF(RFI2)   
-                Integer RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
-                Unit contentOfRFI2=new Unit(13,this.getGeneralPurposeRegister(RFI2).getUnsignedValue());
-                alu.setOperand2(contentOfRFI2);
-            break;
-                
-            case 2:
-                // Micro-8: CTRL <- OPCODE
-                System.out.println("Micro-8: CTRL <- OPCODE");
-                alu.setControl(ArithmeticLogicUnit.CONTROL_MULTIPLY);
+                alu.setOperand1(this.getGeneralPurposeRegister(RFI1));
+                alu.setOperand2(this.getGeneralPurposeRegister(RFI2));
+                alu.setControl(control);
+                this.trace("Micro-6: OP1 <- RF("+RFI1+"), OP2 <- RF("+RFI2+"), CTRL <- OPCODE");
                 alu.signalReadyToStartComputation();
-            break;
-                
-            case 3:
-                // Micro-9: RES <- c(OP1) * c(OP2)      
-                System.out.println("Micro-9: RES <- c(OP1) * c(OP2)");
-                // Do nothing. (occurs automatically one clock cycle after signaled ready to compute)
-            break;
+                break;
                 
-            case 4:
-                // Micro-10: RF(RFI1) <- RES
-                //           RF(RFI2) <- RES
-                System.out.println("Micro-10: RF(RFI1) <- RES - "+alu.getResult());
-                System.out.println("        : RF(RFI2) <- RES - "+alu.getResult());
-                RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
-                RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
-                this.setGeneralPurposeRegister(RFI1, new Word(alu.getResult()));
-                this.setGeneralPurposeRegister(RFI2, new Word(alu.getResult()));
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                System.out.println("COMPLETED INSTRUCTION:MLT RF("+RFI1+"), RF("+RFI2+")is "+this.getGeneralPurposeRegister(RFI1).getBinaryString());
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
+            case 1:
+                Word low = new Word(alu.getResult());
+                Word high = new Word(alu.getResultHigh());
+                if(control == ArithmeticLogicUnit.CONTROL_DIVIDE){
+                    high = new Word(alu.getResult());
+                    low = new Word(alu.getResultHigh());
+                }
+                this.setGeneralPurposeRegister(RFI1, high);
+                if(RFI1+1 < 4){     // rx must be 0 or 2; there is no R4
+                    this.setGeneralPurposeRegister(RFI1+1, low);
+                }
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
+                this.trace("COMPLETED INSTRUCTION:"+name+" RF("+RFI1+"), RF("+(RFI1+1)+") <- "+high.getBinaryString()+" "+low.getBinaryString());
+                this.trace("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
                 this.signalMicroStateExecutionComplete();
-            break;          
-        }  
+                break;
+        }
+    }
+    
+    /**
+     * Multiply Register by Register
+     * rx, rx+1 <- c(rx) * c(ry)   (rx: high word, rx+1: low word)
+     */
+    private void executeOpcodeMLT() {
+        this.executeMultiplyDivide("MLT", ArithmeticLogicUnit.CONTROL_MULTIPLY);
     }
     
     /**
      * Divide Register by Register
-     * rx, rx+1 <- c(rx) / c(ry)
+     * rx, rx+1 <- c(rx) / c(ry)   (rx: quotient, rx+1: remainder); DIVZERO if c(ry) = 0
      */
     private void executeOpcodeDVD() {
-        /*
-        Integer RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
-        Integer RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
-        Unit contentOfRFI1=new Unit(13,this.getGeneralPurposeRegister(RFI1).getUnsignedValue());
-        Unit contentOfRFI2=new Unit(13,this.getGeneralPurposeRegister(RFI2).getUnsignedValue());
-        alu.setOperand1(contentOfRFI1);
-        alu.setOperand2(contentOfRFI2);
-        alu.setControl(ArithmeticLogicUnit.CONTROL_DIVIDE);
-        alu.signalReadyToStartComputation();
-        this.setGeneralPurposeRegister(RFI1, new Word(alu.getResult()));
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        System.out.println("COMPLETED INSTRUCTION:DVD RF("+RFI1+"), RF("+RFI2+")is "+this.getGeneralPurposeRegister(RFI1).getBinaryString());
-        System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-        */
-        switch(this.microState){
-            case 0:
-                // Micro-6: OP1 <- RF(RFI1)                
-                Integer RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
-                Unit contentOfRFI1=new Unit(13,this.getGeneralPurposeRegister(RFI1).getUnsignedValue());
-                alu.setOperand1(contentOfRFI1);
-                System.out.println("Micro-6: OP1 <- RF(RFI1) - "+alu.getOperand1());
-            break;
-                        
-            case 1:
-                // Micro-7: OP2 <- RF(RFI2)   
-                Integer RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
-                Unit contentOfRFI2=new Unit(13,this.getGeneralPurposeRegister(RFI2).getUnsignedValue());
-                alu.setOperand2(contentOfRFI2);
-            break;
-                
-            case 2:
-                // Micro-8: CTRL <- OPCODE
-                System.out.println("Micro-8: CTRL <- OPCODE");
-                alu.setControl(ArithmeticLogicUnit.CONTROL_DIVIDE);
-                alu.signalReadyToStartComputation();
-            break;
-                
-            case 3:
-                // Micro-9: RES <- c(OP1) * c(OP2)      
-                System.out.println("Micro-9: RES <- c(OP1) / c(OP2)");
-                // Do nothing. (occurs automatically one clock cycle after signaled ready to compute)
-            break;
-                
-            case 4:
-                // Micro-10: RF(RFI1) <- RES
-                //           RF(RFI2) <- RES
-                System.out.println("Micro-10: RF(RFI1) <- RES - "+alu.getResult());
-                System.out.println("        : RF(RFI2) <- RES - "+alu.getResult());
-                RFI1=this.getIR().decomposeByOffset(6, 7).getUnsignedValue();
-                RFI2=this.getIR().decomposeByOffset(8, 9).getUnsignedValue();
-                this.setGeneralPurposeRegister(RFI1, new Word(alu.getResult()));
-                this.setGeneralPurposeRegister(RFI2, new Word(alu.getResult()));
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");
-                System.out.println("COMPLETED INSTRUCTION:DVD RF("+RFI1+"), RF("+RFI2+")is "+this.getGeneralPurposeRegister(RFI1).getBinaryString());
-                System.out.println("!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!!");  
-                this.signalMicroStateExecutionComplete();
-            break;          
-        }  
+        this.executeMultiplyDivide("DVD", ArithmeticLogicUnit.CONTROL_DIVIDE);
     }
         
     /**
@@ -0,0 +1,353 @@
+package computersimulator.cpu;
+
+/**
+ * An expression over the machine state, for conditional breakpoints and
+ * tracepoints (see Breakpoints), such as
+ *     R2 == 0 && c(X1+5) > 100
+ * It is parsed once into a tree of nodes over the primitive register file
+ * (constants folded), so evaluating it at an armed PC is a few virtual calls.
+ *
+ * Operands:
+ *   R0-R3     general purpose registers, signed 20-bit
+ *   X1-X3     index registers
+ *   CC        condition code bits
+ *   PC        address of the instruction about to run
+ *   c(e)      contents of the word at address e, signed 20-bit (0 beyond
+ *             the installed memory); read as the CPU would see it, but
+ *             without touching watchpoints, caches or statistics
+ *   123 0x7B  decimal and hex constants
+ * Operators, loosest first, C precedence and 32-bit int arithmetic:
+ *   ||  &&  |  ^  &  == !=  < <= > >=  << >>  + -  * / %  unary - ! ~
+ * Comparisons and logic give 1 or 0; a condition holds when it is not 0.
+ * Division by zero gives 0.
+ */
+public class DebugExpression {
+
+    /**
+     * A node of the tree.
+     */
+    private abstract static class Node {
+        abstract int evaluate(ControlUnit cpu, int pc);
+
+        boolean isConstant() {
+            return false;
+        }
+    }
+
+    private static class Constant extends Node {
+        final int value;
+
+        Constant(int value) {
+            this.value = value;
+        }
+
+        @Override
+        int evaluate(ControlUnit cpu, int pc) {
+            return this.value;
+        }
+
+        @Override
+        boolean isConstant() {
+            return true;
+        }
+    }
+
+    private static class Register extends Node {
+        final int register;
+
+        Register(int register) {
+            this.register = register;
+        }
+
+        @Override
+        int evaluate(ControlUnit cpu, int pc) {
+            int value = cpu.getRegisterValue(this.register);
+            return (this.register < Instruction.REGISTER_X1) ? (value << 12) >> 12 : value;
+        }
+    }
+
+    private static class ProgramCounter extends Node {
+        @Override
+        int evaluate(ControlUnit cpu, int pc) {
+            return pc;
+        }
+    }
+
+    private static class Contents extends Node {
+        final Node address;
+
+        Contents(Node address) {
+            this.address = address;
+        }
+
+        @Override
+        int evaluate(ControlUnit cpu, int pc) {
+            return (cpu.getMemory().peekWord(this.address.evaluate(cpu, pc)) << 12) >> 12;
+        }
+    }
+
+    private static class Unary extends Node {
+        final char operator;
+        final Node operand;
+
+        Unary(char operator, Node operand) {
+            this.operator = operator;
+            this.operand = operand;
+        }
+
+        @Override
+        int evaluate(ControlUnit cpu, int pc) {
+            int value = this.operand.evaluate(cpu, pc);
+            switch(this.operator){
+                case '-':
+                    return -value;
+                case '!':
+                    return (value == 0) ? 1 : 0;
+                default:
+                    return ~value;
+            }
+        }
+    }
+
+    private static class Binary extends Node {
+        final int operator;
+        final Node left;
+        final Node right;
+
+        Binary(int operator, Node left, Node right) {
+            this.operator = operator;
+            this.left = left;
+            this.right = right;
+        }
+
+        @Override
+        int evaluate(ControlUnit cpu, int pc) {
+            int a = this.left.evaluate(cpu, pc);
+            // && and || don't evaluate the right side when the left decides
+            if(this.operator == OP_AND){
+                return (a != 0 && this.right.evaluate(cpu, pc) != 0) ? 1 : 0;
+            } else if(this.operator == OP_OR){
+                return (a != 0 || this.right.evaluate(cpu, pc) != 0) ? 1 : 0;
+            }
+            return DebugExpression.apply(this.operator, a, this.right.evaluate(cpu, pc));
+        }
+    }
+
+    private final String source;
+    private final Node root;
+
+    // parser state, used only while compiling
+    private int at;
+
+    /**
+     * @param source expression text
+     * @throws IllegalArgumentException a syntax error (the message says where)
+     */
+    private DebugExpression(String source) {
+        this.source = source;
+        this.at = 0;
+        Node node = this.parseBinary(0);
+        this.skipSpaces();
+        if(this.at < source.length()){
+            throw this.error("unexpected '" + source.charAt(this.at) + "'");
+        }
+        this.root = node;
+    }
+
+    /**
+     * Parses and compiles an expression.
+     * @param source expression text
+     * @return the compiled expression
+     * @throws IllegalArgumentException a syntax error (the message says where)
+     */
+    public static DebugExpression compile(String source) {
+        return new DebugExpression(source.trim());
+    }
+
+    /**
+     * @param cpu core whose registers and memory to read
+     * @param pc address of the instruction about to run
+     * @return value of the expression
+     */
+    int evaluate(ControlUnit cpu, int pc) {
+        return this.root.evaluate(cpu, pc);
+    }
+
+    /**
+     * @return true if the expression folded to a constant
+     */
+    public boolean isConstant() {
+        return this.root.isConstant();
+    }
+
+    @Override
+    public String toString() {
+        return this.source;
+    }
+
+    /*************** Parser ***************/
+
+    // binary operators, indexed by OP_*
+    private final static String[] OPERATORS = {
+        "||", "&&", "|", "^", "&", "==", "!=", "<=", ">=", "<", ">", "<<", ">>", "+", "-", "*", "/", "%",
+    };
+    private final static int OP_OR = 0;
+    private final static int OP_AND = 1;
+
+    // OP_* by precedence level, loosest first (longer operators before their prefixes)
+    private final static int[][] LEVELS = {
+        {0}, {1}, {2}, {3}, {4}, {5, 6}, {7, 8, 9, 10}, {11, 12}, {13, 14}, {15, 16, 17},
+    };
+
+    private static int apply(int operator, int a, int b) {
+        switch(operator){
+            case 0:     return (a != 0 || b != 0) ? 1 : 0;
+            case 1:     return (a != 0 && b != 0) ? 1 : 0;
+            case 2:     return a | b;
+            case 3:     return a ^ b;
+            case 4:     return a & b;
+            case 5:     return (a == b) ? 1 : 0;
+            case 6:     return (a != b) ? 1 : 0;
+            case 7:     return (a <= b) ? 1 : 0;
+            case 8:     return (a >= b) ? 1 : 0;
+            case 9:     return (a < b) ? 1 : 0;
+            case 10:    return (a > b) ? 1 : 0;
+            case 11:    return a << b;
+            case 12:    return a >> b;
+            case 13:    return a + b;
+            case 14:    return a - b;
+            case 15:    return a * b;
+            case 16:    return (b == 0) ? 0 : a / b;
+            default:    return (b == 0) ? 0 : a % b;
+        }
+    }
+
+    private Node parseBinary(int level) {
+        if(level == LEVELS.length){
+            return this.parseUnary();
+        }
+        Node left = this.parseBinary(level + 1);
+        int operator;
+        while((operator = this.matchOperator(LEVELS[level])) >= 0){
+            Node right = this.parseBinary(level + 1);
+            left = (left.isConstant() && right.isConstant())
+                    ? new Constant(DebugExpression.apply(operator, left.evaluate(null, 0), right.evaluate(null, 0)))
+                    : new Binary(operator, left, right);
+        }
+        return left;
+    }
+
+    private Node parseUnary() {
+        this.skipSpaces();
+        if(this.at < this.source.length()){
+            char c = this.source.charAt(this.at);
+            if((c == '-' || c == '~' || (c == '!' && !this.source.startsWith("!=", this.at)))){
+                this.at++;
+                Node operand = this.parseUnary();
+                Node node = new Unary(c, operand);
+                return operand.isConstant() ? new Constant(node.evaluate(null, 0)) : node;
+            }
+        }
+        return this.parsePrimary();
+    }
+
+    private Node parsePrimary() {
+        this.skipSpaces();
+        if(this.at == this.source.length()){
+            throw this.error("operand expected");
+        }
+        char c = this.source.charAt(this.at);
+        if(c == '('){
+            this.at++;
+            Node node = this.parseBinary(0);
+            this.expect(')');
+            return node;
+        }
+        if(Character.isDigit(c)){
+            return new Constant(this.parseNumber());
+        }
+        if(!Character.isLetter(c)){
+            throw this.error("unexpected '" + c + "'");
+        }
+        int start = this.at;
+        while(this.at < this.source.length() && Character.isLetterOrDigit(this.source.charAt(this.at))){
+            this.at++;
+        }
+        String name = this.source.substring(start, this.at).toUpperCase();
+        if(name.length() == 2 && name.charAt(0) == 'R' && name.charAt(1) >= '0' && name.charAt(1) <= '3'){
+            return new Register(name.charAt(1) - '0');
+        } else if(name.length() == 2 && name.charAt(0) == 'X' && name.charAt(1) >= '1' && name.charAt(1) <= '3'){
+            return new Register(Instruction.REGISTER_X1 + name.charAt(1) - '1');
+        } else if(name.equals("CC")){
+            return new Register(Instruction.REGISTER_CC);
+        } else if(name.equals("PC")){
+            return new ProgramCounter();
+        } else if(name.equals("C")){
+            this.expect('(');
+            Node address = this.parseBinary(0);
+            this.expect(')');
+            return new Contents(address);
+        }
+        this.at = start;
+        throw this.error("unknown name '" + name + "'");
+    }
+
+    private int parseNumber() {
+        int start = this.at;
+        int radix = 10;
+        if(this.source.startsWith("0x", this.at) || this.source.startsWith("0X", this.at)){
+            radix = 16;
+            this.at += 2;
+            start = this.at;
+        }
+        while(this.at < this.source.length() && Character.digit(this.source.charAt(this.at), radix) >= 0){
+            this.at++;
+        }
+        try {
+            return Integer.parseInt(this.source.substring(start, this.at), radix);
+        } catch(NumberFormatException e){
+            this.at = start;
+            throw this.error("bad number");
+        }
+    }
+
+    /**
+     * @param operators OP_* of a level
+     * @return the level's OP_* next in the text (consumed), -1 if none
+     */
+    private int matchOperator(int[] operators) {
+        this.skipSpaces();
+        for(int operator : operators){
+            String text = OPERATORS[operator];
+            if(this.source.startsWith(text, this.at)){
+                // '<' of "<<", '&' of "&&" and '|' of "||" belong to the longer operator
+                int end = this.at + text.length();
+                if(text.length() == 1 && end < this.source.length() && this.source.charAt(end) == text.charAt(0)){
+                    continue;
+                }
+                this.at = end;
+                return operator;
+            }
+        }
+        return -1;
+    }
+
+    private void expect(char c) {
+        this.skipSpaces();
+        if(this.at == this.source.length() || this.source.charAt(this.at) != c){
+            throw this.error("'" + c + "' expected");
+        }
+        this.at++;
+    }
+
+    private void skipSpaces() {
+        while(this.at < this.source.length() && Character.isWhitespace(this.source.charAt(this.at))){
+            this.at++;
+        }
+    }
+
+    private IllegalArgumentException error(String problem) {
+        return new IllegalArgumentException(problem + " at column " + (this.at + 1) + " of \"" + this.source + "\"");
+    }
+
+}
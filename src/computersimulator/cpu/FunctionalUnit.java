@@ -0,0 +1,190 @@
+package computersimulator.cpu;
+
+/**
+ * One functional unit in the CPU's pool (integer ALU, multiply/divide, branch
+ * or load/store). The ControlUnit dispatches an instruction onto a free unit;
+ * the unit then counts the instruction's latency down on its own clock cycle.
+ * A unit accepts a new instruction every [initiation interval] cycles, so a
+ * pipelined unit may have several instructions in flight.
+ */
+public class FunctionalUnit implements IScheduledClockCycle {
+
+    public final static int TYPE_INTEGER=0;
+    public final static int TYPE_MULTIPLY_DIVIDE=1;
+    public final static int TYPE_BRANCH=2;
+    public final static int TYPE_LOAD_STORE=3;
+    public final static int TYPE_COUNT=4;
+
+    private final static String[] TYPE_NAMES = {"INT", "MULDIV", "BRANCH", "LDST"};
+
+    private final int type;
+
+    // Cycles an instruction occupies this unit when it has no ALU class of its own
+    private int latency;
+
+    private int state;
+    public final static int STATE_IDLE = 0;
+    public final static int STATE_BUSY = 1;
+
+    // Cycles until the most recently dispatched instruction completes
+    private int remainingCycles = 0;
+    // Cycles until another instruction may be dispatched
+    private int initiationCountdown = 0;
+
+    private Instruction lastInstruction;
+
+    // Engineer: statistics
+    private long dispatchCount = 0;
+    private long busyCycles = 0;
+
+    public FunctionalUnit(int type) {
+        this.type = type;
+        this.latency = FunctionalUnit.defaultLatency(type);
+        this.state = FunctionalUnit.STATE_IDLE;
+    }
+
+    /**
+     * @param type TYPE_*
+     * @return latency used for the type unless configured otherwise
+     */
+    public static int defaultLatency(int type){
+        switch(type){
+            case FunctionalUnit.TYPE_LOAD_STORE:
+                return 2;   // address + memory access
+            default:
+                return 1;
+        }
+    }
+
+    /**
+     * Clock cycle. Counts the in-flight instructions down and returns to idle
+     * once the last one completes.
+     */
+    @Override
+    public void clockCycle() {
+        if(this.initiationCountdown > 0){
+            this.initiationCountdown--;
+        }
+        switch(this.state){
+            case FunctionalUnit.STATE_BUSY:
+                this.busyCycles++;
+                this.remainingCycles--;
+                if(this.remainingCycles <= 0){
+                    this.state = FunctionalUnit.STATE_IDLE;
+                }
+                break;
+            case FunctionalUnit.STATE_IDLE:
+            default:
+                break;
+        }
+    }
+
+    /**
+     * @return cycles before the unit goes idle (that cycle has work), NEVER when idle
+     */
+    @Override
+    public long getIdleCycles(){
+        if(this.state == FunctionalUnit.STATE_BUSY){
+            return this.remainingCycles - 1;
+        }
+        return IScheduledClockCycle.NEVER;
+    }
+
+    /**
+     * Counts the skipped cycles down as clockCycle() would have.
+     * @param cycles cycles skipped
+     */
+    @Override
+    public void skipCycles(long cycles){
+        this.initiationCountdown = (int)Math.max(0, this.initiationCountdown - cycles);
+        if(this.state == FunctionalUnit.STATE_BUSY){
+            this.busyCycles += Math.min(cycles, this.remainingCycles);
+            this.remainingCycles -= (int)Math.min(cycles, this.remainingCycles);
+            if(this.remainingCycles <= 0){
+                this.state = FunctionalUnit.STATE_IDLE;
+            }
+        }
+    }
+
+    /**
+     * @return true if an instruction can be dispatched this cycle
+     */
+    public boolean canAccept(){
+        return this.initiationCountdown == 0;
+    }
+
+    /**
+     * Occupies the unit with an instruction.
+     * @param instruction dispatched instruction
+     * @param cycles latency of the instruction on this unit
+     * @param interval cycles before the unit accepts another instruction
+     */
+    public void dispatch(Instruction instruction, int cycles, int interval){
+        this.lastInstruction = instruction;
+        this.remainingCycles = Math.max(this.remainingCycles, cycles);
+        this.initiationCountdown = interval;
+        this.state = FunctionalUnit.STATE_BUSY;
+        this.dispatchCount++;
+    }
+
+    /**
+     * Drops anything in flight (e.g. after a reset).
+     */
+    public void reset(){
+        this.remainingCycles = 0;
+        this.initiationCountdown = 0;
+        this.lastInstruction = null;
+        this.state = FunctionalUnit.STATE_IDLE;
+    }
+
+    public boolean isBusy(){
+        return this.state == FunctionalUnit.STATE_BUSY;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public String getTypeName() {
+        return FunctionalUnit.TYPE_NAMES[this.type];
+    }
+
+    public int getLatency() {
+        return latency;
+    }
+
+    /**
+     * @param cycles latency for instructions without an ALU class (branch, load/store)
+     */
+    public void setLatency(int cycles) {
+        if(cycles < 1){
+            throw new IllegalArgumentException("Latency must be at least 1 cycle");
+        }
+        this.latency = cycles;
+    }
+
+    public int getState() {
+        return state;
+    }
+
+    public Instruction getLastInstruction() {
+        return lastInstruction;
+    }
+
+    public long getDispatchCount() {
+        return dispatchCount;
+    }
+
+    /**
+     * @return cycles with at least one instruction in flight
+     */
+    public long getBusyCycles() {
+        return busyCycles;
+    }
+
+    @Override
+    public String toString() {
+        return this.getTypeName()+" ("+((this.state == FunctionalUnit.STATE_BUSY) ? "busy" : "idle")+")";
+    }
+
+}
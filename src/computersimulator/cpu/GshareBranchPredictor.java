@@ -0,0 +1,64 @@
+package computersimulator.cpu;
+
+/**
+ * 2-bit counters indexed by the branch PC XOR a global history register of
+ * the last outcomes, so a branch whose direction follows a pattern (or the
+ * branches before it) gets a counter per pattern.
+ *
+ * The history is updated when a branch resolves, in program order.
+ */
+public class GshareBranchPredictor extends BranchPredictor {
+
+    private final byte[] counters;
+    private final int mask;
+    private final int historyBits;
+    private int globalHistory = 0;
+
+    /**
+     * @param entries number of counters, a power of two
+     * @param historyBits outcomes kept in the global history register (at most log2(entries))
+     */
+    public GshareBranchPredictor(int entries, int historyBits) {
+        this.counters = new byte[entries];
+        this.mask = BimodalBranchPredictor.indexMask(entries);
+        if(historyBits < 0 || (1 << historyBits) > entries){
+            throw new IllegalArgumentException("History of "+historyBits+" bits does not fit "+entries+" entries");
+        }
+        this.historyBits = historyBits;
+        this.reset();
+    }
+
+    private int index(int pc){
+        return (pc ^ this.globalHistory) & this.mask;
+    }
+
+    @Override
+    public boolean predict(int pc, int target) {
+        return this.counters[this.index(pc)] > BimodalBranchPredictor.COUNTER_WEAKLY_NOT_TAKEN;
+    }
+
+    @Override
+    protected void train(int pc, boolean taken) {
+        int index = this.index(pc);
+        this.counters[index] = BimodalBranchPredictor.step(this.counters[index], taken);
+        this.globalHistory = ((this.globalHistory << 1) | (taken ? 1 : 0)) & ((1 << this.historyBits) - 1);
+    }
+
+    @Override
+    public String getName() {
+        return "gshare "+this.counters.length+"/"+this.historyBits;
+    }
+
+    @Override
+    public void reset() {
+        for(int i = 0; i < this.counters.length; i++){
+            this.counters[i] = BimodalBranchPredictor.COUNTER_WEAKLY_NOT_TAKEN;
+        }
+        this.globalHistory = 0;
+    }
+
+    public int getGlobalHistory() {
+        return globalHistory;
+    }
+
+}
@@ -0,0 +1,289 @@
+package computersimulator.cpu;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Profiles where a guest program spends its time, per 13-bit address.
+ *
+ * By default every retirement bumps its PC's counter. With a sample interval
+ * N the profiler instead takes the PC (the oldest instruction not yet
+ * retired) every Nth cycle, skipped cycles included, which costs less when
+ * instructions retire faster than one per N cycles. Either way the cycles the
+ * microcoded instruction cycle blocks on memory are charged to the
+ * instruction it was working on, and taken backward SOB, JNE and JMP jumps
+ * are counted per jump: each is a loop from its target to the jump.
+ *
+ * Attach with ControlUnit.setProfiler(); it runs on the simulation thread.
+ */
+public class GuestProfiler {
+
+    public final static int ADDRESSES = 8192;
+
+    private final int sampleInterval;
+    private long untilSample;
+
+    private final long[] retirements = new long[ADDRESSES];
+    private final long[] samples = new long[ADDRESSES];
+    private final long[] blockedCycles = new long[ADDRESSES];
+    private final byte[] opcodes = new byte[ADDRESSES];
+
+    // taken backward jumps, indexed by the jump's address
+    private final long[] backEdges = new long[ADDRESSES];
+    private final int[] backEdgeTargets = new int[ADDRESSES];
+
+    // speculative dispatch: what was counted on the predicted path, undone on
+    // a rollback (address, plus BACK_EDGE if it counted a backward jump)
+    private final static int BACK_EDGE = 1 << 16;
+    private int[] journal = new int[16];
+    private int journalLength = 0;
+    private boolean speculating = false;
+
+    // Engineer: statistics
+    private long totalRetirements = 0;
+    private long totalSamples = 0;
+    private long totalBlockedCycles = 0;
+
+    /**
+     * A profiler counting every retirement.
+     */
+    public GuestProfiler() {
+        this(0);
+    }
+
+    /**
+     * @param sampleInterval cycles between PC samples, 0 to count every retirement instead
+     */
+    public GuestProfiler(int sampleInterval) {
+        if(sampleInterval < 0){
+            throw new IllegalArgumentException("Sample interval can't be negative");
+        }
+        this.sampleInterval = sampleInterval;
+        this.untilSample = sampleInterval;
+    }
+
+    /**
+     * Counts one retirement.
+     * @param instruction the instruction
+     * @param pc its address
+     * @param next address of the instruction after it
+     * @param taken for a jump, whether it went to its target
+     */
+    void retire(Instruction instruction, int pc, int next, boolean taken){
+        if(this.sampleInterval == 0){
+            this.retirements[pc]++;
+            this.totalRetirements++;
+        }
+        int opcode = instruction.getOpcode();
+        this.opcodes[pc] = (byte)opcode;
+        int entry = pc;
+        if(taken && next <= pc && (opcode == Instruction.OPCODE_SOB
+                || opcode == Instruction.OPCODE_JNE || opcode == Instruction.OPCODE_JMP)){
+            this.backEdges[pc]++;
+            this.backEdgeTargets[pc] = next;
+            entry |= BACK_EDGE;
+        }
+        if(this.speculating){
+            if(this.journalLength == this.journal.length){
+                this.journal = Arrays.copyOf(this.journal, 2 * this.journal.length);
+            }
+            this.journal[this.journalLength++] = entry;
+        }
+    }
+
+    /**
+     * Dispatch carries on down a predicted path: what retires from here on
+     * may be rolled back.
+     */
+    void beginSpeculation(){
+        this.speculating = true;
+        this.journalLength = 0;
+    }
+
+    /**
+     * @param rollback true if the predicted path was wrong: its retirements are uncounted
+     */
+    void endSpeculation(boolean rollback){
+        if(rollback){
+            for(int i = 0; i < this.journalLength; i++){
+                int pc = this.journal[i] & (BACK_EDGE - 1);
+                if(this.sampleInterval == 0){
+                    this.retirements[pc]--;
+                    this.totalRetirements--;
+                }
+                if((this.journal[i] & BACK_EDGE) != 0){
+                    this.backEdges[pc]--;
+                }
+            }
+        }
+        this.speculating = false;
+        this.journalLength = 0;
+    }
+
+    /**
+     * @param pc PC during the cycles
+     * @param cycles cycles run (or skipped)
+     */
+    void cycles(int pc, long cycles){
+        if(this.sampleInterval == 0){
+            return;
+        }
+        this.untilSample -= cycles;
+        if(this.untilSample <= 0){
+            long due = 1 + (-this.untilSample) / this.sampleInterval;
+            this.samples[pc] += due;
+            this.totalSamples += due;
+            this.untilSample += due * this.sampleInterval;
+        }
+    }
+
+    /**
+     * @param pc address of the instruction the cycle was blocked for
+     */
+    void recordBlockedCycle(int pc){
+        this.blockedCycles[pc]++;
+        this.totalBlockedCycles++;
+    }
+
+    /*************** Statistics ***************/
+
+    /**
+     * @return cycles between PC samples, 0 when counting every retirement
+     */
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    /**
+     * @param pc address
+     * @return retirements (or samples) at the address
+     */
+    public long getWeight(int pc) {
+        return (this.sampleInterval == 0) ? this.retirements[pc] : this.samples[pc];
+    }
+
+    /**
+     * @return retirements (or samples) at all addresses
+     */
+    public long getTotalWeight() {
+        return (this.sampleInterval == 0) ? this.totalRetirements : this.totalSamples;
+    }
+
+    /**
+     * @param pc address
+     * @return memory cycles blocked on the instruction at the address
+     */
+    public long getBlockedCycles(int pc) {
+        return blockedCycles[pc];
+    }
+
+    public long getTotalBlockedCycles() {
+        return totalBlockedCycles;
+    }
+
+    /**
+     * @param pc address of a jump
+     * @return times it jumped backward
+     */
+    public long getBackEdges(int pc) {
+        return backEdges[pc];
+    }
+
+    /**
+     * @param count addresses wanted
+     * @return up to [count] addresses with any weight or blocked cycles,
+     *  heaviest (weight plus blocked cycles) first
+     */
+    public int[] getHotAddresses(int count) {
+        List<Integer> hot = new ArrayList<>();
+        for(int pc = 0; pc < ADDRESSES; pc++){
+            if(this.getWeight(pc) > 0 || this.blockedCycles[pc] > 0){
+                hot.add(pc);
+            }
+        }
+        Collections.sort(hot, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return Long.compare(GuestProfiler.this.heat(b), GuestProfiler.this.heat(a));
+            }
+        });
+        int[] addresses = new int[Math.min(count, hot.size())];
+        for(int i = 0; i < addresses.length; i++){
+            addresses[i] = hot.get(i);
+        }
+        return addresses;
+    }
+
+    private long heat(int pc){
+        return this.getWeight(pc) + this.blockedCycles[pc];
+    }
+
+    /**
+     * @param count loops wanted
+     * @return up to [count] loops as {first address, jump address}, heaviest
+     *  body first; nested loops are listed separately
+     */
+    public int[][] getHotLoops(int count) {
+        List<int[]> loops = new ArrayList<>();
+        for(int pc = 0; pc < ADDRESSES; pc++){
+            if(this.backEdges[pc] > 0){
+                loops.add(new int[]{this.backEdgeTargets[pc], pc});
+            }
+        }
+        Collections.sort(loops, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] a, int[] b) {
+                return Long.compare(GuestProfiler.this.getLoopHeat(b[0], b[1]), GuestProfiler.this.getLoopHeat(a[0], a[1]));
+            }
+        });
+        return loops.subList(0, Math.min(count, loops.size())).toArray(new int[0][]);
+    }
+
+    /**
+     * @return weight plus blocked cycles over the addresses first..last
+     */
+    public long getLoopHeat(int first, int last) {
+        long heat = 0;
+        for(int pc = first; pc <= last; pc++){
+            heat += this.heat(pc);
+        }
+        return heat;
+    }
+
+    /**
+     * @param count addresses and loops to list
+     * @return ranked hot addresses, then hot loops, one per line
+     */
+    public String getReport(int count) {
+        long total = this.getTotalWeight() + this.totalBlockedCycles;
+        String unit = (this.sampleInterval == 0) ? "retired" : "samples";
+        StringBuilder report = new StringBuilder();
+        report.append("profile: ").append(this.getTotalWeight()).append(' ').append(unit)
+                .append((this.sampleInterval == 0) ? "" : " (every " + this.sampleInterval + " cycles)")
+                .append(", ").append(this.totalBlockedCycles).append(" blocked cycles\n");
+        report.append("hot addresses:\n");
+        for(int pc : this.getHotAddresses(count)){
+            report.append(String.format("  %4d %-4s %s %d, blocked %d (%.1f%%)%n", pc, this.mnemonic(pc), unit,
+                    this.getWeight(pc), this.blockedCycles[pc], GuestProfiler.percent(this.heat(pc), total)));
+        }
+        report.append("hot loops:\n");
+        for(int[] loop : this.getHotLoops(count)){
+            long heat = this.getLoopHeat(loop[0], loop[1]);
+            report.append(String.format("  %4d-%-4d %s at %d jumped back %d times (%.1f%%)%n", loop[0], loop[1],
+                    this.mnemonic(loop[1]), loop[1], this.backEdges[loop[1]], GuestProfiler.percent(heat, total)));
+        }
+        return report.toString();
+    }
+
+    private String mnemonic(int pc){
+        return Instruction.decode((this.opcodes[pc] & 0x3F) << 14).getMnemonic();
+    }
+
+    private static double percent(long part, long whole){
+        return (whole == 0) ? 0 : 100.0 * part / whole;
+    }
+
+}
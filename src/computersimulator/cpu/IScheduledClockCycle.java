@@ -0,0 +1,31 @@
+package computersimulator.cpu;
+
+/**
+ * A clocked component the ClockScheduler can let sleep. When asked (after its
+ * own clock cycle, or one of a component clocked ahead of it) the component
+ * tells the scheduler how many of the coming cycles it has nothing to do in;
+ * the scheduler posts that as the component's next wake-up and, when every
+ * component is asleep, jumps straight to the earliest wake-up instead of
+ * calling clockCycle() on each of the cycles in between.
+ *
+ * A skipped cycle must be indistinguishable from a ticked one: whatever a tick
+ * would have counted (stall cycles, latency countdowns) skipCycles() counts in
+ * one step.
+ */
+public interface IScheduledClockCycle extends IClockCycle {
+
+    /** Nothing to do until another component gives it work. */
+    public final static long NEVER = Long.MAX_VALUE;
+
+    /**
+     * @return number of coming cycles with nothing to do (0 if this cycle has
+     *  work), NEVER if idle until poked by another component
+     */
+    public long getIdleCycles();
+
+    /**
+     * Accounts for cycles skipped while idle.
+     * @param cycles cycles skipped, never more than getIdleCycles() returned
+     */
+    public void skipCycles(long cycles);
+}
@@ -6,7 +6,7 @@ package computersimulator.cpu;
  * console printer and a pane that simulates a console keyboard.
  * @author george
  */
-public class InputOutputController implements IClockCycle {
+public class InputOutputController implements IScheduledClockCycle {
 
     public InputOutputController() {
         
@@ -21,4 +21,16 @@ public class InputOutputController implements IClockCycle {
         // @TODO: Stubbed until Part 2
     }  
     
+    /**
+     * @return NEVER: no devices are attached yet
+     */
+    @Override
+    public long getIdleCycles(){
+        return IScheduledClockCycle.NEVER;
+    }
+    
+    @Override
+    public void skipCycles(long cycles){
+    }
+    
 }
@@ -0,0 +1,419 @@
+package computersimulator.cpu;
+
+/**
+ * A decoded instruction word held as plain ints. The microcoded ControlUnit
+ * decodes into a HashMap of Units one field at a time; execution models that
+ * look at several instructions per cycle (superscalar dispatch, pipeline) use
+ * this instead, along with the registers each instruction reads and writes.
+ *
+ * Registers are numbered R0-R3 = 0-3, X1-X3 = 4-6 and CC = 7, and passed
+ * around as bitmasks (bit n = register n).
+ */
+public class Instruction {
+
+    public final static int OPCODE_HLT=0;
+    public final static int OPCODE_LDR=1;
+    public final static int OPCODE_STR=2;
+    public final static int OPCODE_LDA=3;
+    public final static int OPCODE_AMR=4;
+    public final static int OPCODE_SMR=5;
+    public final static int OPCODE_AIR=6;
+    public final static int OPCODE_SIR=7;
+    public final static int OPCODE_JZ=10;
+    public final static int OPCODE_JNE=11;
+    public final static int OPCODE_JCC=12;
+    public final static int OPCODE_JMP=13;
+    public final static int OPCODE_JSR=14;
+    public final static int OPCODE_RFS=15;
+    public final static int OPCODE_SOB=16;
+    public final static int OPCODE_JGE=17;
+    public final static int OPCODE_MLT=20;
+    public final static int OPCODE_DVD=21;
+    public final static int OPCODE_TRR=22;
+    public final static int OPCODE_AND=23;
+    public final static int OPCODE_ORR=24;
+    public final static int OPCODE_NOT=25;
+    public final static int OPCODE_SRC=31;
+    public final static int OPCODE_RRC=32;
+    public final static int OPCODE_LDX=41;
+    public final static int OPCODE_STX=42;
+
+    // Register numbering used by the source / destination masks
+    public final static int REGISTER_X1=4;
+    public final static int REGISTER_CC=7;
+    public final static int REGISTER_COUNT=8;
+
+    private final int word;
+
+    // IR fields (bit numbers are MSB first, as in the ControlUnit)
+    private final int opcode;     // 0-5
+    private final int rfi;        // 6-7  (rx for register/register)
+    private final int xfi;        // 8-9  (ry for register/register, r for shift/rotate)
+    private final int indirect;   // 10   (A/L for shift/rotate)
+    private final int trace;      // 11   (L/R for shift/rotate)
+    private final int address;    // 12-19 (count in 15-19 for shift/rotate)
+
+    private final int sourceMask;
+    private final int destinationMask;
+    private final int unitType;
+    private final int aluControl;
+    private final boolean legal;
+
+    private Instruction(int word) {
+        this.word = word & 0xFFFFF;
+        this.opcode = (this.word >>> 14) & 0x3F;
+        this.rfi = (this.word >>> 12) & 0x3;
+        this.xfi = (this.word >>> 10) & 0x3;
+        this.indirect = (this.word >>> 9) & 0x1;
+        this.trace = (this.word >>> 8) & 0x1;
+        this.address = this.word & 0xFF;
+
+        int sources = 0;
+        int destinations = 0;
+        int type = FunctionalUnit.TYPE_INTEGER;
+        int control = ArithmeticLogicUnit.CONTROL_NONE;
+        boolean isLegal = true;
+        int index = (this.xfi == 0) ? 0 : Instruction.registerBit(Instruction.REGISTER_X1 + this.xfi - 1);
+
+        switch(this.opcode){
+            case Instruction.OPCODE_HLT:
+                type = FunctionalUnit.TYPE_BRANCH;
+                break;
+            case Instruction.OPCODE_LDR:
+                sources = index;
+                destinations = Instruction.registerBit(this.rfi);
+                type = FunctionalUnit.TYPE_LOAD_STORE;
+                break;
+            case Instruction.OPCODE_STR:
+                sources = index | Instruction.registerBit(this.rfi);
+                type = FunctionalUnit.TYPE_LOAD_STORE;
+                break;
+            case Instruction.OPCODE_LDA:
+                sources = index;
+                destinations = Instruction.registerBit(this.rfi);
+                type = (this.indirect == 1) ? FunctionalUnit.TYPE_LOAD_STORE : FunctionalUnit.TYPE_INTEGER;
+                control = ArithmeticLogicUnit.CONTROL_ADD;
+                break;
+            case Instruction.OPCODE_LDX:
+                // EA is formed with the same index register that is loaded (as the ControlUnit does)
+                sources = index;
+                destinations = index;
+                type = FunctionalUnit.TYPE_LOAD_STORE;
+                break;
+            case Instruction.OPCODE_STX:
+                sources = index;
+                type = FunctionalUnit.TYPE_LOAD_STORE;
+                break;
+            case Instruction.OPCODE_AMR:
+            case Instruction.OPCODE_SMR:
+                sources = index | Instruction.registerBit(this.rfi);
+                destinations = Instruction.registerBit(this.rfi) | Instruction.registerBit(Instruction.REGISTER_CC);
+                type = FunctionalUnit.TYPE_LOAD_STORE;
+                control = (this.opcode == Instruction.OPCODE_AMR) ? ArithmeticLogicUnit.CONTROL_ADD : ArithmeticLogicUnit.CONTROL_SUBTRACT;
+                break;
+            case Instruction.OPCODE_AIR:
+            case Instruction.OPCODE_SIR:
+                sources = Instruction.registerBit(this.rfi);
+                destinations = Instruction.registerBit(this.rfi) | Instruction.registerBit(Instruction.REGISTER_CC);
+                control = (this.opcode == Instruction.OPCODE_AIR) ? ArithmeticLogicUnit.CONTROL_ADD : ArithmeticLogicUnit.CONTROL_SUBTRACT;
+                break;
+            case Instruction.OPCODE_JZ:
+            case Instruction.OPCODE_JNE:
+            case Instruction.OPCODE_JGE:
+                sources = index | Instruction.registerBit(this.rfi);
+                type = FunctionalUnit.TYPE_BRANCH;
+                break;
+            case Instruction.OPCODE_JCC:
+                sources = index | Instruction.registerBit(Instruction.REGISTER_CC);
+                type = FunctionalUnit.TYPE_BRANCH;
+                break;
+            case Instruction.OPCODE_JMP:
+                sources = index;
+                type = FunctionalUnit.TYPE_BRANCH;
+                break;
+            case Instruction.OPCODE_JSR:
+                sources = index;
+                destinations = Instruction.registerBit(3);
+                type = FunctionalUnit.TYPE_BRANCH;
+                break;
+            case Instruction.OPCODE_RFS:
+                sources = Instruction.registerBit(3);
+                destinations = Instruction.registerBit(0);
+                type = FunctionalUnit.TYPE_BRANCH;
+                break;
+            case Instruction.OPCODE_SOB:
+                sources = index | Instruction.registerBit(this.rfi);
+                destinations = Instruction.registerBit(this.rfi);
+                type = FunctionalUnit.TYPE_BRANCH;
+                break;
+            case Instruction.OPCODE_MLT:
+            case Instruction.OPCODE_DVD:
+                sources = Instruction.registerBit(this.rfi) | Instruction.registerBit(this.xfi);
+                destinations = Instruction.registerBit(this.rfi) | Instruction.registerBit(Instruction.REGISTER_CC);
+                if(this.rfi + 1 < 4){
+                    destinations |= Instruction.registerBit(this.rfi + 1);
+                }
+                type = FunctionalUnit.TYPE_MULTIPLY_DIVIDE;
+                control = (this.opcode == Instruction.OPCODE_MLT) ? ArithmeticLogicUnit.CONTROL_MULTIPLY : ArithmeticLogicUnit.CONTROL_DIVIDE;
+                break;
+            case Instruction.OPCODE_TRR:
+                sources = Instruction.registerBit(this.rfi) | Instruction.registerBit(this.xfi);
+                destinations = Instruction.registerBit(Instruction.REGISTER_CC);
+                control = ArithmeticLogicUnit.CONTROL_SUBTRACT;
+                break;
+            case Instruction.OPCODE_AND:
+            case Instruction.OPCODE_ORR:
+                sources = Instruction.registerBit(this.rfi) | Instruction.registerBit(this.xfi);
+                destinations = Instruction.registerBit(this.rfi);
+                control = (this.opcode == Instruction.OPCODE_AND) ? ArithmeticLogicUnit.CONTROL_AND : ArithmeticLogicUnit.CONTROL_OR;
+                break;
+            case Instruction.OPCODE_NOT:
+                sources = Instruction.registerBit(this.rfi);
+                destinations = Instruction.registerBit(this.rfi);
+                control = ArithmeticLogicUnit.CONTROL_NOT;
+                break;
+            case Instruction.OPCODE_SRC:
+            case Instruction.OPCODE_RRC:
+                sources = Instruction.registerBit(this.xfi);
+                destinations = Instruction.registerBit(this.xfi);
+                control = this.shiftControl();
+                break;
+            default:
+                isLegal = false;
+                break;
+        }
+
+        this.sourceMask = sources;
+        this.destinationMask = destinations;
+        this.unitType = type;
+        this.aluControl = control;
+        this.legal = isLegal;
+    }
+
+    /**
+     * @param word 20-bit instruction word
+     * @return decoded Instruction
+     */
+    public static Instruction decode(int word){
+        return new Instruction(word);
+    }
+
+    /**
+     * @param register register number (R0-R3 = 0-3, X1-X3 = 4-6, CC = 7)
+     * @return bit for the register in a source / destination mask
+     */
+    public static int registerBit(int register){
+        return 1 << register;
+    }
+
+    private int shiftControl(){
+        if(this.opcode == Instruction.OPCODE_RRC){
+            return (this.trace == 1) ? ArithmeticLogicUnit.CONTROL_ROTATE_LEFT : ArithmeticLogicUnit.CONTROL_ROTATE_RIGHT;
+        }
+        if(this.trace == 1){
+            return ArithmeticLogicUnit.CONTROL_SHIFT_LEFT;
+        }
+        return (this.indirect == 1) ? ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_LOGICAL : ArithmeticLogicUnit.CONTROL_SHIFT_RIGHT_ARITHMETIC;
+    }
+
+    public int getWord() {
+        return word;
+    }
+
+    public int getOpcode() {
+        return opcode;
+    }
+
+    public int getRFI() {
+        return rfi;
+    }
+
+    public int getXFI() {
+        return xfi;
+    }
+
+    public int getIndirect() {
+        return indirect;
+    }
+
+    public int getTrace() {
+        return trace;
+    }
+
+    public int getAddress() {
+        return address;
+    }
+
+    /**
+     * @return shift / rotate count (bits 15-19)
+     */
+    public int getCount() {
+        return this.address & 0x1F;
+    }
+
+    /**
+     * @return registers read, as a bitmask
+     */
+    public int getSourceMask() {
+        return sourceMask;
+    }
+
+    /**
+     * @return registers written, as a bitmask
+     */
+    public int getDestinationMask() {
+        return destinationMask;
+    }
+
+    /**
+     * @return FunctionalUnit.TYPE_* the instruction executes on
+     */
+    public int getUnitType() {
+        return unitType;
+    }
+
+    /**
+     * @return ArithmeticLogicUnit.CONTROL_* used for the value, CONTROL_NONE if no ALU operation
+     */
+    public int getALUControl() {
+        return aluControl;
+    }
+
+    /**
+     * @return false for opcodes the machine doesn't implement
+     */
+    public boolean isLegal() {
+        return legal;
+    }
+
+    public boolean isHalt() {
+        return this.opcode == Instruction.OPCODE_HLT;
+    }
+
+    /**
+     * @return true if the instruction may change the PC to something other than PC + 1
+     */
+    public boolean isControlTransfer() {
+        return this.unitType == FunctionalUnit.TYPE_BRANCH && this.opcode != Instruction.OPCODE_HLT;
+    }
+
+    /**
+     * @return true for conditional jumps (the ones a predictor has to guess)
+     */
+    public boolean isConditionalBranch() {
+        switch(this.opcode){
+            case Instruction.OPCODE_JZ:
+            case Instruction.OPCODE_JNE:
+            case Instruction.OPCODE_JCC:
+            case Instruction.OPCODE_SOB:
+            case Instruction.OPCODE_JGE:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if the instruction computes an effective address
+     */
+    public boolean usesEffectiveAddress() {
+        switch(this.opcode){
+            case Instruction.OPCODE_HLT:
+            case Instruction.OPCODE_AIR:
+            case Instruction.OPCODE_SIR:
+            case Instruction.OPCODE_RFS:
+            case Instruction.OPCODE_MLT:
+            case Instruction.OPCODE_DVD:
+            case Instruction.OPCODE_TRR:
+            case Instruction.OPCODE_AND:
+            case Instruction.OPCODE_ORR:
+            case Instruction.OPCODE_NOT:
+            case Instruction.OPCODE_SRC:
+            case Instruction.OPCODE_RRC:
+                return false;
+            default:
+                return this.legal;
+        }
+    }
+
+    /**
+     * @return true if executing the instruction reads a data word (indirection included)
+     */
+    public boolean readsMemory() {
+        switch(this.opcode){
+            case Instruction.OPCODE_LDR:
+            case Instruction.OPCODE_LDX:
+            case Instruction.OPCODE_AMR:
+            case Instruction.OPCODE_SMR:
+                return true;
+            default:
+                return this.usesEffectiveAddress() && this.indirect == 1;
+        }
+    }
+
+    /**
+     * @return true if the instruction loads or stores a data word at its EA
+     *  (indirection aside)
+     */
+    public boolean accessesData() {
+        switch(this.opcode){
+            case Instruction.OPCODE_LDR:
+            case Instruction.OPCODE_LDX:
+            case Instruction.OPCODE_AMR:
+            case Instruction.OPCODE_SMR:
+            case Instruction.OPCODE_STR:
+            case Instruction.OPCODE_STX:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * @return true if executing the instruction stores to memory
+     */
+    public boolean writesMemory() {
+        return this.opcode == Instruction.OPCODE_STR || this.opcode == Instruction.OPCODE_STX;
+    }
+
+    /**
+     * @return assembler mnemonic
+     */
+    public String getMnemonic() {
+        switch(this.opcode){
+            case Instruction.OPCODE_HLT: return "HLT";
+            case Instruction.OPCODE_LDR: return "LDR";
+            case Instruction.OPCODE_STR: return "STR";
+            case Instruction.OPCODE_LDA: return "LDA";
+            case Instruction.OPCODE_AMR: return "AMR";
+            case Instruction.OPCODE_SMR: return "SMR";
+            case Instruction.OPCODE_AIR: return "AIR";
+            case Instruction.OPCODE_SIR: return "SIR";
+            case Instruction.OPCODE_JZ:  return "JZ";
+            case Instruction.OPCODE_JNE: return "JNE";
+            case Instruction.OPCODE_JCC: return "JCC";
+            case Instruction.OPCODE_JMP: return "JMP";
+            case Instruction.OPCODE_JSR: return "JSR";
+            case Instruction.OPCODE_RFS: return "RFS";
+            case Instruction.OPCODE_SOB: return "SOB";
+            case Instruction.OPCODE_JGE: return "JGE";
+            case Instruction.OPCODE_MLT: return "MLT";
+            case Instruction.OPCODE_DVD: return "DVD";
+            case Instruction.OPCODE_TRR: return "TRR";
+            case Instruction.OPCODE_AND: return "AND";
+            case Instruction.OPCODE_ORR: return "ORR";
+            case Instruction.OPCODE_NOT: return "NOT";
+            case Instruction.OPCODE_SRC: return "SRC";
+            case Instruction.OPCODE_RRC: return "RRC";
+            case Instruction.OPCODE_LDX: return "LDX";
+            case Instruction.OPCODE_STX: return "STX";
+            default: return "???";
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getMnemonic()+" r="+this.rfi+" x="+this.xfi+" i="+this.indirect+" addr="+this.address;
+    }
+
+}
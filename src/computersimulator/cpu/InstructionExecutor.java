@@ -0,0 +1,359 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.MachineFaultException;
+
+/**
+ * Executes a whole Instruction in one step against the ControlUnit's registers
+ * and memory. The microcoded instruction cycle spreads the same work over
+ * micro steps; execution models that issue several instructions per cycle
+ * (superscalar dispatch, pipeline) apply the architectural effect here and
+ * model the timing themselves.
+ *
+ * CC holds its flags from one instruction to the next, as in every model:
+ * an ALU operation replaces only the flags it affects, and JCC sees the
+ * last ones set.
+ *
+ * While speculating, stores go to a StoreQueue instead of memory, reads see
+ * the queued stores first, and a fault is thrown without setting the MFR
+ * (the dispatcher raises it again once the instruction is non-speculative).
+ */
+public class InstructionExecutor {
+
+    private final static int WORD_SIZE = 20;
+    private final static int WORD_MASK = 0xFFFFF;
+    private final static int ADDRESS_MASK = 0x1FFF;
+
+    private final ControlUnit controlUnit;
+    private final MemoryControlUnit memory;
+
+    // Details of the last executed instruction, used for timing / prediction
+    private int lastEffectiveAddress = -1;
+    private int lastMemoryAddress = -1;
+    private int lastMemoryValue;
+    private boolean lastBranchTaken = false;
+
+    // Set while executing down a predicted path
+    private StoreQueue storeQueue;
+
+    public InstructionExecutor(ControlUnit controlUnit, MemoryControlUnit memory) {
+        this.controlUnit = controlUnit;
+        this.memory = memory;
+    }
+
+    /**
+     * @param pc address of the instruction
+     * @return decoded instruction at pc
+     * @throws MachineFaultException pc beyond the installed memory
+     */
+    public Instruction fetch(int pc) throws MachineFaultException {
+        return Instruction.decode(this.read(pc));
+    }
+
+    /**
+     * Effective address as the ControlUnit computes it:
+     *  I=0: ADDR, or c(Xi) + ADDR with an index register
+     *  I=1: c(ADDR), or c(c(Xi) + ADDR) with an index register
+     * @param instruction decoded instruction
+     * @return 13-bit EA
+     * @throws MachineFaultException indirection through an address beyond memory
+     */
+    public int effectiveAddress(Instruction instruction) throws MachineFaultException {
+        int ea = instruction.getAddress();
+        if(instruction.getXFI() != 0){
+            ea = (ea + this.controlUnit.getRegisterValue(Instruction.REGISTER_X1 + instruction.getXFI() - 1)) & ADDRESS_MASK;
+        }
+        if(instruction.getIndirect() == 1){
+            ea = this.read(ea) & ADDRESS_MASK;
+        }
+        return ea;
+    }
+
+    /**
+     * Applies an instruction's effect to registers, CC and memory.
+     * @param instruction decoded instruction
+     * @param pc address of the instruction
+     * @return address of the next instruction
+     * @throws HaltSystemException HLT
+     * @throws MachineFaultException illegal opcode or memory address (MFR is set)
+     */
+    public int execute(Instruction instruction, int pc) throws HaltSystemException, MachineFaultException {
+        try {
+            return this.executeInstruction(instruction, pc);
+        } catch(MachineFaultException e){
+            if(this.storeQueue == null){
+                this.controlUnit.getMachineFaultRegister().setValue(e.getFaultId());
+            }
+            throw e;
+        }
+    }
+
+    private int executeInstruction(Instruction instruction, int pc) throws HaltSystemException, MachineFaultException {
+        this.lastEffectiveAddress = -1;
+        this.lastMemoryAddress = -1;
+        this.lastBranchTaken = false;
+
+        if(!instruction.isLegal()){
+            throw new MachineFaultException(MachineFaultException.FAULT_ILLEGAL_OPCODE,
+                    "Illegal opcode "+instruction.getOpcode()+" at "+pc);
+        }
+
+        ControlUnit cu = this.controlUnit;
+        int next = (pc + 1) & ADDRESS_MASK;
+        int r = instruction.getRFI();
+        int ea = 0;
+        if(instruction.usesEffectiveAddress()){
+            ea = this.effectiveAddress(instruction);
+            this.lastEffectiveAddress = ea;
+        }
+
+        switch(instruction.getOpcode()){
+            case Instruction.OPCODE_HLT:
+                throw new HaltSystemException();
+
+            case Instruction.OPCODE_LDR:
+                cu.setRegisterValue(r, this.load(ea));
+                break;
+            case Instruction.OPCODE_STR:
+                this.store(ea, cu.getRegisterValue(r));
+                break;
+            case Instruction.OPCODE_LDA:
+                cu.setRegisterValue(r, ea);
+                break;
+            case Instruction.OPCODE_LDX:
+                int loaded = this.load(ea) & ADDRESS_MASK;
+                if(instruction.getXFI() != 0){      // there is no X0
+                    cu.setRegisterValue(Instruction.REGISTER_X1 + instruction.getXFI() - 1, loaded);
+                }
+                break;
+            case Instruction.OPCODE_STX:
+                this.store(ea, (instruction.getXFI() == 0) ? 0 : cu.getRegisterValue(Instruction.REGISTER_X1 + instruction.getXFI() - 1));
+                break;
+
+            case Instruction.OPCODE_AMR:
+            case Instruction.OPCODE_SMR:
+                this.arithmetic(instruction, r, this.load(ea));
+                break;
+            case Instruction.OPCODE_AIR:
+            case Instruction.OPCODE_SIR:
+                this.arithmetic(instruction, r, instruction.getAddress());
+                break;
+
+            case Instruction.OPCODE_JZ:
+            case Instruction.OPCODE_JNE:
+            case Instruction.OPCODE_JGE:
+            case Instruction.OPCODE_JCC:
+            case Instruction.OPCODE_JMP:
+                this.lastBranchTaken = InstructionExecutor.taken(instruction, cu.getRegisterValue(r), cu);
+                break;
+            case Instruction.OPCODE_JSR:
+                cu.setRegisterValue(3, next);
+                this.lastBranchTaken = true;
+                break;
+            case Instruction.OPCODE_RFS:
+                cu.setRegisterValue(0, instruction.getAddress());
+                ea = cu.getRegisterValue(3) & ADDRESS_MASK;
+                this.lastBranchTaken = true;
+                break;
+            case Instruction.OPCODE_SOB:
+                int counter = cu.getRegisterValue(r);
+                cu.setRegisterValue(r, InstructionExecutor.result(instruction, counter, 0));
+                this.lastBranchTaken = InstructionExecutor.taken(instruction, counter, cu);
+                break;
+
+            case Instruction.OPCODE_MLT:
+            case Instruction.OPCODE_DVD:
+                int rx = cu.getRegisterValue(r);
+                int ry = cu.getRegisterValue(instruction.getXFI());
+                cu.recordConditionOperation(instruction.getALUControl(), WORD_SIZE,
+                        InstructionExecutor.conditionOperand(instruction, rx), InstructionExecutor.conditionOperand(instruction, ry));
+                cu.setRegisterValue(r, InstructionExecutor.result(instruction, rx, ry));
+                if(r + 1 < 4){          // rx must be 0 or 2; there is no R4
+                    cu.setRegisterValue(r + 1, InstructionExecutor.secondResult(instruction, rx, ry));
+                }
+                break;
+            case Instruction.OPCODE_TRR:
+                if(cu.getRegisterValue(r) == cu.getRegisterValue(instruction.getXFI())){
+                    cu.setCondition(ControlUnit.CONDITION_REGISTER_EQUALORNOT);
+                } else {
+                    cu.unsetCondition(ControlUnit.CONDITION_REGISTER_EQUALORNOT);
+                }
+                break;
+            case Instruction.OPCODE_AND:
+            case Instruction.OPCODE_ORR:
+            case Instruction.OPCODE_NOT:
+                cu.setRegisterValue(r, InstructionExecutor.result(instruction,
+                        cu.getRegisterValue(r), cu.getRegisterValue(instruction.getXFI())));
+                break;
+            case Instruction.OPCODE_SRC:
+            case Instruction.OPCODE_RRC:
+                int shifted = instruction.getXFI();
+                cu.setRegisterValue(shifted, InstructionExecutor.result(instruction, cu.getRegisterValue(shifted), 0));
+                break;
+            default:
+                break;
+        }
+
+        if(this.lastBranchTaken){
+            next = ea;
+        }
+        return next;
+    }
+
+    /**
+     * c(r) <- c(r) +/- value, flags recorded for the ControlUnit to derive lazily
+     */
+    private void arithmetic(Instruction instruction, int r, int value){
+        int current = this.controlUnit.getRegisterValue(r);
+        this.controlUnit.setRegisterValue(r, InstructionExecutor.result(instruction, current, value));
+        this.controlUnit.recordConditionOperation(instruction.getALUControl(), WORD_SIZE, current, value);
+    }
+
+    /**
+     * What an operation computes, from its operand values rather than the
+     * register file, so a model that forwards operands (Pipeline) applies the
+     * same semantics as execute():
+     *  AIR/SIR/AMR/SMR: value +/- operand (immediate or memory word)
+     *  AND/ORR/NOT: value op operand
+     *  SRC/RRC: value shifted / rotated by the count (operand unused)
+     *  SOB: value - 1
+     *  MLT/DVD: high word of the product, or the quotient
+     * @param instruction decoded instruction
+     * @param value c(r), or c(register shifted) for SRC/RRC
+     * @param operand second operand
+     * @return word written to the instruction's (first) destination
+     */
+    static int result(Instruction instruction, int value, int operand){
+        int control = instruction.getALUControl();
+        switch(instruction.getOpcode()){
+            case Instruction.OPCODE_SOB:
+                return (value - 1) & WORD_MASK;
+            case Instruction.OPCODE_SRC:
+            case Instruction.OPCODE_RRC:
+                return ArithmeticLogicUnit.evaluate(control, WORD_SIZE, value, instruction.getCount());
+            case Instruction.OPCODE_MLT:
+                return ArithmeticLogicUnit.evaluateHigh(control, WORD_SIZE, value, operand);
+            default:
+                return ArithmeticLogicUnit.evaluate(control, WORD_SIZE, value, operand);
+        }
+    }
+
+    /**
+     * @return MLT: low word of the product, DVD: remainder (written to r + 1)
+     */
+    static int secondResult(Instruction instruction, int value, int operand){
+        if(instruction.getOpcode() == Instruction.OPCODE_MLT){
+            return ArithmeticLogicUnit.evaluate(instruction.getALUControl(), WORD_SIZE, value, operand);
+        }
+        return ArithmeticLogicUnit.evaluateHigh(instruction.getALUControl(), WORD_SIZE, value, operand);
+    }
+
+    /**
+     * @return operand as recorded for CC: MLT/DVD flags come from signed operands
+     */
+    static long conditionOperand(Instruction instruction, int value){
+        return (instruction.getUnitType() == FunctionalUnit.TYPE_MULTIPLY_DIVIDE) ? InstructionExecutor.signed(value) : value;
+    }
+
+    /**
+     * @param instruction a control transfer
+     * @param value c(r), before SOB decrements it
+     * @param controlUnit CC for JCC
+     * @return true if the jump is taken
+     */
+    static boolean taken(Instruction instruction, int value, ControlUnit controlUnit){
+        switch(instruction.getOpcode()){
+            case Instruction.OPCODE_JZ:
+                return value == 0;
+            case Instruction.OPCODE_JNE:
+                return value != 0;
+            case Instruction.OPCODE_JGE:
+                return InstructionExecutor.signed(value) >= 0;
+            case Instruction.OPCODE_JCC:
+                return controlUnit.getConditionCode(instruction.getRFI()) == 1;
+            case Instruction.OPCODE_SOB:
+                return InstructionExecutor.signed((value - 1) & WORD_MASK) > 0;
+            default:
+                return instruction.isControlTransfer();
+        }
+    }
+
+    private int load(int address) throws MachineFaultException {
+        this.lastMemoryAddress = address;
+        this.lastMemoryValue = this.read(address);
+        return this.lastMemoryValue;
+    }
+
+    private void store(int address, int value) throws MachineFaultException {
+        this.lastMemoryAddress = address;
+        this.lastMemoryValue = value & WORD_MASK;
+        if(this.storeQueue != null){
+            this.memory.checkAddress(address);
+            this.storeQueue.add(address, value & WORD_MASK);
+        } else {
+            this.memory.writeWord(address, value);
+        }
+    }
+
+    private int read(int address) throws MachineFaultException {
+        if(this.storeQueue != null){
+            int queued = this.storeQueue.forward(address);
+            if(queued != StoreQueue.NOT_FOUND){
+                return queued;
+            }
+        }
+        return this.memory.readWord(address);
+    }
+
+    /**
+     * Starts executing down a predicted path.
+     * @param queue where stores are held until the path is confirmed (must have room for each store executed)
+     */
+    public void beginSpeculation(StoreQueue queue) {
+        this.storeQueue = queue;
+    }
+
+    /**
+     * Returns to writing memory directly. The caller commits or discards the queue.
+     */
+    public void endSpeculation() {
+        this.storeQueue = null;
+    }
+
+    public boolean isSpeculative() {
+        return this.storeQueue != null;
+    }
+
+    private static int signed(int word){
+        return (word << 12) >> 12;
+    }
+
+    /**
+     * @return EA of the last executed instruction, -1 if it had none
+     */
+    public int getLastEffectiveAddress() {
+        return lastEffectiveAddress;
+    }
+
+    /**
+     * @return data address read or written by the last instruction, -1 if none
+     */
+    public int getLastMemoryAddress() {
+        return lastMemoryAddress;
+    }
+
+    /**
+     * @return data word read or written by the last instruction (meaningless if none)
+     */
+    public int getLastMemoryValue() {
+        return lastMemoryValue;
+    }
+
+    /**
+     * @return true if the last instruction transferred control
+     */
+    public boolean wasLastBranchTaken() {
+        return lastBranchTaken;
+    }
+
+}
@@ -9,7 +9,7 @@ import computersimulator.components.*;
  accept a value in the MBR to be stored in memory on the next cycle or 
  place a value in the MBR that is read from memory on the next cycle.
  */
-public class MemoryControlUnit implements IClockCycle {
+public class MemoryControlUnit implements IScheduledClockCycle {
     
     // Memory 2d Array 8 banks of 256 words each = 2048 addresses
     private final Word[][] memory;    
@@ -30,6 +30,15 @@ public class MemoryControlUnit implements IClockCycle {
     private final static int STATE_PRE_STORE = 3;
     private final static int STATE_PRE_FETCH = 4;
     
+    // the last fetch/store had to wait for the bus (CoherentCache); it is tried again next cycle
+    private boolean waiting = false;
+    
+    // Engineer: print each fetch/store
+    private boolean trace = true;
+    
+    // watchpoints checked on readWord / writeWord (the Computer's, once installed)
+    private Breakpoints breakpoints = new Breakpoints();
+    
 
     public MemoryControlUnit() {
         memory = new Word[MemoryControlUnit.BANK_SIZE][MemoryControlUnit.BANK_CELLS];     
@@ -51,6 +60,36 @@ public class MemoryControlUnit implements IClockCycle {
         this.fetchStoreController();                
     }
     
+    /**
+     * A fetch/store that has been carried out only holds the port for the
+     * rest of its latency (one cycle); it needs no clock cycle for that, as
+     * skipCycles() releases the port just as the tick would.
+     * @return 0 with a fetch/store to carry out this cycle, NEVER otherwise
+     *  (until the MAR/MBR are set)
+     */
+    @Override
+    public long getIdleCycles(){
+        switch(state){
+            case MemoryControlUnit.STATE_PRE_FETCH:
+            case MemoryControlUnit.STATE_PRE_STORE:
+                return 0;
+            default:
+                return IScheduledClockCycle.NEVER;
+        }
+    }
+    
+    /**
+     * Releases the port after a fetch/store's last cycle; an idle memory does
+     * nothing on its clock cycle.
+     * @param cycles cycles skipped
+     */
+    @Override
+    public void skipCycles(long cycles){
+        if(cycles > 0 && this.isBusy()){
+            this.resetState();
+        }
+    }
+    
     private void fetchStoreController(){
         switch(state){            
             case MemoryControlUnit.STATE_FETCH:
@@ -59,15 +98,17 @@ public class MemoryControlUnit implements IClockCycle {
                 break;
                 
             case MemoryControlUnit.STATE_PRE_STORE:
-                this.state = MemoryControlUnit.STATE_STORE;
-                this.storeAddressInMemoryOperation();   
-                
+                this.waiting = !this.storeAddressInMemoryOperation();
+                if(!this.waiting){
+                    this.state = MemoryControlUnit.STATE_STORE;
+                }
                 break;
                 
             case MemoryControlUnit.STATE_PRE_FETCH:               
-                this.state = MemoryControlUnit.STATE_FETCH;                        
-                this.fetchAddressOperation();
-
+                this.waiting = !this.fetchAddressOperation();
+                if(!this.waiting){
+                    this.state = MemoryControlUnit.STATE_FETCH;
+                }
                 break;
                             
             case MemoryControlUnit.STATE_NONE:
@@ -145,6 +186,14 @@ public class MemoryControlUnit implements IClockCycle {
     }
     
     
+    /**
+     * @return true while a fetch/store set up by MAR/MBR waits for the bus
+     *  (the MBR isn't valid yet)
+     */
+    public boolean isWaiting(){
+        return this.waiting;
+    }
+    
     /**
      * Check to see if we're mid-operation this clock cycle
      * @return true/false 
@@ -176,11 +225,11 @@ public class MemoryControlUnit implements IClockCycle {
         int bankIndex = (int)Math.floor((addressRaw / MemoryControlUnit.BANK_CELLS));
         int cellIndex = addressRaw % (MemoryControlUnit.BANK_CELLS);
         
-        System.out.println("Calculated Memory Address: "+addressRaw+" as Bank: "+bankIndex+", Cell: "+cellIndex+")");
+        this.trace("Calculated Memory Address: "+addressRaw+" as Bank: "+bankIndex+", Cell: "+cellIndex+")");
         
         if(bankIndex > MemoryControlUnit.BANK_SIZE){
             //throw new Exception("Memory index["+bankIndex+"]["+cellIndex+"] out of bounds. (Memory Size: ["+MemoryControlUnit.BANK_SIZE+"]["+MemoryControlUnit.BANK_CELLS+"])");
-            System.out.println("Memory index["+bankIndex+"]["+cellIndex+"] out of bounds. (Memory Size: ["+MemoryControlUnit.BANK_SIZE+"]["+MemoryControlUnit.BANK_CELLS+"])");
+            this.trace("Memory index["+bankIndex+"]["+cellIndex+"] out of bounds. (Memory Size: ["+MemoryControlUnit.BANK_SIZE+"]["+MemoryControlUnit.BANK_CELLS+"])");
             return null; //@TODO Switch back to exception
         }
         
@@ -189,6 +238,41 @@ public class MemoryControlUnit implements IClockCycle {
         return result;
     }
     
+    /**
+     * Prints a fetch/store (if tracing)
+     * @param message line to print
+     */
+    private void trace(String message){
+        if(this.trace){
+            System.out.println(message);
+        }
+    }
+    
+    /**
+     * @param trace false to keep fetches and stores quiet
+     */
+    public void setTrace(boolean trace) {
+        this.trace = trace;
+    }
+    
+    public boolean isTrace() {
+        return trace;
+    }
+
+    /**
+     * @return watchpoints this unit checks
+     */
+    public Breakpoints getBreakpoints() {
+        return breakpoints;
+    }
+
+    /**
+     * @param breakpoints watchpoints to check on readWord / writeWord
+     */
+    void setBreakpoints(Breakpoints breakpoints) {
+        this.breakpoints = breakpoints;
+    }
+
     /**
      * Engineering console function to read directly from memory
      * @param address
@@ -223,48 +307,114 @@ public class MemoryControlUnit implements IClockCycle {
     }
     
     
+    /**
+     * @return number of addressable words (8 banks of 256)
+     */
+    public int getCapacity(){
+        return MemoryControlUnit.BANK_SIZE * MemoryControlUnit.BANK_CELLS;
+    }
+    
+    /**
+     * Reads a word as raw bits, bypassing MAR/MBR. Used by execution models 
+     * that access memory directly at issue (superscalar, pipeline).
+     * @param address word address
+     * @return raw 20-bit value
+     * @throws MachineFaultException address beyond the installed memory
+     */
+    public int readWord(int address) throws MachineFaultException {
+        this.checkAddress(address);
+        int value = this.memory[address / MemoryControlUnit.BANK_CELLS][address % MemoryControlUnit.BANK_CELLS].getRawValue();
+        long[] watched = this.breakpoints.reads;
+        if(watched != null && Breakpoints.contains(watched, address)){
+            this.breakpoints.hit(Breakpoints.HIT_READ, address);
+        }
+        if(SimulatorEvents.active){
+            SimulatorEvents.memoryAccess(address, false, value);
+        }
+        return value;
+    }
+    
+    /**
+     * Reads a word for the debugger: no watchpoint, flight recorder event or
+     * statistic sees it.
+     * @param address word address
+     * @return raw 20-bit value, 0 beyond the installed memory
+     */
+    public int peekWord(int address) {
+        if(address < 0 || address >= this.getCapacity()){
+            return 0;
+        }
+        return this.memory[address / MemoryControlUnit.BANK_CELLS][address % MemoryControlUnit.BANK_CELLS].getRawValue();
+    }
+    
+    /**
+     * Writes a word from raw bits, bypassing MAR/MBR.
+     * @param address word address
+     * @param value raw value (low 20 bits kept)
+     * @throws MachineFaultException address beyond the installed memory
+     */
+    public void writeWord(int address, int value) throws MachineFaultException {
+        this.checkAddress(address);
+        this.memory[address / MemoryControlUnit.BANK_CELLS][address % MemoryControlUnit.BANK_CELLS] = new Word(value);
+        long[] watched = this.breakpoints.writes;
+        if(watched != null && Breakpoints.contains(watched, address)){
+            this.breakpoints.hit(Breakpoints.HIT_WRITE, address);
+        }
+        if(SimulatorEvents.active){
+            SimulatorEvents.memoryAccess(address, true, value & 0xFFFFF);
+        }
+    }
+    
+    /**
+     * @param address word address
+     * @throws MachineFaultException address beyond the installed memory
+     */
+    void checkAddress(int address) throws MachineFaultException {
+        if(address < 0 || address >= this.getCapacity()){
+            throw new MachineFaultException(MachineFaultException.FAULT_ILLEGAL_MEMORY_ADDRESS, 
+                    "Memory address "+address+" out of bounds. (Memory Size: "+this.getCapacity()+")");
+        }
+    }
+    
     /**
      * fetchAddressOperation - This fetches an addressRaw specified by MAR, and
  puts the contents of that memory location into MBR. 
      * Private because it is called by clockCycle.
+     * @return false if it has to wait for the bus
      */    
-    private void fetchAddressOperation(){
+    private boolean fetchAddressOperation(){
         try {
-            // Load and Decode the Address in MAR
-            int[] addr = this.calculateActualMemoryLocation(this.memoryAddressRegister);
-            int bankIndex = addr[0]; 
-            int cellIndex = addr[1]; 
-        
-            // Copy the contents of that memory location into the MBR            
-            this.memoryBufferRegister = new Word(this.memory[bankIndex][cellIndex]);
-            System.out.println("-- Fetch MAR("+this.memoryAddressRegister.getUnsignedValue()+"): "+this.memoryBufferRegister);
+            // Copy the contents of the location in MAR into the MBR
+            // (through readWord, so a CoherentCache serves it)
+            this.memoryBufferRegister = new Word(this.readWord(this.memoryAddressRegister.getUnsignedValue()));
+            this.trace("-- Fetch MAR("+this.memoryAddressRegister.getUnsignedValue()+"): "+this.memoryBufferRegister);
+        } catch(BusStallException e){
+            return false;
         } catch(Exception e){
             //@TODO: Handle bad addressRaw (virtual memory?)
-            System.out.println("-- Bad Address: "+this.memoryAddressRegister+" -> "+e.getMessage());
+            this.trace("-- Bad Address: "+this.memoryAddressRegister+" -> "+e.getMessage());
         }
-        
-        
+        return true;
     }
     
     /**
      * storeAddressInMemoryOperation - This stores a MBR value into memory at
      * the location specified by MAR.
      * Private because it is called by clockCycle.
+     * @return false if it has to wait for the bus
      */
-    private void storeAddressInMemoryOperation(){   
+    private boolean storeAddressInMemoryOperation(){   
         try {        
-            // Load and Decode the Address in MAR
-            int[] addr = this.calculateActualMemoryLocation(this.memoryAddressRegister);
-            int bankIndex = addr[0]; 
-            int cellIndex = addr[1];        
-
-            //Copy the value from MDR to Memory                
-            this.memory[bankIndex][cellIndex] = new Word(this.memoryBufferRegister);
-            System.out.println("-- Memory Set - MAR("+this.memoryAddressRegister.getUnsignedValue()+") to "+this.memoryBufferRegister);
+            //Copy the value from MDR to the location in MAR
+            this.writeWord(this.memoryAddressRegister.getUnsignedValue(), this.memoryBufferRegister.getRawValue());
+            this.trace("-- Memory Set - MAR("+this.memoryAddressRegister.getUnsignedValue()+") to "+this.memoryBufferRegister);
+        } catch(BusStallException e){
+            return false;
         } catch(Exception e){
             //@TODO: Handle bad addressRaw (virtual memory?)
-            System.out.println("-- Bad Address: "+this.memoryAddressRegister+" -> "+e.getMessage());
-        }                
+            this.trace("-- Bad Address: "+this.memoryAddressRegister+" -> "+e.getMessage());
+        }
+        return true;
     }
     
     /**
@@ -0,0 +1,855 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.MachineFaultException;
+
+/**
+ * Out-of-order execution in the style of Tomasulo's algorithm with a reorder
+ * buffer (ROB), for the OutOfOrderProcessingUnit.
+ *
+ *  issue   - fetches up to [issueWidth] instructions in program order, renames
+ *            R0-R3 / X1-X3 onto the physical register file and places each
+ *            one in the ROB and a reservation station of its unit type
+ *  execute - any waiting instruction whose operands are ready starts on a
+ *            free functional unit of its type, oldest first
+ *  complete- when the unit's latency has elapsed the result is written to its
+ *            physical register, waking up the instructions waiting on it
+ *  commit  - up to [issueWidth] completed instructions leave the head of the
+ *            ROB in program order, updating the ControlUnit's registers, CC,
+ *            PC and memory
+ *
+ * Stores write memory at commit. A memory read (load, AMR/SMR, indirect EA)
+ * waits until every older store has its address and data, then takes the
+ * youngest matching one or reads memory. CC is not renamed: its writers
+ * update it at commit and JCC waits until no older writer is left in the ROB.
+ *
+ * Faults and HLT are raised when they reach the head of the ROB, so every
+ * older instruction has committed and nothing younger has (precise). Jumps
+ * with a direct target are followed at issue (conditional ones only with a
+ * BranchPredictor); others stop issue until they complete. A mispredicted
+ * jump, or a store into an instruction already fetched, flushes everything
+ * younger when it commits.
+ *
+ * On a multi-core computer an access that has to wait for the bus (see
+ * CoherentCache) holds back the fetch, the instruction's start or its commit
+ * until the line is in place.
+ */
+public class OutOfOrderCore implements IClockCycle {
+
+    private final static int WORD_SIZE = 20;
+    private final static int WORD_MASK = 0xFFFFF;
+    private final static int ADDRESS_MASK = 0x1FFF;
+    private final static int NO_PREDICTION = -1;
+
+    // Architectural registers that are renamed: R0-R3, X1-X3
+    private final static int RENAMED_REGISTERS = Instruction.REGISTER_CC;
+
+    public final static int DEFAULT_ISSUE_WIDTH = 2;
+    public final static int DEFAULT_ROB_SIZE = 16;
+    public final static int DEFAULT_RESERVATION_STATIONS = 4;
+    public final static int DEFAULT_PHYSICAL_REGISTERS = 24;
+
+    // Stall reasons: issue, and accesses waiting for the bus
+    public final static int STALL_ROB_FULL = 0;
+    public final static int STALL_RESERVATION_STATION_FULL = 1;
+    public final static int STALL_NO_FREE_REGISTER = 2;
+    public final static int STALL_WAITING_FOR_JUMP = 3;
+    public final static int STALL_BUS = 4;
+    public final static int STALL_COUNT = 5;
+    private final static String[] STALL_NAMES = {"ROB full", "RS full", "no free register", "waiting for jump", "bus"};
+
+    private final static int STATE_WAITING = 0;
+    private final static int STATE_EXECUTING = 1;
+    private final static int STATE_DONE = 2;
+
+    /**
+     * One ROB entry (one instruction in flight).
+     */
+    private static class Entry {
+        int pc;
+        Instruction instruction;
+        MachineFaultException fault;
+        int state = STATE_WAITING;
+        long completeCycle;
+
+        // Physical register of each renamed source, by architectural register
+        final int[] sources = new int[RENAMED_REGISTERS];
+
+        int destinationCount = 0;
+        final int[] destinations = new int[2];          // architectural
+        final int[] physical = new int[2];
+        final int[] previousPhysical = new int[2];      // freed at commit
+        final int[] results = new int[2];
+
+        int conditionControl = ArithmeticLogicUnit.CONTROL_NONE;
+        long conditionOperand1;
+        long conditionOperand2;
+        int equalOrNot = -1;    // TRR: 1 set, 0 unset
+
+        int next;                           // actual next PC
+        boolean taken;
+        int predictedNext = NO_PREDICTION;  // where issue continued, NO_PREDICTION if it waited
+        boolean predictedTaken;
+        boolean mispredicted;
+
+        boolean store;
+        int storeAddress;
+        int storeValue;
+
+        int loadAddress;    // last word read (the operand, after any indirection)
+        int loadValue;
+
+        boolean writesConditionCode(){
+            return (this.instruction.getDestinationMask() & Instruction.registerBit(Instruction.REGISTER_CC)) != 0;
+        }
+
+        void setResult(int register, int value){
+            for(int i = 0; i < this.destinationCount; i++){
+                if(this.destinations[i] == register){
+                    this.results[i] = value;
+                }
+            }
+        }
+    }
+
+    private final ControlUnit controlUnit;
+    private final MemoryControlUnit memory;
+    private final ArithmeticLogicUnit alu;
+    private FunctionalUnit[] functionalUnits = new FunctionalUnit[0];
+    private BranchPredictor branchPredictor;
+
+    private int issueWidth = DEFAULT_ISSUE_WIDTH;
+    private int reservationStations = DEFAULT_RESERVATION_STATIONS;
+
+    // Reorder buffer (circular)
+    private Entry[] rob;
+    private int robHead = 0;
+    private int robCount = 0;
+    private final int[] waiting = new int[FunctionalUnit.TYPE_COUNT];   // reservation stations in use
+
+    // Physical register file, rename table (speculative and committed) and free list
+    private int[] physicalValues;
+    private boolean[] physicalReady;
+    private final int[] renameTable = new int[RENAMED_REGISTERS];
+    private final int[] committedRenameTable = new int[RENAMED_REGISTERS];
+    private int[] freeList;
+    private int freeCount;
+
+    private int fetchPC;
+    private boolean fetchStarted = false;
+    private boolean fetchHalted = false;    // HLT issued
+    private boolean fetchWaiting = false;   // jump without a prediction in flight
+    private boolean fetchBlocked = false;   // mispredicted jump found, wait for it to commit
+
+    // Engineer: statistics
+    private long cycles = 0;
+    private long committed = 0;
+    private long flushes = 0;
+    private long flushedInstructions = 0;
+    private final long[] stalls = new long[STALL_COUNT];
+    private long[] robOccupancy;
+    private long[] reservationStationOccupancy;
+
+    public OutOfOrderCore(ControlUnit controlUnit, MemoryControlUnit memory, ArithmeticLogicUnit alu) {
+        this.controlUnit = controlUnit;
+        this.memory = memory;
+        this.alu = alu;
+        this.configure(DEFAULT_ROB_SIZE, DEFAULT_RESERVATION_STATIONS, DEFAULT_PHYSICAL_REGISTERS);
+    }
+
+    /**
+     * Resizes the core; anything in flight is dropped and issue restarts at PC.
+     * @param robSize reorder buffer entries
+     * @param reservationStations reservation stations per functional unit type
+     * @param physicalRegisters physical registers (at least one more than the 7 renamed registers)
+     */
+    public final void configure(int robSize, int reservationStations, int physicalRegisters){
+        if(robSize < 1 || reservationStations < 1){
+            throw new IllegalArgumentException("ROB and reservation stations need at least one entry");
+        }
+        if(physicalRegisters <= RENAMED_REGISTERS){
+            throw new IllegalArgumentException("Need more than "+RENAMED_REGISTERS+" physical registers");
+        }
+        this.rob = new Entry[robSize];
+        this.reservationStations = reservationStations;
+        this.physicalValues = new int[physicalRegisters];
+        this.physicalReady = new boolean[physicalRegisters];
+        this.freeList = new int[physicalRegisters];
+        this.reset();
+        this.resetStatistics();
+    }
+
+    /**
+     * @param units functional units to execute on (the CPU's pool)
+     */
+    public void setFunctionalUnits(FunctionalUnit[] units) {
+        this.functionalUnits = units;
+    }
+
+    /**
+     * @param width instructions issued and committed per cycle
+     */
+    public void setIssueWidth(int width) {
+        if(width < 1){
+            throw new IllegalArgumentException("Issue width must be at least 1");
+        }
+        this.issueWidth = width;
+    }
+
+    public int getIssueWidth() {
+        return issueWidth;
+    }
+
+    /**
+     * @param branchPredictor guesses conditional jumps so issue continues past them, null to wait
+     */
+    public void setBranchPredictor(BranchPredictor branchPredictor) {
+        this.branchPredictor = branchPredictor;
+    }
+
+    public BranchPredictor getBranchPredictor() {
+        return branchPredictor;
+    }
+
+    /**
+     * Empties the ROB; registers are read again from the ControlUnit and
+     * issue restarts at its PC.
+     */
+    public final void reset(){
+        for(int i = 0; i < this.rob.length; i++){
+            this.rob[i] = null;
+        }
+        this.robHead = 0;
+        this.robCount = 0;
+        for(int r = 0; r < RENAMED_REGISTERS; r++){
+            this.renameTable[r] = r;
+            this.committedRenameTable[r] = r;
+            this.physicalValues[r] = this.controlUnit.getRegisterValue(r);
+            this.physicalReady[r] = true;
+        }
+        this.rebuildFreeList();
+        this.fetchStarted = false;
+        this.fetchHalted = false;
+        this.fetchWaiting = false;
+        this.fetchBlocked = false;
+    }
+
+    /**
+     * Clears the statistics.
+     */
+    public final void resetStatistics(){
+        this.cycles = 0;
+        this.committed = 0;
+        this.flushes = 0;
+        this.flushedInstructions = 0;
+        for(int i = 0; i < STALL_COUNT; i++){
+            this.stalls[i] = 0;
+        }
+        this.robOccupancy = new long[this.rob.length + 1];
+        this.reservationStationOccupancy = new long[this.reservationStations * FunctionalUnit.TYPE_COUNT + 1];
+    }
+
+    /**
+     * Clock cycle. Commits, completes, starts execution and issues, in that
+     * order, so a slot freed this cycle is reused next cycle.
+     * @throws HaltSystemException HLT reached the head of the ROB
+     * @throws MachineFaultException a faulting instruction reached the head of the ROB (MFR is set)
+     */
+    @Override
+    public void clockCycle() throws Exception {
+        if(!this.fetchStarted){
+            // registers set since the reset (a loader, the consoles) count from here
+            for(int r = 0; r < RENAMED_REGISTERS; r++){
+                this.physicalValues[r] = this.controlUnit.getRegisterValue(r);
+            }
+            this.fetchPC = this.controlUnit.getProgramCounter().getUnsignedValue();
+            this.fetchStarted = true;
+        }
+        this.cycles++;
+
+        this.commit();
+        this.complete();
+        this.execute();
+        this.issue();
+
+        this.robOccupancy[this.robCount]++;
+        int inStations = 0;
+        for(int type = 0; type < FunctionalUnit.TYPE_COUNT; type++){
+            inStations += this.waiting[type];
+        }
+        this.reservationStationOccupancy[inStations]++;
+    }
+
+    private Entry entry(int age){
+        return this.rob[(this.robHead + age) % this.rob.length];
+    }
+
+    /*************** Commit ***************/
+
+    private void commit() throws HaltSystemException, MachineFaultException {
+        for(int slot = 0; slot < this.issueWidth && this.robCount > 0; slot++){
+            Entry e = this.entry(0);
+            if(e.state != STATE_DONE){
+                return;
+            }
+            if(e.fault != null){
+                this.controlUnit.getMachineFaultRegister().setValue(e.fault.getFaultId());
+                throw e.fault;      // stays at the head, the machine is stopped
+            }
+            if(e.instruction.isHalt()){
+                throw new HaltSystemException();
+            }
+            if(e.store){
+                try {
+                    this.memory.writeWord(e.storeAddress, e.storeValue);
+                } catch(BusStallException ex){
+                    this.stalls[STALL_BUS]++;
+                    return;     // nothing has changed yet: commits once the line is here
+                }
+            }
+
+            for(int i = 0; i < e.destinationCount; i++){
+                int r = e.destinations[i];
+                this.controlUnit.setRegisterValue(r, this.physicalValues[e.physical[i]]);
+                this.committedRenameTable[r] = e.physical[i];
+                this.freeList[this.freeCount++] = e.previousPhysical[i];
+            }
+            if(e.conditionControl != ArithmeticLogicUnit.CONTROL_NONE){
+                this.controlUnit.recordConditionOperation(e.conditionControl, WORD_SIZE, e.conditionOperand1, e.conditionOperand2);
+            }
+            if(e.equalOrNot == 1){
+                this.controlUnit.setCondition(ControlUnit.CONDITION_REGISTER_EQUALORNOT);
+            } else if(e.equalOrNot == 0){
+                this.controlUnit.unsetCondition(ControlUnit.CONDITION_REGISTER_EQUALORNOT);
+            }
+            if(this.branchPredictor != null && e.instruction.isConditionalBranch() && e.predictedNext != NO_PREDICTION){
+                this.branchPredictor.update(e.pc, e.predictedTaken, e.taken);
+            }
+            boolean refetch = e.mispredicted;
+            if(e.mispredicted){
+                this.controlUnit.recordBranchMispredict(e.pc, e.next);
+            }
+            if(e.store){
+                refetch |= this.fetchedYoungerAt(e.storeAddress);    // self-modifying code
+            }
+            this.controlUnit.getProgramCounter().setValue(e.next);
+
+            this.rob[this.robHead] = null;
+            this.robHead = (this.robHead + 1) % this.rob.length;
+            this.robCount--;
+            this.committed++;
+            this.controlUnit.recordRetirement(e.instruction, e.pc, e.next, e.taken,
+                    e.store ? e.storeAddress : (e.instruction.accessesData() ? e.loadAddress : -1),
+                    e.store ? e.storeValue : e.loadValue);
+
+            if(refetch){
+                this.flush(e.next);
+                return;
+            }
+        }
+    }
+
+    private boolean fetchedYoungerAt(int address){
+        for(int age = 1; age < this.robCount; age++){
+            if(this.entry(age).pc == address){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops everything in flight (all younger than the instruction just
+     * committed) and restarts issue at a new PC.
+     */
+    private void flush(int pc){
+        this.flushes++;
+        this.flushedInstructions += this.robCount;
+        for(int i = 0; i < this.rob.length; i++){
+            this.rob[i] = null;
+        }
+        this.robCount = 0;
+        for(int type = 0; type < FunctionalUnit.TYPE_COUNT; type++){
+            this.waiting[type] = 0;
+        }
+        System.arraycopy(this.committedRenameTable, 0, this.renameTable, 0, RENAMED_REGISTERS);
+        this.rebuildFreeList();
+        this.fetchPC = pc;
+        this.fetchHalted = false;
+        this.fetchWaiting = false;
+        this.fetchBlocked = false;
+    }
+
+    private void rebuildFreeList(){
+        boolean[] used = new boolean[this.physicalValues.length];
+        for(int r = 0; r < RENAMED_REGISTERS; r++){
+            used[this.renameTable[r]] = true;
+        }
+        this.freeCount = 0;
+        for(int p = this.physicalValues.length - 1; p >= 0; p--){
+            if(!used[p]){
+                this.freeList[this.freeCount++] = p;
+            }
+        }
+    }
+
+    /*************** Complete ***************/
+
+    private void complete(){
+        for(int age = 0; age < this.robCount; age++){
+            Entry e = this.entry(age);
+            if(e.state != STATE_EXECUTING || e.completeCycle > this.cycles){
+                continue;
+            }
+            e.state = STATE_DONE;
+            for(int i = 0; i < e.destinationCount; i++){
+                this.physicalValues[e.physical[i]] = e.results[i];
+                this.physicalReady[e.physical[i]] = true;
+            }
+            if(e.instruction.isControlTransfer() && e.fault == null){
+                if(e.predictedNext == NO_PREDICTION){
+                    this.fetchPC = e.next;
+                    this.fetchWaiting = false;
+                } else if(e.predictedNext != e.next){
+                    e.mispredicted = true;
+                    this.fetchBlocked = true;
+                }
+            }
+        }
+    }
+
+    /*************** Execute ***************/
+
+    private void execute(){
+        boolean olderStorePending = false;
+        boolean olderConditionWriter = false;
+        for(int age = 0; age < this.robCount; age++){
+            Entry e = this.entry(age);
+            if(e.state == STATE_WAITING && this.operandsReady(e)
+                    && !(olderStorePending && this.readsMemory(e.instruction))
+                    && !(olderConditionWriter && e.instruction.getOpcode() == Instruction.OPCODE_JCC)){
+                FunctionalUnit unit = this.findFreeFunctionalUnit(e.instruction.getUnitType());
+                if(unit != null){
+                    this.start(e, unit);
+                }
+            }
+            if(e.store && e.state == STATE_WAITING){
+                olderStorePending = true;
+            }
+            if(e.writesConditionCode()){
+                olderConditionWriter = true;
+            }
+        }
+    }
+
+    private boolean operandsReady(Entry e){
+        int sources = e.instruction.getSourceMask();
+        for(int r = 0; r < RENAMED_REGISTERS; r++){
+            if((sources & Instruction.registerBit(r)) != 0 && !this.physicalReady[e.sources[r]]){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean readsMemory(Instruction instruction){
+        return instruction.readsMemory() || (instruction.usesEffectiveAddress() && instruction.getIndirect() == 1);
+    }
+
+    private FunctionalUnit findFreeFunctionalUnit(int type){
+        for(FunctionalUnit unit : this.functionalUnits){
+            if(unit.getType() == type && unit.canAccept()){
+                return unit;
+            }
+        }
+        return null;
+    }
+
+    private void start(Entry e, FunctionalUnit unit){
+        Instruction ins = e.instruction;
+        int latency = unit.getLatency();
+        int interval = 1;
+        int control = ins.getALUControl();
+        if(control != ArithmeticLogicUnit.CONTROL_NONE && ins.getUnitType() != FunctionalUnit.TYPE_LOAD_STORE){
+            int operationClass = ArithmeticLogicUnit.operationClassOf(control);
+            latency = this.alu.getLatency(operationClass);
+            interval = this.alu.getInitiationInterval(operationClass);
+        }
+        if(ins.usesEffectiveAddress() && ins.getIndirect() == 1){
+            latency++;      // the pointer read
+        }
+        try {
+            this.compute(e);
+        } catch(BusStallException ex){
+            this.stalls[STALL_BUS]++;
+            return;     // reads come before any result is set: starts again next cycle
+        } catch(MachineFaultException ex){
+            e.fault = ex;
+        }
+        unit.dispatch(ins, latency, interval);
+        e.state = STATE_EXECUTING;
+        e.completeCycle = this.cycles + latency;
+        this.waiting[ins.getUnitType()]--;
+    }
+
+    private int operand(Entry e, int register){
+        return this.physicalValues[e.sources[register]];
+    }
+
+    /**
+     * Reads memory on behalf of an instruction. Every older store has
+     * executed, so the youngest older one to the address supplies the value.
+     */
+    private int readMemory(Entry e, int address) throws MachineFaultException {
+        int value = -1;
+        for(int age = 0; age < this.robCount; age++){
+            Entry older = this.entry(age);
+            if(older == e){
+                break;
+            }
+            if(older.store && older.storeAddress == address && older.fault == null){
+                value = older.storeValue;
+            }
+        }
+        value = (value >= 0) ? value : this.memory.readWord(address);
+        e.loadAddress = address;
+        e.loadValue = value;
+        return value;
+    }
+
+    /**
+     * Works out the instruction's results, next PC and store from its operands.
+     */
+    private void compute(Entry e) throws MachineFaultException {
+        Instruction ins = e.instruction;
+        int r = ins.getRFI();
+        int control = ins.getALUControl();
+        int index = Instruction.REGISTER_X1 + ins.getXFI() - 1;
+        e.next = (e.pc + 1) & ADDRESS_MASK;
+
+        int ea = 0;
+        if(ins.usesEffectiveAddress()){
+            ea = ins.getAddress();
+            if(ins.getXFI() != 0){
+                ea = (ea + this.operand(e, index)) & ADDRESS_MASK;
+            }
+            if(ins.getIndirect() == 1){
+                ea = this.readMemory(e, ea) & ADDRESS_MASK;
+            }
+        }
+
+        boolean taken = false;
+        switch(ins.getOpcode()){
+            case Instruction.OPCODE_LDR:
+                e.setResult(r, this.readMemory(e, ea));
+                break;
+            case Instruction.OPCODE_LDA:
+                e.setResult(r, ea);
+                break;
+            case Instruction.OPCODE_LDX:
+                int loaded = this.readMemory(e, ea) & ADDRESS_MASK;
+                if(ins.getXFI() != 0){
+                    e.setResult(index, loaded);
+                }
+                break;
+            case Instruction.OPCODE_STR:
+            case Instruction.OPCODE_STX:
+                this.memory.checkAddress(ea);
+                e.storeAddress = ea;
+                if(ins.getOpcode() == Instruction.OPCODE_STR){
+                    e.storeValue = this.operand(e, r);
+                } else {
+                    e.storeValue = (ins.getXFI() == 0) ? 0 : this.operand(e, index);
+                }
+                break;
+            case Instruction.OPCODE_AMR:
+            case Instruction.OPCODE_SMR:
+                this.arithmetic(e, control, r, this.readMemory(e, ea));
+                break;
+            case Instruction.OPCODE_AIR:
+            case Instruction.OPCODE_SIR:
+                this.arithmetic(e, control, r, ins.getAddress());
+                break;
+
+            case Instruction.OPCODE_JZ:
+                taken = (this.operand(e, r) == 0);
+                break;
+            case Instruction.OPCODE_JNE:
+                taken = (this.operand(e, r) != 0);
+                break;
+            case Instruction.OPCODE_JGE:
+                taken = (OutOfOrderCore.signed(this.operand(e, r)) >= 0);
+                break;
+            case Instruction.OPCODE_JCC:
+                taken = (this.controlUnit.getConditionCode(r) == 1);   // no older CC writer left
+                break;
+            case Instruction.OPCODE_JMP:
+                taken = true;
+                break;
+            case Instruction.OPCODE_JSR:
+                e.setResult(3, e.next);
+                taken = true;
+                break;
+            case Instruction.OPCODE_RFS:
+                e.setResult(0, ins.getAddress());
+                ea = this.operand(e, 3) & ADDRESS_MASK;
+                taken = true;
+                break;
+            case Instruction.OPCODE_SOB:
+                int decremented = (this.operand(e, r) - 1) & WORD_MASK;
+                e.setResult(r, decremented);
+                taken = (OutOfOrderCore.signed(decremented) > 0);
+                break;
+
+            case Instruction.OPCODE_MLT:
+            case Instruction.OPCODE_DVD:
+                int rx = this.operand(e, r);
+                int ry = this.operand(e, ins.getXFI());
+                int low = ArithmeticLogicUnit.evaluate(control, WORD_SIZE, rx, ry);
+                int high = ArithmeticLogicUnit.evaluateHigh(control, WORD_SIZE, rx, ry);
+                if(control == ArithmeticLogicUnit.CONTROL_DIVIDE){
+                    int quotient = low;
+                    low = high;         // remainder
+                    high = quotient;
+                }
+                e.setResult(r, high);
+                e.setResult(r + 1, low);
+                e.conditionControl = control;
+                e.conditionOperand1 = OutOfOrderCore.signed(rx);
+                e.conditionOperand2 = OutOfOrderCore.signed(ry);
+                break;
+            case Instruction.OPCODE_TRR:
+                e.equalOrNot = (this.operand(e, r) == this.operand(e, ins.getXFI())) ? 1 : 0;
+                break;
+            case Instruction.OPCODE_AND:
+            case Instruction.OPCODE_ORR:
+                e.setResult(r, ArithmeticLogicUnit.evaluate(control, WORD_SIZE, this.operand(e, r), this.operand(e, ins.getXFI())));
+                break;
+            case Instruction.OPCODE_NOT:
+                e.setResult(r, ArithmeticLogicUnit.evaluate(control, WORD_SIZE, this.operand(e, r), 0));
+                break;
+            case Instruction.OPCODE_SRC:
+            case Instruction.OPCODE_RRC:
+                int shifted = ins.getXFI();
+                e.setResult(shifted, ArithmeticLogicUnit.evaluate(control, WORD_SIZE, this.operand(e, shifted), ins.getCount()));
+                break;
+            default:
+                break;
+        }
+        e.taken = taken;
+        if(taken){
+            e.next = ea;
+        }
+    }
+
+    private void arithmetic(Entry e, int control, int r, int value){
+        int current = this.operand(e, r);
+        e.setResult(r, ArithmeticLogicUnit.evaluate(control, WORD_SIZE, current, value));
+        e.conditionControl = control;
+        e.conditionOperand1 = current;
+        e.conditionOperand2 = value;
+    }
+
+    private static int signed(int word){
+        return (word << 12) >> 12;
+    }
+
+    /*************** Issue ***************/
+
+    private void issue(){
+        for(int slot = 0; slot < this.issueWidth; slot++){
+            if(this.fetchHalted){
+                return;
+            }
+            if(this.fetchWaiting || this.fetchBlocked){
+                this.stalls[STALL_WAITING_FOR_JUMP]++;
+                return;
+            }
+            if(this.robCount == this.rob.length){
+                this.stalls[STALL_ROB_FULL]++;
+                return;
+            }
+
+            Entry e = new Entry();
+            e.pc = this.fetchPC;
+            e.next = (e.pc + 1) & ADDRESS_MASK;
+            try {
+                e.instruction = Instruction.decode(this.memory.readWord(this.fetchPC));
+                if(!e.instruction.isLegal()){
+                    e.fault = new MachineFaultException(MachineFaultException.FAULT_ILLEGAL_OPCODE,
+                            "Illegal opcode "+e.instruction.getOpcode()+" at "+e.pc);
+                }
+            } catch(BusStallException ex){
+                this.stalls[STALL_BUS]++;
+                return;
+            } catch(MachineFaultException ex){
+                e.instruction = Instruction.decode(0);
+                e.fault = ex;   // only raised if this turns out to be on the real path
+            }
+            Instruction ins = e.instruction;
+            int type = ins.getUnitType();
+            int destinations = ins.getDestinationMask() & ~Instruction.registerBit(Instruction.REGISTER_CC);
+            boolean runs = (e.fault == null && !ins.isHalt());
+
+            if(runs){
+                if(this.waiting[type] == this.reservationStations){
+                    this.stalls[STALL_RESERVATION_STATION_FULL]++;
+                    return;
+                }
+                if(Integer.bitCount(destinations) > this.freeCount){
+                    this.stalls[STALL_NO_FREE_REGISTER]++;
+                    return;
+                }
+                this.rename(e, destinations);
+                e.store = ins.writesMemory();
+                this.waiting[type]++;
+            } else {
+                e.state = STATE_DONE;       // raised at commit
+                this.fetchHalted = true;    // nothing past it is needed (unless a flush redirects)
+            }
+
+            this.rob[(this.robHead + this.robCount) % this.rob.length] = e;
+            this.robCount++;
+
+            if(runs && ins.isControlTransfer()){
+                e.predictedNext = this.predict(e);
+                if(e.predictedNext == NO_PREDICTION){
+                    this.fetchWaiting = true;
+                    return;
+                }
+                this.fetchPC = e.predictedNext;
+            } else {
+                this.fetchPC = e.next;
+            }
+        }
+    }
+
+    private void rename(Entry e, int destinations){
+        System.arraycopy(this.renameTable, 0, e.sources, 0, RENAMED_REGISTERS);
+        for(int r = 0; r < RENAMED_REGISTERS; r++){
+            if((destinations & Instruction.registerBit(r)) != 0){
+                int p = this.freeList[--this.freeCount];
+                this.physicalReady[p] = false;
+                e.destinations[e.destinationCount] = r;
+                e.physical[e.destinationCount] = p;
+                e.previousPhysical[e.destinationCount] = this.renameTable[r];
+                e.destinationCount++;
+                this.renameTable[r] = p;
+            }
+        }
+    }
+
+    /**
+     * Targets are only known at issue for direct jumps (no index register, no
+     * indirection); RFS and the rest wait until they execute.
+     * @return where issue continues, NO_PREDICTION to wait
+     */
+    private int predict(Entry e){
+        Instruction ins = e.instruction;
+        if(ins.getOpcode() == Instruction.OPCODE_RFS || ins.getXFI() != 0 || ins.getIndirect() != 0){
+            return NO_PREDICTION;
+        }
+        int target = ins.getAddress();
+        if(!ins.isConditionalBranch()){
+            return target;
+        }
+        if(this.branchPredictor == null){
+            return NO_PREDICTION;
+        }
+        e.predictedTaken = this.branchPredictor.predict(e.pc, target);
+        return e.predictedTaken ? target : e.next;
+    }
+
+    /*************** Statistics ***************/
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public long getCommittedInstructions() {
+        return committed;
+    }
+
+    /**
+     * @return committed instructions per cycle
+     */
+    public double getInstructionsPerCycle() {
+        return (this.cycles == 0) ? 0 : (double)this.committed / this.cycles;
+    }
+
+    /**
+     * @param reason STALL_*
+     * @return cycles issue stopped for the reason
+     */
+    public long getStalls(int reason) {
+        return stalls[reason];
+    }
+
+    public static String getStallName(int reason) {
+        return STALL_NAMES[reason];
+    }
+
+    public long getFlushes() {
+        return flushes;
+    }
+
+    public long getFlushedInstructions() {
+        return flushedInstructions;
+    }
+
+    /**
+     * @return cycles spent with [index] ROB entries in use
+     */
+    public long[] getReorderBufferOccupancy() {
+        return robOccupancy;
+    }
+
+    /**
+     * @return cycles spent with [index] instructions waiting in reservation stations
+     */
+    public long[] getReservationStationOccupancy() {
+        return reservationStationOccupancy;
+    }
+
+    public int getReorderBufferSize() {
+        return rob.length;
+    }
+
+    public int getReservationStations() {
+        return reservationStations;
+    }
+
+    public int getPhysicalRegisters() {
+        return physicalValues.length;
+    }
+
+    /**
+     * @param histogram occupancy histogram
+     * @return average occupancy
+     */
+    private static double mean(long[] histogram){
+        long total = 0;
+        long weighted = 0;
+        for(int i = 0; i < histogram.length; i++){
+            total += histogram[i];
+            weighted += i * histogram[i];
+        }
+        return (total == 0) ? 0 : (double)weighted / total;
+    }
+
+    /**
+     * @return one-line summary of IPC, issue stalls, flushes and average occupancy
+     */
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("cycles %d, committed %d, IPC %.2f", this.cycles, this.committed, this.getInstructionsPerCycle()));
+        for(int i = 0; i < STALL_COUNT; i++){
+            sb.append(", ").append(STALL_NAMES[i]).append(" ").append(this.stalls[i]);
+        }
+        sb.append(", flushes ").append(this.flushes).append(" (").append(this.flushedInstructions).append(" instructions)");
+        sb.append(String.format(", ROB avg %.1f/%d, RS avg %.1f", OutOfOrderCore.mean(this.robOccupancy), this.rob.length,
+                OutOfOrderCore.mean(this.reservationStationOccupancy)));
+        return sb.toString();
+    }
+
+}
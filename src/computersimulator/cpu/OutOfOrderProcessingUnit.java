@@ -0,0 +1,109 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.MachineFaultException;
+
+/**
+ * CPU that runs instructions on an OutOfOrderCore instead of the ControlUnit's
+ * instruction cycle / dispatch or the Pipeline. The ControlUnit still holds
+ * the committed registers, CC and PC, and the functional unit pool is shared
+ * with the in-order models, so the consoles and configuration work unchanged.
+ */
+public class OutOfOrderProcessingUnit extends CentralProcessingUnit {
+
+    private final OutOfOrderCore core;
+
+    public OutOfOrderProcessingUnit(MemoryControlUnit mem) {
+        super(mem);
+        core = new OutOfOrderCore(this.getControlUnit(), mem, this.getALU());
+    }
+
+    /**
+     * Clock cycle. Runs the core, then the functional units it executes on.
+     * @throws java.lang.Exception
+     */
+    @Override
+    public void clockCycle() throws Exception {
+        this.core.setFunctionalUnits(this.getFunctionalUnits());
+        try {
+            this.core.clockCycle();
+        } catch(HaltSystemException e){
+            this.getControlUnit().recordHalt();
+            throw e;
+        } catch(MachineFaultException e){
+            this.getControlUnit().recordTrap(e);
+            throw e;
+        }
+        for(FunctionalUnit unit : this.getFunctionalUnits()){
+            unit.clockCycle();
+        }
+        this.getControlUnit().profileCycles(1);
+    }
+
+    /**
+     * @return 0: the core has work (or checks for it) every cycle
+     */
+    @Override
+    public long getIdleCycles(){
+        return 0;
+    }
+
+    @Override
+    public void skipCycles(long cycles){
+    }
+
+    /**
+     * @return instructions committed by the core
+     */
+    @Override
+    public long getInstructionsExecuted(){
+        return this.core.getCommittedInstructions();
+    }
+
+    /**
+     * Resizes the core; anything in flight is dropped.
+     * @param robSize reorder buffer entries
+     * @param reservationStations reservation stations per functional unit type
+     * @param physicalRegisters physical registers R0-R3 and X1-X3 are renamed onto
+     */
+    public void configureCore(int robSize, int reservationStations, int physicalRegisters){
+        this.core.configure(robSize, reservationStations, physicalRegisters);
+    }
+
+    /**
+     * @param width instructions issued and committed per cycle
+     */
+    @Override
+    public void setIssueWidth(int width){
+        this.core.setIssueWidth(width);
+    }
+
+    @Override
+    public int getIssueWidth(){
+        return this.core.getIssueWidth();
+    }
+
+    /**
+     * @param predictor guesses conditional jumps so issue continues past them,
+     *  null to wait for each one to execute
+     */
+    @Override
+    public void setSpeculativeDispatch(BranchPredictor predictor){
+        this.core.setBranchPredictor(predictor);
+    }
+
+    /**
+     * @param enabled not supported: the core has no in-order pipeline
+     */
+    @Override
+    public void setPipelined(boolean enabled){
+        if(enabled){
+            throw new UnsupportedOperationException("The out-of-order CPU has no in-order pipeline mode");
+        }
+    }
+
+    public OutOfOrderCore getCore() {
+        return core;
+    }
+
+}
@@ -0,0 +1,120 @@
+package computersimulator.cpu;
+
+import java.util.concurrent.BrokenBarrierException;
+import java.util.concurrent.CyclicBarrier;
+
+/**
+ * Clocks the cores of a multi-core Computer on several host threads. Core c
+ * belongs to thread c % threads; each thread clocks its cores for a cycle and
+ * waits at a barrier, and the barrier's action ends the cycle (IO, cycle
+ * count, halt, budget and breakpoint checks) before any core starts the next
+ * one. The cores only meet on the SnoopingBus, and only through requests it
+ * queues and resolves in core order at the end of the cycle, so within a
+ * cycle they run freely and the run is the same whatever the thread count.
+ *
+ * The calling thread is thread 0; the others are started for the run and end
+ * with it.
+ */
+class ParallelCoreRunner {
+
+    private final Computer computer;
+    private final int threads;
+    private final int cores;
+    private final CyclicBarrier barrier;
+
+    // written by the barrier action, read by every thread after the barrier
+    private volatile boolean done = false;
+    private volatile Exception failure = null;
+    private long remaining;
+
+    /**
+     * @param computer multi-core computer
+     * @param threads host threads, at most one per core
+     */
+    ParallelCoreRunner(Computer computer, int threads) {
+        this.computer = computer;
+        this.threads = threads;
+        this.cores = computer.getCoreCount();
+        this.barrier = new CyclicBarrier(threads, new Runnable() {
+            @Override
+            public void run() {
+                endCycle();
+            }
+        });
+    }
+
+    /**
+     * @param cycles cycles to run
+     * @throws Exception HaltSystemException once every core has halted, or
+     *  the first machine fault a core raised
+     */
+    void run(long cycles) throws Exception {
+        if(cycles <= 0){
+            return;
+        }
+        this.remaining = cycles;
+        Thread[] helpers = new Thread[this.threads - 1];
+        for(int t = 1; t < this.threads; t++){
+            helpers[t - 1] = new Thread(this.worker(t), "Core runner " + t);
+            helpers[t - 1].start();
+        }
+        this.worker(0).run();
+        for(Thread helper : helpers){
+            helper.join();
+        }
+        if(this.failure != null){
+            throw this.failure;
+        }
+    }
+
+    private Runnable worker(final int thread){
+        return new Runnable() {
+            @Override
+            public void run() {
+                while(!done){
+                    try {
+                        for(int core = thread; core < cores; core += threads){
+                            computer.clockCore(core);
+                        }
+                    } catch(Exception e){
+                        fail(e);
+                    }
+                    try {
+                        barrier.await();
+                    } catch(InterruptedException | BrokenBarrierException e){
+                        fail(e);
+                        done = true;
+                        return;
+                    }
+                }
+            }
+        };
+    }
+
+    private synchronized void fail(Exception e){
+        if(this.failure == null){
+            this.failure = e;
+        }
+    }
+
+    /**
+     * Barrier action: runs once per cycle after every core has been clocked.
+     */
+    private void endCycle(){
+        if(this.failure != null){
+            this.done = true;
+            return;
+        }
+        try {
+            this.computer.endMultiCoreCycle();
+        } catch(Exception e){
+            this.fail(e);       // HaltSystemException: every core has halted
+            this.done = true;
+            return;
+        }
+        if(--this.remaining == 0 || this.computer.getBreakpoints().isHit()){
+            this.done = true;
+        }
+    }
+
+}
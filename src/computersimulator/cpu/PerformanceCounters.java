@@ -0,0 +1,271 @@
+package computersimulator.cpu;
+
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * A core's performance counters: cycles, retired instructions (in total and
+ * per opcode), memory reads and writes, blocked cycles, taken and not-taken
+ * branches and ALU operations.
+ *
+ * The counters are plain long fields, bumped by the simulation thread only
+ * (the Computer counts cycles, the ControlUnit, Pipeline and OutOfOrderCore
+ * count retirements), so counting costs the simulation no more than an add.
+ * Registered with the platform MBean server they can be read by JMX clients
+ * while the machine runs; those reads take no lock and may be a few
+ * instructions behind.
+ *
+ * Reads and writes are the data words retired instructions access
+ * (indirection included), not instruction fetches. Blocked cycles are the
+ * microcoded instruction cycle's memory waits.
+ */
+public class PerformanceCounters implements PerformanceCountersMBean {
+
+    public final static String DOMAIN = "computersimulator";
+
+    private long cycles = 0;
+    private long retiredInstructions = 0;
+    private long memoryReads = 0;
+    private long memoryWrites = 0;
+    private long blockedCycles = 0;
+    private long branchesTaken = 0;
+    private long branchesNotTaken = 0;
+    private long aluOperations = 0;
+    private long[] opcodeRetirements = new long[64];
+
+    // speculative dispatch: counters as they were at the unresolved jump
+    private long[] checkpoint;
+    private long[] checkpointOpcodeRetirements;
+
+    private long resetNanos = System.nanoTime();
+    private ObjectName registeredName;
+
+    /**
+     * Counts one retired instruction.
+     * @param instruction the instruction
+     * @param taken for a jump, whether it went to its target
+     */
+    public void retire(Instruction instruction, boolean taken){
+        this.retiredInstructions++;
+        this.opcodeRetirements[instruction.getOpcode()]++;
+        if(instruction.readsMemory()){
+            this.memoryReads++;
+        }
+        if(instruction.writesMemory()){
+            this.memoryWrites++;
+        }
+        if(instruction.isControlTransfer()){
+            if(taken){
+                this.branchesTaken++;
+            } else {
+                this.branchesNotTaken++;
+            }
+        } else if(instruction.getALUControl() != ArithmeticLogicUnit.CONTROL_NONE){
+            this.aluOperations++;
+        }
+    }
+
+    /**
+     * @param cycles clock cycles the core has run
+     */
+    public void addCycles(long cycles){
+        this.cycles += cycles;
+    }
+
+    /**
+     * Counts a cycle the instruction cycle blocked in (waiting on memory).
+     */
+    public void recordBlockedCycle(){
+        this.blockedCycles++;
+    }
+
+    /**
+     * Remembers the retirement counters, before dispatch carries on down a
+     * predicted path.
+     */
+    void checkpoint(){
+        if(this.checkpoint == null){
+            this.checkpoint = new long[6];
+            this.checkpointOpcodeRetirements = new long[this.opcodeRetirements.length];
+        }
+        this.checkpoint[0] = this.retiredInstructions;
+        this.checkpoint[1] = this.memoryReads;
+        this.checkpoint[2] = this.memoryWrites;
+        this.checkpoint[3] = this.branchesTaken;
+        this.checkpoint[4] = this.branchesNotTaken;
+        this.checkpoint[5] = this.aluOperations;
+        System.arraycopy(this.opcodeRetirements, 0, this.checkpointOpcodeRetirements, 0, this.opcodeRetirements.length);
+    }
+
+    /**
+     * Forgets the instructions retired since checkpoint(): the predicted path
+     * was wrong and they never happened.
+     */
+    void rollback(){
+        this.retiredInstructions = this.checkpoint[0];
+        this.memoryReads = this.checkpoint[1];
+        this.memoryWrites = this.checkpoint[2];
+        this.branchesTaken = this.checkpoint[3];
+        this.branchesNotTaken = this.checkpoint[4];
+        this.aluOperations = this.checkpoint[5];
+        System.arraycopy(this.checkpointOpcodeRetirements, 0, this.opcodeRetirements, 0, this.opcodeRetirements.length);
+    }
+
+    /**
+     * Publishes the counters on the platform MBean server as
+     * computersimulator:type=PerformanceCounters,name=[name]. Registering
+     * again under another name moves them.
+     * @param name name of the simulator (and core) in the object name
+     * @throws JMException the name is malformed or already taken
+     */
+    public synchronized void register(String name) throws JMException {
+        this.unregister();
+        ObjectName objectName = new ObjectName(DOMAIN + ":type=PerformanceCounters,name=" + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, objectName);
+        this.registeredName = objectName;
+    }
+
+    /**
+     * Takes the counters off the platform MBean server, if registered.
+     * @throws JMException the server refused
+     */
+    public synchronized void unregister() throws JMException {
+        if(this.registeredName != null){
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if(server.isRegistered(this.registeredName)){
+                server.unregisterMBean(this.registeredName);
+            }
+            this.registeredName = null;
+        }
+    }
+
+    /**
+     * @return object name the counters are registered under, null if not registered
+     */
+    public synchronized ObjectName getRegisteredName() {
+        return registeredName;
+    }
+
+    /*************** Statistics ***************/
+
+    @Override
+    public long getCycles() {
+        return cycles;
+    }
+
+    @Override
+    public long getRetiredInstructions() {
+        return retiredInstructions;
+    }
+
+    @Override
+    public long getMemoryReads() {
+        return memoryReads;
+    }
+
+    @Override
+    public long getMemoryWrites() {
+        return memoryWrites;
+    }
+
+    @Override
+    public long getBlockedCycles() {
+        return blockedCycles;
+    }
+
+    @Override
+    public long getBranchesTaken() {
+        return branchesTaken;
+    }
+
+    @Override
+    public long getBranchesNotTaken() {
+        return branchesNotTaken;
+    }
+
+    @Override
+    public long getALUOperations() {
+        return aluOperations;
+    }
+
+    /**
+     * @param opcode opcode
+     * @return instructions with the opcode retired
+     */
+    public long getOpcodeRetirements(int opcode) {
+        return opcodeRetirements[opcode];
+    }
+
+    @Override
+    public long[] getOpcodeRetirements() {
+        return opcodeRetirements.clone();
+    }
+
+    /**
+     * @return cycles per retired instruction (0 with none retired)
+     */
+    @Override
+    public double getCyclesPerInstruction() {
+        long retired = this.retiredInstructions;
+        return (retired == 0) ? 0 : (double)this.cycles / retired;
+    }
+
+    /**
+     * @return millions of guest instructions retired per host second since
+     *  the counters were created or reset
+     */
+    @Override
+    public double getMIPS() {
+        long nanos = System.nanoTime() - this.resetNanos;
+        return (nanos <= 0) ? 0 : this.retiredInstructions * 1e3 / nanos;
+    }
+
+    /**
+     * @return one-line summary of the counters, with the five most retired opcodes
+     */
+    @Override
+    public String getReport() {
+        StringBuilder top = new StringBuilder();
+        long[] counts = this.opcodeRetirements.clone();
+        for(int k = 0; k < 5; k++){
+            int most = 0;
+            for(int op = 1; op < counts.length; op++){
+                if(counts[op] > counts[most]){
+                    most = op;
+                }
+            }
+            if(counts[most] == 0){
+                break;
+            }
+            top.append((k == 0) ? "" : " ").append(Instruction.decode(most << 14).getMnemonic()).append('=').append(counts[most]);
+            counts[most] = 0;
+        }
+        return "cycles "+this.cycles+", retired "+this.retiredInstructions
+                +String.format(", CPI %.2f", this.getCyclesPerInstruction())
+                +", reads "+this.memoryReads+", writes "+this.memoryWrites
+                +", blocked "+this.blockedCycles
+                +", branches "+this.branchesTaken+" taken / "+this.branchesNotTaken+" not"
+                +", ALU ops "+this.aluOperations
+                +", top opcodes ["+top+"]";
+    }
+
+    /**
+     * Zeroes the counters and restarts the MIPS clock.
+     */
+    @Override
+    public void reset() {
+        this.cycles = 0;
+        this.retiredInstructions = 0;
+        this.memoryReads = 0;
+        this.memoryWrites = 0;
+        this.blockedCycles = 0;
+        this.branchesTaken = 0;
+        this.branchesNotTaken = 0;
+        this.aluOperations = 0;
+        this.opcodeRetirements = new long[this.opcodeRetirements.length];
+        this.resetNanos = System.nanoTime();
+    }
+
+}
@@ -0,0 +1,43 @@
+package computersimulator.cpu;
+
+/**
+ * Management interface of a core's PerformanceCounters, as seen by JMX
+ * clients (jconsole, monitoring agents).
+ */
+public interface PerformanceCountersMBean {
+
+    public long getCycles();
+
+    public long getRetiredInstructions();
+
+    public long getMemoryReads();
+
+    public long getMemoryWrites();
+
+    public long getBlockedCycles();
+
+    public long getBranchesTaken();
+
+    public long getBranchesNotTaken();
+
+    public long getALUOperations();
+
+    /**
+     * @return retirements per opcode, indexed by opcode
+     */
+    public long[] getOpcodeRetirements();
+
+    /**
+     * @return cycles per retired instruction
+     */
+    public double getCyclesPerInstruction();
+
+    /**
+     * @return millions of guest instructions retired per host second since the last reset
+     */
+    public double getMIPS();
+
+    public String getReport();
+
+    public void reset();
+}
@@ -0,0 +1,778 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.MachineFaultException;
+
+/**
+ * Classic 5-stage pipeline (IF, ID, EX, MEM, WB) over the ControlUnit's
+ * registers and memory. Each stage hands its instruction to the next through a
+ * latch; a stage only advances when the latch ahead of it is free, so stalls
+ * propagate back towards fetch.
+ *
+ *  IF  - fetches the word at the fetch PC (PC + 1 unless redirected)
+ *  ID  - decodes, reads R0-R3 / X1-X3 and holds back the instruction on a
+ *        load-use or CC hazard
+ *  EX  - forwards operands from the instruction ahead (EX/MEM) and the one
+ *        writing back this cycle (MEM/WB), computes the EA and the ALU result
+ *        (InstructionExecutor's semantics on the forwarded values) and
+ *        resolves jumps. MLT/DVD hold EX for the ALU's latency.
+ *  MEM - loads / stores; indirect (I bit) operands take an extra cycle
+ *
+ * On a multi-core computer IF and MEM wait in place while their access waits
+ * for the bus (see CoherentCache).
+ *  WB  - writes registers and CC in program order, updates PC, raises HLT and
+ *        machine faults
+ *
+ * Stages are processed in reverse order each cycle so a register written in WB
+ * is seen by ID in the same cycle. CC is only read by JCC, which waits until
+ * the writer ahead of it has written back instead of forwarding.
+ *
+ * Without a BranchTargetBuffer fetch always continues at PC + 1. With one, IF
+ * looks up jumps and follows the BTB target when the jump is unconditional or
+ * the BranchPredictor guesses taken; the guess is checked when the jump
+ * resolves and a wrong one flushes the younger instructions. A
+ * ReturnStackBuffer, when configured, predicts RFS targets ahead of the BTB.
+ */
+public class Pipeline implements IClockCycle {
+
+    private final static int WORD_SIZE = 20;
+    private final static int WORD_MASK = 0xFFFFF;
+    private final static int ADDRESS_MASK = 0x1FFF;
+    private final static int NO_REGISTER = -1;
+
+    // Stall reasons
+    public final static int STALL_LOAD_USE = 0;
+    public final static int STALL_CONDITION_CODE = 1;
+    public final static int STALL_EXECUTE_BUSY = 2;
+    public final static int STALL_MEMORY_INDIRECT = 3;
+    public final static int STALL_BRANCH_FLUSH = 4;
+    public final static int STALL_BUS = 5;
+    public final static int STALL_COUNT = 6;
+    private final static String[] STALL_NAMES = {"load-use", "CC interlock", "EX busy (MLT/DVD)", "MEM indirect", "branch flush", "bus"};
+
+    /**
+     * Contents of one pipeline latch (one instruction in flight).
+     */
+    private static class Latch {
+        int pc;
+        Instruction instruction;
+        MachineFaultException fault;
+
+        // ID: register values as read; EX may replace them with forwarded ones
+        int valueR;         // c(rfi)
+        int valueY;         // c(ry) / c(r) for shifts
+        int valueX;         // c(Xi) for the EA
+        int valueReturn;    // c(R3) for RFS
+
+        // EX / MEM results
+        int ea;
+        boolean indirectDone;
+        int storeValue;
+        int memoryValue;    // data word loaded or stored in MEM
+        int destination1 = NO_REGISTER;
+        int result1;
+        int destination2 = NO_REGISTER;
+        int result2;
+        boolean resultReady;    // false while a load still has to produce result1
+
+        int conditionControl = ArithmeticLogicUnit.CONTROL_NONE;
+        long conditionOperand1;
+        long conditionOperand2;
+        int equalOrNot = -1;    // TRR: 1 set, 0 unset
+
+        boolean taken;
+        int target;
+        boolean resolved;       // jump outcome known and acted on
+        boolean predictedTaken;
+        int predictedNext;      // where IF continued after this instruction
+        boolean returnPredicted;    // RFS target came from the return stack
+        boolean hasReturnStackCheckpoint;
+        long returnStackCheckpoint; // return stack as left by this fetch
+
+        Latch(int pc, Instruction instruction) {
+            this.pc = pc;
+            this.instruction = instruction;
+            this.predictedNext = (pc + 1) & ADDRESS_MASK;
+        }
+
+        boolean writesConditionCode(){
+            return (this.instruction.getDestinationMask() & Instruction.registerBit(Instruction.REGISTER_CC)) != 0;
+        }
+
+        boolean writes(int register){
+            return register != NO_REGISTER && (this.destination1 == register || this.destination2 == register);
+        }
+
+        int valueOf(int register){
+            return (this.destination1 == register) ? this.result1 : this.result2;
+        }
+
+        int nextPC(){
+            return this.taken ? this.target : ((this.pc + 1) & ADDRESS_MASK);
+        }
+    }
+
+    private final ControlUnit controlUnit;
+    private final MemoryControlUnit memory;
+    private final ArithmeticLogicUnit alu;
+
+    // Front end: all optional
+    private BranchPredictor branchPredictor;
+    private BranchTargetBuffer branchTargetBuffer;
+    private ReturnStackBuffer returnStackBuffer;
+
+    // Pipeline latches (null = bubble)
+    private Latch ifId;
+    private Latch idEx;
+    private Latch exMem;
+    private Latch memWb;
+
+    private int fetchPC;
+    private boolean fetchStarted = false;
+    private boolean fetchHalted = false;     // HLT decoded, nothing younger to fetch
+    private boolean fetchSquashed = false;   // redirected this cycle, IF idles
+    private int executeCyclesRemaining = 0;
+
+    // Registers written back this cycle (for MEM/WB forwarding accounting)
+    private int writtenBackMask = 0;
+
+    // Engineer: statistics
+    private long cycles = 0;
+    private long retired = 0;
+    private final long[] stalls = new long[STALL_COUNT];
+    private long forwardsFromExMem = 0;
+    private long forwardsFromMemWb = 0;
+    private long flushedInstructions = 0;
+    private long jumpsResolved = 0;
+    private long jumpMispredictions = 0;
+
+    public Pipeline(ControlUnit controlUnit, MemoryControlUnit memory, ArithmeticLogicUnit alu) {
+        this.controlUnit = controlUnit;
+        this.memory = memory;
+        this.alu = alu;
+    }
+
+    /**
+     * Clock cycle. Advances every stage by one step.
+     * @throws HaltSystemException HLT reached write back
+     * @throws MachineFaultException a faulting instruction reached write back (MFR is set)
+     */
+    @Override
+    public void clockCycle() throws Exception {
+        if(!this.fetchStarted){
+            this.fetchPC = this.controlUnit.getProgramCounter().getUnsignedValue();
+            this.fetchStarted = true;
+        }
+        this.fetchSquashed = false;
+        this.cycles++;
+
+        this.writeBack();
+        this.memoryAccess();
+        this.execute();
+        this.decode();
+        this.fetch();
+    }
+
+    /**
+     * Empties the pipeline; fetch restarts at the ControlUnit's PC.
+     */
+    public void reset(){
+        this.ifId = null;
+        this.idEx = null;
+        this.exMem = null;
+        this.memWb = null;
+        this.fetchStarted = false;
+        this.fetchHalted = false;
+        this.executeCyclesRemaining = 0;
+        if(this.returnStackBuffer != null){
+            this.returnStackBuffer.reset();
+        }
+    }
+
+    /**
+     * Clears the statistics.
+     */
+    public void resetStatistics(){
+        this.cycles = 0;
+        this.retired = 0;
+        for(int i = 0; i < STALL_COUNT; i++){
+            this.stalls[i] = 0;
+        }
+        this.forwardsFromExMem = 0;
+        this.forwardsFromMemWb = 0;
+        this.flushedInstructions = 0;
+        this.jumpsResolved = 0;
+        this.jumpMispredictions = 0;
+        if(this.branchPredictor != null){
+            this.branchPredictor.resetStatistics();
+        }
+        if(this.branchTargetBuffer != null){
+            this.branchTargetBuffer.resetStatistics();
+        }
+        if(this.returnStackBuffer != null){
+            this.returnStackBuffer.resetStatistics();
+        }
+    }
+
+    /*************** WB ***************/
+
+    private void writeBack() throws HaltSystemException, MachineFaultException {
+        this.writtenBackMask = 0;
+        Latch l = this.memWb;
+        if(l == null){
+            return;
+        }
+        if(l.fault != null){
+            this.controlUnit.getMachineFaultRegister().setValue(l.fault.getFaultId());
+            throw l.fault;      // stays latched, the machine is stopped
+        }
+        if(l.instruction.isHalt()){
+            throw new HaltSystemException();
+        }
+
+        if(l.destination1 != NO_REGISTER){
+            this.controlUnit.setRegisterValue(l.destination1, l.result1);
+            this.writtenBackMask |= Instruction.registerBit(l.destination1);
+        }
+        if(l.destination2 != NO_REGISTER){
+            this.controlUnit.setRegisterValue(l.destination2, l.result2);
+            this.writtenBackMask |= Instruction.registerBit(l.destination2);
+        }
+        if(l.conditionControl != ArithmeticLogicUnit.CONTROL_NONE){
+            this.controlUnit.recordConditionOperation(l.conditionControl, WORD_SIZE, l.conditionOperand1, l.conditionOperand2);
+        }
+        if(l.equalOrNot == 1){
+            this.controlUnit.setCondition(ControlUnit.CONDITION_REGISTER_EQUALORNOT);
+        } else if(l.equalOrNot == 0){
+            this.controlUnit.unsetCondition(ControlUnit.CONDITION_REGISTER_EQUALORNOT);
+        }
+
+        this.controlUnit.getProgramCounter().setValue(l.nextPC());
+        this.controlUnit.recordRetirement(l.instruction, l.pc, l.nextPC(), l.taken,
+                l.instruction.accessesData() ? l.ea : -1, l.memoryValue);
+        this.retired++;
+        this.memWb = null;
+    }
+
+    /*************** MEM ***************/
+
+    private void memoryAccess(){
+        Latch l = this.exMem;
+        if(l == null || this.memWb != null){
+            return;
+        }
+        if(l.fault == null){
+            try {
+                Instruction ins = l.instruction;
+                if(ins.usesEffectiveAddress() && ins.getIndirect() == 1 && !l.indirectDone){
+                    // first cycle: EA <- c(EA)
+                    l.ea = this.memory.readWord(l.ea) & ADDRESS_MASK;
+                    l.indirectDone = true;
+                    this.stalls[STALL_MEMORY_INDIRECT]++;
+                    return;
+                }
+                this.completeMemoryAccess(l);
+            } catch(BusStallException e){
+                this.stalls[STALL_BUS]++;
+                return;     // reads come before any result is set, the store is the only write
+            } catch(MachineFaultException e){
+                l.fault = e;
+            }
+        }
+        this.memWb = l;
+        this.exMem = null;
+    }
+
+    private void completeMemoryAccess(Latch l) throws MachineFaultException {
+        Instruction ins = l.instruction;
+        switch(ins.getOpcode()){
+            case Instruction.OPCODE_LDR:
+                l.memoryValue = this.memory.readWord(l.ea);
+                l.result1 = l.memoryValue;
+                break;
+            case Instruction.OPCODE_LDX:
+                l.memoryValue = this.memory.readWord(l.ea);
+                l.result1 = l.memoryValue & ADDRESS_MASK;
+                break;
+            case Instruction.OPCODE_LDA:
+                l.result1 = l.ea;
+                break;
+            case Instruction.OPCODE_AMR:
+            case Instruction.OPCODE_SMR:
+                int value = this.memory.readWord(l.ea);
+                l.memoryValue = value;
+                l.result1 = InstructionExecutor.result(ins, l.valueR, value);
+                l.conditionControl = ins.getALUControl();
+                l.conditionOperand1 = l.valueR;
+                l.conditionOperand2 = value;
+                break;
+            case Instruction.OPCODE_STR:
+            case Instruction.OPCODE_STX:
+                this.memory.writeWord(l.ea, l.storeValue);
+                l.memoryValue = l.storeValue & WORD_MASK;
+                if(this.fetchedYoungerAt(l.ea)){
+                    // self-modifying code: refetch everything after the store
+                    this.flushYoungerThan(l);
+                    this.fetchPC = (l.pc + 1) & ADDRESS_MASK;
+                }
+                break;
+            default:
+                if(ins.isControlTransfer() && !l.resolved){
+                    // indirect jump: the target was only known after the extra read
+                    l.target = l.ea;
+                    this.resolveJump(l);
+                }
+                break;
+        }
+        l.resultReady = true;
+    }
+
+    /**
+     * @return true if an instruction behind MEM was fetched from the address
+     */
+    private boolean fetchedYoungerAt(int address){
+        return (this.idEx != null && this.idEx.pc == address)
+                || (this.ifId != null && this.ifId.pc == address);
+    }
+
+    /*************** EX ***************/
+
+    private void execute(){
+        Latch l = this.idEx;
+        if(l == null){
+            return;
+        }
+        if(this.exMem != null){
+            return;     // MEM is holding (stall counted there)
+        }
+        if(l.fault != null || l.instruction.isHalt()){
+            this.exMem = l;
+            this.idEx = null;
+            return;
+        }
+
+        Instruction ins = l.instruction;
+        if(this.executeCyclesRemaining == 0){
+            // first cycle in EX: take forwarded operands, start the latency count
+            this.forwardOperands(l);
+            int control = ins.getALUControl();
+            this.executeCyclesRemaining = (ins.getUnitType() == FunctionalUnit.TYPE_MULTIPLY_DIVIDE)
+                    ? this.alu.getLatency(ArithmeticLogicUnit.operationClassOf(control)) : 1;
+        }
+        this.executeCyclesRemaining--;
+        if(this.executeCyclesRemaining > 0){
+            this.stalls[STALL_EXECUTE_BUSY]++;
+            return;     // MLT/DVD still computing, ID waits behind
+        }
+
+        this.executeInstruction(l);
+        this.exMem = l;
+        this.idEx = null;
+    }
+
+    /**
+     * Replaces register values read in ID with current ones. When EX starts,
+     * the only older instruction not yet written back is the one that just 
+     * left MEM (EX/MEM forward); anything written back since ID read the 
+     * register file (this cycle: MEM/WB forward, or while EX was held) is 
+     * read again.
+     */
+    private void forwardOperands(Latch l){
+        Instruction ins = l.instruction;
+        int sources = ins.getSourceMask();
+        l.valueR = this.forward(sources, ins.getRFI(), l.valueR);
+        l.valueY = this.forward(sources, ins.getXFI(), l.valueY);
+        if(ins.getXFI() != 0){
+            l.valueX = this.forward(sources, Instruction.REGISTER_X1 + ins.getXFI() - 1, l.valueX);
+        }
+        if(ins.getOpcode() == Instruction.OPCODE_RFS){
+            l.valueReturn = this.forward(sources, 3, l.valueReturn);
+        }
+    }
+
+    private int forward(int sources, int register, int value){
+        if((sources & Instruction.registerBit(register)) == 0){
+            return value;   // not an operand of this instruction
+        }
+        Latch ahead = this.memWb;
+        if(ahead != null && ahead.fault == null && ahead.writes(register)){
+            this.forwardsFromExMem++;
+            return ahead.valueOf(register);
+        }
+        if((this.writtenBackMask & Instruction.registerBit(register)) != 0){
+            this.forwardsFromMemWb++;
+        }
+        return this.controlUnit.getRegisterValue(register);
+    }
+
+    /**
+     * Routes the instruction's operands and results through the latch; what
+     * each operation computes comes from InstructionExecutor, applied to the
+     * forwarded values.
+     */
+    private void executeInstruction(Latch l){
+        Instruction ins = l.instruction;
+        int r = ins.getRFI();
+        int control = ins.getALUControl();
+        l.resultReady = true;
+
+        if(ins.usesEffectiveAddress()){
+            l.ea = ins.getAddress();
+            if(ins.getXFI() != 0){
+                l.ea = (l.ea + l.valueX) & ADDRESS_MASK;
+            }
+        }
+
+        switch(ins.getOpcode()){
+            case Instruction.OPCODE_LDR:
+            case Instruction.OPCODE_AMR:
+            case Instruction.OPCODE_SMR:
+                l.destination1 = r;
+                l.resultReady = false;
+                break;
+            case Instruction.OPCODE_LDA:
+                l.destination1 = r;
+                l.result1 = l.ea;
+                l.resultReady = (ins.getIndirect() == 0);
+                break;
+            case Instruction.OPCODE_LDX:
+                if(ins.getXFI() != 0){
+                    l.destination1 = Instruction.REGISTER_X1 + ins.getXFI() - 1;
+                }
+                l.resultReady = false;
+                break;
+            case Instruction.OPCODE_STR:
+                l.storeValue = l.valueR;
+                break;
+            case Instruction.OPCODE_STX:
+                l.storeValue = (ins.getXFI() == 0) ? 0 : l.valueX;
+                break;
+            case Instruction.OPCODE_AIR:
+            case Instruction.OPCODE_SIR:
+                l.destination1 = r;
+                l.result1 = InstructionExecutor.result(ins, l.valueR, ins.getAddress());
+                l.conditionControl = control;
+                l.conditionOperand1 = l.valueR;
+                l.conditionOperand2 = ins.getAddress();
+                break;
+            case Instruction.OPCODE_MLT:
+            case Instruction.OPCODE_DVD:
+                l.destination1 = r;
+                l.result1 = InstructionExecutor.result(ins, l.valueR, l.valueY);
+                if(r + 1 < 4){
+                    l.destination2 = r + 1;
+                    l.result2 = InstructionExecutor.secondResult(ins, l.valueR, l.valueY);
+                }
+                l.conditionControl = control;
+                l.conditionOperand1 = InstructionExecutor.conditionOperand(ins, l.valueR);
+                l.conditionOperand2 = InstructionExecutor.conditionOperand(ins, l.valueY);
+                break;
+            case Instruction.OPCODE_TRR:
+                l.equalOrNot = (l.valueR == l.valueY) ? 1 : 0;
+                break;
+            case Instruction.OPCODE_AND:
+            case Instruction.OPCODE_ORR:
+            case Instruction.OPCODE_NOT:
+                l.destination1 = r;
+                l.result1 = InstructionExecutor.result(ins, l.valueR, l.valueY);
+                break;
+            case Instruction.OPCODE_SRC:
+            case Instruction.OPCODE_RRC:
+                l.destination1 = ins.getXFI();
+                l.result1 = InstructionExecutor.result(ins, l.valueY, 0);
+                break;
+
+            case Instruction.OPCODE_JSR:
+                l.destination1 = 3;
+                l.result1 = (l.pc + 1) & ADDRESS_MASK;
+                break;
+            case Instruction.OPCODE_RFS:
+                l.destination1 = 0;
+                l.result1 = ins.getAddress();
+                break;
+            case Instruction.OPCODE_SOB:
+                l.destination1 = r;
+                l.result1 = InstructionExecutor.result(ins, l.valueR, 0);
+                break;
+            default:
+                break;
+        }
+
+        if(ins.isControlTransfer()){
+            l.taken = InstructionExecutor.taken(ins, l.valueR, this.controlUnit);
+            if(ins.getOpcode() == Instruction.OPCODE_RFS){
+                l.target = l.valueReturn & ADDRESS_MASK;
+                this.resolveJump(l);
+            } else if(!l.taken || ins.getIndirect() == 0){
+                l.target = l.ea;
+                this.resolveJump(l);
+            }
+            // taken + indirect: resolved in MEM once c(EA) is read
+        }
+    }
+
+    /**
+     * Acts on a jump whose outcome and target are known: trains the predictor
+     * and BTB and, if fetch did not continue where the jump goes, squashes
+     * everything younger and redirects fetch.
+     */
+    private void resolveJump(Latch l){
+        l.resolved = true;
+        this.jumpsResolved++;
+        if(this.branchPredictor != null && l.instruction.isConditionalBranch()){
+            this.branchPredictor.update(l.pc, l.predictedTaken, l.taken);
+        }
+        if(this.branchTargetBuffer != null && l.taken){
+            this.branchTargetBuffer.update(l.pc, l.target);
+        }
+        int next = l.nextPC();
+        if(l.returnPredicted && this.returnStackBuffer != null){
+            this.returnStackBuffer.recordReturn(next == l.predictedNext);
+        }
+        if(next != l.predictedNext){
+            this.jumpMispredictions++;
+            this.controlUnit.recordBranchMispredict(l.pc, next);
+            this.flushYoungerThan(l);
+            this.fetchPC = next;
+        }
+    }
+
+    private void flushYoungerThan(Latch l){
+        if(this.idEx != null && this.idEx != l){
+            this.idEx = null;
+            this.flushedInstructions++;
+            this.executeCyclesRemaining = 0;
+        }
+        if(this.ifId != null){
+            this.ifId = null;
+            this.flushedInstructions++;
+        }
+        if(l.hasReturnStackCheckpoint && this.returnStackBuffer != null){
+            this.returnStackBuffer.restore(l.returnStackCheckpoint);
+        }
+        this.fetchHalted = false;
+        this.fetchSquashed = true;
+    }
+
+    /*************** ID ***************/
+
+    private void decode(){
+        Latch l = this.ifId;
+        if(l == null){
+            return;
+        }
+        if(this.idEx != null){
+            return;     // EX is holding (stall counted there)
+        }
+        Instruction ins = l.instruction;
+        if(l.fault == null && ins.isLegal()){
+            int reason = this.hazard(ins);
+            if(reason >= 0){
+                this.stalls[reason]++;
+                return;
+            }
+            l.valueR = this.controlUnit.getRegisterValue(ins.getRFI());
+            l.valueY = this.controlUnit.getRegisterValue(ins.getXFI());
+            if(ins.getXFI() != 0){
+                l.valueX = this.controlUnit.getRegisterValue(Instruction.REGISTER_X1 + ins.getXFI() - 1);
+            }
+            l.valueReturn = this.controlUnit.getRegisterValue(3);
+            if(ins.isHalt()){
+                this.fetchHalted = true;    // nothing past HLT is needed (unless a jump redirects)
+            }
+        } else if(l.fault == null){
+            l.fault = new MachineFaultException(MachineFaultException.FAULT_ILLEGAL_OPCODE,
+                    "Illegal opcode "+ins.getOpcode()+" at "+l.pc);
+        }
+        this.idEx = l;
+        this.ifId = null;
+    }
+
+    /**
+     * @return STALL_* reason the instruction must wait in ID, -1 if it can go
+     */
+    private int hazard(Instruction ins){
+        Latch ahead = this.exMem;   // just left EX, in MEM next cycle
+        if(ahead == null || ahead.fault != null){
+            return -1;
+        }
+        int sources = ins.getSourceMask();
+        if((sources & Instruction.registerBit(Instruction.REGISTER_CC)) != 0 && ahead.writesConditionCode()){
+            return STALL_CONDITION_CODE;
+        }
+        if(!ahead.resultReady){
+            for(int r = 0; r < Instruction.REGISTER_CC; r++){
+                if((sources & Instruction.registerBit(r)) != 0 && ahead.writes(r)){
+                    return STALL_LOAD_USE;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /*************** IF ***************/
+
+    private void fetch(){
+        if(this.ifId != null || this.fetchHalted){
+            return;
+        }
+        if(this.fetchSquashed){
+            this.stalls[STALL_BRANCH_FLUSH]++;
+            return;     // redirect takes effect next cycle
+        }
+        Latch l;
+        try {
+            l = new Latch(this.fetchPC, Instruction.decode(this.memory.readWord(this.fetchPC)));
+        } catch(BusStallException e){
+            this.stalls[STALL_BUS]++;
+            return;
+        } catch(MachineFaultException e){
+            l = new Latch(this.fetchPC, Instruction.decode(0));
+            l.fault = e;    // only raised if this turns out to be on the real path
+        }
+        if(l.fault == null && l.instruction.isControlTransfer()){
+            l.predictedNext = this.predictNext(l);
+        }
+        if(this.returnStackBuffer != null){
+            l.returnStackCheckpoint = this.returnStackBuffer.checkpoint();
+            l.hasReturnStackCheckpoint = true;
+        }
+        this.ifId = l;
+        this.fetchPC = l.predictedNext;
+    }
+
+    /**
+     * The BTB is only consulted for jumps (as if the fetched words carried
+     * predecode bits), so its hit rate is over jumps.
+     * @return where fetch continues after the jump
+     */
+    private int predictNext(Latch l){
+        Instruction ins = l.instruction;
+        if(this.returnStackBuffer != null){
+            if(ins.getOpcode() == Instruction.OPCODE_JSR){
+                this.returnStackBuffer.push(l.predictedNext);
+            } else if(ins.getOpcode() == Instruction.OPCODE_RFS){
+                int returnAddress = this.returnStackBuffer.pop();
+                if(returnAddress != ReturnStackBuffer.EMPTY){
+                    l.predictedTaken = true;
+                    l.returnPredicted = true;
+                    return returnAddress;
+                }
+            }
+        }
+        int target = (this.branchTargetBuffer == null) ? -1 : this.branchTargetBuffer.lookup(l.pc);
+        if(ins.isConditionalBranch()){
+            l.predictedTaken = (this.branchPredictor != null) && this.branchPredictor.predict(l.pc, target);
+        } else {
+            l.predictedTaken = true;
+        }
+        return (l.predictedTaken && target >= 0) ? target : l.predictedNext;
+    }
+
+    /*************** Statistics ***************/
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public long getRetiredInstructions() {
+        return retired;
+    }
+
+    /**
+     * @return cycles per retired instruction
+     */
+    public double getCyclesPerInstruction() {
+        return (this.retired == 0) ? 0 : (double)this.cycles / this.retired;
+    }
+
+    /**
+     * @param reason STALL_*
+     * @return cycles lost to the reason
+     */
+    public long getStalls(int reason) {
+        return stalls[reason];
+    }
+
+    public static String getStallName(int reason) {
+        return STALL_NAMES[reason];
+    }
+
+    public long getForwardsFromExMem() {
+        return forwardsFromExMem;
+    }
+
+    public long getForwardsFromMemWb() {
+        return forwardsFromMemWb;
+    }
+
+    public long getFlushedInstructions() {
+        return flushedInstructions;
+    }
+
+    public long getJumpsResolved() {
+        return jumpsResolved;
+    }
+
+    /**
+     * @return jumps after which fetch had continued at the wrong address
+     */
+    public long getJumpMispredictions() {
+        return jumpMispredictions;
+    }
+
+    public BranchPredictor getBranchPredictor() {
+        return branchPredictor;
+    }
+
+    /**
+     * @param branchPredictor direction guess for conditional jumps, null to predict not taken
+     */
+    public void setBranchPredictor(BranchPredictor branchPredictor) {
+        this.branchPredictor = branchPredictor;
+    }
+
+    public BranchTargetBuffer getBranchTargetBuffer() {
+        return branchTargetBuffer;
+    }
+
+    /**
+     * @param branchTargetBuffer jump targets for fetch, null to always fetch PC + 1
+     */
+    public void setBranchTargetBuffer(BranchTargetBuffer branchTargetBuffer) {
+        this.branchTargetBuffer = branchTargetBuffer;
+    }
+
+    public ReturnStackBuffer getReturnStackBuffer() {
+        return returnStackBuffer;
+    }
+
+    /**
+     * @param returnStackBuffer RFS target prediction, null to leave RFS to the BTB
+     */
+    public void setReturnStackBuffer(ReturnStackBuffer returnStackBuffer) {
+        this.returnStackBuffer = returnStackBuffer;
+    }
+
+    /**
+     * @return one-line summary of CPI and stall reasons
+     */
+    public String getReport() {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("cycles %d, retired %d, CPI %.2f", this.cycles, this.retired, this.getCyclesPerInstruction()));
+        for(int i = 0; i < STALL_COUNT; i++){
+            sb.append(", ").append(STALL_NAMES[i]).append(" ").append(this.stalls[i]);
+        }
+        sb.append(", forwarded EX/MEM ").append(this.forwardsFromExMem).append(" MEM/WB ").append(this.forwardsFromMemWb);
+        sb.append(", flushed ").append(this.flushedInstructions);
+        sb.append(", jumps ").append(this.jumpsResolved).append(" mispredicted ").append(this.jumpMispredictions);
+        if(this.branchTargetBuffer != null){
+            sb.append(String.format(", BTB hits %.1f%%", 100 * this.branchTargetBuffer.getHitRate()));
+        }
+        if(this.returnStackBuffer != null){
+            sb.append(", ").append(this.returnStackBuffer.getReport());
+        }
+        return sb.toString();
+    }
+
+}
@@ -0,0 +1,159 @@
+package computersimulator.cpu;
+
+/**
+ * Fixed-depth stack of return addresses for the fetch stage: a fetched JSR
+ * pushes PC + 1 and a fetched RFS pops its predicted target. A BTB only
+ * remembers the last place a subroutine returned to, which is wrong whenever
+ * it is called from more than one site.
+ *
+ * The stack is circular: a push onto a full stack overwrites the oldest entry
+ * (overflow), a pop from an empty one gives no prediction (underflow). Pushes
+ * and pops happen at fetch, possibly down a mispredicted path, so the fetch
+ * stage takes a checkpoint after each jump and restores it when the younger
+ * instructions are flushed.
+ */
+public class ReturnStackBuffer {
+
+    public final static int EMPTY = -1;
+
+    private final int[] entries;
+    private int top = 0;        // index of the next free slot
+    private int count = 0;
+
+    // Engineer: statistics
+    private long pushes = 0;
+    private long pops = 0;
+    private long overflows = 0;
+    private long underflows = 0;
+    private long returnsPredicted = 0;
+    private long returnsMispredicted = 0;
+
+    /**
+     * @param depth number of return addresses held
+     */
+    public ReturnStackBuffer(int depth) {
+        if(depth < 1){
+            throw new IllegalArgumentException("Return stack depth must be at least 1");
+        }
+        this.entries = new int[depth];
+    }
+
+    /**
+     * @param returnAddress address after a JSR
+     */
+    public void push(int returnAddress){
+        this.pushes++;
+        if(this.count == this.entries.length){
+            this.overflows++;       // oldest entry is lost
+        } else {
+            this.count++;
+        }
+        this.entries[this.top] = returnAddress;
+        this.top = (this.top + 1) % this.entries.length;
+    }
+
+    /**
+     * @return predicted return address, EMPTY on underflow
+     */
+    public int pop(){
+        this.pops++;
+        if(this.count == 0){
+            this.underflows++;
+            return EMPTY;
+        }
+        this.count--;
+        this.top = (this.top + this.entries.length - 1) % this.entries.length;
+        return this.entries[this.top];
+    }
+
+    /**
+     * @return top, count and the top entry packed into one value for restore()
+     */
+    public long checkpoint(){
+        int below = (this.top + this.entries.length - 1) % this.entries.length;
+        return ((long)this.entries[below] << 32) | ((long)this.top << 16) | this.count;
+    }
+
+    /**
+     * Returns the stack to a checkpoint. Entries overwritten further down by a
+     * deeper wrong path are not recovered.
+     * @param checkpoint value from checkpoint()
+     */
+    public void restore(long checkpoint){
+        this.count = (int)(checkpoint & 0xFFFF);
+        this.top = (int)((checkpoint >>> 16) & 0xFFFF);
+        int below = (this.top + this.entries.length - 1) % this.entries.length;
+        this.entries[below] = (int)(checkpoint >>> 32);
+    }
+
+    /**
+     * Records whether an RFS predicted from the stack went to the right place.
+     * @param correct true if the popped address was the actual return address
+     */
+    public void recordReturn(boolean correct){
+        if(correct){
+            this.returnsPredicted++;
+        } else {
+            this.returnsMispredicted++;
+        }
+    }
+
+    /**
+     * Empties the stack.
+     */
+    public void reset(){
+        this.top = 0;
+        this.count = 0;
+    }
+
+    public void resetStatistics(){
+        this.pushes = 0;
+        this.pops = 0;
+        this.overflows = 0;
+        this.underflows = 0;
+        this.returnsPredicted = 0;
+        this.returnsMispredicted = 0;
+    }
+
+    public int getDepth() {
+        return entries.length;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getPushes() {
+        return pushes;
+    }
+
+    public long getPops() {
+        return pops;
+    }
+
+    public long getOverflows() {
+        return overflows;
+    }
+
+    public long getUnderflows() {
+        return underflows;
+    }
+
+    public long getReturnsPredicted() {
+        return returnsPredicted;
+    }
+
+    public long getReturnsMispredicted() {
+        return returnsMispredicted;
+    }
+
+    /**
+     * @return one-line summary of the counters
+     */
+    public String getReport() {
+        return "RSB "+this.entries.length+": returns "+this.returnsPredicted+" correct, "
+                +this.returnsMispredicted+" mispredicted, overflows "+this.overflows
+                +", underflows "+this.underflows;
+    }
+
+}
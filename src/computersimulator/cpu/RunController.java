@@ -0,0 +1,466 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a Computer on a dedicated thread until it halts, faults, hits a
+ * breakpoint or watchpoint, uses up its cycle budget or is stopped. Cycles
+ * are run in batches through Computer.runCycles(); the stop flag and the
+ * budget are looked at once per batch, so an unconditioned run costs nothing
+ * per cycle. Breakpoints and watchpoints (the Computer's Breakpoints) are
+ * checked by the CPU and memory as they go and end the batch after the cycle
+ * that hit; the run stops there, and a new run resumes from it.
+ *
+ * A target frequency paces the run to real time: after each batch the run
+ * thread compares host time against the simulated cycles and parks until the
+ * two agree. Batches are cut to 1/PACING_SLICES_PER_SECOND of a simulated
+ * second so the sleeps stay coarse. A run that falls behind (GC pause, slow
+ * host) runs flat out to catch up, unless it is more than MAX_LAG_NANOS
+ * behind, in which case the debt is dropped rather than replayed as a burst.
+ *
+ * Used by the OperatorConsole's Run / Run N / Stop buttons and directly by
+ * headless code (run() blocks, start() doesn't). Nothing else may clock the
+ * Computer while a run is in progress.
+ */
+public class RunController {
+
+    // Why the last run stopped
+    public final static int STOP_NONE = 0;
+    public final static int STOP_HALT = 1;
+    public final static int STOP_REQUESTED = 2;
+    public final static int STOP_BUDGET = 3;
+    public final static int STOP_BREAKPOINT = 4;
+    public final static int STOP_FAULT = 5;
+    public final static int STOP_WATCHPOINT = 6;
+
+    private final static String[] STOP_NAMES = {"none", "halt", "stopped", "budget", "breakpoint", "fault", "watchpoint"};
+
+    public final static long UNLIMITED = Long.MAX_VALUE;
+    public final static int DEFAULT_BATCH_CYCLES = 10000;
+
+    // Pacing
+    public final static int PACING_SLICES_PER_SECOND = 100;
+    public final static long MAX_LAG_NANOS = 250000000L;
+    private final static long MAX_PARK_NANOS = 50000000L;     // stop stays responsive at low targets
+    private final static long SPEED_WINDOW_NANOS = 1000000000L;
+
+    /**
+     * Told when a run ends, on the run thread.
+     */
+    public interface Listener {
+        public void runStopped(RunController controller, int reason);
+    }
+
+    private final Computer computer;
+    private final ExecutorService runThread;
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile boolean stopRequested = false;
+    private volatile boolean running = false;
+    private volatile int batchCycles = DEFAULT_BATCH_CYCLES;
+
+    // Engineer: statistics of the current / last run, published once per batch
+    private volatile long runCycles = 0;
+    private volatile long runInstructions = 0;
+    private volatile long runNanos = 0;
+    private volatile int stopReason = STOP_NONE;
+    private volatile Exception fault = null;
+
+    // simulated Hz, 0 to run flat out
+    private volatile long targetFrequency = 0;
+
+    // pacing state, run thread only
+    private long paceTarget = 0;
+    private long paceEpochNanos;
+    private long paceEpochCycle;
+    private long speedWindowNanos;
+    private long speedWindowCycle;
+
+    // Engineer: pacing statistics
+    private volatile double achievedFrequency = 0;
+    private volatile long throttleNanos = 0;
+    private volatile long droppedLagNanos = 0;
+
+    /**
+     * @param computer machine to run
+     */
+    public RunController(Computer computer) {
+        this.computer = computer;
+        this.runThread = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Computer run controller");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Starts a run on the run thread and returns immediately.
+     * @param cycles cycle budget, UNLIMITED to run until halt / stop / breakpoint / watchpoint
+     * @return completes with the STOP_* reason
+     * @throws IllegalStateException a run is already in progress
+     * @throws RejectedExecutionException the controller has been shut down
+     */
+    public synchronized Future<Integer> start(final long cycles){
+        if(this.running){
+            throw new IllegalStateException("Computer is already running");
+        }
+        if(cycles < 0){
+            throw new IllegalArgumentException("Cycle budget must not be negative ("+cycles+")");
+        }
+        this.running = true;
+        this.stopRequested = false;
+        try {
+            return this.runThread.submit(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    return runLoop(cycles);
+                }
+            });
+        } catch(RejectedExecutionException e){
+            this.running = false;   // shut down: nothing will run
+            throw e;
+        }
+    }
+
+    /**
+     * Runs and waits for the run to end.
+     * @param cycles cycle budget, UNLIMITED to run until halt / stop / breakpoint / watchpoint
+     * @return STOP_* reason
+     * @throws Exception the wait was interrupted
+     */
+    public int run(long cycles) throws Exception {
+        return this.start(cycles).get();
+    }
+
+    /**
+     * Asks the run to stop at the end of the current batch.
+     */
+    public void stop(){
+        this.stopRequested = true;
+    }
+
+    /**
+     * Stops any run and ends the run thread.
+     */
+    public void shutdown(){
+        this.stop();
+        this.runThread.shutdown();
+    }
+
+    private int runLoop(long cycles){
+        long startCycle = this.computer.getCycleCount();
+        long startInstructions = this.computer.getInstructionsExecuted();
+        long startNanos = System.nanoTime();
+        int reason = STOP_NONE;
+        this.fault = null;
+        this.runCycles = 0;
+        this.runInstructions = 0;
+        this.runNanos = 0;
+        this.stopReason = STOP_NONE;
+        this.paceTarget = 0;
+        this.speedWindowNanos = startNanos;
+        this.speedWindowCycle = startCycle;
+        try {
+            while(reason == STOP_NONE){
+                long done = this.computer.getCycleCount() - startCycle;
+                if(this.stopRequested){
+                    reason = STOP_REQUESTED;
+                } else if(done >= cycles){
+                    reason = STOP_BUDGET;
+                } else {
+                    long target = this.targetFrequency;
+                    long batch = Math.min(this.batchCycles, cycles - done);
+                    if(target > 0){
+                        batch = Math.min(batch, Math.max(1, target / PACING_SLICES_PER_SECOND));
+                        if(target != this.paceTarget){
+                            // first paced batch, or the target changed: pace from here
+                            this.paceTarget = target;
+                            this.paceEpochNanos = System.nanoTime();
+                            this.paceEpochCycle = this.computer.getCycleCount();
+                        }
+                    }
+                    this.computer.runCycles(batch);
+                    int hit = this.computer.getBreakpoints().getHitKind();
+                    if(hit == Breakpoints.HIT_BREAKPOINT){
+                        reason = STOP_BREAKPOINT;
+                    } else if(hit != Breakpoints.HIT_NONE){
+                        reason = STOP_WATCHPOINT;
+                    }
+                    if(target > 0 && reason == STOP_NONE){
+                        this.pace(target);
+                    }
+                }
+                this.publish(startCycle, startInstructions, startNanos);
+            }
+        } catch(HaltSystemException e){
+            reason = STOP_HALT;
+        } catch(Exception e){
+            this.fault = e;
+            reason = STOP_FAULT;
+        } finally {
+            this.publish(startCycle, startInstructions, startNanos);
+            this.stopReason = reason;
+            this.running = false;
+        }
+        for(Listener listener : this.listeners){
+            listener.runStopped(this, reason);
+        }
+        return reason;
+    }
+
+    /**
+     * Parks until host time catches up with the simulated cycles run since the
+     * pacing epoch, or moves the epoch up when too far behind.
+     * @param target simulated Hz
+     */
+    private void pace(long target){
+        long now = System.nanoTime();
+        long cycle = this.computer.getCycleCount();
+        long due = this.paceEpochNanos + (long)((cycle - this.paceEpochCycle) * 1e9 / target);
+        long ahead = due - now;
+        if(ahead < -MAX_LAG_NANOS){
+            this.droppedLagNanos += -ahead;
+            this.paceEpochNanos = now;
+            this.paceEpochCycle = cycle;
+            return;
+        }
+        while(ahead > 0 && !this.stopRequested && target == this.targetFrequency){
+            LockSupport.parkNanos(Math.min(ahead, MAX_PARK_NANOS));
+            long woke = System.nanoTime();
+            this.throttleNanos += woke - now;
+            now = woke;
+            ahead = due - now;
+        }
+    }
+
+    private void publish(long startCycle, long startInstructions, long startNanos){
+        long now = System.nanoTime();
+        long cycle = this.computer.getCycleCount();
+        this.runCycles = cycle - startCycle;
+        this.runInstructions = Math.max(0, this.computer.getInstructionsExecuted() - startInstructions);
+        this.runNanos = now - startNanos;
+        long window = now - this.speedWindowNanos;
+        if(window >= SPEED_WINDOW_NANOS || this.runCycles == cycle - this.speedWindowCycle){
+            // the first window is the run so far, then roughly the last second
+            this.achievedFrequency = (window == 0) ? 0 : (cycle - this.speedWindowCycle) * 1e9 / window;
+            if(window >= SPEED_WINDOW_NANOS){
+                this.speedWindowNanos = now;
+                this.speedWindowCycle = cycle;
+            }
+        }
+    }
+
+    /**
+     * @param address PC the run stops at
+     */
+    public void addBreakpoint(int address){
+        this.computer.getBreakpoints().addBreakpoint(address);
+    }
+
+    /**
+     * @param address PC the run stops at when the condition holds
+     * @param condition DebugExpression, e.g. "R2 == 0 && c(X1+5) > 100"
+     * @throws IllegalArgumentException the condition doesn't parse
+     */
+    public void addBreakpoint(int address, String condition){
+        this.computer.getBreakpoints().addBreakpoint(address, condition);
+    }
+
+    /**
+     * @param address PC no longer to stop at
+     */
+    public void removeBreakpoint(int address){
+        this.computer.getBreakpoints().removeBreakpoint(address);
+    }
+
+    public void clearBreakpoints(){
+        this.computer.getBreakpoints().clearBreakpoints();
+    }
+
+    /**
+     * @param address PC at which to print the expressions, without stopping
+     * @param expressions DebugExpressions
+     * @throws IllegalArgumentException an expression doesn't parse
+     */
+    public void addTracepoint(int address, String... expressions){
+        this.computer.getBreakpoints().addTracepoint(address, expressions);
+    }
+
+    /**
+     * @param address PC no longer to trace
+     */
+    public void removeTracepoint(int address){
+        this.computer.getBreakpoints().removeTracepoint(address);
+    }
+
+    public void clearTracepoints(){
+        this.computer.getBreakpoints().clearTracepoints();
+    }
+
+    /**
+     * @param address word address the run stops at when it is read / written
+     * @param read stop on a read
+     * @param write stop on a write
+     */
+    public void addWatchpoint(int address, boolean read, boolean write){
+        this.computer.getBreakpoints().addWatchpoint(address, read, write);
+    }
+
+    /**
+     * @param address word address no longer to watch
+     */
+    public void removeWatchpoint(int address){
+        this.computer.getBreakpoints().removeWatchpoint(address);
+    }
+
+    public void clearWatchpoints(){
+        this.computer.getBreakpoints().clearWatchpoints();
+    }
+
+    /**
+     * @return PC of the breakpoint or word address of the watchpoint the last
+     *  run stopped at, -1 if it stopped for another reason
+     */
+    public int getStopAddress() {
+        int reason = this.stopReason;
+        return (reason == STOP_BREAKPOINT || reason == STOP_WATCHPOINT)
+                ? this.computer.getBreakpoints().getHitAddress() : -1;
+    }
+
+    public void addListener(Listener listener){
+        this.listeners.add(listener);
+    }
+
+    public void removeListener(Listener listener){
+        this.listeners.remove(listener);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public int getBatchCycles() {
+        return batchCycles;
+    }
+
+    /**
+     * @param cycles cycles run between checks of the stop flag and budget
+     */
+    public void setBatchCycles(int cycles) {
+        if(cycles < 1){
+            throw new IllegalArgumentException("Batch must be at least 1 cycle");
+        }
+        this.batchCycles = cycles;
+    }
+
+    public long getTargetFrequency() {
+        return targetFrequency;
+    }
+
+    /**
+     * Takes effect at the next batch, also during a run.
+     * @param hz simulated cycles per second to pace to, 0 to run flat out
+     */
+    public void setTargetFrequency(long hz) {
+        if(hz < 0){
+            throw new IllegalArgumentException("Target frequency must not be negative ("+hz+")");
+        }
+        this.targetFrequency = hz;
+    }
+
+    /**
+     * @return simulated cycles per host second over roughly the last second of the run
+     */
+    public double getAchievedFrequency() {
+        return achievedFrequency;
+    }
+
+    /**
+     * @return host time the run thread has spent parked for pacing
+     */
+    public long getThrottleNanos() {
+        return throttleNanos;
+    }
+
+    /**
+     * @return host time a paced run fell behind by and didn't make up (see MAX_LAG_NANOS)
+     */
+    public long getDroppedLagNanos() {
+        return droppedLagNanos;
+    }
+
+    /**
+     * @return STOP_* reason the last run ended with, STOP_NONE while running
+     */
+    public int getStopReason() {
+        return stopReason;
+    }
+
+    /**
+     * @param reason STOP_*
+     * @return name of the reason
+     */
+    public static String getStopReasonName(int reason) {
+        return RunController.STOP_NAMES[reason];
+    }
+
+    /**
+     * @return exception that ended the last run with STOP_FAULT, null otherwise
+     */
+    public Exception getFault() {
+        return fault;
+    }
+
+    /**
+     * @return cycles run by the current / last run
+     */
+    public long getRunCycles() {
+        return runCycles;
+    }
+
+    /**
+     * @return guest instructions executed by the current / last run
+     */
+    public long getRunInstructions() {
+        return runInstructions;
+    }
+
+    /**
+     * @return guest instructions per host second over the current / last run
+     */
+    public double getInstructionsPerSecond() {
+        long nanos = this.runNanos;
+        return (nanos == 0) ? 0 : this.runInstructions * 1e9 / nanos;
+    }
+
+    /**
+     * @return simulated cycles per host second over the current / last run
+     */
+    public double getCyclesPerSecond() {
+        long nanos = this.runNanos;
+        return (nanos == 0) ? 0 : this.runCycles * 1e9 / nanos;
+    }
+
+    /**
+     * @return one-line summary of the current / last run
+     */
+    public String getReport() {
+        return (this.running ? "running" : RunController.getStopReasonName(this.stopReason))
+                +": "+this.runCycles+" cycles, "+this.runInstructions+" instructions"
+                +String.format(", %.0f IPS, %.0f cycles/s", this.getInstructionsPerSecond(), this.getCyclesPerSecond())
+                +((this.targetFrequency == 0) ? "" : String.format(", paced to %d Hz, achieved %.0f Hz",
+                        this.targetFrequency, this.achievedFrequency));
+    }
+
+}
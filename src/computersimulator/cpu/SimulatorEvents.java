@@ -0,0 +1,248 @@
+package computersimulator.cpu;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.FlightRecorder;
+import jdk.jfr.FlightRecorderListener;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Recording;
+import jdk.jfr.RecordingState;
+
+/**
+ * JDK Flight Recorder events for the simulator's hot paths, so a recording
+ * shows what the guest was doing on the same timeline as the host's GC, JIT
+ * and thread activity:
+ *   InstructionRetire  every Nth retirement per core (sampled)
+ *   MemoryAccess       every word read or written in memory (off by default)
+ *   CacheMiss          a core's CoherentCache missed or needed an upgrade
+ *   BranchMispredict   a predicted jump went the other way
+ *   Trap               a machine fault left the CPU
+ *   Halt               a core ran HLT
+ * Each carries the core's simulated cycle where it has one.
+ *
+ * The hot paths test [active] first, a flag that is only true while a
+ * recording is running, so with no recording an event costs one volatile
+ * read. In a JVM without JFR the flag stays false and the jdk.jfr classes
+ * are never touched.
+ */
+public final class SimulatorEvents {
+
+    public final static int DEFAULT_RETIRE_SAMPLE_INTERVAL = 1024;
+
+    private final static String CATEGORY = "Computer Simulator";
+
+    // true while a flight recording is running
+    static volatile boolean active = false;
+
+    private static volatile int retireSampleInterval = DEFAULT_RETIRE_SAMPLE_INTERVAL;
+
+    private final static boolean AVAILABLE = SimulatorEvents.install();
+
+    @Name("computersimulator.InstructionRetire")
+    @Label("Instruction Retire")
+    @Description("A sampled guest instruction retirement")
+    @Category(CATEGORY)
+    static class InstructionRetireEvent extends Event {
+        @Label("PC") int pc;
+        @Label("Opcode") String opcode;
+        @Label("Retired Instructions") long retired;
+        @Label("Cycle") long cycle;
+        @Label("Sample Interval") int sampleInterval;
+    }
+
+    @Name("computersimulator.MemoryAccess")
+    @Label("Memory Access")
+    @Description("A word read or written in memory")
+    @Category(CATEGORY)
+    @Enabled(false)
+    static class MemoryAccessEvent extends Event {
+        @Label("Address") int address;
+        @Label("Write") boolean write;
+        @Label("Value") int value;
+    }
+
+    @Name("computersimulator.CacheMiss")
+    @Label("Cache Miss")
+    @Description("A core's cache missed, or had to upgrade a shared line for a write")
+    @Category(CATEGORY)
+    static class CacheMissEvent extends Event {
+        @Label("Core") int core;
+        @Label("Address") int address;
+        @Label("Write") boolean write;
+        @Label("Upgrade") boolean upgrade;
+    }
+
+    @Name("computersimulator.BranchMispredict")
+    @Label("Branch Mispredict")
+    @Description("A jump went somewhere other than predicted")
+    @Category(CATEGORY)
+    static class BranchMispredictEvent extends Event {
+        @Label("PC") int pc;
+        @Label("Next PC") int next;
+        @Label("Cycle") long cycle;
+    }
+
+    @Name("computersimulator.Trap")
+    @Label("Trap")
+    @Description("A machine fault left the CPU")
+    @Category(CATEGORY)
+    static class TrapEvent extends Event {
+        @Label("PC") int pc;
+        @Label("Fault ID") int faultId;
+        @Label("Message") String message;
+        @Label("Cycle") long cycle;
+    }
+
+    @Name("computersimulator.Halt")
+    @Label("Halt")
+    @Description("A core ran HLT")
+    @Category(CATEGORY)
+    static class HaltEvent extends Event {
+        @Label("PC") int pc;
+        @Label("Retired Instructions") long retired;
+        @Label("Cycle") long cycle;
+    }
+
+    private SimulatorEvents() {
+    }
+
+    /**
+     * Registers the event types and follows recordings starting and stopping.
+     * @return false if this JVM has no flight recorder
+     */
+    private static boolean install(){
+        try {
+            Class.forName("jdk.jfr.FlightRecorder");
+        } catch(ClassNotFoundException | LinkageError e){
+            return false;
+        }
+        try {
+            FlightRecorder.register(InstructionRetireEvent.class);
+            FlightRecorder.register(MemoryAccessEvent.class);
+            FlightRecorder.register(CacheMissEvent.class);
+            FlightRecorder.register(BranchMispredictEvent.class);
+            FlightRecorder.register(TrapEvent.class);
+            FlightRecorder.register(HaltEvent.class);
+            FlightRecorder.addListener(new FlightRecorderListener() {
+                @Override
+                public void recorderInitialized(FlightRecorder recorder) {
+                    SimulatorEvents.update(recorder);
+                }
+
+                @Override
+                public void recordingStateChanged(Recording recording) {
+                    SimulatorEvents.update(FlightRecorder.getFlightRecorder());
+                }
+            });
+            return true;
+        } catch(SecurityException | IllegalStateException e){
+            return false;   // recording not permitted in this JVM
+        }
+    }
+
+    private static void update(FlightRecorder recorder){
+        boolean running = false;
+        for(Recording recording : recorder.getRecordings()){
+            running |= recording.getState() == RecordingState.RUNNING;
+        }
+        SimulatorEvents.active = running;
+    }
+
+    /**
+     * @return true if this JVM has a flight recorder
+     */
+    public static boolean isAvailable() {
+        return AVAILABLE;
+    }
+
+    /**
+     * @return true while a recording is running and events are emitted
+     */
+    public static boolean isActive() {
+        return active;
+    }
+
+    public static int getRetireSampleInterval() {
+        return retireSampleInterval;
+    }
+
+    /**
+     * @param interval retirements per InstructionRetire event, per core
+     */
+    public static void setRetireSampleInterval(int interval) {
+        if(interval < 1){
+            throw new IllegalArgumentException("Sample interval must be at least 1");
+        }
+        SimulatorEvents.retireSampleInterval = interval;
+    }
+
+    /*************** Emitted from the hot paths, only while active ***************/
+
+    static void retire(Instruction instruction, int pc, long retired, long cycle){
+        InstructionRetireEvent event = new InstructionRetireEvent();
+        if(event.shouldCommit()){
+            event.pc = pc;
+            event.opcode = instruction.getMnemonic();
+            event.retired = retired;
+            event.cycle = cycle;
+            event.sampleInterval = retireSampleInterval;
+            event.commit();
+        }
+    }
+
+    static void memoryAccess(int address, boolean write, int value){
+        MemoryAccessEvent event = new MemoryAccessEvent();
+        if(event.shouldCommit()){
+            event.address = address;
+            event.write = write;
+            event.value = value;
+            event.commit();
+        }
+    }
+
+    static void cacheMiss(int core, int address, boolean write, boolean upgrade){
+        CacheMissEvent event = new CacheMissEvent();
+        if(event.shouldCommit()){
+            event.core = core;
+            event.address = address;
+            event.write = write;
+            event.upgrade = upgrade;
+            event.commit();
+        }
+    }
+
+    static void branchMispredict(int pc, int next, long cycle){
+        BranchMispredictEvent event = new BranchMispredictEvent();
+        if(event.shouldCommit()){
+            event.pc = pc;
+            event.next = next;
+            event.cycle = cycle;
+            event.commit();
+        }
+    }
+
+    static void trap(int pc, int faultId, String message, long cycle){
+        TrapEvent event = new TrapEvent();
+        if(event.shouldCommit()){
+            event.pc = pc;
+            event.faultId = faultId;
+            event.message = message;
+            event.cycle = cycle;
+            event.commit();
+        }
+    }
+
+    static void halt(int pc, long retired, long cycle){
+        HaltEvent event = new HaltEvent();
+        if(event.shouldCommit()){
+            event.pc = pc;
+            event.retired = retired;
+            event.cycle = cycle;
+            event.commit();
+        }
+    }
+
+}
@@ -0,0 +1,292 @@
+package computersimulator.cpu;
+
+import computersimulator.components.MachineFaultException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Shared bus between the cores' CoherentCaches and the one MemoryControlUnit
+ * of a multi-core Computer. A cache that misses, or writes a line it only
+ * shares, puts a transaction on the bus; every other cache snoops it:
+ *   BusRd    read miss: a modified copy is flushed, copies drop to S; the
+ *            line is filled S if anyone else had it, E otherwise
+ *   BusRdX   write miss: copies are flushed / invalidated, filled M
+ *   BusUpgr  write to a shared line: the other copies are invalidated
+ * Modified victims are written back on eviction.
+ *
+ * A cache that needs the bus queues a request and its core waits (see
+ * BusStallException). Requests made in a cycle are resolved at the end of it,
+ * once every core has been clocked, in core order (a core's own requests in
+ * the order it made them); during a cycle no cache sees another's requests,
+ * so the outcome doesn't depend on how the cores are spread over host
+ * threads. Transactions are atomic and each holds the bus for a cycle, a
+ * victim write-back for one more: a request waits for the bus to come free,
+ * and those waits are counted as arbitration cycles. The line can be used
+ * from the cycle after its transaction.
+ */
+public class SnoopingBus {
+
+    // Bus transactions
+    public final static int BUS_READ = 0;
+    public final static int BUS_READ_EXCLUSIVE = 1;
+    public final static int BUS_UPGRADE = 2;
+    public final static int BUS_WRITE_BACK = 3;
+    public final static int BUS_TRANSACTION_TYPES = 4;
+
+    private final static String[] TRANSACTION_NAMES = {"BusRd", "BusRdX", "BusUpgr", "write-back"};
+
+    /**
+     * A transaction a cache asked for this cycle.
+     */
+    private static class Request {
+        final CoherentCache requester;
+        final int address;
+        final boolean write;
+
+        Request(CoherentCache requester, int address, boolean write) {
+            this.requester = requester;
+            this.address = address;
+            this.write = write;
+        }
+    }
+
+    private final static Comparator<Request> CORE_ORDER = new Comparator<Request>() {
+        @Override
+        public int compare(Request a, Request b) {
+            return Integer.compare(a.requester.getCoreId(), b.requester.getCoreId());
+        }
+    };
+
+    private final MemoryControlUnit memory;
+    private final List<CoherentCache> caches = new ArrayList<>();
+    private final List<Request> requests = new ArrayList<>();
+
+    // cycle the cores are in, set between cycles
+    private volatile long cycle = 0;
+    private long freeCycle = 0;     // first cycle the bus is free
+
+    // Engineer: statistics
+    private final long[] transactions = new long[BUS_TRANSACTION_TYPES];
+    private long invalidations = 0;
+    private long flushes = 0;
+    private long arbitrationCycles = 0;
+
+    /**
+     * @param memory memory shared by the cores
+     */
+    public SnoopingBus(MemoryControlUnit memory) {
+        this.memory = memory;
+    }
+
+    /**
+     * @param cache cache to snoop on every transaction
+     */
+    synchronized void attach(CoherentCache cache){
+        this.caches.add(cache);
+    }
+
+    /**
+     * @param cycle machine cycle the cores run next
+     */
+    void setCycle(long cycle){
+        this.cycle = cycle;
+    }
+
+    /**
+     * @return machine cycle the cores are in
+     */
+    long getCycle(){
+        return this.cycle;
+    }
+
+    /**
+     * Queues a transaction for the end of the cycle: a read miss, a write
+     * miss or a write to a shared line.
+     * @param requester cache that asks
+     * @param address word address
+     * @param write true to get the line for writing
+     */
+    synchronized void request(CoherentCache requester, int address, boolean write){
+        this.requests.add(new Request(requester, address, write));
+    }
+
+    /**
+     * Resolves the cycle's requests in core order. Called between cycles,
+     * with no core running. A request for a line another cache has been
+     * granted but its core hasn't used yet stays queued for the next cycle.
+     * @throws MachineFaultException not expected: the requesters checked the addresses
+     */
+    synchronized void resolve() throws MachineFaultException {
+        if(this.requests.isEmpty()){
+            return;
+        }
+        Collections.sort(this.requests, CORE_ORDER);   // stable: each core's own stay in order
+        List<Request> waiting = new ArrayList<>();
+        for(Request request : this.requests){
+            if(this.pinned(request)){
+                waiting.add(request);
+            } else {
+                this.transact(request.requester, request.address, request.write);
+            }
+        }
+        this.requests.clear();
+        this.requests.addAll(waiting);
+    }
+
+    private boolean pinned(Request request){
+        for(CoherentCache cache : this.caches){
+            if(cache != request.requester && cache.pins(request.address, this.cycle)){
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void transact(CoherentCache requester, int address, boolean write) throws MachineFaultException {
+        int state = requester.stateOf(address);
+        if(!write && state == CoherentCache.STATE_INVALID){
+            this.arbitrate();
+            this.transactions[BUS_READ]++;
+            boolean shared = false;
+            for(CoherentCache cache : this.caches){
+                if(cache != requester && cache.snoopRead(address, this.memory)){
+                    shared = true;
+                }
+            }
+            this.fill(requester, address, shared ? CoherentCache.STATE_SHARED : CoherentCache.STATE_EXCLUSIVE);
+        } else if(write && state == CoherentCache.STATE_SHARED){
+            this.arbitrate();
+            this.transactions[BUS_UPGRADE]++;
+            this.invalidateOthers(requester, address);
+            requester.setState(address, CoherentCache.STATE_MODIFIED);
+        } else if(write && state == CoherentCache.STATE_INVALID){
+            this.arbitrate();
+            this.transactions[BUS_READ_EXCLUSIVE]++;
+            this.invalidateOthers(requester, address);
+            this.fill(requester, address, CoherentCache.STATE_MODIFIED);
+        }
+        // else: an earlier request this cycle already brought the line in
+        requester.granted(address, Math.max(this.cycle + 1, this.freeCycle));
+    }
+
+    /**
+     * Debugger read of a word no longer in the asking cache: a modified copy
+     * in another cache, else memory. Nothing changes state.
+     * @param address word address
+     * @return the word
+     */
+    synchronized int peek(int address) {
+        for(CoherentCache cache : this.caches){
+            if(cache.stateOf(address) == CoherentCache.STATE_MODIFIED){
+                return cache.readHeld(address);
+            }
+        }
+        return this.memory.peekWord(address);
+    }
+
+    private void invalidateOthers(CoherentCache requester, int address) throws MachineFaultException {
+        for(CoherentCache cache : this.caches){
+            if(cache != requester && cache.snoopInvalidate(address, this.memory)){
+                this.invalidations++;
+            }
+        }
+    }
+
+    private void fill(CoherentCache requester, int address, int state) throws MachineFaultException {
+        if(requester.fill(address, state, this.memory)){
+            this.arbitrate();
+            this.transactions[BUS_WRITE_BACK]++;
+        }
+    }
+
+    /**
+     * Takes the bus for a cycle, waiting for the transactions ahead to finish.
+     */
+    private void arbitrate(){
+        long grant = Math.max(this.cycle, this.freeCycle);
+        this.arbitrationCycles += grant - this.cycle;
+        this.freeCycle = grant + 1;
+    }
+
+    /**
+     * Called by a cache whose modified copy a snoop wrote back.
+     */
+    void recordFlush(){
+        this.flushes++;
+    }
+
+    /**
+     * Writes every modified line in every cache back to memory, so the memory
+     * can be read directly (consoles, results).
+     * @return lines written back
+     * @throws MachineFaultException not expected
+     */
+    public synchronized int flushCaches() throws MachineFaultException {
+        int written = 0;
+        for(CoherentCache cache : this.caches){
+            written += cache.flush(this.memory);
+        }
+        return written;
+    }
+
+    public synchronized List<CoherentCache> getCaches() {
+        return new ArrayList<>(caches);
+    }
+
+    /**
+     * @param type BUS_*
+     * @return transactions of the type
+     */
+    public synchronized long getTransactions(int type) {
+        return transactions[type];
+    }
+
+    /**
+     * @return all transactions (coherence traffic)
+     */
+    public synchronized long getTotalTransactions() {
+        long total = 0;
+        for(long count : this.transactions){
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * @return copies invalidated by BusRdX / BusUpgr
+     */
+    public synchronized long getInvalidations() {
+        return invalidations;
+    }
+
+    /**
+     * @return modified copies written back because another cache snooped them
+     */
+    public synchronized long getFlushes() {
+        return flushes;
+    }
+
+    /**
+     * @return cycles transactions waited for the bus (their cores waited too)
+     */
+    public synchronized long getArbitrationCycles() {
+        return arbitrationCycles;
+    }
+
+    /**
+     * @return one-line summary of the counters
+     */
+    public synchronized String getReport() {
+        StringBuilder sb = new StringBuilder("bus:");
+        for(int type = 0; type < BUS_TRANSACTION_TYPES; type++){
+            sb.append(" ").append(SnoopingBus.TRANSACTION_NAMES[type]).append(" ").append(this.transactions[type]);
+        }
+        sb.append(", invalidations ").append(this.invalidations);
+        sb.append(", flushes ").append(this.flushes);
+        sb.append(", arbitration cycles ").append(this.arbitrationCycles);
+        return sb.toString();
+    }
+
+}
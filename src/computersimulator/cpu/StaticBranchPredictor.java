@@ -0,0 +1,59 @@
+package computersimulator.cpu;
+
+/**
+ * Fixed guess that does not learn: always not taken, always taken, or
+ * backward taken / forward not taken (loops such as SOB jump backwards).
+ */
+public class StaticBranchPredictor extends BranchPredictor {
+
+    public final static int POLICY_NOT_TAKEN = 0;
+    public final static int POLICY_TAKEN = 1;
+    public final static int POLICY_BACKWARD_TAKEN = 2;
+
+    private final static String[] POLICY_NAMES = {"static not-taken", "static taken", "static BTFN"};
+
+    private final int policy;
+
+    /**
+     * @param policy POLICY_*
+     */
+    public StaticBranchPredictor(int policy) {
+        if(policy < POLICY_NOT_TAKEN || policy > POLICY_BACKWARD_TAKEN){
+            throw new IllegalArgumentException("Unknown static policy "+policy);
+        }
+        this.policy = policy;
+    }
+
+    @Override
+    public boolean predict(int pc, int target) {
+        switch(this.policy){
+            case StaticBranchPredictor.POLICY_TAKEN:
+                return true;
+            case StaticBranchPredictor.POLICY_BACKWARD_TAKEN:
+                return target >= 0 && target <= pc;
+            case StaticBranchPredictor.POLICY_NOT_TAKEN:
+            default:
+                return false;
+        }
+    }
+
+    @Override
+    protected void train(int pc, boolean taken) {
+        // nothing to learn
+    }
+
+    @Override
+    public String getName() {
+        return StaticBranchPredictor.POLICY_NAMES[this.policy];
+    }
+
+    @Override
+    public void reset() {
+        // no state
+    }
+
+    public int getPolicy() {
+        return policy;
+    }
+
+}
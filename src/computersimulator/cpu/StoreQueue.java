@@ -0,0 +1,134 @@
+package computersimulator.cpu;
+
+import computersimulator.components.MachineFaultException;
+
+/**
+ * Stores made down a predicted path, held back from the MemoryControlUnit
+ * until the path is known to be right. Loads on the same path read the
+ * youngest queued value for their address first (store-to-load forwarding).
+ * A wrong path's stores are simply discarded.
+ */
+public class StoreQueue {
+
+    public final static int NOT_FOUND = -1;
+
+    private final int[] addresses;
+    private final int[] values;
+    private int size = 0;
+
+    // Engineer: statistics
+    private long stores = 0;
+    private long forwards = 0;
+    private long committed = 0;
+    private long discarded = 0;
+
+    /**
+     * @param capacity stores that can be held before the path has to wait
+     */
+    public StoreQueue(int capacity) {
+        if(capacity < 1){
+            throw new IllegalArgumentException("Store queue capacity must be at least 1");
+        }
+        this.addresses = new int[capacity];
+        this.values = new int[capacity];
+    }
+
+    /**
+     * @param address word address, already checked against the memory's capacity
+     * @param value 20-bit word
+     * @throws IllegalStateException the queue is full (check isFull() first)
+     */
+    public void add(int address, int value){
+        if(this.isFull()){
+            throw new IllegalStateException("Store queue full");
+        }
+        this.addresses[this.size] = address;
+        this.values[this.size] = value;
+        this.size++;
+        this.stores++;
+    }
+
+    /**
+     * @param address word address
+     * @return youngest queued value for the address, NOT_FOUND if none
+     */
+    public int forward(int address){
+        for(int i = this.size - 1; i >= 0; i--){
+            if(this.addresses[i] == address){
+                this.forwards++;
+                return this.values[i];
+            }
+        }
+        return NOT_FOUND;
+    }
+
+    /**
+     * Writes the queued stores to memory in program order and empties the
+     * queue. If a write has to wait for the bus, the stores written so far
+     * leave the queue and the rest stay for the next commit.
+     * @param memory memory to write
+     * @throws MachineFaultException not expected: addresses were checked when queued
+     * @throws BusStallException a CoherentCache has to fetch the line first
+     */
+    public void commit(MemoryControlUnit memory) throws MachineFaultException {
+        int written = 0;
+        try {
+            for(; written < this.size; written++){
+                memory.writeWord(this.addresses[written], this.values[written]);
+            }
+        } finally {
+            System.arraycopy(this.addresses, written, this.addresses, 0, this.size - written);
+            System.arraycopy(this.values, written, this.values, 0, this.size - written);
+            this.committed += written;
+            this.size -= written;
+        }
+    }
+
+    /**
+     * Drops the queued stores (wrong path).
+     */
+    public void discard(){
+        this.discarded += this.size;
+        this.size = 0;
+    }
+
+    public boolean isEmpty(){
+        return this.size == 0;
+    }
+
+    public boolean isFull(){
+        return this.size == this.addresses.length;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public int getCapacity() {
+        return addresses.length;
+    }
+
+    public void resetStatistics(){
+        this.stores = 0;
+        this.forwards = 0;
+        this.committed = 0;
+        this.discarded = 0;
+    }
+
+    public long getStores() {
+        return stores;
+    }
+
+    public long getForwards() {
+        return forwards;
+    }
+
+    public long getCommitted() {
+        return committed;
+    }
+
+    public long getDiscarded() {
+        return discarded;
+    }
+
+}
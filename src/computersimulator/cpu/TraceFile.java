@@ -0,0 +1,208 @@
+package computersimulator.cpu;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A binary execution trace as written by TraceRecorder, and its reader.
+ *
+ * The file is a 16-byte header, then fixed-size big-endian records:
+ *   header  int magic "CSTR", short version, short record size, int format, int 0
+ *   record  long cycle (int distance from the record before, FORMAT_DELTA),
+ *           short PC, byte opcode, byte flags, int EA (-1 if no data access),
+ *           int value (the data word loaded or stored)
+ * A delta-encoded file also holds sync records (FLAG_SYNC, PC and opcode 0,
+ * EA and value the high and low halves of an absolute cycle), at least one
+ * at the start of every batch the recorder wrote; the reader skips them.
+ *
+ * The reader maps the file (up to 2 GB) and decodes it with a Cursor.
+ */
+public class TraceFile {
+
+    public final static int MAGIC = 0x43535452;     // "CSTR"
+    public final static int VERSION = 1;
+    public final static int FORMAT_DELTA = 1;
+
+    public final static int HEADER_BYTES = 16;
+    public final static int RECORD_BYTES = 20;
+    public final static int DELTA_RECORD_BYTES = 16;
+
+    // record flags
+    public final static int FLAG_READ = 1;
+    public final static int FLAG_WRITE = 2;
+    public final static int FLAG_CONTROL = 4;
+    public final static int FLAG_TAKEN = 8;
+    public final static int FLAG_SYNC = 0x80;
+
+    private final MappedByteBuffer map;
+    private final boolean delta;
+    private final int recordBytes;
+    private final long slots;
+
+    /**
+     * Decodes records in file order.
+     */
+    public class Cursor {
+        private final ByteBuffer records;
+        private final long end;
+        private long slot;
+
+        // the record next() decoded
+        private long cycle;
+        private int pc;
+        private int opcode;
+        private int flags;
+        private int ea;
+        private int value;
+
+        Cursor(long firstSlot, long endSlot) {
+            this.records = TraceFile.this.map.duplicate();
+            this.slot = firstSlot;
+            this.end = endSlot;
+        }
+
+        /**
+         * @return true if a record was decoded, false at the end
+         */
+        public boolean next() {
+            while(this.slot < this.end){
+                int at = (int)(HEADER_BYTES + this.slot * TraceFile.this.recordBytes);
+                this.slot++;
+                long time = TraceFile.this.delta
+                        ? this.cycle + (this.records.getInt(at) & 0xFFFFFFFFL) : this.records.getLong(at);
+                at += TraceFile.this.delta ? 4 : 8;
+                this.flags = this.records.get(at + 3) & 0xFF;
+                if((this.flags & FLAG_SYNC) != 0){
+                    this.cycle = (long)this.records.getInt(at + 4) << 32 | (this.records.getInt(at + 8) & 0xFFFFFFFFL);
+                    continue;
+                }
+                this.cycle = time;
+                this.pc = this.records.getShort(at) & 0x1FFF;
+                this.opcode = this.records.get(at + 2) & 0x3F;
+                this.ea = this.records.getInt(at + 4);
+                this.value = this.records.getInt(at + 8);
+                return true;
+            }
+            return false;
+        }
+
+        public long getCycle() {
+            return cycle;
+        }
+
+        public int getPC() {
+            return pc;
+        }
+
+        public int getOpcode() {
+            return opcode;
+        }
+
+        /**
+         * @return FLAG_* bits
+         */
+        public int getFlags() {
+            return flags;
+        }
+
+        /**
+         * @return data address loaded or stored, -1 if none
+         */
+        public int getEffectiveAddress() {
+            return ea;
+        }
+
+        public int getValue() {
+            return value;
+        }
+
+        public boolean isRead() {
+            return (this.flags & FLAG_READ) != 0;
+        }
+
+        public boolean isWrite() {
+            return (this.flags & FLAG_WRITE) != 0;
+        }
+
+        public boolean isControlTransfer() {
+            return (this.flags & FLAG_CONTROL) != 0;
+        }
+
+        public boolean isTaken() {
+            return (this.flags & FLAG_TAKEN) != 0;
+        }
+    }
+
+    /**
+     * Maps a trace file for reading.
+     * @param file trace written by a TraceRecorder
+     * @throws IOException the file can't be read, isn't a trace or is over 2 GB
+     */
+    public TraceFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if(channel.size() > Integer.MAX_VALUE){
+                throw new IOException("Trace "+file+" is too large to map ("+channel.size()+" bytes)");
+            }
+            this.map = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if(this.map.limit() < HEADER_BYTES || this.map.getInt(0) != MAGIC){
+            throw new IOException(file+" is not a trace");
+        }
+        if(this.map.getShort(4) != VERSION){
+            throw new IOException("Trace "+file+" has unsupported version "+this.map.getShort(4));
+        }
+        this.recordBytes = this.map.getShort(6);
+        this.delta = (this.map.getInt(8) & FORMAT_DELTA) != 0;
+        this.slots = (this.map.limit() - HEADER_BYTES) / this.recordBytes;
+    }
+
+    /**
+     * @return a cursor over every record
+     */
+    public Cursor cursor() {
+        return new Cursor(0, this.slots);
+    }
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * @return records in the file, sync records included
+     */
+    public long getSlots() {
+        return slots;
+    }
+
+    /*************** Used by the TraceRecorder ***************/
+
+    static void writeHeader(FileChannel channel, boolean delta) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        header.putShort((short)VERSION);
+        header.putShort((short)(delta ? DELTA_RECORD_BYTES : RECORD_BYTES));
+        header.putInt(delta ? FORMAT_DELTA : 0);
+        header.putInt(0);
+        header.flip();
+        while(header.hasRemaining()){
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Puts a delta-format sync record carrying an absolute cycle.
+     */
+    static void putSync(ByteBuffer buffer, long cycle){
+        buffer.putInt(0);
+        buffer.putShort((short)0);
+        buffer.put((byte)0);
+        buffer.put((byte)FLAG_SYNC);
+        buffer.putInt((int)(cycle >>> 32));
+        buffer.putInt((int)cycle);
+    }
+
+}
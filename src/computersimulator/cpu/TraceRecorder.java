@@ -0,0 +1,312 @@
+package computersimulator.cpu;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Records a full execution trace, one fixed-size binary record per retired
+ * instruction, to a file (see TraceFile for the format and reader).
+ *
+ * The simulation thread packs each record into two longs of a preallocated
+ * ring and publishes it with an ordered store; it never allocates, locks or
+ * does I/O. A background thread drains the ring into a large direct buffer
+ * and writes it through a FileChannel. Only if the drain falls a whole ring
+ * behind does the simulation thread wait for it (or, with dropWhenFull,
+ * drop the record and count it).
+ *
+ * With delta encoding each record stores the cycle as the distance from the
+ * record before, in 16 bytes instead of 20; every drained batch starts with
+ * a sync record holding the absolute cycle, so a reader can start decoding
+ * at any batch.
+ *
+ * Records of a speculative dispatch path are held back (written but not
+ * published) until the path is confirmed, and discarded if it rolls back.
+ * Attach with ControlUnit.setTraceRecorder(); close() when done.
+ */
+public class TraceRecorder implements AutoCloseable {
+
+    public final static int DEFAULT_RING_RECORDS = 1 << 20;
+    public final static int DEFAULT_BUFFER_BYTES = 4 << 20;
+
+    // 13-bit PC | 6-bit opcode | 8-bit flags | 14-bit EA (NO_EA: none) | 20-bit value
+    private final static int NO_EA = 0x3FFF;
+
+    private final long[] ring;
+    private final int mask;
+    private final AtomicLong published = new AtomicLong();  // records the drain may take
+    private final AtomicLong drained = new AtomicLong();    // records the drain has taken
+    private long written = 0;                               // simulation thread's next slot
+    private boolean holding = false;                        // speculating: don't publish
+    private boolean dropWhenFull = false;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final boolean delta;
+    private long lastCycle = 0;
+    private final Thread drainer;
+    private volatile boolean closing = false;
+    private volatile IOException failure;
+
+    // Engineer: statistics
+    private long records = 0;
+    private long dropped = 0;
+    private long producerWaits = 0;
+    private volatile long bytesWritten = 0;
+
+    /**
+     * A recorder with the default ring and buffer sizes.
+     * @param file file to write (replaced)
+     * @param delta true to delta-encode the cycle
+     * @throws IOException the file can't be opened
+     */
+    public TraceRecorder(Path file, boolean delta) throws IOException {
+        this(file, delta, DEFAULT_RING_RECORDS, DEFAULT_BUFFER_BYTES);
+    }
+
+    /**
+     * @param file file to write (replaced)
+     * @param delta true to delta-encode the cycle
+     * @param ringRecords records the ring holds, a power of two
+     * @param bufferBytes size of the direct buffer each write goes through
+     * @throws IOException the file can't be opened
+     */
+    public TraceRecorder(Path file, boolean delta, int ringRecords, int bufferBytes) throws IOException {
+        BimodalBranchPredictor.indexMask(ringRecords);  // must be a power of two
+        this.ring = new long[2 * ringRecords];
+        this.mask = ringRecords - 1;
+        this.delta = delta;
+        int recordBytes = delta ? TraceFile.DELTA_RECORD_BYTES : TraceFile.RECORD_BYTES;
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferBytes, 2 * recordBytes) / recordBytes * recordBytes);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        TraceFile.writeHeader(this.channel, delta);
+        this.bytesWritten = TraceFile.HEADER_BYTES;
+
+        this.drainer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                TraceRecorder.this.drain();
+            }
+        }, "Trace recorder drain");
+        this.drainer.setDaemon(true);
+        this.drainer.start();
+    }
+
+    /**
+     * @param dropWhenFull true to drop records rather than wait when the drain is a ring behind
+     */
+    public void setDropWhenFull(boolean dropWhenFull) {
+        this.dropWhenFull = dropWhenFull;
+    }
+
+    /**
+     * Records one retired instruction (simulation thread only).
+     * @param cycle core's cycle
+     * @param pc its address
+     * @param instruction the instruction
+     * @param taken for a jump, whether it went to its target
+     * @param ea data address loaded or stored, -1 if none
+     * @param value data word loaded or stored
+     */
+    void record(long cycle, int pc, Instruction instruction, boolean taken, int ea, int value){
+        if(this.written - this.drained.get() > this.mask){
+            if(this.dropWhenFull){
+                this.dropped++;
+                return;
+            }
+            this.producerWaits++;
+            // (a speculative path longer than the ring can't be drained: it is dropped)
+            while(this.written - this.drained.get() > this.mask && this.published.get() > this.drained.get()
+                    && this.failure == null && this.drainer.isAlive()){
+                LockSupport.unpark(this.drainer);
+                Thread.yield();
+            }
+            if(this.written - this.drained.get() > this.mask){
+                this.dropped++;
+                return;
+            }
+        }
+        int flags = 0;
+        if(ea >= 0){
+            flags |= instruction.writesMemory() ? TraceFile.FLAG_WRITE : TraceFile.FLAG_READ;
+        } else {
+            value = 0;
+        }
+        if(instruction.isControlTransfer()){
+            flags |= TraceFile.FLAG_CONTROL | (taken ? TraceFile.FLAG_TAKEN : 0);
+        }
+        int slot = 2 * (int)(this.written & this.mask);
+        this.ring[slot] = cycle;
+        this.ring[slot + 1] = (pc & 0x1FFF)
+                | (long)instruction.getOpcode() << 13
+                | (long)flags << 19
+                | (long)((ea < 0) ? NO_EA : ea) << 27
+                | (long)(value & 0xFFFFF) << 41;
+        this.written++;
+        this.records++;
+        if(!this.holding){
+            this.published.lazySet(this.written);
+        }
+    }
+
+    /**
+     * Holds back what is recorded from here on: dispatch is going down a predicted path.
+     */
+    void beginSpeculation(){
+        this.holding = true;
+    }
+
+    /**
+     * @param rollback true if the path was wrong: its records are discarded
+     */
+    void endSpeculation(boolean rollback){
+        this.holding = false;
+        if(rollback){
+            this.records -= this.written - this.published.get();
+            this.written = this.published.get();
+        } else {
+            this.published.lazySet(this.written);
+        }
+    }
+
+    /**
+     * Drain thread: moves published records into the buffer and writes it
+     * out whenever it fills or the ring runs dry.
+     */
+    private void drain(){
+        try {
+            while(true){
+                long from = this.drained.get();
+                long to = this.published.get();
+                if(from == to){
+                    if(this.buffer.position() > 0){
+                        this.flushBuffer();
+                        continue;
+                    }
+                    if(this.closing){
+                        return;
+                    }
+                    LockSupport.parkNanos(200000L);
+                    continue;
+                }
+                int recordBytes = this.delta ? TraceFile.DELTA_RECORD_BYTES : TraceFile.RECORD_BYTES;
+                if(this.delta && this.buffer.position() == 0){
+                    TraceFile.putSync(this.buffer, this.lastCycle);
+                }
+                long n = Math.min(to - from, this.buffer.remaining() / recordBytes);
+                for(long i = from; i < from + n; i++){
+                    int slot = 2 * (int)(i & this.mask);
+                    long cycle = this.ring[slot];
+                    long packed = this.ring[slot + 1];
+                    int ea = (int)(packed >>> 27) & NO_EA;
+                    if(this.delta){
+                        long distance = cycle - this.lastCycle;
+                        if(distance < 0 || distance > 0xFFFFFFFFL){
+                            if(this.buffer.remaining() < 2 * recordBytes){
+                                n = i - from;
+                                break;
+                            }
+                            TraceFile.putSync(this.buffer, cycle);
+                            distance = 0;
+                        }
+                        this.buffer.putInt((int)distance);
+                    } else {
+                        this.buffer.putLong(cycle);
+                    }
+                    this.lastCycle = cycle;
+                    this.buffer.putShort((short)(packed & 0x1FFF));
+                    this.buffer.put((byte)((packed >>> 13) & 0x3F));
+                    this.buffer.put((byte)((packed >>> 19) & 0xFF));
+                    this.buffer.putInt((ea == NO_EA) ? -1 : ea);
+                    this.buffer.putInt((int)(packed >>> 41) & 0xFFFFF);
+                }
+                this.drained.lazySet(from + n);
+                if(this.buffer.remaining() < 2 * recordBytes){
+                    this.flushBuffer();
+                }
+            }
+        } catch(IOException e){
+            this.failure = e;
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        this.buffer.flip();
+        while(this.buffer.hasRemaining()){
+            this.bytesWritten += this.channel.write(this.buffer);
+        }
+        this.buffer.clear();
+    }
+
+    /**
+     * Publishes anything held back, waits for the drain to write everything
+     * and closes the file.
+     * @throws IOException writing the trace failed
+     */
+    @Override
+    public void close() throws IOException {
+        if(this.holding){
+            this.endSpeculation(false);
+        }
+        this.closing = true;
+        LockSupport.unpark(this.drainer);
+        try {
+            this.drainer.join();
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        this.channel.close();
+        if(this.failure != null){
+            throw this.failure;
+        }
+    }
+
+    /*************** Statistics ***************/
+
+    public boolean isDelta() {
+        return delta;
+    }
+
+    /**
+     * @return records taken from the simulation thread
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return records dropped with dropWhenFull
+     */
+    public long getDropped() {
+        return dropped;
+    }
+
+    /**
+     * @return times the simulation thread found the ring full
+     */
+    public long getProducerWaits() {
+        return producerWaits;
+    }
+
+    /**
+     * @return bytes written to the file so far, header included
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * @return one-line summary of the counters
+     */
+    public String getReport() {
+        return "trace: "+this.records+" records, "+this.bytesWritten+" bytes"
+                +(this.delta ? " (delta)" : "")
+                +", ring full "+this.producerWaits+", dropped "+this.dropped;
+    }
+
+}
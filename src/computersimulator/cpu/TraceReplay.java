@@ -0,0 +1,283 @@
+package computersimulator.cpu;
+
+import computersimulator.components.MachineFaultException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Replays a recorded trace (see TraceRecorder) against many cache and
+ * branch predictor configurations, without re-running the CPU.
+ *
+ * Each cache configuration is the CoherentCache a multi-core Computer gives
+ * its cores, alone on a SnoopingBus in front of a MemoryControlUnit. It sees
+ * every instruction fetch (unless fetches are turned off) and every data read
+ * and write in the trace. Each predictor sees every conditional jump, with
+ * the target a branch target buffer would have supplied: the last place the
+ * jump went when taken.
+ *
+ * run() splits the configurations into one group per worker of a fork-join
+ * pool. Every group makes its own pass over the shared mapping of the trace,
+ * decoding each record once for all the configurations in the group.
+ */
+public class TraceReplay {
+
+    /**
+     * One configuration fed every record.
+     */
+    private abstract static class Configuration {
+        abstract void replay(TraceFile.Cursor record) throws MachineFaultException;
+    }
+
+    private static class CacheConfiguration extends Configuration {
+        final SnoopingBus bus;
+        final CoherentCache cache;
+        final boolean fetches;
+        long cycle = 0;
+
+        CacheConfiguration(int lines, int lineWords, boolean fetches) {
+            this.bus = new SnoopingBus(new MemoryControlUnit());
+            this.cache = new CoherentCache(this.bus, 0, lines, lineWords);
+            this.fetches = fetches;
+        }
+
+        @Override
+        void replay(TraceFile.Cursor record) throws MachineFaultException {
+            this.cycle = Math.max(this.cycle, record.getCycle());
+            this.bus.setCycle(this.cycle);
+            if(this.fetches){
+                this.access(record.getPC(), false, 0);
+            }
+            if(record.isRead()){
+                this.access(record.getEffectiveAddress(), false, 0);
+            } else if(record.isWrite()){
+                this.access(record.getEffectiveAddress(), true, record.getValue());
+            }
+        }
+
+        /**
+         * A miss waits for the bus as a core's access would: the request is
+         * resolved and the access made again on the following cycles.
+         */
+        private void access(int address, boolean write, int value) throws MachineFaultException {
+            while(true){
+                try {
+                    if(write){
+                        this.cache.writeWord(address, value);
+                    } else {
+                        this.cache.readWord(address);
+                    }
+                    return;
+                } catch(BusStallException e){
+                    this.bus.resolve();
+                    this.bus.setCycle(++this.cycle);
+                }
+            }
+        }
+    }
+
+    private static class PredictorConfiguration extends Configuration {
+        final BranchPredictor predictor;
+        final int[] targets = new int[GuestProfiler.ADDRESSES];
+        int takenJump = -1;     // taken conditional jump whose target is the next record
+
+        PredictorConfiguration(BranchPredictor predictor) {
+            this.predictor = predictor;
+            Arrays.fill(this.targets, -1);
+        }
+
+        @Override
+        void replay(TraceFile.Cursor record) {
+            if(this.takenJump >= 0){
+                this.targets[this.takenJump] = record.getPC();
+                this.takenJump = -1;
+            }
+            if(CONDITIONAL[record.getOpcode()]){
+                int pc = record.getPC();
+                boolean predicted = this.predictor.predict(pc, this.targets[pc]);
+                this.predictor.update(pc, predicted, record.isTaken());
+                if(record.isTaken()){
+                    this.takenJump = pc;
+                }
+            }
+        }
+    }
+
+    // opcodes of the conditional jumps
+    private final static boolean[] CONDITIONAL = new boolean[64];
+    static {
+        for(int opcode = 0; opcode < CONDITIONAL.length; opcode++){
+            CONDITIONAL[opcode] = Instruction.decode(opcode << 14).isConditionalBranch();
+        }
+    }
+
+    /**
+     * Replays the trace for configurations [from, to), splitting the range
+     * until it is one group.
+     */
+    private class ReplayTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int from;
+        private final int to;
+        private final int groupSize;
+
+        ReplayTask(int from, int to, int groupSize) {
+            this.from = from;
+            this.to = to;
+            this.groupSize = groupSize;
+        }
+
+        @Override
+        protected void compute() {
+            if(this.to - this.from > this.groupSize){
+                int groups = (this.to - this.from + this.groupSize - 1) / this.groupSize;
+                int middle = this.from + this.groupSize * (groups / 2);
+                ReplayTask.invokeAll(new ReplayTask(this.from, middle, this.groupSize),
+                        new ReplayTask(middle, this.to, this.groupSize));
+                return;
+            }
+            List<Configuration> group = TraceReplay.this.configurations.subList(this.from, this.to);
+            TraceFile.Cursor record = TraceReplay.this.trace.cursor();
+            long records = 0;
+            try {
+                while(record.next()){
+                    records++;
+                    for(Configuration configuration : group){
+                        configuration.replay(record);
+                    }
+                }
+            } catch(MachineFaultException e){
+                throw new IllegalStateException("Trace holds an address beyond the installed memory", e);
+            }
+            if(this.from == 0){
+                TraceReplay.this.records = records;
+            }
+        }
+    }
+
+    private final TraceFile trace;
+    private final List<Configuration> configurations = new ArrayList<>();
+    private final List<CoherentCache> caches = new ArrayList<>();
+    private final List<BranchPredictor> predictors = new ArrayList<>();
+    private boolean fetches = true;
+
+    // Engineer: statistics
+    private long records = 0;
+    private long passes = 0;
+    private long replayNanos = 0;
+
+    /**
+     * @param trace trace to replay
+     */
+    public TraceReplay(TraceFile trace) {
+        this.trace = trace;
+    }
+
+    /**
+     * @param fetches true (the default) to replay instruction fetches through
+     *  the caches added from here on, false for data accesses only
+     */
+    public void setFetches(boolean fetches) {
+        this.fetches = fetches;
+    }
+
+    /**
+     * @param lines number of lines, a power of two
+     * @param lineWords words per line, a power of two
+     * @return the cache, to read its statistics from after run()
+     */
+    public CoherentCache addCache(int lines, int lineWords) {
+        CacheConfiguration configuration = new CacheConfiguration(lines, lineWords, this.fetches);
+        this.configurations.add(configuration);
+        this.caches.add(configuration.cache);
+        return configuration.cache;
+    }
+
+    /**
+     * @param predictor predictor to train on the trace's conditional jumps
+     * @return the predictor, to read its statistics from after run()
+     */
+    public BranchPredictor addPredictor(BranchPredictor predictor) {
+        this.configurations.add(new PredictorConfiguration(predictor));
+        this.predictors.add(predictor);
+        return predictor;
+    }
+
+    /**
+     * Replays the trace with one worker per available core.
+     */
+    public void run() {
+        this.run(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Replays the trace through every configuration added; run once.
+     * @param parallelism fork-join workers (and configuration groups)
+     */
+    public void run(int parallelism) {
+        if(this.passes > 0){
+            throw new IllegalStateException("The trace has already been replayed");
+        }
+        if(this.configurations.isEmpty()){
+            return;
+        }
+        int groups = Math.max(1, Math.min(parallelism, this.configurations.size()));
+        int groupSize = (this.configurations.size() + groups - 1) / groups;
+        long start = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(groups);
+        try {
+            pool.invoke(new ReplayTask(0, this.configurations.size(), groupSize));
+        } finally {
+            pool.shutdown();
+        }
+        this.replayNanos = System.nanoTime() - start;
+        this.passes = (this.configurations.size() + groupSize - 1) / groupSize;
+    }
+
+    /*************** Statistics ***************/
+
+    public List<CoherentCache> getCaches() {
+        return caches;
+    }
+
+    public List<BranchPredictor> getPredictors() {
+        return predictors;
+    }
+
+    /**
+     * @return instruction records in the trace (after run())
+     */
+    public long getRecords() {
+        return records;
+    }
+
+    /**
+     * @return passes made over the trace, one per configuration group
+     */
+    public long getPasses() {
+        return passes;
+    }
+
+    /**
+     * @return one line per configuration, caches first
+     */
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        report.append(String.format("replay: %d records, %d configurations in %d passes, %.1f ms%n",
+                this.records, this.configurations.size(), this.passes, this.replayNanos / 1e6));
+        for(CoherentCache cache : this.caches){
+            report.append(String.format("  cache %4d x %d words: hit rate %.1f%%, misses %d, evictions %d%n",
+                    cache.getLines(), cache.getLineWords(), 100 * cache.getHitRate(),
+                    cache.getMisses(), cache.getEvictions()));
+        }
+        for(BranchPredictor predictor : this.predictors){
+            report.append(String.format("  %s: %d/%d correct (%.1f%%)%n", predictor.getName(),
+                    predictor.getCorrectPredictions(), predictor.getPredictions(), 100 * predictor.getAccuracy()));
+        }
+        return report.toString();
+    }
+
+}
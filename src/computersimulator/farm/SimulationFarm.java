@@ -0,0 +1,175 @@
+package computersimulator.farm;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.Unit;
+import computersimulator.components.Word;
+import computersimulator.cpu.Computer;
+import computersimulator.cpu.ControlUnit;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs many independent SimulationJobs on a pool of host threads, one per
+ * core by default. Each job gets a Computer of its own, built, run and
+ * dropped on the worker thread, with the instruction cycle and memory trace
+ * turned off so the workers don't queue on System.out. The simulator keeps
+ * no static machine state, so jobs share nothing and throughput grows with
+ * the number of workers.
+ */
+public class SimulationFarm {
+
+    /**
+     * Receives results as jobs finish, in completion order, on the thread
+     * that called runAll().
+     */
+    public interface ResultHandler {
+        public void resultReady(SimulationResult result);
+    }
+
+    private final ExecutorService workers;
+    private final int threads;
+
+    /**
+     * A farm with one worker per available core.
+     */
+    public SimulationFarm() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * @param threads worker threads
+     */
+    public SimulationFarm(int threads) {
+        if(threads < 1){
+            throw new IllegalArgumentException("A farm needs at least 1 thread");
+        }
+        this.threads = threads;
+        final AtomicInteger created = new AtomicInteger();
+        this.workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "Simulation farm worker " + created.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * @param job job to queue
+     * @return completes with the job's result
+     */
+    public Future<SimulationResult> submit(final SimulationJob job){
+        return this.workers.submit(new Callable<SimulationResult>() {
+            @Override
+            public SimulationResult call() {
+                return SimulationFarm.runJob(job);
+            }
+        });
+    }
+
+    /**
+     * Queues every job and hands each result to the handler as soon as its job
+     * finishes; returns once all have been handled.
+     * @param jobs jobs to run
+     * @param handler receives the results
+     * @throws InterruptedException interrupted while waiting for a result
+     * @throws ExecutionException a job failed outside the simulated machine
+     */
+    public void runAll(List<SimulationJob> jobs, ResultHandler handler) throws InterruptedException, ExecutionException {
+        CompletionService<SimulationResult> completion = new ExecutorCompletionService<>(this.workers);
+        for(final SimulationJob job : jobs){
+            completion.submit(new Callable<SimulationResult>() {
+                @Override
+                public SimulationResult call() {
+                    return SimulationFarm.runJob(job);
+                }
+            });
+        }
+        for(int i = 0; i < jobs.size(); i++){
+            handler.resultReady(completion.take().get());
+        }
+    }
+
+    /**
+     * Lets queued jobs finish and ends the workers.
+     */
+    public void shutdown(){
+        this.workers.shutdown();
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Runs one job on a new Computer, on the calling thread.
+     * @param job job to run
+     * @return its result
+     */
+    public static SimulationResult runJob(SimulationJob job){
+        long start = System.nanoTime();
+        SimulationResult result = new SimulationResult(job.getId());
+        Computer computer = new Computer(job.getCpuType());
+        computer.setTrace(false);
+        ControlUnit controlUnit = computer.getCpu().getControlUnit();
+        try {
+            for(Map.Entry<Integer, Integer> word : job.getMemory().entrySet()){
+                computer.getMemory().writeWord(word.getKey(), word.getValue());
+            }
+            for(int r = 0; r < 4; r++){
+                controlUnit.setGeneralPurposeRegister(r, new Word(job.getGeneralPurposeRegister(r)));
+            }
+            for(int x = 1; x <= 3; x++){
+                controlUnit.setIndexRegister(x, new Unit(13, job.getIndexRegister(x)));
+            }
+            controlUnit.setProgramCounter(new Unit(13, job.getProgramCounter()));
+            if(job.getIssueWidth() > 0){
+                computer.getCpu().setIssueWidth(job.getIssueWidth());
+            }
+            if(job.isPipelined()){
+                computer.getCpu().setPipelined(true);
+            }
+
+            computer.runCycles(job.getCycleBudget());
+            result.setStatus(SimulationResult.STATUS_BUDGET);
+        } catch(HaltSystemException e){
+            result.setStatus(SimulationResult.STATUS_HALT);
+        } catch(Exception e){
+            result.setStatus(SimulationResult.STATUS_FAULT);
+            result.setFault(e.toString());
+        }
+
+        result.setCycles(computer.getCycleCount());
+        result.setInstructions(computer.getCpu().getInstructionsExecuted());
+        for(int r = 0; r < 4; r++){
+            result.setGeneralPurposeRegister(r, controlUnit.getGeneralPurposeRegister(r).getRawValue());
+        }
+        for(int x = 1; x <= 3; x++){
+            result.setIndexRegister(x, controlUnit.getIndexRegister(x).getUnsignedValue());
+        }
+        result.setProgramCounter(controlUnit.getProgramCounter().getUnsignedValue());
+        result.setConditionCode(controlUnit.getConditionCodeRegister().getUnsignedValue());
+        for(int[] range : job.getResultRanges()){
+            for(int address = range[0]; address < range[0] + range[1]; address++){
+                try {
+                    result.setMemory(address, computer.getMemory().readWord(address));
+                } catch(Exception e){
+                    // outside the installed memory: nothing to report
+                }
+            }
+        }
+        result.setHostNanos(System.nanoTime() - start);
+        return result;
+    }
+
+}
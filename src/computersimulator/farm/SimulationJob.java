@@ -0,0 +1,168 @@
+package computersimulator.farm;
+
+import computersimulator.cpu.Computer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * One run for the SimulationFarm: what to put in a fresh Computer (memory
+ * image, registers, CPU model), how long to let it run and which memory to
+ * report back. A job only describes the run; the farm builds a new Computer
+ * for it, so jobs never share machine state.
+ */
+public class SimulationJob {
+
+    private final long id;
+
+    // initial memory, program included
+    private final TreeMap<Integer, Integer> memory = new TreeMap<>();
+
+    private final int[] generalPurposeRegisters = new int[4];
+    private final int[] indexRegisters = new int[3];
+    private int programCounter = 0;
+
+    private int cpuType = Computer.CPU_IN_ORDER;
+    private int issueWidth = 0;
+    private boolean pipelined = false;
+
+    private long cycleBudget = 1000000;
+
+    // {address, length} of the memory reported in the result
+    private final List<int[]> resultRanges = new ArrayList<>();
+
+    /**
+     * @param id returned with the result, so results can be matched to jobs
+     */
+    public SimulationJob(long id) {
+        this.id = id;
+    }
+
+    /**
+     * @param address first word of the program
+     * @param words program image
+     */
+    public void loadProgram(int address, int[] words){
+        for(int i = 0; i < words.length; i++){
+            this.memory.put(address + i, words[i]);
+        }
+    }
+
+    /**
+     * @param address word address
+     * @param value 20-bit word
+     */
+    public void setMemory(int address, int value){
+        this.memory.put(address, value);
+    }
+
+    /**
+     * @param rfi 0-3
+     * @param value 20-bit word
+     */
+    public void setGeneralPurposeRegister(int rfi, int value){
+        this.generalPurposeRegisters[rfi] = value;
+    }
+
+    /**
+     * @param ixid 1-3
+     * @param value 13-bit value
+     */
+    public void setIndexRegister(int ixid, int value){
+        this.indexRegisters[ixid - 1] = value;
+    }
+
+    /**
+     * @param address first instruction to run
+     */
+    public void setProgramCounter(int address){
+        this.programCounter = address;
+    }
+
+    /**
+     * @param cpuType Computer.CPU_IN_ORDER or Computer.CPU_OUT_OF_ORDER
+     */
+    public void setCpuType(int cpuType){
+        this.cpuType = cpuType;
+    }
+
+    /**
+     * @param width instructions dispatched per cycle, 0 for the microcoded instruction cycle
+     */
+    public void setIssueWidth(int width){
+        this.issueWidth = width;
+    }
+
+    /**
+     * @param pipelined true to run on the 5-stage pipeline
+     */
+    public void setPipelined(boolean pipelined){
+        this.pipelined = pipelined;
+    }
+
+    /**
+     * @param cycles cycles the run may take before it is cut off
+     */
+    public void setCycleBudget(long cycles){
+        if(cycles < 1){
+            throw new IllegalArgumentException("Cycle budget must be at least 1 cycle");
+        }
+        this.cycleBudget = cycles;
+    }
+
+    /**
+     * @param address first word to report
+     * @param length words to report
+     */
+    public void addResultRange(int address, int length){
+        this.resultRanges.add(new int[]{address, length});
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return address to initial word, in address order
+     */
+    public Map<Integer, Integer> getMemory() {
+        return memory;
+    }
+
+    public int getGeneralPurposeRegister(int rfi) {
+        return generalPurposeRegisters[rfi];
+    }
+
+    public int getIndexRegister(int ixid) {
+        return indexRegisters[ixid - 1];
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public int getCpuType() {
+        return cpuType;
+    }
+
+    public int getIssueWidth() {
+        return issueWidth;
+    }
+
+    public boolean isPipelined() {
+        return pipelined;
+    }
+
+    public long getCycleBudget() {
+        return cycleBudget;
+    }
+
+    /**
+     * @return {address, length} pairs
+     */
+    public List<int[]> getResultRanges() {
+        return resultRanges;
+    }
+
+}
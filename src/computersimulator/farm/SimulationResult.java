@@ -0,0 +1,152 @@
+package computersimulator.farm;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * How a SimulationJob ended: why it stopped, how long it ran, the final
+ * registers and the memory the job asked for.
+ */
+public class SimulationResult {
+
+    public final static int STATUS_HALT = 0;
+    public final static int STATUS_BUDGET = 1;     // still running when the budget ran out
+    public final static int STATUS_FAULT = 2;
+
+    private final static String[] STATUS_NAMES = {"halt", "budget", "fault"};
+
+    private final long jobId;
+    private int status;
+    private String fault;
+    private long cycles;
+    private long instructions;
+    private long hostNanos;
+
+    private final int[] generalPurposeRegisters = new int[4];
+    private final int[] indexRegisters = new int[3];
+    private int programCounter;
+    private int conditionCode;
+
+    private final TreeMap<Integer, Integer> memory = new TreeMap<>();
+
+    /**
+     * @param jobId id of the job this is the result of
+     */
+    public SimulationResult(long jobId) {
+        this.jobId = jobId;
+    }
+
+    public long getJobId() {
+        return jobId;
+    }
+
+    /**
+     * @return STATUS_*
+     */
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public String getStatusName() {
+        return SimulationResult.STATUS_NAMES[this.status];
+    }
+
+    /**
+     * @return message of the fault that ended the run, null unless STATUS_FAULT
+     */
+    public String getFault() {
+        return fault;
+    }
+
+    public void setFault(String fault) {
+        this.fault = fault;
+    }
+
+    public long getCycles() {
+        return cycles;
+    }
+
+    public void setCycles(long cycles) {
+        this.cycles = cycles;
+    }
+
+    public long getInstructions() {
+        return instructions;
+    }
+
+    public void setInstructions(long instructions) {
+        this.instructions = instructions;
+    }
+
+    /**
+     * @return host time the run took
+     */
+    public long getHostNanos() {
+        return hostNanos;
+    }
+
+    public void setHostNanos(long hostNanos) {
+        this.hostNanos = hostNanos;
+    }
+
+    public int getGeneralPurposeRegister(int rfi) {
+        return generalPurposeRegisters[rfi];
+    }
+
+    public void setGeneralPurposeRegister(int rfi, int value) {
+        this.generalPurposeRegisters[rfi] = value;
+    }
+
+    public int getIndexRegister(int ixid) {
+        return indexRegisters[ixid - 1];
+    }
+
+    public void setIndexRegister(int ixid, int value) {
+        this.indexRegisters[ixid - 1] = value;
+    }
+
+    public int getProgramCounter() {
+        return programCounter;
+    }
+
+    public void setProgramCounter(int programCounter) {
+        this.programCounter = programCounter;
+    }
+
+    public int getConditionCode() {
+        return conditionCode;
+    }
+
+    public void setConditionCode(int conditionCode) {
+        this.conditionCode = conditionCode;
+    }
+
+    /**
+     * @param address word address inside one of the job's result ranges
+     * @return final word at the address
+     * @throws IllegalArgumentException the address wasn't asked for
+     */
+    public int getMemory(int address) {
+        Integer value = this.memory.get(address);
+        if(value == null){
+            throw new IllegalArgumentException("Address "+address+" is not in the job's result ranges");
+        }
+        return value;
+    }
+
+    /**
+     * @return address to final word for every address in the job's result ranges
+     */
+    public Map<Integer, Integer> getMemory() {
+        return memory;
+    }
+
+    public void setMemory(int address, int value) {
+        this.memory.put(address, value);
+    }
+
+}
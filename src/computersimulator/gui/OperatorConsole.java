@@ -2,6 +2,7 @@ package computersimulator.gui;
 
 import computersimulator.components.*;
 import computersimulator.cpu.Computer;
+import computersimulator.cpu.RunController;
 import java.awt.Color;
 import java.awt.Font;
 import java.awt.GridLayout;
@@ -15,6 +16,8 @@ import javax.swing.JLabel;
 import javax.swing.JPanel;
 import javax.swing.JScrollPane;
 import javax.swing.JTextArea;
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
 
 /**
  * OperatorConsole should include:
@@ -44,6 +47,12 @@ public class OperatorConsole implements Runnable {
     private JPanel leftPanel;
     private JPanel rightPanel;
 
+    // Run controls, disabled / enabled together while a run is in progress
+    private JButton[] idleButtons;
+    private JButton stop;
+    private JLabel runStatus;
+    private Timer runStatusTimer;
+
     public void setComputer(Computer computer) {
         this.computer = computer;
     }
@@ -132,13 +141,20 @@ public class OperatorConsole implements Runnable {
         JButton load = new JButton("Load");
         JButton deposit = new JButton("Deposit");
         JButton step = new JButton("Step");
-        //JButton stop = new JButton("Stop");
+        JButton run = new JButton("Run");
+        JButton runN = new JButton("Run N");
+        stop = new JButton("Stop");
+        idleButtons = new JButton[]{load, deposit, step, run, runN};
+        runStatus = new JLabel(" ");
 
         // buttonPanel.add(start);
         buttonPanel.add(load);
         buttonPanel.add(deposit);
         buttonPanel.add(step);
-        //buttonPanel.add(stop);
+        buttonPanel.add(run);
+        buttonPanel.add(runN);
+        buttonPanel.add(stop);
+        buttonPanel.add(runStatus);
 
         // add button panel to frame
         //mainWindow.add(buttonPanel);
@@ -242,12 +258,98 @@ public class OperatorConsole implements Runnable {
             }
         });
 
+        // run until halt / stop
+        run.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                opconsole.startRun(RunController.UNLIMITED);
+            }
+        });
+
+        // run the number of cycles in the input field
+        runN.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                long cycles = Unit.UnitFromBinaryString(input.getValueAsBinaryString()).getUnsignedValue();
+                input.resetToZero();
+                opconsole.startRun(cycles);
+            }
+        });
+
+        // stop
+        stop.addActionListener(new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                computer.getRunController().stop();
+            }
+        });
+
+        computer.getRunController().addListener(new RunController.Listener() {
+            @Override
+            public void runStopped(final RunController controller, final int reason) {
+                SwingUtilities.invokeLater(new Runnable() {
+                    @Override
+                    public void run() {
+                        opconsole.runFinished(controller, reason);
+                    }
+                });
+            }
+        });
+
+        // refresh the speed while running; registers are only read once stopped
+        runStatusTimer = new Timer(250, new ActionListener() {
+            @Override
+            public void actionPerformed(ActionEvent e) {
+                runStatus.setText(computer.getRunController().getReport());
+            }
+        });
+
+        this.setRunning(false);
         this.updateDisplay();
 
         mainWindow.pack();
         mainWindow.setVisible(true);
     }
 
+    /**
+     * Starts the run controller and disables everything that touches the machine.
+     * @param cycles cycle budget
+     */
+    private void startRun(long cycles) {
+        try {
+            computer.getRunController().start(cycles);
+            this.setRunning(true);
+        } catch (IllegalStateException err) {
+            System.out.println("Error: " + err);
+        }
+    }
+
+    private void runFinished(RunController controller, int reason) {
+        this.setRunning(false);
+        runStatus.setText(controller.getReport());
+        if (reason == RunController.STOP_HALT) {
+            System.out.println("System HALT.");
+        } else if (reason == RunController.STOP_FAULT) {
+            System.out.println("Error: " + controller.getFault());
+        } else if (reason == RunController.STOP_BREAKPOINT || reason == RunController.STOP_WATCHPOINT) {
+            System.out.println("Stopped at " + RunController.getStopReasonName(reason)
+                    + " " + controller.getStopAddress() + ".");
+        }
+        this.updateDisplay();
+    }
+
+    private void setRunning(boolean running) {
+        for (JButton button : idleButtons) {
+            button.setEnabled(!running);
+        }
+        stop.setEnabled(running);
+        if (running) {
+            runStatusTimer.start();
+        } else {
+            runStatusTimer.stop();
+        }
+    }
+
     public void updateDisplay() {
         for (Map.Entry<String, DataDisplayComposite> el : displayComponents.entrySet()) {
             DataDisplayComposite widget = el.getValue();
@@ -0,0 +1,102 @@
+package computersimulator.cpu;
+
+import computersimulator.components.Unit;
+import computersimulator.components.Word;
+import java.util.Random;
+
+/**
+ * Times ALU add/subtract through the public CTRL interface against the old
+ * string ripple-carry path (binary strings, ArchitectureProg's adder, re-parse
+ * through Unit.UnitFromBinaryString) and prints ns/op for each.
+ */
+public class ArithmeticLogicUnitBenchmark {
+
+    private static final int OPERATIONS = 200000;
+    private static final int ROUNDS = 5;
+
+    private final ArithmeticLogicUnit alu;
+    private final ControlUnit controlUnit;
+    private final ArchitectureProg rippleCarry;
+
+    private final Word[] operands1 = new Word[OPERATIONS];
+    private final Word[] operands2 = new Word[OPERATIONS];
+
+    // consumed so the JIT can't drop the work
+    private long sink;
+
+    public ArithmeticLogicUnitBenchmark() {
+        Computer computer = new Computer();
+        this.alu = computer.getCpu().getALU();
+        this.controlUnit = computer.getCpu().getControlUnit();
+        this.rippleCarry = new ArchitectureProg();
+
+        Random random = new Random(6461);
+        for (int i = 0; i < OPERATIONS; i++) {
+            // stay below 2^18 so the ripple adder never prints its overflow notice
+            operands1[i] = new Word(random.nextInt(1 << 18));
+            operands2[i] = new Word(random.nextInt(1 << 18));
+        }
+    }
+
+    private long runAlu(int control) {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            alu.setOperand1(operands1[i]);
+            alu.setOperand2(operands2[i]);
+            alu.setControl(control);
+            alu.signalReadyToStartComputation();
+            alu.clockCycle();
+            Unit res = alu.getResult();
+            sink += res.getSize();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * The add path the ALU used before it computed on ints: operands to binary
+     * strings, char-by-char ripple carry, re-parse and resize, then CC update.
+     */
+    private Unit rippleCarryAdd(Unit operand1, Unit operand2) {
+        String finalResultStr = rippleCarry.addBinary(operand1.getBinaryString(), operand2.getBinaryString());
+        int size = (operand1.getSize() > operand2.getSize() ? operand1.getSize() : operand2.getSize());
+
+        Unit resultTemporary = Unit.UnitFromBinaryString(finalResultStr);
+        Unit resultResized = new Unit(size);
+        resultResized.setValueBinary(resultTemporary.getBinaryString());
+
+        controlUnit.unsetCondition(ControlUnit.CONDITION_REGISTER_OVERFLOW);
+        return resultResized;
+    }
+
+    private long runRippleCarry() {
+        long start = System.nanoTime();
+        for (int i = 0; i < OPERATIONS; i++) {
+            sink += rippleCarryAdd(operands1[i], operands2[i]).getSize();
+        }
+        return System.nanoTime() - start;
+    }
+
+    private static String perOp(long nanos) {
+        return String.format("%8.1f ns/op", (double) nanos / OPERATIONS);
+    }
+
+    /**
+     * @param args
+     */
+    public static void main(String[] args) {
+        ArithmeticLogicUnitBenchmark b = new ArithmeticLogicUnitBenchmark();
+
+        for (int round = 1; round <= ROUNDS; round++) {
+            long ripple = b.runRippleCarry();
+            long add = b.runAlu(ArithmeticLogicUnit.CONTROL_ADD);
+            long sub = b.runAlu(ArithmeticLogicUnit.CONTROL_SUBTRACT);
+
+            System.out.println("Round " + round + ":"
+                    + "  ripple-carry add " + perOp(ripple)
+                    + "  |  ALU add " + perOp(add)
+                    + "  |  ALU subtract " + perOp(sub)
+                    + "  |  add speedup " + String.format("%.1fx", (double) ripple / add));
+        }
+        System.out.println("(sink " + b.sink + ")");
+    }
+}
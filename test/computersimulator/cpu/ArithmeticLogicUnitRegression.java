@@ -0,0 +1,125 @@
+package computersimulator.cpu;
+
+import computersimulator.components.Word;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Checks the ALU's latency model: the in-flight ring refuses an issue while
+ * it is full, even when the operations holding it are done but wait behind a
+ * slow one; CC ends up with the flags of the operation issued last, even when
+ * an earlier multiply finishes after it; shifts and rotates through the ALU take the same cycles and give
+ * the same bits as the in-place Unit shift did before it (the cycle counts
+ * below are that tree's); and MLT / DVD on R3, which has no R4 beside it,
+ * only write R3. Exits with status 1 on any mismatch.
+ */
+public class ArithmeticLogicUnitRegression {
+
+    // SRC / RRC: register in XFI, A/L in I, L/R in T, count in the low 5 bits
+    private static int shift(int op, int register, int algorithmicLogical, int leftRight, int count) {
+        return op << 14 | register << 10 | algorithmicLogical << 9 | leftRight << 8 | count;
+    }
+
+    private static Computer run(int[] program, int r1, int r3) throws Exception {
+        Computer computer = GuestLoop.load(program);
+        ControlUnit cu = computer.getCpu().getControlUnit();
+        cu.setRegisterValue(1, r1);
+        cu.setRegisterValue(3, r3);
+        GuestLoop.run(computer);
+        return computer;
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        // a slow multiply at the head of the ring, then one add per cycle behind it
+        ArithmeticLogicUnit alu = new Computer().getCpu().getALU();
+        alu.setLatency(ArithmeticLogicUnit.CLASS_MULTIPLY, 200);
+        int multiply = alu.issue(ArithmeticLogicUnit.CONTROL_MULTIPLY, new Word(3), new Word(4));
+        int adds = 0;
+        while (adds < 200) {
+            alu.clockCycle();
+            if (alu.issue(ArithmeticLogicUnit.CONTROL_ADD, new Word(adds), new Word(1)) < 0) {
+                break;
+            }
+            adds++;
+        }
+        while (!alu.isComplete(multiply)) {
+            alu.clockCycle();
+        }
+        GuestLoop.check(out, "in-flight ring: " + adds + " adds issued behind a 200-cycle multiply, product "
+                + alu.getResult(multiply).getUnsignedValue(),
+                adds == 63 && alu.getResult(multiply).getUnsignedValue() == 12);
+
+        // an overflowing multiply, then an add that finishes first: CC must end up as the add left it
+        String[] orders = {"MLT then ADD", "ADD then MLT"};
+        for (int order = 0; order < orders.length; order++) {
+            Computer flags = new Computer();
+            alu = flags.getCpu().getALU();
+            for (int k = 0; k < 2; k++) {
+                if ((k == 0) == (order == 0)) {
+                    alu.issue(ArithmeticLogicUnit.CONTROL_MULTIPLY, new Word(0x7FFFF), new Word(0x7FFFF));
+                } else {
+                    alu.issue(ArithmeticLogicUnit.CONTROL_ADD, new Word(1), new Word(1));
+                }
+                alu.clockCycle();
+            }
+            while (alu.isBusy()) {
+                alu.clockCycle();
+            }
+            int overflow = flags.getCpu().getControlUnit().getConditionCode(ControlUnit.CONDITION_REGISTER_OVERFLOW);
+            GuestLoop.check(out, "CC after " + orders[order] + " (multiply latency "
+                    + alu.getLatency(ArithmeticLogicUnit.CLASS_MULTIPLY) + "): OVERFLOW " + overflow,
+                    overflow == ((order == 0) ? 0 : 1));
+        }
+
+        int[][] programs = {
+            {
+                shift(Instruction.OPCODE_SRC, 1, 1, 1, 3),     // R1 << 3
+                shift(Instruction.OPCODE_RRC, 1, 0, 0, 2),     // rotate R1 right 2
+                shift(Instruction.OPCODE_SRC, 1, 0, 0, 5),     // R1 >> 5, arithmetic
+                Instruction.OPCODE_HLT << 14,
+            },
+            {
+                shift(Instruction.OPCODE_SRC, 1, 1, 0, 3),     // R1 >>> 3
+                shift(Instruction.OPCODE_RRC, 1, 0, 1, 7),     // rotate R1 left 7
+                Instruction.OPCODE_HLT << 14,
+            },
+        };
+        long[] cyclesBefore = {26, 19};     // the same programs before the ALU had latency
+        for (int p = 0; p < programs.length; p++) {
+            Computer computer = run(programs[p], 0x9A5C3, 0);
+            Word expected = new Word(0x9A5C3);
+            for (int k = 0; k < programs[p].length - 1; k++) {
+                Instruction ins = Instruction.decode(programs[p][k]);
+                if (ins.getOpcode() == Instruction.OPCODE_SRC) {
+                    expected.shiftByCount(ins.getTrace(), ins.getCount(), ins.getIndirect());
+                } else {
+                    expected.rotateByCount(ins.getTrace(), ins.getCount());
+                }
+            }
+            int r1 = computer.getCpu().getControlUnit().getRegisterValue(1);
+            GuestLoop.check(out, "shift program " + p + ": " + computer.getCycleCount() + " cycles (" + cyclesBefore[p]
+                    + " in place), R1 " + Integer.toHexString(r1),
+                    computer.getCycleCount() == cyclesBefore[p] && r1 == expected.getUnsignedValue());
+        }
+
+        int[] rx3 = {
+            GuestLoop.rr(Instruction.OPCODE_MLT, 3, 1),    // R3 <- high half of R3 * R1
+            GuestLoop.rr(Instruction.OPCODE_DVD, 3, 1),    // R3 <- R3 / R1
+            Instruction.OPCODE_HLT << 14,
+        };
+        Computer computer = run(rx3, 7, 100);
+        ControlUnit cu = computer.getCpu().getControlUnit();
+        GuestLoop.check(out, "MLT / DVD on R3: halted after " + computer.getInstructionsExecuted() + " instructions, R3 "
+                + cu.getRegisterValue(3) + ", R0 " + cu.getRegisterValue(0),
+                computer.getInstructionsExecuted() == 3 && cu.getRegisterValue(3) == 0 && cu.getRegisterValue(0) == 0);
+
+        GuestLoop.finish(out);
+    }
+}
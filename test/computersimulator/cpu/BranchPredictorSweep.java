@@ -0,0 +1,220 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.Unit;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Runs a loop whose body holds a jump that alternates taken / not taken
+ * through the 5-stage pipeline with each branch predictor (and with none),
+ * and prints CPI, mispredictions and the per-branch-PC accuracy. The loop's
+ * SOB is easy for any dynamic predictor; the alternating JZ needs gshare's
+ * history. A second loop calls a subroutine (which calls another) from two
+ * sites, with return stacks of different depths. Last, the first loop runs
+ * on the 2-wide dispatcher with speculative dispatch past its jumps. Then
+ * a trace of the first loop is replayed against the predictors and a range
+ * of caches, in parallel and on one thread, which must agree.
+ */
+public class BranchPredictorSweep {
+
+    private static final int LOOP_COUNT = 300;
+    private static final int RESULT_ADDRESS = 120;
+
+    private static int w(int op, int r, int x, int i, int addr) {
+        return op << 14 | r << 12 | x << 10 | i << 9 | addr;
+    }
+
+    private static int rr(int op, int rx, int ry) {
+        return op << 14 | rx << 12 | ry << 10;
+    }
+
+    private static final int[] PROGRAM = {
+        w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 10: R0 <- loop count
+        rr(Instruction.OPCODE_NOT, 1, 0),            // 11: loop: R1 <- ~R1
+        w(Instruction.OPCODE_JZ, 1, 0, 0, 14),       // 12: every other pass
+        w(Instruction.OPCODE_AIR, 2, 0, 0, 1),       // 13: R2 += 1
+        w(Instruction.OPCODE_AIR, 3, 0, 0, 1),       // 14: R3 += 1
+        w(Instruction.OPCODE_SOB, 0, 0, 0, 11),      // 15: R0--, loop
+        w(Instruction.OPCODE_STR, 2, 0, 0, RESULT_ADDRESS), // 16
+        w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 17
+    };
+
+    private static final int[] CALLS = {
+        w(Instruction.OPCODE_LDR, 1, 0, 0, 100),     // 10: R1 <- loop count
+        w(Instruction.OPCODE_JSR, 0, 0, 0, 20),      // 11: loop: call A
+        w(Instruction.OPCODE_AIR, 2, 0, 0, 2),       // 12: R2 += 2
+        w(Instruction.OPCODE_JSR, 0, 0, 0, 20),      // 13: call A
+        w(Instruction.OPCODE_SOB, 1, 0, 0, 11),      // 14: R1--, loop
+        w(Instruction.OPCODE_STR, 2, 0, 0, RESULT_ADDRESS), // 15
+        w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 16
+        0, 0, 0,
+        w(Instruction.OPCODE_STR, 3, 0, 0, 110),     // 20: A: save return address
+        w(Instruction.OPCODE_JSR, 0, 0, 0, 24),      // 21: call B
+        w(Instruction.OPCODE_LDR, 3, 0, 0, 110),     // 22
+        w(Instruction.OPCODE_RFS, 0, 0, 0, 0),       // 23
+        w(Instruction.OPCODE_AIR, 2, 0, 0, 1),       // 24: B: R2 += 1
+        w(Instruction.OPCODE_RFS, 0, 0, 0, 0),       // 25
+    };
+
+    private static Computer load() throws Exception {
+        return load(PROGRAM);
+    }
+
+    private static Computer load(int[] program) throws Exception {
+        Computer computer = new Computer();
+        MemoryControlUnit memory = computer.getMemory();
+        for (int k = 0; k < program.length; k++) {
+            memory.writeWord(10 + k, program[k]);
+        }
+        memory.writeWord(100, LOOP_COUNT);
+        computer.getCpu().getControlUnit().setProgramCounter(new Unit(13, 10));
+        return computer;
+    }
+
+    private static void run(Computer computer) throws Exception {
+        try {
+            while (true) {
+                computer.clockCycle();
+            }
+        } catch (HaltSystemException e) {
+            // done
+        }
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        Computer reference = load();
+        run(reference);
+        int expected = reference.getMemory().readWord(RESULT_ADDRESS);
+        out.println("microcoded: " + reference.getCycleCount() + " cycles, result " + expected);
+
+        BranchPredictor[] predictors = {
+            null,
+            new StaticBranchPredictor(StaticBranchPredictor.POLICY_NOT_TAKEN),
+            new StaticBranchPredictor(StaticBranchPredictor.POLICY_TAKEN),
+            new StaticBranchPredictor(StaticBranchPredictor.POLICY_BACKWARD_TAKEN),
+            new BimodalBranchPredictor(64),
+            new GshareBranchPredictor(64, 4),
+        };
+        for (BranchPredictor predictor : predictors) {
+            Computer computer = load();
+            computer.getCpu().setPipelined(true);
+            Pipeline pipeline = computer.getCpu().getPipeline();
+            if (predictor != null) {
+                pipeline.setBranchTargetBuffer(new BranchTargetBuffer(16));
+                pipeline.setBranchPredictor(predictor);
+            }
+            run(computer);
+
+            int result = computer.getMemory().readWord(RESULT_ADDRESS);
+            out.println(((predictor == null) ? "no BTB" : predictor.getName()) + ": "
+                    + String.format("CPI %.2f", pipeline.getCyclesPerInstruction())
+                    + ", mispredicted " + pipeline.getJumpMispredictions() + "/" + pipeline.getJumpsResolved()
+                    + ((result == expected) ? "" : "  MISMATCH " + result));
+            if (predictor != null) {
+                out.println("  " + predictor.getReport());
+            }
+        }
+
+        reference = load(CALLS);
+        run(reference);
+        expected = reference.getMemory().readWord(RESULT_ADDRESS);
+        out.println("calls, microcoded: " + reference.getCycleCount() + " cycles, result " + expected);
+        int[] depths = {0, 1, 2, 8};
+        for (int depth : depths) {
+            Computer computer = load(CALLS);
+            computer.getCpu().setPipelined(true);
+            Pipeline pipeline = computer.getCpu().getPipeline();
+            pipeline.setBranchTargetBuffer(new BranchTargetBuffer(16));
+            pipeline.setBranchPredictor(new BimodalBranchPredictor(64));
+            if (depth > 0) {
+                pipeline.setReturnStackBuffer(new ReturnStackBuffer(depth));
+            }
+            run(computer);
+
+            int result = computer.getMemory().readWord(RESULT_ADDRESS);
+            out.println("calls, " + ((depth == 0) ? "BTB only" : pipeline.getReturnStackBuffer().getReport()) + ": "
+                    + String.format("CPI %.2f", pipeline.getCyclesPerInstruction())
+                    + ", mispredicted " + pipeline.getJumpMispredictions() + "/" + pipeline.getJumpsResolved()
+                    + ((result == expected) ? "" : "  MISMATCH " + result));
+        }
+
+        reference = load();
+        run(reference);
+        expected = reference.getMemory().readWord(RESULT_ADDRESS);
+        BranchPredictor[] speculation = {
+            null,
+            new StaticBranchPredictor(StaticBranchPredictor.POLICY_NOT_TAKEN),
+            new BimodalBranchPredictor(64),
+            new GshareBranchPredictor(64, 4),
+        };
+        for (BranchPredictor predictor : speculation) {
+            Computer computer = load();
+            computer.getCpu().setIssueWidth(2);
+            computer.getCpu().setSpeculativeDispatch(predictor);
+            run(computer);
+
+            ControlUnit cu = computer.getCpu().getControlUnit();
+            int result = computer.getMemory().readWord(RESULT_ADDRESS);
+            out.println("width 2, " + ((predictor == null) ? "no speculation" : "speculating with " + predictor.getName()) + ": "
+                    + computer.getCycleCount() + " cycles"
+                    + String.format("  IPC %.2f", cu.getInstructionsPerCycle())
+                    + "  speculative " + cu.getSpeculativeInstructions()
+                    + "  rollbacks " + cu.getRollbacks()
+                    + "  squashed " + cu.getSquashedInstructions()
+                    + ((result == expected) ? "" : "  MISMATCH " + result));
+        }
+
+        Path file = Files.createTempFile("simulator", ".trace");
+        try {
+            Computer traced = load();
+            try (TraceRecorder recorder = new TraceRecorder(file, true)) {
+                traced.getCpu().getControlUnit().setTraceRecorder(recorder);
+                run(traced);
+            }
+            TraceFile trace = new TraceFile(file);
+            TraceReplay[] replays = {new TraceReplay(trace), new TraceReplay(trace)};
+            for (TraceReplay replay : replays) {
+                replay.addPredictor(new StaticBranchPredictor(StaticBranchPredictor.POLICY_NOT_TAKEN));
+                replay.addPredictor(new StaticBranchPredictor(StaticBranchPredictor.POLICY_BACKWARD_TAKEN));
+                replay.addPredictor(new BimodalBranchPredictor(64));
+                replay.addPredictor(new GshareBranchPredictor(64, 4));
+                for (int lines = 2; lines <= 32; lines *= 2) {
+                    for (int lineWords = 1; lineWords <= 4; lineWords *= 2) {
+                        replay.addCache(lines, lineWords);
+                    }
+                }
+            }
+            replays[0].run(4);
+            replays[1].run(1);
+            boolean same = replays[0].getRecords() == replays[1].getRecords()
+                    && replays[0].getPasses() == 4 && replays[1].getPasses() == 1;
+            for (int k = 0; k < replays[0].getPredictors().size(); k++) {
+                same &= replays[0].getPredictors().get(k).getCorrectPredictions()
+                        == replays[1].getPredictors().get(k).getCorrectPredictions();
+            }
+            for (int k = 0; k < replays[0].getCaches().size(); k++) {
+                CoherentCache cache = replays[0].getCaches().get(k);
+                same &= cache.getMisses() == replays[1].getCaches().get(k).getMisses()
+                        && cache.getReads() + cache.getWrites() == replays[0].getRecords() + 2;
+            }
+            // the JZ falls through every other pass, the SOB once
+            BranchPredictor notTaken = replays[0].getPredictors().get(0);
+            same &= notTaken.getPredictions() == 2 * LOOP_COUNT
+                    && notTaken.getCorrectPredictions() == LOOP_COUNT / 2 + 1;
+            out.print(replays[0].getReport());
+            out.println(same ? "  (one-thread replay agrees)" : "  MISMATCH");
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
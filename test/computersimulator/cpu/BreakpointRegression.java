@@ -0,0 +1,121 @@
+package computersimulator.cpu;
+
+import computersimulator.components.Unit;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Stops the 2-wide guest loop, run through the RunController, at a read
+ * watchpoint, a conditional breakpoint with a tracepoint elsewhere in the
+ * loop, a plain breakpoint and a write watchpoint, then runs it to the halt:
+ * each stop must leave the machine at the right PC, and the whole run must
+ * retire what an uninterrupted one does. Also checks a DebugExpression
+ * syntax error and constant folding, and that a tracepoint and a condition
+ * reached by four cores on four host threads count every time they are
+ * reached. Exits with status 1 on any mismatch.
+ */
+public class BreakpointRegression {
+
+    private static final int CORES = 4;
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        int expected = GuestLoop.expectedResult();
+        Computer reference = GuestLoop.load();
+        reference.getCpu().setIssueWidth(2);
+        GuestLoop.run(reference);
+
+        Computer controlled = GuestLoop.load();
+        controlled.getCpu().setIssueWidth(2);
+        ControlUnit cu = controlled.getCpu().getControlUnit();
+        RunController controller = controlled.getRunController();
+        controller.setBatchCycles(64);
+        controller.addWatchpoint(101, true, false);
+        int reason = controller.run(RunController.UNLIMITED);
+        int pc = cu.getProgramCounter().getUnsignedValue();
+        GuestLoop.check(out, "read watchpoint at 101: " + controller.getReport() + " at PC " + pc,
+                reason == RunController.STOP_WATCHPOINT && controller.getStopAddress() == 101 && pc == 15);
+        controller.clearWatchpoints();
+
+        controller.addBreakpoint(11, "R0 == 20 && c(101) == 2");
+        ByteArrayOutputStream tracepointOutput = new ByteArrayOutputStream();
+        controlled.getBreakpoints().setTraceOutput(new PrintStream(tracepointOutput, true));
+        controller.addTracepoint(16, "R0", "c(101) * 2");
+        reason = controller.run(RunController.UNLIMITED);
+        pc = cu.getProgramCounter().getUnsignedValue();
+        int r0 = cu.getRegisterValue(0);
+        String[] lines = tracepointOutput.toString().split("\\r?\\n");
+        GuestLoop.check(out, "breakpoint at 11 if R0 == 20: " + controller.getReport() + " at PC " + pc
+                + ", R0 " + r0 + ", " + controlled.getBreakpoints().getConditionsEvaluated() + " conditions, "
+                + lines.length + " trace lines, last \"" + lines[lines.length - 1] + "\"",
+                reason == RunController.STOP_BREAKPOINT && pc == 11 && r0 == 20
+                && lines[lines.length - 1].equals("trace 16: R0 = 21, c(101) * 2 = 4"));
+        controller.clearBreakpoints();
+        controller.clearTracepoints();
+
+        String syntax = "";
+        try {
+            DebugExpression.compile("R2 == (c(X1 + 5) > ");
+        } catch(IllegalArgumentException e){
+            syntax = e.getMessage();
+        }
+        GuestLoop.check(out, "debug expression syntax error: " + syntax,
+                syntax.startsWith("operand expected") && DebugExpression.compile("-(3 + 4) * 2 < 0").isConstant());
+
+        controller.addBreakpoint(17);
+        reason = controller.run(RunController.UNLIMITED);
+        pc = cu.getProgramCounter().getUnsignedValue();
+        GuestLoop.check(out, "breakpoint at 17: " + controller.getReport() + " at PC " + pc,
+                reason == RunController.STOP_BREAKPOINT && pc == 17);
+        controller.clearBreakpoints();
+
+        controller.addWatchpoint(GuestLoop.RESULT_ADDRESS, false, true);
+        reason = controller.run(RunController.UNLIMITED);
+        pc = cu.getProgramCounter().getUnsignedValue();
+        int result = controlled.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+        GuestLoop.check(out, "write watchpoint at " + GuestLoop.RESULT_ADDRESS + ": " + controller.getReport()
+                + " at PC " + pc, reason == RunController.STOP_WATCHPOINT && pc == 18 && result == expected);
+        controller.clearWatchpoints();
+
+        reason = controller.run(RunController.UNLIMITED);
+        result = controlled.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+        GuestLoop.check(out, "to halt: " + controller.getReport() + ", result " + result + ", "
+                + (controlled.getCycleCount() - reference.getCycleCount()) + " cycles lost to cut dispatch groups",
+                reason == RunController.STOP_HALT && result == expected
+                && controlled.getInstructionsExecuted() == reference.getInstructionsExecuted());
+        controller.shutdown();
+
+        // every core runs the loop on its own host thread past the same tracepoint and condition
+        Computer multiCore = new Computer(Computer.CPU_IN_ORDER, CORES);
+        multiCore.setTrace(false);
+        multiCore.setHostThreads(CORES);
+        for (int k = 0; k < GuestLoop.PROGRAM.length; k++) {
+            multiCore.getMemory().writeWord(10 + k, GuestLoop.PROGRAM[k]);
+        }
+        multiCore.getMemory().writeWord(100, GuestLoop.LOOP_COUNT);
+        multiCore.getMemory().writeWord(101, 2);
+        for (int c = 0; c < CORES; c++) {
+            multiCore.getCpu(c).setIssueWidth(2);
+            multiCore.getCpu(c).getControlUnit().setProgramCounter(new Unit(13, 10));
+        }
+        Breakpoints shared = multiCore.getBreakpoints();
+        shared.setTraceOutput(new PrintStream(new ByteArrayOutputStream()));
+        shared.addTracepoint(16, "R0");
+        shared.addBreakpoint(11, "R0 < 0");
+        controller = multiCore.getRunController();
+        reason = controller.run(RunController.UNLIMITED);
+        GuestLoop.check(out, CORES + " cores on " + CORES + " host threads: " + shared.getTracepointsReached()
+                + " trace lines, " + shared.getConditionsEvaluated() + " conditions",
+                reason == RunController.STOP_HALT
+                && shared.getTracepointsReached() == CORES * GuestLoop.LOOP_COUNT
+                && shared.getConditionsEvaluated() == CORES * GuestLoop.LOOP_COUNT);
+        controller.shutdown();
+        GuestLoop.finish(out);
+    }
+}
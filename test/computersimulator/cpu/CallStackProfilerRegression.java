@@ -0,0 +1,62 @@
+package computersimulator.cpu;
+
+import computersimulator.components.Unit;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Follows a program calling nested subroutines, microcoded and pipelined,
+ * with the call-stack profiler and prints its collapsed stacks: every call
+ * must return, and the stacks must be charged every cycle of the run. Exits
+ * with status 1 on any mismatch.
+ */
+public class CallStackProfilerRegression {
+
+    private static final int[][] CALLS = {
+        {10, GuestLoop.w(Instruction.OPCODE_LDR, 1, 0, 0, 100)},  // R1 <- loop count
+        {11, GuestLoop.w(Instruction.OPCODE_JSR, 0, 0, 0, 40)},   // loop: call outer
+        {12, GuestLoop.w(Instruction.OPCODE_SOB, 1, 0, 0, 11)},
+        {13, GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0)},
+        {40, GuestLoop.w(Instruction.OPCODE_STR, 3, 0, 0, 102)},  // outer: save return address
+        {41, GuestLoop.w(Instruction.OPCODE_JSR, 0, 0, 0, 60)},   // call inner twice
+        {42, GuestLoop.w(Instruction.OPCODE_JSR, 0, 0, 0, 60)},
+        {43, GuestLoop.w(Instruction.OPCODE_LDR, 3, 0, 0, 102)},
+        {44, GuestLoop.w(Instruction.OPCODE_RFS, 0, 0, 0, 0)},
+        {60, GuestLoop.w(Instruction.OPCODE_AIR, 2, 0, 0, 1)},    // inner
+        {61, GuestLoop.w(Instruction.OPCODE_AIR, 2, 0, 0, 2)},
+        {62, GuestLoop.w(Instruction.OPCODE_RFS, 0, 0, 0, 0)},
+    };
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        for (int pipelining = 0; pipelining <= 1; pipelining++) {
+            Computer computer = new Computer();
+            for (int[] word : CALLS) {
+                computer.getMemory().writeWord(word[0], word[1]);
+            }
+            computer.getMemory().writeWord(100, 20);
+            computer.getCpu().getControlUnit().setProgramCounter(new Unit(13, 10));
+            computer.getCpu().setPipelined(pipelining == 1);
+            CallStackProfiler stacks = new CallStackProfiler();
+            stacks.setName(40, "outer");
+            computer.getCpu().getControlUnit().setCallStackProfiler(stacks);
+            GuestLoop.runEventDriven(computer);
+            long charged = 0;
+            for (String line : stacks.getCollapsed().split("\n")) {
+                charged += Long.parseLong(line.substring(line.lastIndexOf(' ') + 1));
+            }
+            GuestLoop.check(out, (pipelining == 1 ? "pipelined " : "microcoded ") + stacks.getReport()
+                    + ", " + charged + " of " + computer.getCycleCount() + " cycles charged",
+                    stacks.getCalls() == 60 && stacks.getReturns() == 60 && stacks.getStacks() == 3
+                    && charged == computer.getCycleCount() && stacks.getDepth() == 0);
+            out.print(stacks.getCollapsed());
+        }
+        GuestLoop.finish(out);
+    }
+}
@@ -0,0 +1,66 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Runs the microcoded guest loop at several multiply latencies, ticked
+ * every cycle and event-driven, and prints the cycles the scheduler
+ * skipped and the host time of each (best of ROUNDS untraced runs). Both
+ * must agree on every cycle count and the result, and at the longest
+ * latency, where most cycles are spent waiting on the ALU, the event-driven
+ * run must be the faster one. Exits with status 1 on any mismatch.
+ */
+public class EventDrivenSweep {
+
+    private static final int ROUNDS = 5;
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        int[] multiplyLatencies = {1, 40, 1000};
+        for (int latency : multiplyLatencies) {
+            long tickedTime = Long.MAX_VALUE;
+            long eventTime = Long.MAX_VALUE;
+            Computer ticked = null;
+            Computer eventDriven = null;
+            for (int round = 0; round < ROUNDS; round++) {
+                ticked = load(latency);
+                long start = System.nanoTime();
+                GuestLoop.run(ticked);
+                tickedTime = Math.min(tickedTime, System.nanoTime() - start);
+
+                eventDriven = load(latency);
+                start = System.nanoTime();
+                GuestLoop.runEventDriven(eventDriven);
+                eventTime = Math.min(eventTime, System.nanoTime() - start);
+            }
+
+            ControlUnit tickedCu = ticked.getCpu().getControlUnit();
+            ControlUnit eventCu = eventDriven.getCpu().getControlUnit();
+            int result = eventDriven.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+            GuestLoop.check(out, "multiply latency " + latency + ", event-driven: " + eventDriven.getCycleCount() + " cycles"
+                    + "  ALU stalls " + eventCu.getALUStallCycles()
+                    + "  " + eventDriven.getScheduler().getReport()
+                    + String.format("  %.1f ms vs %.1f ms ticked (%.1fx)", eventTime / 1e6, tickedTime / 1e6,
+                            (double) tickedTime / eventTime),
+                    ticked.getCycleCount() == eventDriven.getCycleCount()
+                    && tickedCu.getALUStallCycles() == eventCu.getALUStallCycles()
+                    && result == ticked.getMemory().readWord(GuestLoop.RESULT_ADDRESS)
+                    && (latency != multiplyLatencies[multiplyLatencies.length - 1] || eventTime < tickedTime));
+        }
+        GuestLoop.finish(out);
+    }
+
+    private static Computer load(int multiplyLatency) throws Exception {
+        Computer computer = GuestLoop.load();
+        computer.setTrace(false);
+        computer.getCpu().getALU().setLatency(ArithmeticLogicUnit.CLASS_MULTIPLY, multiplyLatency);
+        return computer;
+    }
+}
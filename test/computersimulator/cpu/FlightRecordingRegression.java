@@ -0,0 +1,69 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.TreeMap;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+/**
+ * Runs the pipelined guest loop under a flight recording, with retirements
+ * sampled every 100, and counts the simulator's events in the dump: it must
+ * hold the sampled retirements, every mispredict, memory accesses and the
+ * halt, and the events must be off again afterwards. Exits with status 1 on
+ * any mismatch; passes without a check where the JVM has no flight recorder.
+ */
+public class FlightRecordingRegression {
+
+    private static int count(Map<String, Integer> events, String name) {
+        Integer count = events.get(name);
+        return (count == null) ? 0 : count;
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        if (!SimulatorEvents.isAvailable()) {
+            out.println("no flight recorder in this JVM");
+            GuestLoop.finish(out);
+            return;
+        }
+        Computer recorded = GuestLoop.load();
+        recorded.getCpu().setPipelined(true);
+        SimulatorEvents.setRetireSampleInterval(100);
+        Path file = Files.createTempFile("simulator", ".jfr");
+        Map<String, Integer> events = new TreeMap<>();
+        try (Recording recording = new Recording()) {
+            recording.enable("computersimulator.MemoryAccess");
+            recording.start();
+            GuestLoop.runEventDriven(recorded);
+            recording.stop();
+            recording.dump(file);
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                String name = event.getEventType().getName();
+                if (name.startsWith("computersimulator.")) {
+                    events.put(name, count(events, name) + 1);
+                }
+            }
+        } finally {
+            Files.deleteIfExists(file);
+        }
+        GuestLoop.check(out, "flight recording: " + events,
+                count(events, "computersimulator.InstructionRetire") == (GuestLoop.INSTRUCTIONS + 99) / 100
+                && count(events, "computersimulator.Halt") == 1
+                && count(events, "computersimulator.BranchMispredict")
+                    == recorded.getCpu().getPipeline().getJumpMispredictions()
+                && count(events, "computersimulator.MemoryAccess") > 0
+                && !SimulatorEvents.isActive());
+        GuestLoop.finish(out);
+    }
+}
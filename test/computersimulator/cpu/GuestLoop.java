@@ -0,0 +1,127 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.Unit;
+import java.io.PrintStream;
+
+/**
+ * The guest loop the CPU checks share (independent adds, a load-add, a
+ * multiply and SOB, LOOP_COUNT times, then the sum stored to RESULT_ADDRESS),
+ * how to load and run it, and how a check reports: check() prints a line,
+ * marked if it is wrong, and finish() exits with status 1 if any was.
+ */
+final class GuestLoop {
+
+    static final int LOOP_COUNT = 200;
+    static final int RESULT_ADDRESS = 120;
+
+    // instructions the loop retires, HLT included
+    static final int INSTRUCTIONS = 1202;
+
+    static int w(int op, int r, int x, int i, int addr) {
+        return op << 14 | r << 12 | x << 10 | i << 9 | addr;
+    }
+
+    static int rr(int op, int rx, int ry) {
+        return op << 14 | rx << 12 | ry << 10;
+    }
+
+    static final int[] PROGRAM = {
+        w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 10: R0 <- loop count
+        w(Instruction.OPCODE_AIR, 1, 0, 0, 3),       // 11: loop: R1 += 3
+        w(Instruction.OPCODE_AIR, 2, 0, 0, 1),       // 12: R2 += 1
+        w(Instruction.OPCODE_AIR, 3, 0, 0, 2),       // 13: R3 += 2
+        w(Instruction.OPCODE_AMR, 1, 0, 0, 101),     // 14: R1 += M(101)
+        rr(Instruction.OPCODE_MLT, 2, 3),            // 15: R2,R3 <- R2 * R3
+        w(Instruction.OPCODE_SOB, 0, 0, 0, 11),      // 16: R0--, loop
+        w(Instruction.OPCODE_STR, 1, 0, 0, RESULT_ADDRESS), // 17
+        w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 18
+    };
+
+    private static int failures = 0;
+
+    private GuestLoop() {
+    }
+
+    static Computer load() throws Exception {
+        return load(Computer.CPU_IN_ORDER);
+    }
+
+    static Computer load(int cpuType) throws Exception {
+        Computer computer = new Computer(cpuType);
+        MemoryControlUnit memory = computer.getMemory();
+        for (int k = 0; k < PROGRAM.length; k++) {
+            memory.writeWord(10 + k, PROGRAM[k]);
+        }
+        memory.writeWord(100, LOOP_COUNT);
+        memory.writeWord(101, 2);
+        computer.getCpu().getControlUnit().setProgramCounter(new Unit(13, 10));
+        return computer;
+    }
+
+    /**
+     * @param program words to load from address 10, where the run starts
+     * @return a microcoded Computer holding the program
+     */
+    static Computer load(int[] program) throws Exception {
+        Computer computer = new Computer();
+        for (int k = 0; k < program.length; k++) {
+            computer.getMemory().writeWord(10 + k, program[k]);
+        }
+        computer.getCpu().getControlUnit().setProgramCounter(new Unit(13, 10));
+        return computer;
+    }
+
+    static void run(Computer computer) throws Exception {
+        try {
+            while (true) {
+                computer.clockCycle();
+            }
+        } catch (HaltSystemException e) {
+            // done
+        }
+    }
+
+    static void runEventDriven(Computer computer) throws Exception {
+        try {
+            while (true) {
+                computer.runCycles(100000);
+            }
+        } catch (HaltSystemException e) {
+            // done
+        }
+    }
+
+    /**
+     * @return the microcoded run's stored result, which every model must match
+     */
+    static int expectedResult() throws Exception {
+        Computer reference = load();
+        run(reference);
+        return reference.getMemory().readWord(RESULT_ADDRESS);
+    }
+
+    /**
+     * Prints a result line, marked MISMATCH if it is wrong.
+     * @param out where to print
+     * @param line the result
+     * @param right false to mark it and fail the run
+     */
+    static void check(PrintStream out, String line, boolean right) {
+        out.println(line + (right ? "" : "  MISMATCH"));
+        if (!right) {
+            failures++;
+        }
+    }
+
+    /**
+     * Prints the number of mismatches and exits with status 1 if there were any.
+     * @param out where to print
+     */
+    static void finish(PrintStream out) {
+        out.println(failures + " mismatches");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Profiles the guest loop: the microcoded and the speculative 2-wide runs
+ * are counted per address, which must agree and find the loop, and the
+ * pipelined run is sampled; the hot addresses and loops are printed. Exits
+ * with status 1 on any mismatch.
+ */
+public class GuestProfilerRegression {
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        Computer microcoded = GuestLoop.load();
+        Computer speculative = GuestLoop.load();
+        Computer sampled = GuestLoop.load();
+        speculative.getCpu().setIssueWidth(2);
+        speculative.getCpu().setSpeculativeDispatch(new BimodalBranchPredictor(64));
+        sampled.getCpu().setPipelined(true);
+        GuestProfiler exact = new GuestProfiler();
+        GuestProfiler exactSpeculative = new GuestProfiler();
+        GuestProfiler sampling = new GuestProfiler(7);
+        microcoded.getCpu().getControlUnit().setProfiler(exact);
+        speculative.getCpu().getControlUnit().setProfiler(exactSpeculative);
+        sampled.getCpu().getControlUnit().setProfiler(sampling);
+        GuestLoop.runEventDriven(microcoded);
+        GuestLoop.runEventDriven(speculative);
+        GuestLoop.runEventDriven(sampled);
+        boolean same = true;
+        for (int address = 0; address < GuestProfiler.ADDRESSES; address++) {
+            same &= exact.getWeight(address) == exactSpeculative.getWeight(address)
+                    && exact.getBackEdges(address) == exactSpeculative.getBackEdges(address);
+        }
+        int[][] loops = exact.getHotLoops(1);
+        out.print("microcoded " + exact.getReport(3));
+        GuestLoop.check(out, "2-wide speculative profile " + (same ? "agrees" : "differs"),
+                same && loops.length == 1 && loops[0][0] == 11 && loops[0][1] == 16
+                && exact.getBackEdges(16) == GuestLoop.LOOP_COUNT - 1);
+        out.print("pipelined " + sampling.getReport(3));
+        GuestLoop.finish(out);
+    }
+}
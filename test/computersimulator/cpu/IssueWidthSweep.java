@@ -0,0 +1,118 @@
+package computersimulator.cpu;
+
+import computersimulator.components.Unit;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Runs the guest loop (see GuestLoop) at issue widths 1-4 and with one or
+ * two integer ALUs, and prints cycles, IPC, the dispatch histogram and why
+ * dispatch groups ended. The microcoded instruction cycle (width 0) is run
+ * first as the reference result, which every width must store. Then short
+ * JCC programs run on every execution model, which must all take the same
+ * jumps: CC keeps its flags across instructions until an operation that
+ * affects them runs. Exits with status 1 on any mismatch.
+ */
+public class IssueWidthSweep {
+
+    // JCC programs from address 10; each leaves R1 = 7 if the jump falls through, R2 = 9 if taken
+    private static final int[][] JCC_PROGRAMS = {
+        {   // overflow, then JCC on it
+            GuestLoop.w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // R0 <- 0xFFFFF
+            GuestLoop.w(Instruction.OPCODE_AIR, 0, 0, 0, 1),       // overflows
+            GuestLoop.w(Instruction.OPCODE_JCC, 0, 0, 0, 15),
+            GuestLoop.w(Instruction.OPCODE_AIR, 1, 0, 0, 7),
+            GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+            GuestLoop.w(Instruction.OPCODE_AIR, 2, 0, 0, 9),       // 15
+            GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+        },
+        {   // overflow, a load, then an add that clears it
+            GuestLoop.w(Instruction.OPCODE_LDR, 0, 0, 0, 100),
+            GuestLoop.w(Instruction.OPCODE_AIR, 0, 0, 0, 1),
+            GuestLoop.w(Instruction.OPCODE_LDR, 3, 0, 0, 101),
+            GuestLoop.w(Instruction.OPCODE_AIR, 3, 0, 0, 1),
+            GuestLoop.w(Instruction.OPCODE_JCC, 0, 0, 0, 17),
+            GuestLoop.w(Instruction.OPCODE_AIR, 1, 0, 0, 7),
+            GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+            GuestLoop.w(Instruction.OPCODE_AIR, 2, 0, 0, 9),       // 17
+            GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+        },
+        {   // equal registers, an unrelated add, then JCC on equal-or-not
+            GuestLoop.w(Instruction.OPCODE_LDR, 0, 0, 0, 101),
+            GuestLoop.w(Instruction.OPCODE_LDR, 3, 0, 0, 101),
+            GuestLoop.rr(Instruction.OPCODE_TRR, 0, 3),
+            GuestLoop.w(Instruction.OPCODE_AIR, 0, 0, 0, 1),
+            GuestLoop.w(Instruction.OPCODE_JCC, 3, 0, 0, 17),
+            GuestLoop.w(Instruction.OPCODE_AIR, 1, 0, 0, 7),
+            GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+            GuestLoop.w(Instruction.OPCODE_AIR, 2, 0, 0, 9),       // 17
+            GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+        },
+    };
+    private static final boolean[] JCC_TAKEN = {true, false, true};
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        Computer reference = GuestLoop.load();
+        GuestLoop.run(reference);
+        int expected = reference.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+        out.println("microcoded: " + reference.getCycleCount() + " cycles, result " + expected);
+
+        for (int integerUnits = 1; integerUnits <= 2; integerUnits++) {
+            for (int width = 1; width <= 4; width++) {
+                Computer computer = GuestLoop.load();
+                computer.getCpu().configureFunctionalUnits(integerUnits, 1, 1, 1);
+                computer.getCpu().setIssueWidth(width);
+                GuestLoop.run(computer);
+
+                ControlUnit cu = computer.getCpu().getControlUnit();
+                int result = computer.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+                GuestLoop.check(out, "width " + width + ", " + integerUnits + " int ALU(s): "
+                        + computer.getCycleCount() + " cycles"
+                        + String.format("  IPC %.2f", cu.getInstructionsPerCycle())
+                        + "  issued " + Arrays.toString(cu.getIssueHistogram())
+                        + "  data " + cu.getDataHazardStalls()
+                        + "  structural " + cu.getStructuralHazardStalls()
+                        + "  jumps " + cu.getControlTransferGroups()
+                        + "  result " + result,
+                        result == expected);
+            }
+        }
+
+        String[] modelNames = {"microcoded", "2-wide", "2-wide speculative", "pipelined", "out-of-order"};
+        for (int p = 0; p < JCC_PROGRAMS.length; p++) {
+            StringBuilder line = new StringBuilder("JCC program " + p + ":");
+            boolean right = true;
+            for (int m = 0; m < modelNames.length; m++) {
+                Computer computer = (m == 4) ? new Computer(Computer.CPU_OUT_OF_ORDER) : new Computer();
+                for (int k = 0; k < JCC_PROGRAMS[p].length; k++) {
+                    computer.getMemory().writeWord(10 + k, JCC_PROGRAMS[p][k]);
+                }
+                computer.getMemory().writeWord(100, 0xFFFFF);
+                computer.getMemory().writeWord(101, 5);
+                computer.getCpu().getControlUnit().setProgramCounter(new Unit(13, 10));
+                if (m == 1 || m == 2 || m == 4) {
+                    computer.getCpu().setIssueWidth(2);
+                }
+                if (m == 2) {
+                    computer.getCpu().setSpeculativeDispatch(new BimodalBranchPredictor(64));
+                }
+                computer.getCpu().setPipelined(m == 3);
+                GuestLoop.run(computer);
+                ControlUnit cu = computer.getCpu().getControlUnit();
+                boolean taken = cu.getRegisterValue(2) == 9;
+                line.append("  ").append(modelNames[m]).append(taken ? " taken" : " not taken");
+                right &= taken == JCC_TAKEN[p] && cu.getRegisterValue(1) == (taken ? 0 : 7);
+            }
+            GuestLoop.check(out, line.toString(), right);
+        }
+        GuestLoop.finish(out);
+    }
+}
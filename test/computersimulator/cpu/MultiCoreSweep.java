@@ -0,0 +1,162 @@
+package computersimulator.cpu;
+
+import computersimulator.components.HaltSystemException;
+import computersimulator.components.Unit;
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Runs guest programs on a 4-core computer, with the cores clocked on one
+ * host thread and on four, and prints cycles, the bus traffic and each cache.
+ * Each core first counts into a word of its own: padded one per cache line,
+ * then packed into one line (false sharing, so the line ping-pongs between
+ * the caches). The in-order cores mix the execution models (microcoded,
+ * 2-wide speculative, pipelined, 1-wide); a second set runs out of order.
+ * Then core 0 passes a value to core 1 through a flag core 1 spins on.
+ *
+ * Every run must store the right counts, and the run on several host threads
+ * must match the one on a single thread cycle for cycle: the same cycles,
+ * instructions, bus traffic and cache counters. Exits with status 1 on any
+ * mismatch.
+ */
+public class MultiCoreSweep {
+
+    private static final int CORES = 4;
+    private static final int LOOP_COUNT = 100;
+
+    /**
+     * @return core's counting loop, incrementing M(cell) LOOP_COUNT times
+     */
+    private static int[] counter(int cell) {
+        return new int[]{
+            GuestLoop.w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // R0 <- loop count
+            GuestLoop.w(Instruction.OPCODE_LDR, 1, 0, 0, cell),    // loop: R1 <- M(cell)
+            GuestLoop.w(Instruction.OPCODE_AIR, 1, 0, 0, 1),       // R1 += 1
+            GuestLoop.w(Instruction.OPCODE_STR, 1, 0, 0, cell),    // M(cell) <- R1
+            GuestLoop.w(Instruction.OPCODE_SOB, 0, 0, 0, 0),       // R0--, loop (address patched)
+            GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+        };
+    }
+
+    private static Computer load(int cpuType, int cellSpacing, int hostThreads) throws Exception {
+        Computer computer = new Computer(cpuType, CORES);
+        computer.setTrace(false);
+        computer.setHostThreads(hostThreads);
+        computer.getMemory().writeWord(100, LOOP_COUNT);
+        for (int c = 0; c < CORES; c++) {
+            int base = 10 + 16 * c;
+            int[] program = counter(140 + cellSpacing * c);
+            program[4] |= base + 1;
+            for (int k = 0; k < program.length; k++) {
+                computer.getMemory().writeWord(base + k, program[k]);
+            }
+            CentralProcessingUnit cpu = computer.getCpu(c);
+            if (cpuType == Computer.CPU_OUT_OF_ORDER) {
+                cpu.setIssueWidth(2);
+            } else if (c == 1) {
+                cpu.setIssueWidth(2);
+                cpu.setSpeculativeDispatch(new BimodalBranchPredictor(64));
+            } else if (c == 2) {
+                cpu.setPipelined(true);
+            } else if (c == 3) {
+                cpu.setIssueWidth(1);
+            }   // core 0: microcoded
+            cpu.getControlUnit().setProgramCounter(new Unit(13, base));
+        }
+        return computer;
+    }
+
+    private static void run(Computer computer) throws Exception {
+        try {
+            computer.runCycles(1000000);
+        } catch (HaltSystemException e) {
+            // every core halted
+        }
+    }
+
+    /**
+     * @return cycles, instructions, bus and cache counters, one per line
+     */
+    private static String report(Computer computer) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(computer.getCycleCount()).append(" cycles, ")
+                .append(computer.getInstructionsExecuted()).append(" instructions\n");
+        sb.append("  ").append(computer.getBus().getReport());
+        for (int c = 0; c < computer.getCoreCount(); c++) {
+            sb.append("\n  ").append(computer.getCache(c).getReport());
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        int[] cpuTypes = {Computer.CPU_IN_ORDER, Computer.CPU_OUT_OF_ORDER};
+        int[] spacings = {CoherentCache.DEFAULT_LINE_WORDS, 1};
+        for (int cpuType : cpuTypes) {
+            for (int spacing : spacings) {
+                String name = ((cpuType == Computer.CPU_OUT_OF_ORDER) ? "out-of-order" : "in-order")
+                        + ((spacing == 1) ? ", counters in one line" : ", counters a line apart");
+                String reference = null;
+                for (int threads = 1; threads <= CORES; threads += CORES - 1) {
+                    Computer computer = load(cpuType, spacing, threads);
+                    run(computer);
+                    boolean right = computer.isHalted();
+                    for (int c = 0; c < CORES; c++) {
+                        right &= computer.getMemory().readWord(140 + spacing * c) == LOOP_COUNT;
+                    }
+                    String report = report(computer);
+                    if (reference == null) {
+                        reference = report;
+                    }
+                    GuestLoop.check(out, name + ", " + threads + " host thread(s): " + report,
+                            right && report.equals(reference));
+                }
+            }
+        }
+
+        String reference = null;
+        for (int threads = 1; threads <= 2; threads++) {
+            Computer computer = new Computer(Computer.CPU_IN_ORDER, 2);
+            computer.setTrace(false);
+            computer.setHostThreads(threads);
+            int[] producer = {
+                GuestLoop.w(Instruction.OPCODE_LDR, 0, 0, 0, 101),     // 10: R0 <- value
+                GuestLoop.w(Instruction.OPCODE_STR, 0, 0, 0, 160),     // 11: data <- R0
+                GuestLoop.w(Instruction.OPCODE_AIR, 1, 0, 0, 1),       // 12
+                GuestLoop.w(Instruction.OPCODE_STR, 1, 0, 0, 168),     // 13: flag <- 1
+                GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 14
+            };
+            int[] consumer = {
+                GuestLoop.w(Instruction.OPCODE_LDR, 2, 0, 0, 168),     // 30: R2 <- flag
+                GuestLoop.w(Instruction.OPCODE_JZ, 2, 0, 0, 30),       // 31: spin until set
+                GuestLoop.w(Instruction.OPCODE_LDR, 3, 0, 0, 160),     // 32: R3 <- data
+                GuestLoop.w(Instruction.OPCODE_STR, 3, 0, 0, 172),     // 33: result <- R3
+                GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 34
+            };
+            for (int k = 0; k < producer.length; k++) {
+                computer.getMemory().writeWord(10 + k, producer[k]);
+                computer.getMemory().writeWord(30 + k, consumer[k]);
+            }
+            computer.getMemory().writeWord(101, 77);
+            computer.getCpu(0).setIssueWidth(1);
+            computer.getCpu(1).setIssueWidth(1);
+            computer.getCpu(0).getControlUnit().setProgramCounter(new Unit(13, 10));
+            computer.getCpu(1).getControlUnit().setProgramCounter(new Unit(13, 30));
+            run(computer);
+            int result = computer.getMemory().readWord(172);
+            String report = report(computer);
+            if (reference == null) {
+                reference = report;
+            }
+            GuestLoop.check(out, "message passing, " + threads + " host thread(s): result " + result + ", " + report,
+                    result == 77 && report.equals(reference));
+        }
+        GuestLoop.finish(out);
+    }
+}
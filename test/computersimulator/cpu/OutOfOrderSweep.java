@@ -0,0 +1,46 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Runs the guest loop on the out-of-order CPU at issue widths 2 and 4 and
+ * several ROB sizes, speculating with a bimodal predictor, and prints each
+ * core's report and ROB / reservation station occupancy. Every run must
+ * commit every instruction and store the microcoded run's result. Exits
+ * with status 1 on any mismatch.
+ */
+public class OutOfOrderSweep {
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        int expected = GuestLoop.expectedResult();
+        int[] robSizes = {4, 8, 16};
+        for (int width = 2; width <= 4; width += 2) {
+            for (int robSize : robSizes) {
+                Computer computer = GuestLoop.load(Computer.CPU_OUT_OF_ORDER);
+                OutOfOrderProcessingUnit cpu = (OutOfOrderProcessingUnit) computer.getCpu();
+                cpu.configureCore(robSize, 4, 32);
+                cpu.setIssueWidth(width);
+                cpu.setSpeculativeDispatch(new BimodalBranchPredictor(64));
+                GuestLoop.run(computer);
+
+                OutOfOrderCore core = cpu.getCore();
+                int result = computer.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+                GuestLoop.check(out, "out-of-order width " + width + ", ROB " + robSize + ": " + core.getReport()
+                        + ", result " + result,
+                        result == expected && computer.getInstructionsExecuted() == GuestLoop.INSTRUCTIONS);
+                out.println("  ROB occupancy " + Arrays.toString(core.getReorderBufferOccupancy())
+                        + "  RS occupancy " + Arrays.toString(core.getReservationStationOccupancy()));
+            }
+        }
+        GuestLoop.finish(out);
+    }
+}
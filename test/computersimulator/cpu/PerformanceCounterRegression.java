@@ -0,0 +1,59 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import javax.management.MBeanServer;
+
+/**
+ * Runs the guest loop on every execution model and compares their
+ * performance counters: all must agree on what the program retired, read,
+ * wrote and branched, and each must count its own run's cycles. One set is
+ * then read back over JMX. Exits with status 1 on any mismatch.
+ */
+public class PerformanceCounterRegression {
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        Computer[] models = {GuestLoop.load(), GuestLoop.load(), GuestLoop.load(), GuestLoop.load(Computer.CPU_OUT_OF_ORDER)};
+        String[] modelNames = {"microcoded", "2-wide speculative", "pipelined", "out-of-order"};
+        models[1].getCpu().setIssueWidth(2);
+        models[1].getCpu().setSpeculativeDispatch(new BimodalBranchPredictor(64));
+        models[2].getCpu().setPipelined(true);
+        models[3].getCpu().setIssueWidth(2);
+        PerformanceCounters first = null;
+        for (int m = 0; m < models.length; m++) {
+            GuestLoop.runEventDriven(models[m]);
+            PerformanceCounters counters = models[m].getPerformanceCounters(0);
+            if (first == null) {
+                first = counters;
+            }
+            GuestLoop.check(out, modelNames[m] + " counters: " + counters.getReport(),
+                    counters.getRetiredInstructions() == first.getRetiredInstructions()
+                    && counters.getMemoryReads() == first.getMemoryReads()
+                    && counters.getMemoryWrites() == first.getMemoryWrites()
+                    && counters.getBranchesTaken() == first.getBranchesTaken()
+                    && counters.getBranchesNotTaken() == first.getBranchesNotTaken()
+                    && counters.getALUOperations() == first.getALUOperations()
+                    && Arrays.equals(counters.getOpcodeRetirements(), first.getOpcodeRetirements())
+                    && counters.getCycles() == models[m].getCycleCount());
+        }
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        models[2].registerPerformanceCounters("PerformanceCounterRegression");
+        PerformanceCounters counters = models[2].getPerformanceCounters(0);
+        double cpi = (Double) server.getAttribute(counters.getRegisteredName(), "CyclesPerInstruction");
+        long retired = (Long) server.getAttribute(counters.getRegisteredName(), "RetiredInstructions");
+        GuestLoop.check(out, "over JMX as " + counters.getRegisteredName() + String.format(": CPI %.2f", cpi)
+                + ", retired " + retired,
+                cpi == counters.getCyclesPerInstruction() && retired == counters.getRetiredInstructions());
+        models[2].unregisterPerformanceCounters();
+        GuestLoop.finish(out);
+    }
+}
@@ -0,0 +1,55 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+
+/**
+ * Runs the guest loop on the 5-stage pipeline and prints its CPI, stall
+ * reasons and forwarding. The run must retire every instruction and store
+ * the microcoded run's result. The loop has no load followed directly by a
+ * reader of the loaded register, so a short program checks that case: it
+ * must stall ID exactly one cycle, while a reader one instruction further
+ * back takes the loaded value forwarded. Exits with status 1 on any mismatch.
+ */
+public class PipelineSweep {
+
+    // from address 10; stores c(101) + 1 to RESULT_ADDRESS
+    private static final int[] LOAD_USE_PROGRAM = {
+        GuestLoop.w(Instruction.OPCODE_LDR, 0, 0, 0, 101),
+        GuestLoop.w(Instruction.OPCODE_AIR, 0, 0, 0, 1),       // needs R0 right after the load: stalls
+        GuestLoop.w(Instruction.OPCODE_LDR, 1, 0, 0, 101),
+        GuestLoop.w(Instruction.OPCODE_AIR, 2, 0, 0, 1),
+        GuestLoop.w(Instruction.OPCODE_AIR, 1, 0, 0, 1),       // one instruction later: forwarded
+        GuestLoop.w(Instruction.OPCODE_STR, 0, 0, 0, GuestLoop.RESULT_ADDRESS),
+        GuestLoop.w(Instruction.OPCODE_HLT, 0, 0, 0, 0),
+    };
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        int expected = GuestLoop.expectedResult();
+        Computer pipelined = GuestLoop.load();
+        pipelined.getCpu().setPipelined(true);
+        GuestLoop.run(pipelined);
+        Pipeline pipeline = pipelined.getCpu().getPipeline();
+        int result = pipelined.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+        GuestLoop.check(out, "pipelined: " + pipeline.getReport() + ", result " + result,
+                result == expected && pipelined.getInstructionsExecuted() == GuestLoop.INSTRUCTIONS);
+
+        Computer loadUse = GuestLoop.load(LOAD_USE_PROGRAM);
+        loadUse.getMemory().writeWord(101, 5);
+        loadUse.getCpu().setPipelined(true);
+        GuestLoop.run(loadUse);
+        pipeline = loadUse.getCpu().getPipeline();
+        ControlUnit cu = loadUse.getCpu().getControlUnit();
+        result = loadUse.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+        GuestLoop.check(out, "load-use: " + pipeline.getReport() + ", result " + result + ", R1 " + cu.getRegisterValue(1),
+                pipeline.getStalls(Pipeline.STALL_LOAD_USE) == 1 && result == 6 && cu.getRegisterValue(1) == 6);
+        GuestLoop.finish(out);
+    }
+}
@@ -0,0 +1,80 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs the 2-wide guest loop through the RunController: a cycle budget, a
+ * paced run stopped from this thread, then to the halt, after which a
+ * shut-down controller must reject every start; and a run paced to
+ * a target frequency, which must run exactly its budget and can't finish
+ * before the simulated time it covers has passed on the host (only that
+ * lower bound is checked, a loaded host may take longer). Exits with status
+ * 1 on any mismatch.
+ */
+public class RunControllerRegression {
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        int expected = GuestLoop.expectedResult();
+        Computer reference = GuestLoop.load();
+        reference.getCpu().setIssueWidth(2);
+        GuestLoop.run(reference);
+
+        Computer controlled = GuestLoop.load();
+        controlled.getCpu().setIssueWidth(2);
+        RunController controller = controlled.getRunController();
+        controller.setBatchCycles(64);
+        int reason = controller.run(500);
+        GuestLoop.check(out, "500 cycle budget: " + controller.getReport(),
+                reason == RunController.STOP_BUDGET && controlled.getCycleCount() == 500);
+
+        controller.setTargetFrequency(1000);
+        Future<Integer> stopped = controller.start(RunController.UNLIMITED);
+        Thread.sleep(50);
+        controller.stop();
+        reason = stopped.get();
+        GuestLoop.check(out, "paced to 1 kHz, stopped after 50 ms: " + controller.getReport(),
+                reason == RunController.STOP_REQUESTED && controller.getRunCycles() < 200
+                && !controller.isRunning());
+        controller.setTargetFrequency(0);
+
+        reason = controller.run(RunController.UNLIMITED);
+        int result = controlled.getMemory().readWord(GuestLoop.RESULT_ADDRESS);
+        GuestLoop.check(out, "to halt: " + controller.getReport() + ", result " + result,
+                reason == RunController.STOP_HALT && result == expected
+                && controlled.getCycleCount() == reference.getCycleCount());
+        controller.shutdown();
+        int rejected = 0;
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                controller.start(100);
+            } catch (RejectedExecutionException e) {
+                rejected++;     // not "already running": a rejected start leaves no run behind
+            }
+        }
+        GuestLoop.check(out, "start after shutdown: " + rejected + " of 2 rejected",
+                rejected == 2 && !controller.isRunning());
+
+        Computer paced = GuestLoop.load();
+        paced.getCpu().setIssueWidth(2);
+        RunController pacer = paced.getRunController();
+        pacer.setTargetFrequency(8000);
+        long start = System.nanoTime();
+        reason = pacer.run(800);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        GuestLoop.check(out, String.format("paced to 8 kHz, 800 cycles: %.3f s, ", seconds) + pacer.getReport(),
+                reason == RunController.STOP_BUDGET && paced.getCycleCount() == 800
+                && pacer.getRunCycles() == 800 && seconds >= 0.095);
+        pacer.shutdown();
+        GuestLoop.finish(out);
+    }
+}
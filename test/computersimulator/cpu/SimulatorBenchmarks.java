@@ -0,0 +1,358 @@
+package computersimulator.cpu;
+
+import computersimulator.components.Unit;
+import computersimulator.components.Word;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+
+/**
+ * Benchmark suite for the simulator's hot paths: Unit construction and
+ * conversion, decomposeByOffset, the ALU through its CTRL interface, memory
+ * round trips through the MAR/MBR, decode, and an instruction mix run by
+ * Computer.clockCycle() on each execution model (2-wide dispatch also with a
+ * conditional breakpoint on the loop that never holds and a watchpoint).
+ *
+ * Each benchmark is calibrated to about ITERATION_MILLIS per iteration, run
+ * for WARMUP_ITERATIONS unmeasured and MEASUREMENT_ITERATIONS measured
+ * iterations, and scored in ns/op (mean +- standard deviation). Run with
+ * "ant benchmark"; system properties:
+ *   benchmark.include   run only benchmarks whose name contains this
+ *   benchmark.save      write the scores to this properties file
+ *   benchmark.baseline  compare the scores to a file saved before
+ */
+public class SimulatorBenchmarks {
+
+    private static final int WARMUP_ITERATIONS = 3;
+    private static final int MEASUREMENT_ITERATIONS = 5;
+    private static final int ITERATION_MILLIS = 200;
+
+    // changes beyond this fraction of the baseline are flagged
+    private static final double THRESHOLD = 0.10;
+
+    private static final int OPERANDS = 4096;
+
+    private static int w(int op, int r, int x, int i, int addr) {
+        return op << 14 | r << 12 | x << 10 | i << 9 | addr;
+    }
+
+    private static int rr(int op, int rx, int ry) {
+        return op << 14 | rx << 12 | ry << 10;
+    }
+
+    // a loop that never halts: loads, stores, ALU, multiply and jumps
+    private static final int[] MIX = {
+        w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 10: R0 <- loop count
+        w(Instruction.OPCODE_AIR, 2, 0, 0, 3),       // 11: loop: R2 += 3
+        w(Instruction.OPCODE_AMR, 2, 0, 0, 101),     // 12: R2 += M(101)
+        w(Instruction.OPCODE_STR, 2, 0, 0, 102),     // 13
+        w(Instruction.OPCODE_LDR, 1, 0, 0, 102),     // 14
+        rr(Instruction.OPCODE_MLT, 2, 2),            // 15: R2,R3 <- R2 * R2
+        rr(Instruction.OPCODE_NOT, 1, 0),            // 16
+        w(Instruction.OPCODE_JZ, 1, 0, 0, 18),       // 17
+        w(Instruction.OPCODE_SOB, 0, 0, 0, 11),      // 18: R0--, loop
+        w(Instruction.OPCODE_JMP, 0, 0, 0, 10),      // 19: again
+    };
+
+    /**
+     * One operation, run [ops] times per call.
+     */
+    private abstract static class Benchmark {
+        final String name;
+
+        Benchmark(String name) {
+            this.name = name;
+        }
+
+        /**
+         * @param ops operations to run
+         * @return a value derived from every result, so the JIT can't drop the work
+         */
+        abstract long run(int ops) throws Exception;
+    }
+
+    private final int[] values = new int[OPERANDS];
+    private final Word[] words = new Word[OPERANDS];
+    private final String[] binaryStrings = new String[OPERANDS];
+    private final Unit[] addresses = new Unit[OPERANDS];
+
+    // consumed so the JIT can't drop the work
+    private long sink;
+
+    private SimulatorBenchmarks() {
+        Random random = new Random(6461);
+        for (int i = 0; i < OPERANDS; i++) {
+            this.values[i] = random.nextInt(1 << 19);
+            this.words[i] = new Word(this.values[i]);
+            this.binaryStrings[i] = this.words[i].getBinaryString();
+            this.addresses[i] = new Unit(13, 200 + random.nextInt(1800));
+        }
+    }
+
+    private static Computer mix(int cpuType) throws Exception {
+        Computer computer = new Computer(cpuType);
+        computer.setTrace(false);
+        MemoryControlUnit memory = computer.getMemory();
+        for (int k = 0; k < MIX.length; k++) {
+            memory.writeWord(10 + k, MIX[k]);
+        }
+        memory.writeWord(100, 50);
+        memory.writeWord(101, 1);
+        computer.getCpu().getControlUnit().setProgramCounter(new Unit(13, 10));
+        return computer;
+    }
+
+    private Benchmark clockCycles(String name, final Computer computer) {
+        return new Benchmark(name) {
+            @Override
+            long run(int ops) throws Exception {
+                for (int i = 0; i < ops; i++) {
+                    computer.clockCycle();
+                }
+                return computer.getCycleCount();
+            }
+        };
+    }
+
+    private Benchmark alu(String name, final int control) {
+        Computer computer = new Computer();
+        computer.setTrace(false);
+        final ArithmeticLogicUnit alu = computer.getCpu().getALU();
+        return new Benchmark(name) {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    alu.setOperand1(words[i & (OPERANDS - 1)]);
+                    alu.setOperand2(words[(i + 1) & (OPERANDS - 1)]);
+                    alu.setControl(control);
+                    alu.signalReadyToStartComputation();
+                    Unit result;
+                    do {    // (multiply takes more than one cycle)
+                        alu.clockCycle();
+                    } while ((result = alu.getResult()) == null);
+                    sum += result.getRawValue();
+                }
+                return sum;
+            }
+        };
+    }
+
+    private List<Benchmark> benchmarks() throws Exception {
+        List<Benchmark> benchmarks = new ArrayList<>();
+        benchmarks.add(new Benchmark("unit.construct") {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    sum += new Unit(20, values[i & (OPERANDS - 1)]).getRawValue();
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(new Benchmark("unit.toBinaryString") {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    sum += words[i & (OPERANDS - 1)].getBinaryString().length();
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(new Benchmark("unit.fromBinaryString") {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    sum += Unit.UnitFromBinaryString(binaryStrings[i & (OPERANDS - 1)]).getRawValue();
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(new Benchmark("unit.signedValue") {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    sum += words[i & (OPERANDS - 1)].getSignedValue();
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(new Benchmark("unit.decomposeByOffset") {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    // the instruction fields, as the microcode splits the IR
+                    Word word = words[i & (OPERANDS - 1)];
+                    sum += word.decomposeByOffset(0, 5).getRawValue()
+                            + word.decomposeByOffset(6, 7).getRawValue()
+                            + word.decomposeByOffset(10).getRawValue()
+                            + word.decomposeByOffset(12, 19).getRawValue();
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(this.alu("alu.add", ArithmeticLogicUnit.CONTROL_ADD));
+        benchmarks.add(this.alu("alu.subtract", ArithmeticLogicUnit.CONTROL_SUBTRACT));
+        benchmarks.add(this.alu("alu.multiply", ArithmeticLogicUnit.CONTROL_MULTIPLY));
+        final MemoryControlUnit memory = new MemoryControlUnit();
+        memory.setTrace(false);
+        benchmarks.add(new Benchmark("memory.fetch") {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    memory.setMAR(addresses[i & (OPERANDS - 1)]);
+                    memory.clockCycle();
+                    sum += memory.getMBR().getRawValue();
+                    memory.clockCycle();
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(new Benchmark("memory.store") {
+            @Override
+            long run(int ops) {
+                for (int i = 0; i < ops; i++) {
+                    memory.setMAR(addresses[i & (OPERANDS - 1)]);
+                    memory.setMBR(words[i & (OPERANDS - 1)]);
+                    memory.clockCycle();
+                    memory.clockCycle();
+                }
+                return memory.getMBR().getRawValue();
+            }
+        });
+        benchmarks.add(new Benchmark("memory.readWriteWord") {
+            @Override
+            long run(int ops) throws Exception {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    int address = addresses[i & (OPERANDS - 1)].getRawValue();
+                    memory.writeWord(address, values[i & (OPERANDS - 1)]);
+                    sum += memory.readWord(address);
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(new Benchmark("instruction.decode") {
+            @Override
+            long run(int ops) {
+                long sum = 0;
+                for (int i = 0; i < ops; i++) {
+                    sum += Instruction.decode(values[i & (OPERANDS - 1)]).getAddress();
+                }
+                return sum;
+            }
+        });
+        benchmarks.add(this.clockCycles("computer.microcoded", mix(Computer.CPU_IN_ORDER)));
+        Computer dispatch = mix(Computer.CPU_IN_ORDER);
+        dispatch.getCpu().setIssueWidth(2);
+        benchmarks.add(this.clockCycles("computer.dispatch2", dispatch));
+        Computer debugged = mix(Computer.CPU_IN_ORDER);
+        debugged.getCpu().setIssueWidth(2);
+        debugged.getBreakpoints().addBreakpoint(11, "R0 < 0 && c(101) == 7");     // never holds
+        debugged.getBreakpoints().addWatchpoint(200, true, true);
+        benchmarks.add(this.clockCycles("computer.dispatch2.debug", debugged));
+        Computer pipelined = mix(Computer.CPU_IN_ORDER);
+        pipelined.getCpu().setPipelined(true);
+        benchmarks.add(this.clockCycles("computer.pipelined", pipelined));
+        benchmarks.add(this.clockCycles("computer.outOfOrder", mix(Computer.CPU_OUT_OF_ORDER)));
+        return benchmarks;
+    }
+
+    /**
+     * @return {mean, standard deviation} ns/op over the measured iterations
+     */
+    private double[] measure(Benchmark benchmark) throws Exception {
+        int ops = 1;
+        long nanos;
+        while ((nanos = this.time(benchmark, ops)) < ITERATION_MILLIS * 100000L) {
+            ops *= 2;
+        }
+        ops = (int) Math.max(1, Math.min(Integer.MAX_VALUE, ops * (ITERATION_MILLIS * 1000000.0 / nanos)));
+        for (int i = 0; i < WARMUP_ITERATIONS; i++) {
+            this.time(benchmark, ops);
+        }
+        double[] scores = new double[MEASUREMENT_ITERATIONS];
+        double mean = 0;
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = (double) this.time(benchmark, ops) / ops;
+            mean += scores[i] / scores.length;
+        }
+        double variance = 0;
+        for (double score : scores) {
+            variance += (score - mean) * (score - mean) / Math.max(1, scores.length - 1);
+        }
+        return new double[]{mean, Math.sqrt(variance)};
+    }
+
+    private long time(Benchmark benchmark, int ops) throws Exception {
+        long start = System.nanoTime();
+        this.sink += benchmark.run(ops);
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence any trace
+
+        String include = System.getProperty("benchmark.include", "");
+        String save = System.getProperty("benchmark.save", "");
+        String baselineFile = System.getProperty("benchmark.baseline", "");
+        Properties baseline = new Properties();
+        if (!baselineFile.isEmpty()) {
+            try (InputStream in = new FileInputStream(baselineFile)) {
+                baseline.load(in);
+            }
+        }
+
+        SimulatorBenchmarks b = new SimulatorBenchmarks();
+        Properties scores = new Properties();
+        int regressions = 0;
+        out.println(String.format("%-24s %12s %10s  %s", "benchmark", "ns/op", "+-", baselineFile.isEmpty() ? "" : "vs " + baselineFile));
+        for (Benchmark benchmark : b.benchmarks()) {
+            if (!benchmark.name.contains(include)) {
+                continue;
+            }
+            double[] score = b.measure(benchmark);
+            scores.setProperty(benchmark.name, String.format("%.3f", score[0]));
+            String comparison = "";
+            String before = baseline.getProperty(benchmark.name);
+            if (before != null) {
+                double change = score[0] / Double.parseDouble(before) - 1;
+                comparison = String.format("%s ns/op, %+.1f%%", before, 100 * change);
+                if (change > THRESHOLD) {
+                    comparison += "  REGRESSION";
+                    regressions++;
+                } else if (change < -THRESHOLD) {
+                    comparison += "  improved";
+                }
+            }
+            out.println(String.format("%-24s %12.2f %10.2f  %s", benchmark.name, score[0], score[1], comparison));
+        }
+        if (!baselineFile.isEmpty()) {
+            out.println(regressions + " regression(s) beyond " + Math.round(100 * THRESHOLD) + "%");
+        }
+        if (!save.isEmpty()) {
+            try (OutputStream file = new FileOutputStream(save)) {
+                scores.store(file, "SimulatorBenchmarks ns/op");
+            }
+            out.println("scores saved to " + save);
+        }
+        out.println("(sink " + b.sink + ")");
+    }
+}
@@ -0,0 +1,69 @@
+package computersimulator.cpu;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Records the guest loop's trace on every execution model, through a small
+ * ring and buffer so the drain wraps, and reads the files back: every model
+ * must record the same instructions, flags, effective addresses and values.
+ * Exits with status 1 on any mismatch.
+ */
+public class TraceRecorderRegression {
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(new ByteArrayOutputStream()));   // silence the microcode trace
+
+        Computer[] traced = {GuestLoop.load(), GuestLoop.load(), GuestLoop.load(), GuestLoop.load(Computer.CPU_OUT_OF_ORDER)};
+        String[] modelNames = {"microcoded", "2-wide speculative", "pipelined", "out-of-order"};
+        traced[1].getCpu().setIssueWidth(2);
+        traced[1].getCpu().setSpeculativeDispatch(new BimodalBranchPredictor(64));
+        traced[2].getCpu().setPipelined(true);
+        TraceFile.Cursor[] cursors = new TraceFile.Cursor[traced.length];
+        for (int m = 0; m < traced.length; m++) {
+            Path file = Files.createTempFile("simulator", ".trace");
+            try {
+                TraceRecorder recorder = new TraceRecorder(file, m % 2 == 1, 256, 1000);
+                try {
+                    traced[m].getCpu().getControlUnit().setTraceRecorder(recorder);
+                    GuestLoop.runEventDriven(traced[m]);
+                    traced[m].getCpu().getControlUnit().setTraceRecorder(null);
+                } finally {
+                    recorder.close();
+                }
+                out.println(modelNames[m] + " " + recorder.getReport());
+                cursors[m] = new TraceFile(file).cursor();
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+        int records = 0;
+        int taken = 0;
+        boolean agree = true;
+        while (cursors[0].next()) {
+            records++;
+            taken += (cursors[0].getOpcode() == Instruction.OPCODE_SOB && cursors[0].isTaken()) ? 1 : 0;
+            for (int m = 1; m < cursors.length; m++) {
+                agree &= cursors[m].next()
+                        && cursors[m].getPC() == cursors[0].getPC()
+                        && cursors[m].getOpcode() == cursors[0].getOpcode()
+                        && cursors[m].getFlags() == cursors[0].getFlags()
+                        && cursors[m].getEffectiveAddress() == cursors[0].getEffectiveAddress()
+                        && cursors[m].getValue() == cursors[0].getValue();
+            }
+        }
+        for (int m = 1; m < cursors.length; m++) {
+            agree &= !cursors[m].next();
+        }
+        GuestLoop.check(out, "traces: " + records + " records, SOB taken " + taken,
+                agree && records == GuestLoop.INSTRUCTIONS && taken == GuestLoop.LOOP_COUNT - 1);
+        GuestLoop.finish(out);
+    }
+}
@@ -0,0 +1,93 @@
+package computersimulator.farm;
+
+import computersimulator.cpu.Computer;
+import computersimulator.cpu.Instruction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs a batch of jobs (a counting loop, a different count per job, spread
+ * over the microcoded, 2-wide, pipelined and out-of-order CPUs) on farms of
+ * 1, 2, 4 and one-per-core threads, checks every result and prints jobs/s and
+ * simulated cycles/s for each farm size (after one unmeasured pass).
+ */
+public class SimulationFarmSweep {
+
+    private static final int JOBS = 400;
+    private static final int RESULT_ADDRESS = 120;
+
+    private static int w(int op, int r, int x, int i, int addr) {
+        return op << 14 | r << 12 | x << 10 | i << 9 | addr;
+    }
+
+    private static final int[] PROGRAM = {
+        w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 10: R0 <- loop count
+        w(Instruction.OPCODE_AIR, 2, 0, 0, 3),       // 11: loop: R2 += 3
+        w(Instruction.OPCODE_AMR, 2, 0, 0, 101),     // 12: R2 += M(101)
+        w(Instruction.OPCODE_SOB, 0, 0, 0, 11),      // 13: R0--, loop
+        w(Instruction.OPCODE_STR, 2, 0, 0, RESULT_ADDRESS), // 14
+        w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 15
+    };
+
+    private static List<SimulationJob> jobs() {
+        List<SimulationJob> jobs = new ArrayList<>();
+        for (int i = 0; i < JOBS; i++) {
+            SimulationJob job = new SimulationJob(i);
+            job.loadProgram(10, PROGRAM);
+            job.setMemory(100, 50 + i);
+            job.setMemory(101, 1);
+            job.setProgramCounter(10);
+            job.addResultRange(RESULT_ADDRESS, 1);
+            switch (i % 4) {
+                case 1:
+                    job.setIssueWidth(2);
+                    break;
+                case 2:
+                    job.setPipelined(true);
+                    break;
+                case 3:
+                    job.setCpuType(Computer.CPU_OUT_OF_ORDER);
+                    job.setIssueWidth(2);
+                    break;
+                default:
+                    break;
+            }
+            jobs.add(job);
+        }
+        return jobs;
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        int cores = Runtime.getRuntime().availableProcessors();
+        int[] sizes = {1, 2, 4, cores};
+        for (SimulationJob job : jobs()) {
+            SimulationFarm.runJob(job);     // warm up the JIT before timing
+        }
+        for (int threads : sizes) {
+            SimulationFarm farm = new SimulationFarm(threads);
+            final long[] cycles = new long[1];
+            final int[] wrong = new int[1];
+            long start = System.nanoTime();
+            farm.runAll(jobs(), new SimulationFarm.ResultHandler() {
+                @Override
+                public void resultReady(SimulationResult result) {
+                    cycles[0] += result.getCycles();
+                    int expected = 4 * (50 + (int) result.getJobId());
+                    if (result.getStatus() != SimulationResult.STATUS_HALT
+                            || result.getMemory(RESULT_ADDRESS) != expected) {
+                        wrong[0]++;
+                    }
+                }
+            });
+            double seconds = (System.nanoTime() - start) / 1e9;
+            farm.shutdown();
+            System.out.println(String.format("%d thread(s): %d jobs in %.2f s, %.0f jobs/s, %.0f cycles/s",
+                    threads, JOBS, seconds, JOBS / seconds, cycles[0] / seconds)
+                    + ((wrong[0] == 0) ? "" : "  WRONG " + wrong[0]));
+        }
+    }
+}
@@ -0,0 +1,407 @@
+package computersimulator.farm;
+
+import computersimulator.cpu.Instruction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Guest programs for end-to-end measurements, each with a Java model of what
+ * it must leave in memory and registers:
+ *   sob-loop     a counted SOB loop adding and subtracting immediates
+ *   memcopy      copies 512 words through indirect pointers, 4 times
+ *   array-sum    sums a circular list of records walked with X1, storing a
+ *                running total in every record
+ *   recursion    sum(n) = n + sum(n - 1) through JSR/RFS and a memory stack
+ *   bits         an xorshift/rotate hash built from SRC, RRC, AND, ORR, NOT
+ * Every program starts at 10 and halts.
+ */
+public class WorkloadCorpus {
+
+    private static final int WORD_MASK = 0xFFFFF;
+    private static final int RESULT_ADDRESS = 120;
+
+    /**
+     * One guest program.
+     */
+    public abstract static class Workload {
+        private final String name;
+
+        Workload(String name) {
+            this.name = name;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @param id job id
+         * @return a job with the program, its data, registers and PC set
+         */
+        public abstract SimulationJob job(long id);
+
+        /**
+         * @param result result of a job made by job()
+         * @return what is wrong with it, null if nothing
+         */
+        public String check(SimulationResult result) {
+            if (result.getStatus() != SimulationResult.STATUS_HALT) {
+                return "ended with " + result.getStatusName()
+                        + ((result.getFault() == null) ? "" : ": " + result.getFault());
+            }
+            return this.checkState(result);
+        }
+
+        abstract String checkState(SimulationResult result);
+    }
+
+    private static int w(int op, int r, int x, int i, int addr) {
+        return op << 14 | r << 12 | x << 10 | i << 9 | addr;
+    }
+
+    private static int rr(int op, int rx, int ry) {
+        return op << 14 | rx << 12 | ry << 10;
+    }
+
+    /**
+     * @param al 1 for logical, 0 for arithmetic
+     * @param lr 1 for left, 0 for right
+     */
+    private static int shift(int op, int register, int al, int lr, int count) {
+        return op << 14 | register << 10 | al << 9 | lr << 8 | count;
+    }
+
+    private static String expect(String what, int actual, int expected) {
+        return (actual == expected) ? null : what + " is " + actual + ", expected " + expected;
+    }
+
+    private static String expectMemory(SimulationResult result, int address, int expected) {
+        return expect("M(" + address + ")", result.getMemory(address), expected);
+    }
+
+    private static String first(String... problems) {
+        for (String problem : problems) {
+            if (problem != null) {
+                return problem;
+            }
+        }
+        return null;
+    }
+
+    private static SimulationJob job(long id, int[] program) {
+        SimulationJob job = new SimulationJob(id);
+        job.loadProgram(10, program);
+        job.setProgramCounter(10);
+        job.setCycleBudget(50000000);
+        return job;
+    }
+
+    private static int[] randomWords(int count, int bound, long seed) {
+        Random random = new Random(seed);
+        int[] words = new int[count];
+        for (int i = 0; i < count; i++) {
+            words[i] = random.nextInt(bound);
+        }
+        return words;
+    }
+
+    private static final int SOB_COUNT = 5000;
+
+    private static final Workload SOB_LOOP = new Workload("sob-loop") {
+        private final int[] program = {
+            w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 10: R0 <- count
+            w(Instruction.OPCODE_AIR, 1, 0, 0, 3),       // 11: loop: R1 += 3
+            w(Instruction.OPCODE_SIR, 2, 0, 0, 1),       // 12: R2 -= 1
+            w(Instruction.OPCODE_SOB, 0, 0, 0, 11),      // 13: R0--, loop
+            w(Instruction.OPCODE_STR, 1, 0, 0, RESULT_ADDRESS), // 14
+            w(Instruction.OPCODE_STR, 2, 0, 0, RESULT_ADDRESS + 1), // 15
+            w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 16
+        };
+
+        @Override
+        public SimulationJob job(long id) {
+            SimulationJob job = WorkloadCorpus.job(id, this.program);
+            job.setMemory(100, SOB_COUNT);
+            job.addResultRange(RESULT_ADDRESS, 2);
+            return job;
+        }
+
+        @Override
+        String checkState(SimulationResult result) {
+            int r1 = 3 * SOB_COUNT & WORD_MASK;
+            int r2 = -SOB_COUNT & WORD_MASK;
+            return first(expect("R0", result.getGeneralPurposeRegister(0), 0),
+                    expect("R1", result.getGeneralPurposeRegister(1), r1),
+                    expect("R2", result.getGeneralPurposeRegister(2), r2),
+                    expectMemory(result, RESULT_ADDRESS, r1),
+                    expectMemory(result, RESULT_ADDRESS + 1, r2));
+        }
+    };
+
+    private static final int COPY_WORDS = 512;
+    private static final int COPY_PASSES = 4;
+    private static final int COPY_SOURCE = 1024;
+    private static final int COPY_DESTINATION = 1536;
+    private static final int[] COPY_DATA = randomWords(COPY_WORDS, WORD_MASK + 1, 41);
+
+    private static final Workload MEMCOPY = new Workload("memcopy") {
+        private final int[] program = {
+            w(Instruction.OPCODE_LDR, 0, 0, 0, 102),     // 10: R0 <- words
+            w(Instruction.OPCODE_LDR, 1, 0, 1, 100),     // 11: loop: R1 <- M(M(source))
+            w(Instruction.OPCODE_STR, 1, 0, 1, 101),     // 12: M(M(destination)) <- R1
+            w(Instruction.OPCODE_LDR, 2, 0, 0, 100),     // 13: source++
+            w(Instruction.OPCODE_AIR, 2, 0, 0, 1),       // 14
+            w(Instruction.OPCODE_STR, 2, 0, 0, 100),     // 15
+            w(Instruction.OPCODE_LDR, 2, 0, 0, 101),     // 16: destination++
+            w(Instruction.OPCODE_AIR, 2, 0, 0, 1),       // 17
+            w(Instruction.OPCODE_STR, 2, 0, 0, 101),     // 18
+            w(Instruction.OPCODE_SOB, 0, 0, 0, 11),      // 19: R0--, loop
+            w(Instruction.OPCODE_LDR, 2, 0, 0, 103),     // 20: passes--
+            w(Instruction.OPCODE_SIR, 2, 0, 0, 1),       // 21
+            w(Instruction.OPCODE_STR, 2, 0, 0, 103),     // 22
+            w(Instruction.OPCODE_JZ, 2, 0, 0, 29),       // 23: done
+            w(Instruction.OPCODE_LDR, 2, 0, 0, 104),     // 24: rewind the pointers
+            w(Instruction.OPCODE_STR, 2, 0, 0, 100),     // 25
+            w(Instruction.OPCODE_LDR, 2, 0, 0, 105),     // 26
+            w(Instruction.OPCODE_STR, 2, 0, 0, 101),     // 27
+            w(Instruction.OPCODE_JMP, 0, 0, 0, 10),      // 28: next pass
+            w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 29
+        };
+
+        @Override
+        public SimulationJob job(long id) {
+            SimulationJob job = WorkloadCorpus.job(id, this.program);
+            job.setMemory(100, COPY_SOURCE);
+            job.setMemory(101, COPY_DESTINATION);
+            job.setMemory(102, COPY_WORDS);
+            job.setMemory(103, COPY_PASSES);
+            job.setMemory(104, COPY_SOURCE);
+            job.setMemory(105, COPY_DESTINATION);
+            for (int i = 0; i < COPY_WORDS; i++) {
+                job.setMemory(COPY_SOURCE + i, COPY_DATA[i]);
+            }
+            job.addResultRange(100, 4);
+            job.addResultRange(COPY_DESTINATION, COPY_WORDS);
+            return job;
+        }
+
+        @Override
+        String checkState(SimulationResult result) {
+            for (int i = 0; i < COPY_WORDS; i++) {
+                String problem = expectMemory(result, COPY_DESTINATION + i, COPY_DATA[i]);
+                if (problem != null) {
+                    return problem;
+                }
+            }
+            return first(expectMemory(result, 100, COPY_SOURCE + COPY_WORDS),
+                    expectMemory(result, 101, COPY_DESTINATION + COPY_WORDS),
+                    expectMemory(result, 103, 0),
+                    expect("R1", result.getGeneralPurposeRegister(1), COPY_DATA[COPY_WORDS - 1]));
+        }
+    };
+
+    private static final int SUM_RECORDS = 300;
+    private static final int SUM_PASSES = 10;
+    private static final int SUM_LIST = 1000;
+    private static final int[] SUM_VALUES = randomWords(SUM_RECORDS, 1000, 43);
+
+    private static final Workload ARRAY_SUM = new Workload("array-sum") {
+        // LDX forms its EA with the index register it loads, so X1 steps
+        // through records of {value, next record, running total}
+        private final int[] program = {
+            w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 10: R0 <- records * passes
+            w(Instruction.OPCODE_AMR, 1, 1, 0, 0),       // 11: loop: R1 += M(X1)
+            w(Instruction.OPCODE_STR, 1, 1, 0, 2),       // 12: M(X1 + 2) <- R1
+            w(Instruction.OPCODE_LDX, 0, 1, 0, 1),       // 13: X1 <- M(X1 + 1)
+            w(Instruction.OPCODE_SOB, 0, 0, 0, 11),      // 14: R0--, loop
+            w(Instruction.OPCODE_STR, 1, 0, 0, RESULT_ADDRESS), // 15
+            w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 16
+        };
+
+        @Override
+        public SimulationJob job(long id) {
+            SimulationJob job = WorkloadCorpus.job(id, this.program);
+            job.setMemory(100, SUM_RECORDS * SUM_PASSES);
+            for (int i = 0; i < SUM_RECORDS; i++) {
+                job.setMemory(SUM_LIST + 3 * i, SUM_VALUES[i]);
+                job.setMemory(SUM_LIST + 3 * i + 1, SUM_LIST + 3 * ((i + 1) % SUM_RECORDS));
+            }
+            job.setIndexRegister(1, SUM_LIST);
+            job.addResultRange(RESULT_ADDRESS, 1);
+            job.addResultRange(SUM_LIST, 3 * SUM_RECORDS);
+            return job;
+        }
+
+        @Override
+        String checkState(SimulationResult result) {
+            int total = 0;
+            int[] running = new int[SUM_RECORDS];
+            for (int pass = 0; pass < SUM_PASSES; pass++) {
+                for (int i = 0; i < SUM_RECORDS; i++) {
+                    total = (total + SUM_VALUES[i]) & WORD_MASK;
+                    running[i] = total;
+                }
+            }
+            for (int i = 0; i < SUM_RECORDS; i++) {
+                String problem = expectMemory(result, SUM_LIST + 3 * i + 2, running[i]);
+                if (problem != null) {
+                    return problem;
+                }
+            }
+            return first(expectMemory(result, RESULT_ADDRESS, total),
+                    expect("X1", result.getIndexRegister(1), SUM_LIST));
+        }
+    };
+
+    private static final int RECURSION_DEPTH = 100;
+    private static final int RECURSION_CALLS = 10;
+    private static final int STACK = 600;
+
+    private static final Workload RECURSION = new Workload("recursion") {
+        private final int[] program = {
+            w(Instruction.OPCODE_LDR, 2, 0, 0, 102),     // 10: R2 <- 0
+            w(Instruction.OPCODE_LDR, 1, 0, 0, 103),     // 11: R1 <- n
+            w(Instruction.OPCODE_JSR, 0, 0, 0, 30),      // 12: R2 <- sum(n)
+            w(Instruction.OPCODE_STR, 2, 0, 0, RESULT_ADDRESS), // 13
+            w(Instruction.OPCODE_LDR, 0, 0, 0, 104),     // 14: calls--
+            w(Instruction.OPCODE_SIR, 0, 0, 0, 1),       // 15
+            w(Instruction.OPCODE_STR, 0, 0, 0, 104),     // 16
+            w(Instruction.OPCODE_JNE, 0, 0, 0, 10),      // 17: again
+            w(Instruction.OPCODE_HLT, 0, 0, 0, 0),       // 18
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            w(Instruction.OPCODE_STR, 3, 0, 1, 100),     // 30: sum: push the return address
+            w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 31
+            w(Instruction.OPCODE_AIR, 0, 0, 0, 1),       // 32
+            w(Instruction.OPCODE_STR, 0, 0, 0, 100),     // 33
+            w(Instruction.OPCODE_JZ, 1, 0, 0, 40),       // 34: sum(0) = 0
+            w(Instruction.OPCODE_SIR, 1, 0, 0, 1),       // 35
+            w(Instruction.OPCODE_JSR, 0, 0, 0, 30),      // 36: sum(n - 1)
+            w(Instruction.OPCODE_AIR, 1, 0, 0, 1),       // 37
+            w(Instruction.OPCODE_STR, 1, 0, 0, 101),     // 38
+            w(Instruction.OPCODE_AMR, 2, 0, 0, 101),     // 39: R2 += n
+            w(Instruction.OPCODE_LDR, 0, 0, 0, 100),     // 40: pop the return address
+            w(Instruction.OPCODE_SIR, 0, 0, 0, 1),       // 41
+            w(Instruction.OPCODE_STR, 0, 0, 0, 100),     // 42
+            w(Instruction.OPCODE_LDR, 3, 0, 1, 100),     // 43
+            w(Instruction.OPCODE_RFS, 0, 0, 0, 0),       // 44
+        };
+
+        @Override
+        public SimulationJob job(long id) {
+            SimulationJob job = WorkloadCorpus.job(id, this.program);
+            job.setMemory(100, STACK);
+            job.setMemory(103, RECURSION_DEPTH);
+            job.setMemory(104, RECURSION_CALLS);
+            job.addResultRange(100, 5);
+            job.addResultRange(RESULT_ADDRESS, 1);
+            job.addResultRange(STACK, RECURSION_DEPTH + 1);
+            return job;
+        }
+
+        @Override
+        String checkState(SimulationResult result) {
+            for (int depth = 1; depth <= RECURSION_DEPTH; depth++) {
+                String problem = expectMemory(result, STACK + depth, 37);
+                if (problem != null) {
+                    return problem;
+                }
+            }
+            return first(expectMemory(result, RESULT_ADDRESS, RECURSION_DEPTH * (RECURSION_DEPTH + 1) / 2),
+                    expectMemory(result, 100, STACK),
+                    expectMemory(result, 104, 0),
+                    expectMemory(result, STACK, 13),
+                    expect("R1", result.getGeneralPurposeRegister(1), RECURSION_DEPTH));
+        }
+    };
+
+    private static final int BITS_ROUNDS = 500;
+    private static final int BITS_SEED = 0x1D2C3;
+
+    /**
+     * R1 ^= R2, through R3 and M(101): (R1 | R2) & ~(R1 & R2)
+     */
+    private static int[] xorR2IntoR1() {
+        return new int[]{
+            w(Instruction.OPCODE_STR, 1, 0, 0, 101),
+            w(Instruction.OPCODE_LDR, 3, 0, 0, 101),     // R3 <- R1
+            rr(Instruction.OPCODE_AND, 3, 2),
+            rr(Instruction.OPCODE_NOT, 3, 0),
+            rr(Instruction.OPCODE_ORR, 1, 2),
+            rr(Instruction.OPCODE_AND, 1, 3),
+        };
+    }
+
+    /**
+     * R1 ^= R1 shifted (logically)
+     */
+    private static int[] xorShift(int left, int count) {
+        int[] copy = {
+            w(Instruction.OPCODE_STR, 1, 0, 0, 101),
+            w(Instruction.OPCODE_LDR, 2, 0, 0, 101),     // R2 <- R1
+            shift(Instruction.OPCODE_SRC, 2, 1, left, count),
+        };
+        int[] xor = xorR2IntoR1();
+        int[] words = Arrays.copyOf(copy, copy.length + xor.length);
+        System.arraycopy(xor, 0, words, copy.length, xor.length);
+        return words;
+    }
+
+    private static int bitsModel(int x) {
+        for (int round = 0; round < BITS_ROUNDS; round++) {
+            x ^= (x << 7) & WORD_MASK;
+            x ^= x >>> 9;
+            x ^= (x << 8) & WORD_MASK;
+            x = ((x << 3) | (x >>> 17)) & WORD_MASK;
+        }
+        return x;
+    }
+
+    private static final Workload BITS = new Workload("bits") {
+        private final int[] program;
+
+        {
+            List<Integer> words = new ArrayList<>();
+            words.add(w(Instruction.OPCODE_LDR, 0, 0, 0, 100));     // 10: R0 <- rounds
+            words.add(w(Instruction.OPCODE_LDR, 1, 0, 0, 102));     // 11: R1 <- seed
+            int loop = 10 + words.size();
+            for (int[] step : new int[][]{xorShift(1, 7), xorShift(0, 9), xorShift(1, 8)}) {
+                for (int word : step) {
+                    words.add(word);
+                }
+            }
+            words.add(shift(Instruction.OPCODE_RRC, 1, 1, 1, 3));   // rotate left 3
+            words.add(w(Instruction.OPCODE_SOB, 0, 0, 0, loop));
+            words.add(w(Instruction.OPCODE_STR, 1, 0, 0, RESULT_ADDRESS));
+            words.add(w(Instruction.OPCODE_HLT, 0, 0, 0, 0));
+            this.program = new int[words.size()];
+            for (int i = 0; i < this.program.length; i++) {
+                this.program[i] = words.get(i);
+            }
+        }
+
+        @Override
+        public SimulationJob job(long id) {
+            SimulationJob job = WorkloadCorpus.job(id, this.program);
+            job.setMemory(100, BITS_ROUNDS);
+            job.setMemory(102, BITS_SEED);
+            job.addResultRange(RESULT_ADDRESS, 1);
+            return job;
+        }
+
+        @Override
+        String checkState(SimulationResult result) {
+            int expected = bitsModel(BITS_SEED);
+            return first(expectMemory(result, RESULT_ADDRESS, expected),
+                    expect("R1", result.getGeneralPurposeRegister(1), expected));
+        }
+    };
+
+    /**
+     * @return every workload, in a fixed order
+     */
+    public static List<Workload> all() {
+        return Arrays.asList(SOB_LOOP, MEMCOPY, ARRAY_SUM, RECURSION, BITS);
+    }
+}
@@ -0,0 +1,137 @@
+package computersimulator.farm;
+
+import computersimulator.cpu.Computer;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+
+/**
+ * Runs every WorkloadCorpus program headless on each execution model,
+ * validates its final memory and registers, and reports simulated cycles,
+ * instructions, host time per run and MIPS. A workload is timed in ROUNDS
+ * rounds of back-to-back runs lasting at least ROUND_MILLIS each, after one
+ * such round to warm up the JIT; the fastest round counts.
+ *
+ * Run with "ant workloads"; system properties:
+ *   workloads.baseline   compare MIPS to this properties file
+ *   workloads.save       write the MIPS to this properties file
+ *   workloads.threshold  fraction of the baseline MIPS that may be lost (0.25)
+ * The gate is the geometric mean of the MIPS ratios over every workload and
+ * model, which is steadier than any one of them; workloads beyond the
+ * threshold on their own are marked. Exits with status 1 if a workload is
+ * wrong or (unless saving a new baseline) the mean fell more than the
+ * threshold allows, so the Ant target fails.
+ */
+public class WorkloadRegression {
+
+    private static final int ROUNDS = 5;
+    private static final int ROUND_MILLIS = 100;
+
+    private static final String[] MODEL_NAMES = {"microcoded", "dispatch2", "pipelined", "out-of-order"};
+
+    private static SimulationJob job(WorkloadCorpus.Workload workload, int model) {
+        SimulationJob job = workload.job(model);
+        switch (model) {
+            case 1:
+                job.setIssueWidth(2);
+                break;
+            case 2:
+                job.setPipelined(true);
+                break;
+            case 3:
+                job.setCpuType(Computer.CPU_OUT_OF_ORDER);
+                job.setIssueWidth(2);
+                break;
+            default:
+                break;
+        }
+        return job;
+    }
+
+    /**
+     * @return host nanoseconds per run, in a round of runs lasting at least ROUND_MILLIS
+     */
+    private static double round(WorkloadCorpus.Workload workload, int model) {
+        long nanos = 0;
+        int runs = 0;
+        while (nanos < ROUND_MILLIS * 1000000L) {
+            nanos += SimulationFarm.runJob(job(workload, model)).getHostNanos();
+            runs++;
+        }
+        return (double) nanos / runs;
+    }
+
+    /**
+     * @param args
+     * @throws Exception
+     */
+    public static void main(String[] args) throws Exception {
+        String baselineFile = System.getProperty("workloads.baseline", "");
+        String save = System.getProperty("workloads.save", "");
+        double threshold = Double.parseDouble(System.getProperty("workloads.threshold", "0.25"));
+        Properties baseline = new Properties();
+        if (!baselineFile.isEmpty()) {
+            try (InputStream in = new FileInputStream(baselineFile)) {
+                baseline.load(in);
+            }
+        }
+
+        Properties scores = new Properties();
+        int wrong = 0;
+        double logRatios = 0;
+        int compared = 0;
+        System.out.println(String.format("%-28s %10s %10s %5s %9s %8s  %s", "workload", "cycles", "instrs", "CPI",
+                "host ms", "MIPS", baselineFile.isEmpty() ? "" : "vs " + baselineFile));
+        for (WorkloadCorpus.Workload workload : WorkloadCorpus.all()) {
+            for (int model = 0; model < MODEL_NAMES.length; model++) {
+                String name = workload.getName() + "." + MODEL_NAMES[model];
+                SimulationResult result = SimulationFarm.runJob(job(workload, model));
+                String problem = workload.check(result);
+                if (problem != null) {
+                    System.out.println(String.format("%-28s WRONG: %s", name, problem));
+                    wrong++;
+                    continue;
+                }
+                round(workload, model);
+                double best = Double.MAX_VALUE;
+                for (int i = 0; i < ROUNDS; i++) {
+                    best = Math.min(best, round(workload, model));
+                }
+                double mips = result.getInstructions() * 1000.0 / best;
+                scores.setProperty(name, String.format("%.3f", mips));
+
+                String comparison = "";
+                String before = baseline.getProperty(name);
+                if (before != null) {
+                    double ratio = mips / Double.parseDouble(before);
+                    comparison = String.format("%s MIPS, %+.1f%%", before, 100 * (ratio - 1))
+                            + ((ratio < 1 - threshold) ? "  slower" : "");
+                    logRatios += Math.log(ratio);
+                    compared++;
+                }
+                System.out.println(String.format("%-28s %10d %10d %5.2f %9.2f %8.2f  %s", name,
+                        result.getCycles(), result.getInstructions(),
+                        (double) result.getCycles() / result.getInstructions(), best / 1e6, mips, comparison));
+            }
+        }
+        if (!save.isEmpty()) {
+            try (OutputStream file = new FileOutputStream(save)) {
+                scores.store(file, "WorkloadRegression MIPS");
+            }
+            System.out.println("MIPS saved to " + save);
+        }
+        boolean regression = false;
+        if (compared > 0) {
+            double mean = Math.exp(logRatios / compared);
+            regression = mean < 1 - threshold;
+            System.out.println(String.format("MIPS vs baseline: geometric mean %+.1f%% over %d workloads%s",
+                    100 * (mean - 1), compared, regression ? "  REGRESSION beyond " + Math.round(100 * threshold) + "%" : ""));
+        }
+        System.out.println(wrong + " wrong");
+        if (wrong > 0 || (regression && save.isEmpty())) {
+            System.exit(1);
+        }
+    }
+}